@@ -0,0 +1,89 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package ClusteringBenchmarks;
+import Clustering.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Measures the weight computation, the merging of the base clusters
+// and the complete clustering of a corpus.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xss64m", "-Xmx4g" })
+public class PipelineBenchmarks {
+    private static final double OVERLAP_DEGREE = 0.3;
+    private static final double MIN_WEIGHT = 0.01;
+    private static final int MAX_CLUSTERS = 200;
+    private static final long SEED = 42;
+
+    @Param({ "1000", "10000" })
+    public int documents;
+
+    private DocumentReader reader_;
+    private List<Cluster> toMerge_;
+
+    @Setup(Level.Trial)
+    public void Setup() {
+        reader_ = new DocumentReader(new ZipfSource(SEED, documents));
+        reader_.Read();
+
+        // Most clusters of the generated corpus are below 'MIN_WEIGHT',
+        // the heaviest ones are merged regardless of their weight.
+        List<Cluster> baseClusters = reader_.GetBaseClusters(Double.NEGATIVE_INFINITY);
+        Collections.sort(baseClusters);
+        toMerge_ = baseClusters.subList(0, Math.min(MAX_CLUSTERS, baseClusters.size()));
+    }
+
+    @Benchmark
+    public DocumentReader ComputeWeights() {
+        reader_.ComputeWeights();
+        return reader_;
+    }
+
+    @Benchmark
+    public List<Cluster> MergeClusters() {
+        return new ClusterMerger(toMerge_, OVERLAP_DEGREE).MergeClusters();
+    }
+
+    // Generates and clusters the whole corpus, as done by an application.
+    @Benchmark
+    public List<Cluster> Find() {
+        return ClusterFinder.Find(new ZipfSource(SEED, documents), OVERLAP_DEGREE,
+                                  20, MIN_WEIGHT);
+    }
+}
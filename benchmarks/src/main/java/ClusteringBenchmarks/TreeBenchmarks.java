@@ -0,0 +1,176 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package ClusteringBenchmarks;
+import Clustering.*;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Measures the construction of the suffix tree, its freezing
+// and the traversals of the mutable and the frozen form.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xss64m", "-Xmx4g" })
+public class TreeBenchmarks {
+    private static final double MIN_WEIGHT = 0.01;
+    private static final long SEED = 42;
+
+    @Param({ "1000", "10000" })
+    public int documents;
+
+    private DocumentReader reader_;
+    private List<Document> documents_;
+    private SuffixTree reusedTree_;
+    private FrozenSuffixTree frozenTree_;
+    private FrozenSuffixTree reusedFrozenTree_;
+    private int[] stack_;
+
+    @Setup(Level.Trial)
+    public void Setup() {
+        reader_ = new DocumentReader(new ZipfSource(SEED, documents));
+        reader_.Read();
+        documents_ = reader_.Documents();
+        reusedTree_ = new SuffixTree();
+        frozenTree_ = reader_.Tree().Freeze();
+        reusedFrozenTree_ = reader_.Tree().Freeze();
+        stack_ = new int[frozenTree_.NodeCount()];
+    }
+
+    // Inserts all sentences of the corpus in a new tree.
+    // The documents are already parsed, only 'AddSentence' is measured.
+    @Benchmark
+    public SuffixTree AddSentence() {
+        return AddSentences(new SuffixTree());
+    }
+
+    // Same as 'AddSentence', but the tree is reset and reused,
+    // which shows the allocation left after warm-up.
+    @Benchmark
+    public SuffixTree ResetAndAddSentence() {
+        reusedTree_.Reset();
+        return AddSentences(reusedTree_);
+    }
+
+    // The tree limited to phrases of 6 words, the most counted by the weights.
+    @Benchmark
+    public SuffixTree AddSentenceTruncated() {
+        return AddSentences(new SuffixTree(6));
+    }
+
+    @Benchmark
+    public FrozenSuffixTree Freeze() {
+        return reader_.Tree().Freeze();
+    }
+
+    // Same as 'Freeze', but the copy reuses the arrays of the previous one,
+    // as the reader does after a reset.
+    @Benchmark
+    public FrozenSuffixTree FreezeReused() {
+        return reader_.Tree().Freeze(reusedFrozenTree_);
+    }
+
+    @Benchmark
+    public List<Cluster> GetFrozenBaseClusters() {
+        return frozenTree_.GetBaseClusters(MIN_WEIGHT);
+    }
+
+    // A depth-first walk over all edges, without creating clusters,
+    // shows the cost of the layout alone.
+    @Benchmark
+    public long TraverseTree() {
+        return Traverse(reader_.Tree().Root());
+    }
+
+    @Benchmark
+    public long TraverseFrozen() {
+        FrozenSuffixTree tree = frozenTree_;
+        long span = 0;
+        int count = 0;
+        stack_[count++] = tree.Root();
+
+        while(count > 0) {
+            int node = stack_[--count];
+            int first = tree.FirstEdge(node);
+            int last = first + tree.EdgeCount(node);
+
+            for(int edge = first; edge < last; edge++) {
+                span += tree.LastIndex(edge) - tree.FirstIndex(edge);
+
+                if(!tree.IsLeafEdge(edge)) {
+                    stack_[count++] = tree.NextNode(edge);
+                }
+            }
+        }
+
+        return span;
+    }
+
+    private long Traverse(SuffixTree.Node node) {
+        long span = 0;
+        Iterator<SuffixTree.Edge> edgeIt = node.Edges();
+
+        while(edgeIt.hasNext()) {
+            SuffixTree.Edge edge = edgeIt.next();
+            span += edge.Span();
+            SuffixTree.Node next = edge.NextNode();
+
+            if(!next.IsLeaf()) {
+                span += Traverse(next);
+            }
+        }
+
+        return span;
+    }
+
+    private SuffixTree AddSentences(SuffixTree tree) {
+        int count = documents_.size();
+
+        for(int i = 0; i < count; i++) {
+            Document doc = documents_.get(i);
+            int start = 0;
+
+            for(int j = 0; j < doc.Count(); j++) {
+                if(doc.WordAt(j).IsMarker()) {
+                    tree.AddSentence(doc, start, j + 1);
+                    start = j + 1;
+                }
+            }
+        }
+
+        return tree;
+    }
+}
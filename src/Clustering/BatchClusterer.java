@@ -0,0 +1,184 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Clusters many small, independent sets of documents (for example the
+// results of many searches) on a pool of workers. Each worker keeps its
+// reader, with the vocabulary and the tree, between jobs and only resets it,
+// so a job allocates little more than the clusters it returns.
+//
+// Because the storage is reused, the clusters of a job are valid only
+// until the worker starts the next one: they are passed to a handler,
+// called on the worker thread, which must copy or write out what it needs.
+public final class BatchClusterer {
+    // Receives the result of each job.
+    public interface ResultHandler {
+        // 'index' is the position of the job in the list given to 'Run'.
+        // Can be called by several workers at the same time.
+        void Handle(int index, ClusteringResult result);
+    }
+
+    // The state reused by a worker between jobs.
+    private static final class Worker {
+        public DocumentReader reader;
+    }
+
+    /*
+    * Private members.
+    */
+    private ExecutorService executor_;
+    private Worker[] workers_;
+    private ClusteringOptions options_;
+
+    /*
+    * Constructors.
+    */
+    public BatchClusterer(int threads, ClusteringOptions options) {
+        assert(threads > 0);
+        assert(options != null);
+        // ------------------------------------------------
+        options_ = options;
+        workers_ = new Worker[threads];
+
+        for(int i = 0; i < threads; i++) {
+            workers_[i] = new Worker();
+        }
+
+        executor_ = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "BatchClusterer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    // Uses one worker for each processor.
+    public BatchClusterer(ClusteringOptions options) {
+        this(Runtime.getRuntime().availableProcessors(), options);
+    }
+
+    /*
+    * Public methods.
+    */
+    // Clusters the documents of each source and passes the results
+    // to the handler. Returns after all jobs are done. If a job fails,
+    // the remaining ones are abandoned and the exception is rethrown.
+    // Must not be called by several threads at the same time.
+    public void Run(final List<? extends IDocumentSource> sources,
+                    final ResultHandler handler) {
+        assert(sources != null);
+        assert(handler != null);
+        // ------------------------------------------------
+        // The workers take the next job from a shared counter,
+        // which balances the load when the jobs have different sizes.
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        int count = Math.min(workers_.length, sources.size());
+        Future<?>[] futures = new Future<?>[count];
+
+        for(int i = 0; i < count; i++) {
+            final Worker worker = workers_[i];
+
+            futures[i] = executor_.submit(new Runnable() {
+                public void run() {
+                    int index;
+
+                    while((failed.get() == 0) &&
+                          ((index = next.getAndIncrement()) < sources.size())) {
+                        try {
+                            handler.Handle(index, RunJob(worker, sources.get(index)));
+                        }
+                        catch(RuntimeException e) {
+                            failed.incrementAndGet();
+                            throw e;
+                        }
+                    }
+                }
+            });
+        }
+
+        RuntimeException error = null;
+
+        for(int i = 0; i < count; i++) {
+            try {
+                futures[i].get();
+            }
+            catch(ExecutionException e) {
+                if(error == null) {
+                    error = e.getCause() instanceof RuntimeException ?
+                            (RuntimeException)e.getCause() :
+                            new RuntimeException(e.getCause());
+                }
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.incrementAndGet();
+                error = new RuntimeException(e);
+                break;
+            }
+        }
+
+        if(error != null) {
+            throw error;
+        }
+    }
+
+    public int WorkerCount() { return workers_.length; }
+
+    // Stops the workers. The object can no longer be used.
+    public void Close() {
+        executor_.shutdownNow();
+    }
+
+    /*
+    * Private methods.
+    */
+    private ClusteringResult RunJob(Worker worker, IDocumentSource source) {
+        if(worker.reader == null) {
+            worker.reader = new DocumentReader(source);
+        }
+        else {
+            worker.reader.Reset(source);
+        }
+
+        return ClusterFinder.Run(worker.reader, options_);
+    }
+}
@@ -0,0 +1,112 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+
+// Allows stopping a clustering run, either explicitly or when a deadline
+// passes. The phases check the token from time to time and, when it's
+// cancelled, stop and keep what they computed so far, so the run returns
+// a partial result instead of nothing.
+//
+// With a deadline, the reading of the documents stops earlier, after
+// (1 - Reserve) of the available time, so that the clusters of the documents
+// read so far can still be extracted and merged before the deadline.
+public final class CancellationToken {
+    private static final double DEFAULT_RESERVE = 0.4;
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private volatile boolean cancelled_;
+    private long start_;    // All times are from 'System.nanoTime'.
+    private long deadline_;
+    private double reserve_;
+
+    /*
+    * Constructors.
+    */
+    // Creates a token which is cancelled only by calling 'Cancel'.
+    public CancellationToken() {
+        start_ = System.nanoTime();
+        deadline_ = NO_DEADLINE;
+        reserve_ = DEFAULT_RESERVE;
+    }
+
+    // Creates a token which is cancelled after the specified number of milliseconds.
+    public static CancellationToken WithTimeout(long millis) {
+        assert(millis >= 0);
+        // ------------------------------------------------
+        CancellationToken token = new CancellationToken();
+        token.deadline_ = token.start_ + millis * 1000000L;
+        return token;
+    }
+
+    /*
+    * Public methods.
+    */
+    public void Cancel() {
+        cancelled_ = true;
+    }
+
+    // Returns true if the token was cancelled or the deadline has passed.
+    public boolean IsCancelled() {
+        return cancelled_ || ((deadline_ != NO_DEADLINE) &&
+                              (System.nanoTime() - deadline_ >= 0));
+    }
+
+    // Returns true if no more documents should be read.
+    public boolean ShouldStopReading() {
+        if(cancelled_) {
+            return true;
+        }
+        else if(deadline_ == NO_DEADLINE) {
+            return false;
+        }
+
+        long readingEnd = start_ + (long)((deadline_ - start_) * (1 - reserve_));
+        return System.nanoTime() - readingEnd >= 0;
+    }
+
+    public boolean HasDeadline() { return deadline_ != NO_DEADLINE; }
+
+    // The nanoseconds until the deadline (negative if it has passed),
+    // 'Long.MAX_VALUE' if there is no deadline.
+    public long Remaining() {
+        return deadline_ == NO_DEADLINE ? Long.MAX_VALUE : deadline_ - System.nanoTime();
+    }
+
+    // The fraction of the time kept for the phases after the reading.
+    public double Reserve() { return reserve_; }
+    public void SetReserve(double value) {
+        assert(value >= 0 && value < 1);
+        // ------------------------------------------------
+        reserve_ = value;
+    }
+}
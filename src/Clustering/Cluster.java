@@ -31,23 +31,65 @@
 // OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package Clustering;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 
 public final class Cluster implements Comparable {
+    // The phrases of the cluster. Any change to the list
+    // invalidates the sums kept by the cluster.
+    private final class PhraseList extends AbstractList<Phrase> {
+        private ArrayList<Phrase> items_;
+
+        public PhraseList(int capacity) {
+            items_ = new ArrayList<Phrase>(capacity);
+        }
+
+        @Override
+        public Phrase get(int index) { return items_.get(index); }
+
+        @Override
+        public int size() { return items_.size(); }
+
+        @Override
+        public Phrase set(int index, Phrase phrase) {
+            sumsValid_ = false;
+            return items_.set(index, phrase);
+        }
+
+        @Override
+        public void add(int index, Phrase phrase) {
+            sumsValid_ = false;
+            modCount++;
+            items_.add(index, phrase);
+        }
+
+        @Override
+        public Phrase remove(int index) {
+            sumsValid_ = false;
+            modCount++;
+            return items_.remove(index);
+        }
+    }
+
     private ArrayList<Document> documents_;
-    private List<Phrase> phrases_;
+    private PhraseList phrases_;
     private double weight_;
     private String label_;
+    // The sums of the weights and word counts of the phrases,
+    // valid until the phrases are changed.
+    private double phraseWeight_;
+    private int phraseWords_;
+    private boolean sumsValid_;
 
     /*
     * Constructors.
     */
     public Cluster(int docCapacity, int phraseCapacity) {
         documents_ = new ArrayList<Document>(docCapacity);
-        phrases_ = new ArrayList<Phrase>(phraseCapacity);
+        phrases_ = new PhraseList(phraseCapacity);
     }
 
     public Cluster(Phrase phrase) {
@@ -63,14 +105,10 @@ public final class Cluster implements Comparable {
         // The weight is equal to the producet between the number of documents,
         // the (adjusted) length of the senteces and the sum of the weight
         // of each words part of the sentences.
-        double wordWeight = 0;        
-        int count = phrases_.size();
-        
-        for(int i = 0; i < count; i++) {
-            wordWeight += phrases_.get(i).Weight();
-        }
-
-        weight_ = documents_.size() * PhrasesWeight() * wordWeight;
+        // The sums are kept between calls and computed again
+        // only after the phrases change ('Merge' sets them directly).
+        UpdateSums();
+        weight_ = DocumentCount() * PhrasesWeight() * phraseWeight_;
     }
 
     // Verifies if the cluster and the specified one are similar
@@ -80,41 +118,52 @@ public final class Cluster implements Comparable {
         // ------------------------------------------------
         // Find the common documents. If there are only a few documents,
         // a linear search is used; otherwise the search uses a hash table.
+        // The near-duplicates of the documents are counted too.
         int common = 0;
+        int count = 0;
+        int otherCount = 0;
 
         if((documents_.size() <= 3) &&
            (other.documents_.size() <= 3)) {
             // Few documents case, do a linear search.
             for(int i = 0; i < documents_.size(); i++) {
                 Document doc = documents_.get(i);
+                count += doc.Multiplicity();
+
                 if(other.documents_.contains(doc)) {
-                    common++;
+                    common += doc.Multiplicity();
                 }
             }
+
+            otherCount = other.DocumentCount();
         }
         else {
             // Many documents case, use a hash table.
             Hashtable<Document, Document> hash = new Hashtable<Document, Document>();
-            int count = documents_.size();
+            int size = documents_.size();
             
-            for(int i = 0; i < count; i++) {
+            for(int i = 0; i < size; i++) {
                 Document doc = documents_.get(i);
                 hash.put(doc, doc);
+                count += doc.Multiplicity();
             }
 
             // Check which of the documents from the other clusters
             // are found in the hash table.
-            count = other.documents_.size();
+            size = other.documents_.size();
             
-            for(int i = 0; i < count; i++) {
-                if(hash.containsKey(other.documents_.get(i))) {
-                    common++;
+            for(int i = 0; i < size; i++) {
+                Document doc = other.documents_.get(i);
+                otherCount += doc.Multiplicity();
+
+                if(hash.containsKey(doc)) {
+                    common += doc.Multiplicity();
                 }
             }
         }
 
-        return ((double)common / (double)documents_.size()) > overlapDegree &&
-               ((double)common / (double)other.documents_.size()) > overlapDegree;
+        return ((double)common / (double)count) > overlapDegree &&
+               ((double)common / (double)otherCount) > overlapDegree;
     }
 
     // Unifies all clusters from the specified list
@@ -122,10 +171,11 @@ public final class Cluster implements Comparable {
     public static Cluster Merge(List<Cluster> clusters) {
         assert(clusters != null);
         // ------------------------------------------------
-        ArrayList<Phrase> allPhrases = new ArrayList<Phrase>();
         Cluster newCluster = new Cluster(clusters.size() * 2,
                                          clusters.size());
         Hashtable<Document, Document> hash = new Hashtable<Document, Document>();
+        double phraseWeight = 0;
+        int phraseWords = 0;
 
         // Each document must appear a single time in the new cluster
         // (the list must behave as a mathematical set).
@@ -140,9 +190,12 @@ public final class Cluster implements Comparable {
 
             // All sentences from the clusters must appear in the new one.
             List<Phrase> phrases = cluster.Phrases();
+            cluster.UpdateSums();
+            phraseWeight += cluster.phraseWeight_;
+            phraseWords += cluster.phraseWords_;
             
             for(int j = 0; j < phrases.size(); j++) {
-                allPhrases.add(phrases.get(j));
+                newCluster.phrases_.add(phrases.get(j));
             }
         }
 
@@ -153,16 +206,35 @@ public final class Cluster implements Comparable {
             newCluster.documents_.add(docIt.next());
         }
 
-        // Associated the sentences with the new cluster.
-        newCluster.SetPhrases(allPhrases);
+        // The sums of the merged clusters are added.
+        newCluster.phraseWeight_ = phraseWeight;
+        newCluster.phraseWords_ = phraseWords;
+        newCluster.sumsValid_ = true;
         return newCluster;
     }
 
     public double Weight() { return weight_; }
     public List<Document> Documents() { return documents_; }
 
+    // The number of documents, including the near-duplicates
+    // of the documents (see 'Document.Aliases').
+    public int DocumentCount() {
+        int count = 0;
+
+        for(int i = 0; i < documents_.size(); i++) {
+            count += documents_.get(i).Multiplicity();
+        }
+
+        return count;
+    }
+
     public List<Phrase> Phrases() { return phrases_; }
-    public void SetPhrases(List<Phrase> value) { phrases_ = value; }
+
+    // The phrases are copied, later changes to the list are not seen.
+    public void SetPhrases(List<Phrase> value) {
+        phrases_ = new PhraseList(value.size());
+        phrases_.addAll(value);
+    }
     
     public String Label() { return label_; }
     public void SetLabel(String value) { label_ = value; }
@@ -170,19 +242,38 @@ public final class Cluster implements Comparable {
     /*
     * Private methods.
     */
-    private double PhrasesWeight() {
-        double sum = 0;
+    // Sums the weights and word counts of the phrases
+    // if they changed since the last call.
+    private void UpdateSums() {
+        if(sumsValid_) {
+            return;
+        }
+
         int count = phrases_.size();
-        
+        phraseWeight_ = 0;
+        phraseWords_ = 0;
+
         for(int i = 0; i < count; i++) {
-            sum += phrases_.get(i).WordCount();            
+            Phrase phrase = phrases_.get(i);
+            phraseWeight_ += phrase.Weight();
+            phraseWords_ += phrase.WordCount();
         }
 
-        if(sum < 2) {
+        sumsValid_ = true;
+    }
+
+    private double PhrasesWeight() {
+        return LengthFactor(phraseWords_);
+    }
+
+    // The factor applied to the weight of a cluster whose phrases have
+    // the specified number of words (also used by 'ClusterWorker').
+    static double LengthFactor(int words) {
+        if(words < 2) {
             return 0.5;
         }
         else {
-            return Math.min(6, sum);
+            return Math.min(6, words);
         }
     }
 
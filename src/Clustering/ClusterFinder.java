@@ -37,10 +37,10 @@ import java.util.List;
 
 public final class ClusterFinder {
     // Function used for unit tests.
-    public static SuffixTree.Node ParseSource(IDocumentSource source) {
+    public static FrozenSuffixTree ParseSource(IDocumentSource source) {
         DocumentReader reader = new DocumentReader(source);
         reader.Read();
-        return reader.Tree().Root();
+        return reader.FrozenTree();
     }
 
     /**
@@ -58,31 +58,203 @@ public final class ClusterFinder {
     public static List<Cluster> Find(IDocumentSource source,
                                      double clusterOverlapDegree,
                                      int maxClusters, double minClusterWeight) {
+        return Run(source, clusterOverlapDegree, maxClusters, minClusterWeight).Clusters();
+    }
+
+    /**
+     * Same as 'Find', but the run stops early when the token is cancelled
+     * or its deadline passes, returning the clusters found until then
+     * (use 'Run' to find out if the result is partial).
+     *
+     * @param source The source from where to read the documents.
+     * @param clusterOverlapDegree The minimum overlapping degree
+     * for two clusters to be combined into a single one.
+     * @param maxClusters The maximum number of clusters to add to the
+     * result lists. The rest of the documents are added to a cluster named "Other".
+     * @param minClusterWeight The minimum weight of a cluster to be considered.
+     * @param cancellation The token which can stop the run.
+     * @return A list with the clusters meeting the specified conditions.
+     */
+    public static List<Cluster> Find(IDocumentSource source,
+                                     double clusterOverlapDegree,
+                                     int maxClusters, double minClusterWeight,
+                                     CancellationToken cancellation) {
+        ClusteringOptions options = new ClusteringOptions(clusterOverlapDegree, maxClusters,
+                                                          minClusterWeight);
+        options.SetCancellation(cancellation);
+        return Run(source, options).Clusters();
+    }
+
+    /**
+     * Same as 'Find', but also returns statistics about the run.
+     * The statistics are added to the ones aggregated by 'ClusteringMonitor'.
+     *
+     * @param source The source from where to read the documents.
+     * @param clusterOverlapDegree The minimum overlapping degree
+     * for two clusters to be combined into a single one.
+     * @param maxClusters The maximum number of clusters to add to the
+     * result lists. The rest of the documents are added to a cluster named "Other".
+     * @param minClusterWeight The minimum weight of a cluster to be considered.
+     * @return The clusters meeting the specified conditions and the statistics.
+     */
+    public static ClusteringResult Run(IDocumentSource source,
+                                       double clusterOverlapDegree,
+                                       int maxClusters, double minClusterWeight) {
+        return Run(source, new ClusteringOptions(clusterOverlapDegree, maxClusters,
+                                                 minClusterWeight));
+    }
+
+    /**
+     * Same as 'Find', but also returns statistics about the run.
+     * The statistics are added to the ones aggregated by 'ClusteringMonitor'.
+     *
+     * @param source The source from where to read the documents.
+     * @param options The parameters of the run.
+     * @return The clusters meeting the specified conditions and the statistics.
+     * @throws MemoryBudgetException If the documents don't fit in the
+     * memory budget and the policy of the budget is to reject them.
+     */
+    public static ClusteringResult Run(IDocumentSource source,
+                                       ClusteringOptions options) {
         assert(source != null);
-        assert(maxClusters > 0);
+        assert(options != null);
         // ------------------------------------------------
+        return Run(new DocumentReader(source), options);
+    }
+
+    // Reads the documents using the specified reader and clusters them.
+    // Allows reusing a reader (see 'BatchClusterer').
+    static ClusteringResult Run(DocumentReader reader, ClusteringOptions options) {
         // Read all documents and get the base clusters.
         // The weight of each one is computed and is used to sort them
         // in ascending order. Clusters with low weight are grupped
         // under a single cluster named "Other", but only if they remain
         // after 'maxClusters' have been considered.
-        DocumentReader reader = new DocumentReader(source);
+        // If the run is cancelled, each phase stops and the next ones
+        // use what was computed so far.
+        ClusteringStats stats = new ClusteringStats();
+        CancellationToken cancellation = options.Cancellation();
+        ProgressReporter progress = null;
+
+        if(options.ProgressListener() != null) {
+            progress = new ProgressReporter(options.ProgressListener(),
+                                            options.ProgressInterval() * 1000000L, reader);
+        }
+
+        reader.SetMemoryBudget(options.MemoryBudget());
+        reader.SetMaxPhraseLength(options.MaxPhraseLength());
+        reader.SetNearDuplicateDistance(options.NearDuplicateDistance());
+        reader.SetShareSentences(options.ShareSentences());
+        reader.SetCancellation(cancellation);
+        reader.SetProgress(progress);
+
+        if(progress != null) {
+            progress.SetPhase(ClusteringProgress.Phase.READING);
+        }
+
         reader.Read();
+        stats.SetReader(reader);
+
+        if(progress != null) {
+            progress.SetPhase(ClusteringProgress.Phase.EXTRACTING);
+        }
+
+        // The tree is frozen first, the traversal of the copy is much faster.
+        long start = System.nanoTime();
+        FrozenSuffixTree tree = reader.FrozenTree();
+        tree.SetProgress(progress);
+        List<Cluster> baseClusters = tree.GetBaseClusters(options.MinClusterWeight(),
+                                                          cancellation);
+        stats.SetExtract(System.nanoTime() - start, tree.CandidateCount(),
+                         baseClusters.size());
+
+        if(tree.ExtractionCancelled()) {
+            stats.SetPartial();
+        }
+
+        if(progress != null) {
+            progress.SetPhase(ClusteringProgress.Phase.MERGING);
+        }
 
-        List<Cluster> baseClusters = reader.GetBaseClusters(minClusterWeight);
+        List<Cluster> clusters = MergeBaseClusters(baseClusters,
+                                                   options.ClusterOverlapDegree(),
+                                                   options.MaxClusters(), stats,
+                                                   cancellation);
 
+        // Index the clusters of each document, for the lookups done later.
+        DocumentClusterIndex index = new DocumentClusterIndex(clusters);
+
+        if(progress != null) {
+            progress.SetPhase(ClusteringProgress.Phase.DONE);
+        }
+
+        ClusteringMonitor.Instance().Record(stats);
+        return new ClusteringResult(clusters, stats, index);
+    }
+
+    /**
+     * Returns a list with all clusters from a tree snapshot
+     * that meet conditions specified in the parameters.
+     * The documents are not read again and the tree is not rebuilt.
+     *
+     * @param snapshot The snapshot of a previously built tree.
+     * @param clusterOverlapDegree The minimum overlapping degree
+     * for two clusters to be combined into a single one.
+     * @param maxClusters The maximum number of clusters to add to the
+     * result lists. The rest of the documents are added to a cluster named "Other".
+     * @param minClusterWeight The minimum weight of a cluster to be considered.
+     * @return A list with all clusters meeting the specified conditions.
+     */
+    public static List<Cluster> Find(TreeSnapshot snapshot,
+                                     double clusterOverlapDegree,
+                                     int maxClusters, double minClusterWeight) {
+        assert(snapshot != null);
+        assert(maxClusters > 0);
+        // ------------------------------------------------
+        List<Cluster> baseClusters = snapshot.GetBaseClusters(minClusterWeight);
+        return MergeBaseClusters(baseClusters, clusterOverlapDegree, maxClusters,
+                                 new ClusteringStats(), null);
+    }
+
+    // Sorts the base clusters by weight, merges the first 'maxClusters'
+    // and groups the remaining ones under a cluster named "Other".
+    static List<Cluster> MergeBaseClusters(List<Cluster> baseClusters,
+                                           double clusterOverlapDegree,
+                                           int maxClusters,
+                                           ClusteringStats stats,
+                                           CancellationToken cancellation) {
+        long start = System.nanoTime();
+        Collections.sort(baseClusters);
+        return MergeSortedClusters(baseClusters, clusterOverlapDegree, maxClusters,
+                                   stats, cancellation, start);
+    }
+
+    // Merges the first 'maxClusters' base clusters, which must be already
+    // sorted by weight, and groups the remaining ones under a cluster named "Other".
+    // The base clusters are not modified. 'start' is the time when the merge began.
+    // The token can be null if the merge can't be cancelled.
+    static List<Cluster> MergeSortedClusters(List<Cluster> baseClusters,
+                                             double clusterOverlapDegree,
+                                             int maxClusters, ClusteringStats stats,
+                                             CancellationToken cancellation,
+                                             long start) {
         if(baseClusters.isEmpty()) {
+            stats.SetMerge(System.nanoTime() - start, 0, 0);
             return new ArrayList<Cluster>();
         }
 
         // Select the first 'maxClusters' clusters.
-        Collections.sort(baseClusters);
         int limit = Math.min(maxClusters, baseClusters.size());
 
         List<Cluster> toMerge = baseClusters.subList(0, limit);
         ClusterMerger merger = new ClusterMerger(toMerge, clusterOverlapDegree);
+        merger.SetCancellation(cancellation);
         List<Cluster> finalClusters = merger.MergeClusters();
 
+        if(merger.Cancelled()) {
+            stats.SetPartial();
+        }
+
         if(limit < baseClusters.size()) {
             // Some clusters remained, group them under a single cluster.
             Cluster other = Cluster.Merge(baseClusters.subList(limit, baseClusters.size()));
@@ -90,6 +262,8 @@ public final class ClusterFinder {
             finalClusters.add(other);
         }
 
+        stats.SetMerge(System.nanoTime() - start, merger.Comparisons(),
+                       finalClusters.size());
         return finalClusters;
     }
 }
@@ -37,6 +37,8 @@ import java.util.List;
 import java.util.Queue;
 
 public class ClusterMerger {
+    private static final int CANCEL_CHECK_MASK = 15;
+
     private class ClusterInfo {
         private Cluster cluster_;
         private boolean discovered_;
@@ -58,6 +60,9 @@ public class ClusterMerger {
     */
     private ArrayList<ClusterInfo> clusters_;
     private double overlapDegree_;
+    private long comparisons_;
+    private CancellationToken cancellation_;
+    private boolean cancelled_;
 
     /*
     * Constructors.
@@ -75,6 +80,13 @@ public class ClusterMerger {
     /*
     * Public methods.
     */
+    // Sets the token checked while the clusters are compared. When it's
+    // cancelled, the clusters not compared yet are not merged with others.
+    public void SetCancellation(CancellationToken value) { cancellation_ = value; }
+
+    // Returns true if 'MergeClusters' was cancelled.
+    public boolean Cancelled() { return cancelled_; }
+
     // Finds clusters containing the same documents.
     public List<Cluster> MergeClusters() {
         ConnectClusters();
@@ -117,6 +129,9 @@ public class ClusterMerger {
         return clusters;
     }
 
+    // The number of cluster pairs compared by 'MergeClusters'.
+    public long Comparisons() { return comparisons_; }
+
     /*
     * Private methods.
     */
@@ -127,6 +142,13 @@ public class ClusterMerger {
         int count = clusters_.size();
         
         for(int i = 0; i < count; i++) {
+            // Check only every few rows, most merges are tiny.
+            if(((i & CANCEL_CHECK_MASK) == CANCEL_CHECK_MASK) &&
+               (cancellation_ != null) && cancellation_.IsCancelled()) {
+                cancelled_ = true;
+                return;
+            }
+
             for(int j = 0; j < count; j++) {
                 if(i == j) {
                     // Don't compare a document with itself.
@@ -135,7 +157,8 @@ public class ClusterMerger {
 
                 ClusterInfo a = clusters_.get(i);
                 ClusterInfo b = clusters_.get(j);
-                
+                comparisons_++;
+
                 if(a.Cluster().IsSimilarTo(b.Cluster(), overlapDegree_)) {
                     // The documents are similar enough, connect them.
                     a.Edges().add(b);
@@ -31,40 +31,69 @@
 // OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package Clustering;
-import java.util.*;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.image.*;
-import java.awt.event.*;
+import java.awt.BasicStroke;
 import java.awt.Color;
-import javax.swing.*;
-import java.awt.Font;
 import java.awt.FontMetrics;
-import java.text.DecimalFormat;
-
-import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.geom.AffineTransform;
 import java.util.ArrayList;
+import javax.swing.JPanel;
 
+// Draws a frozen suffix tree which can be browsed interactively.
+//
+// The nodes are laid out only when their parent is expanded: at first only
+// the root and its children are shown, a click on a node expanding or
+// collapsing it. The layout covers only the expanded nodes, so its cost
+// depends on what is shown and not on the size of the tree.
+// The children of a node are placed from left to right, which allows finding
+// with binary searches the ones intersecting the visible area; the others
+// are not drawn. The labels are drawn only when the zoom allows reading them
+// and are created once, when first needed. A subtree narrower than a pixel
+// is drawn as a single line. The view is moved by dragging it and zoomed
+// with the mouse wheel.
 public class ClusterViewer extends JPanel {
-    class NodeInfo {
-        public int Width;
-        public int X;
-        public int Y;
-        public SuffixTree.Node Node;
-        public Color Color;
-        public ArrayList<NodeInfo> Children;
-        public String Text;
+    // A node of the tree as shown by the viewer.
+    private static final class ViewNode {
+        public final int Node; // 'FrozenSuffixTree.LEAF' for a leaf.
+        public final int Edge; // Leads to the node, -1 for the root.
+        public final int Level;
+        public ArrayList<ViewNode> Children; // Created the first time it's expanded.
+        public boolean Expanded;
+        public String Label; // The words of the edge, created when first drawn.
 
-        public NodeInfo() {
-            Children = new ArrayList<NodeInfo>();
+        // The layout, in the coordinates of the tree.
+        public int Left;  // The left side of the subtree.
+        public int Width; // The width of the subtree.
+        public int Depth; // The number of expanded levels below the node.
+
+        public ViewNode(int node, int edge, int level) {
+            Node = node;
+            Edge = edge;
+            Level = level;
         }
+
+        public int X() { return Left + Width / 2; }
+        public int Y() { return TOP + Level * LEVEL_HEIGHT; }
+        public boolean HasChildren() { return Expanded && (Children.size() > 0); }
+        public boolean IsLeaf() { return Node == FrozenSuffixTree.LEAF; }
     }
 
     private static final int Y_DISTANCE = 100;
     private static final int X_DISTANCE = 50;
     private static final int SIZE = 24;
+    private static final int TOP = SIZE * 2;
+    private static final int LEVEL_HEIGHT = SIZE + Y_DISTANCE;
+    private static final int MAX_LABEL_LENGTH = 40;
+    private static final double LABEL_SCALE = 0.5; // The labels are not drawn below it.
+    private static final double MIN_SCALE = 0.0005;
+    private static final double MAX_SCALE = 4;
+    private static final double ZOOM_STEP = 1.15;
 
     private static final Color LEAF_COLOR = new Color(200, 200, 200);
     private static final Color COLORS[] = new Color[] {
@@ -78,107 +107,419 @@ public class ClusterViewer extends JPanel {
         new Color(250, 224, 78)
     };
 
-    private NodeInfo root;
+    /*
+    * Private members.
+    */
+    private FrozenSuffixTree tree_;
+    private ViewNode root_;
+    private double scale_;
+    private double offsetX_; // The point of the tree shown
+    private double offsetY_; // in the top-left corner.
+    private boolean centered_; // The root was centered in the view.
+    private int dragX_;
+    private int dragY_;
 
+    /*
+    * Constructors.
+    */
+    public ClusterViewer(FrozenSuffixTree tree) {
+        assert(tree != null);
+        // ------------------------------------------------
+        // A tree without sentences has no internal node, not even the root.
+        tree_ = tree;
+        root_ = new ViewNode(tree.NodeCount() > 0 ? tree.Root() : FrozenSuffixTree.LEAF, -1, 0);
+        scale_ = 1;
+        Expand(root_);
+        Layout();
 
-    public ClusterViewer(SuffixTree.Node root) {
-        LayoutNodes(root, 0);
+        MouseAdapter mouse = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragX_ = e.getX();
+                dragY_ = e.getY();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                offsetX_ -= (e.getX() - dragX_) / scale_;
+                offsetY_ -= (e.getY() - dragY_) / scale_;
+                dragX_ = e.getX();
+                dragY_ = e.getY();
+                repaint();
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                ViewNode node = FindNode(offsetX_ + e.getX() / scale_,
+                                         offsetY_ + e.getY() / scale_);
+
+                if((node != null) && !node.IsLeaf()) {
+                    Toggle(node);
+                }
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                // The point under the cursor stays in place.
+                double x = offsetX_ + e.getX() / scale_;
+                double y = offsetY_ + e.getY() / scale_;
+                scale_ *= Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation());
+                scale_ = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale_));
+                offsetX_ = x - e.getX() / scale_;
+                offsetY_ = y - e.getY() / scale_;
+                repaint();
+            }
+        };
+
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
     }
 
-    private NodeInfo LayoutNodes(SuffixTree.Node node, int level) {
-        NodeInfo nodeInfo = new NodeInfo();
-        nodeInfo.Node = node;
-        nodeInfo.Color = COLORS[level];
+    /*
+    * Public methods.
+    */
+    // Expands the nodes of the first levels, 1 showing only the children of the root.
+    // Each level can have many more nodes than the previous one.
+    public void ExpandLevels(int levels) {
+        assert(levels >= 0);
+        // ------------------------------------------------
+        ExpandLevels(root_, levels);
+        Layout();
+        repaint();
+    }
 
-        if(node.IsLeaf()) {
-            nodeInfo.Color = LEAF_COLOR;
+    // The number of nodes laid out, the ones which can be drawn.
+    public int VisibleNodeCount() {
+        return CountNodes(root_);
+    }
+
+    @Override
+    public void paintComponent(Graphics graphics) {
+        Graphics2D g = (Graphics2D)graphics;
+        g.clearRect(0, 0, getSize().width, getSize().height);
+
+        if(!centered_) {
+            offsetX_ = root_.X() - getSize().width / (2 * scale_);
+            centered_ = true;
+        }
+
+        if(scale_ >= LABEL_SCALE) {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                               RenderingHints.VALUE_ANTIALIAS_ON);
+        }
+
+        AffineTransform transform = g.getTransform();
+        g.scale(scale_, scale_);
+        g.translate(-offsetX_, -offsetY_);
+        g.setStroke(new BasicStroke((float)Math.min(1, 1 / scale_)));
+
+        // The visible area in the coordinates of the tree.
+        Rectangle clip = g.getClipBounds();
+
+        if(clip == null) {
+            clip = new Rectangle((int)offsetX_, (int)offsetY_,
+                                 (int)(getSize().width / scale_) + 1,
+                                 (int)(getSize().height / scale_) + 1);
         }
 
-        if(level == 0) {
-            root = nodeInfo;
+        DrawNodes(root_, clip, g);
+        g.setTransform(transform);
+    }
+
+    /*
+    * Private methods.
+    */
+    // Creates the children of the node, if not already created.
+    private void Expand(ViewNode node) {
+        if(node.Children == null) {
+            node.Children = new ArrayList<ViewNode>();
+            if(!node.IsLeaf()) {
+                int first = tree_.FirstEdge(node.Node);
+                int last = first + tree_.EdgeCount(node.Node);
+
+                for(int edge = first; edge < last; edge++) {
+                    node.Children.add(new ViewNode(tree_.NextNode(edge), edge, node.Level + 1));
+                }
+            }
+        }
+
+        node.Expanded = true;
+    }
+
+    private void ExpandLevels(ViewNode node, int levels) {
+        if(levels == 0) {
+            return;
+        }
+
+        Expand(node);
+
+        for(int i = 0; i < node.Children.size(); i++) {
+            ExpandLevels(node.Children.get(i), levels - 1);
+        }
+    }
+
+    // Expands or collapses the node. The children keep their state
+    // and are shown again as they were when the node is expanded.
+    private void Toggle(ViewNode node) {
+        if(node.Expanded) {
+            node.Expanded = false;
+        }
+        else {
+            Expand(node);
+        }
+
+        // Keep the node in place while the layout changes around it.
+        int oldX = node.X();
+        Layout();
+        offsetX_ += node.X() - oldX;
+        repaint();
+    }
+
+    private int CountNodes(ViewNode node) {
+        int count = 1;
+
+        if(node.HasChildren()) {
+            for(int i = 0; i < node.Children.size(); i++) {
+                count += CountNodes(node.Children.get(i));
+            }
+        }
+
+        return count;
+    }
+
+    // Computes the position of all expanded nodes.
+    private void Layout() {
+        ComputeWidth(root_);
+        Place(root_, 0);
+    }
+
+    private void ComputeWidth(ViewNode node) {
+        node.Depth = 0;
+
+        if(!node.HasChildren()) {
+            node.Width = SIZE;
+            return;
         }
 
         int width = 0;
-        Iterator<SuffixTree.Edge> edgeIt = node.Edges();
-        
-        while(edgeIt.hasNext()) {
-            SuffixTree.Edge edge = edgeIt.next();
-            NodeInfo child = LayoutNodes(edge.NextNode(), level + 1);
-            nodeInfo.Children.add(child);
-            
-            if(edge.NextNode().IsLeaf()) {
-                width += SIZE;
+
+        for(int i = 0; i < node.Children.size(); i++) {
+            ViewNode child = node.Children.get(i);
+            ComputeWidth(child);
+            width += child.Width + (i > 0 ? X_DISTANCE : 0);
+            node.Depth = Math.max(node.Depth, child.Depth + 1);
+        }
+
+        node.Width = Math.max(SIZE, width);
+    }
+
+    private void Place(ViewNode node, int left) {
+        node.Left = left;
+
+        if(node.HasChildren()) {
+            int x = left;
+
+            for(int i = 0; i < node.Children.size(); i++) {
+                ViewNode child = node.Children.get(i);
+                Place(child, x);
+                x += child.Width + X_DISTANCE;
+            }
+        }
+    }
+
+    // Returns the first child whose subtree ends after the specified position.
+    private static int FirstChildAfter(ViewNode node, double x) {
+        int left = 0;
+        int right = node.Children.size();
+
+        while(left < right) {
+            int middle = (left + right) >>> 1;
+            ViewNode child = node.Children.get(middle);
+
+            if(child.Left + child.Width < x) {
+                left = middle + 1;
             }
             else {
-                width += child.Width;
+                right = middle;
             }
-
-            width += X_DISTANCE;
-            child.Text = edge.toString();
         }
 
-        nodeInfo.Width = node.IsLeaf() ? SIZE : width / 2;
-        int x = SIZE / 2;
-        
-        for(int i = 0; i < nodeInfo.Children.size(); i++) {
-            NodeInfo child = nodeInfo.Children.get(i);
-            child.Y = SIZE;
-            child.X = x - (width / 2) + child.Width / 2;
-            x += child.Width + X_DISTANCE;
+        return left;
+    }
+
+    // Returns the first child whose center is after the specified position.
+    private static int FirstCenterAfter(ViewNode node, double x) {
+        int left = 0;
+        int right = node.Children.size();
+
+        while(left < right) {
+            int middle = (left + right) >>> 1;
+
+            if(node.Children.get(middle).X() < x) {
+                left = middle + 1;
+            }
+            else {
+                right = middle;
+            }
         }
-        
-        return nodeInfo;
+
+        return left;
     }
 
-    private void DrawNodes(NodeInfo node, int nodeX, int nodeY, Graphics2D g) {
-        for(int i = 0; i < node.Children.size(); i++) {
+    private void DrawNodes(ViewNode node, Rectangle clip, Graphics2D g) {
+        int nodeX = node.X();
+        int nodeY = node.Y();
+        int bottom = nodeY + node.Depth * LEVEL_HEIGHT + SIZE / 2;
+
+        if((node.Left > clip.x + clip.width) || (node.Left + node.Width < clip.x) ||
+           (nodeY - SIZE / 2 > clip.y + clip.height) || (bottom < clip.y)) {
+            return; // Not visible.
+        }
+
+        if(node.HasChildren() && (node.Width * scale_ < 1)) {
+            // Too narrow to show any detail.
             g.setColor(Color.BLACK);
-            NodeInfo child = node.Children.get(i);
-            int childX = nodeX + child.X;
-            int childY = nodeY + child.Y + Y_DISTANCE;
-            
-            g.drawLine(nodeX, nodeY, childX, childY);
-            DrawNodes(child, childX, childY, g);
+            g.drawLine(nodeX, nodeY, nodeX, bottom);
+            return;
         }
 
-        g.setColor(node.Color);
-        g.fillOval(nodeX - SIZE / 2, nodeY - SIZE / 2, SIZE, SIZE);
+        if(node.HasChildren()) {
+            // The lines to the children can cross the visible area even
+            // if the children are outside it. The children are ordered, so
+            // the ones whose line is visible are found with binary searches.
+            int childY = nodeY + LEVEL_HEIGHT;
+            double top = Math.max(nodeY, clip.y);
+            double end = Math.min(childY, clip.y + clip.height);
+            int first = 0;
+            int last = -1;
+
+            if(top <= end) {
+                // On the visible part of the lines, the distance from the node
+                // is scaled by 't' compared with the distance between the centers.
+                double t0 = Math.max((top - nodeY) / LEVEL_HEIGHT, 1.0 / 1024);
+                double t1 = Math.max((end - nodeY) / LEVEL_HEIGHT, 1.0 / 1024);
+                double from = nodeX + Math.min((clip.x - nodeX) / t0, (clip.x - nodeX) / t1);
+                double to = nodeX + Math.max((clip.x + clip.width - nodeX) / t0,
+                                             (clip.x + clip.width - nodeX) / t1);
+                first = FirstCenterAfter(node, from);
+                last = FirstCenterAfter(node, to) - 1;
+            }
 
-        for(int i = 0; i < node.Children.size(); i++) {
             g.setColor(Color.BLACK);
-            NodeInfo child = node.Children.get(i);
 
-            int childX = nodeX + child.X;
-            int childY = nodeY + child.Y + Y_DISTANCE;
+            for(int i = first; i <= last; i++) {
+                ViewNode child = node.Children.get(i);
+                g.drawLine(nodeX, nodeY, child.X(), childY);
+            }
+
+            // Only the children whose subtree is visible are drawn.
+            int count = node.Children.size();
+
+            for(int i = FirstChildAfter(node, clip.x); i < count; i++) {
+                ViewNode child = node.Children.get(i);
 
-            int middleX = (int)(nodeX +(childX - nodeX) * 0.5);
-            int middleY = (int)(nodeY +(childY - nodeY) * 0.5);
-            double angle = Math.atan2(childY - nodeY, childX - nodeX);
-            
-            if(Math.abs(angle) > 1.68) {
-                middleY = (int)(nodeY +(childY - nodeY) * 0.5);
-                angle += Math.PI;
+                if(child.Left > clip.x + clip.width) {
+                    break;
+                }
+
+                DrawNodes(child, clip, g);
+            }
+
+            if(scale_ >= LABEL_SCALE) {
+                for(int i = first; i <= last; i++) {
+                    DrawLabel(node, node.Children.get(i), g);
+                }
             }
+        }
 
-            FontMetrics metrics = g.getFontMetrics(this.getFont());
-            AffineTransform prevTransf = g.getTransform();
-            g.translate(middleX, middleY);
-            g.rotate(angle);
+        DrawNode(node, nodeX, nodeY, g);
+    }
+
+    private void DrawNode(ViewNode node, int x, int y, Graphics2D g) {
+        if(node.IsLeaf()) {
+            g.setColor(LEAF_COLOR);
+        }
+        else {
+            g.setColor(COLORS[node.Level % COLORS.length]);
+        }
 
-            g.drawString(child.Text, -metrics.stringWidth(child.Text) / 2 - 15, -5);
-            g.setTransform(prevTransf);
+        if(SIZE * scale_ < 3) {
+            g.fillRect(x - SIZE / 2, y - SIZE / 2, SIZE, SIZE);
+            return;
+        }
+
+        g.fillOval(x - SIZE / 2, y - SIZE / 2, SIZE, SIZE);
+
+        if(!node.Expanded && !node.IsLeaf()) {
+            // The node has hidden children.
+            g.setColor(Color.BLACK);
+            g.drawOval(x - SIZE / 2, y - SIZE / 2, SIZE, SIZE);
+            g.drawLine(x - SIZE / 4, y, x + SIZE / 4, y);
+            g.drawLine(x, y - SIZE / 4, x, y + SIZE / 4);
         }
     }
 
-    @Override
-    public void paintComponent(Graphics graphics) {
-        Graphics2D g = (Graphics2D)graphics;
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
-                           RenderingHints.VALUE_ANTIALIAS_ON);
-        g.clearRect(0, 0, getSize().width, getSize().height);
+    // Draws the words of the edge along the line leading to the child.
+    private void DrawLabel(ViewNode node, ViewNode child, Graphics2D g) {
+        if(child.Label == null) {
+            child.Label = Label(child.Edge);
+        }
+
+        int nodeX = node.X();
+        int nodeY = node.Y();
+        int childX = child.X();
+        int childY = child.Y();
+        int middleX = (nodeX + childX) / 2;
+        int middleY = (nodeY + childY) / 2;
+        double angle = Math.atan2(childY - nodeY, childX - nodeX);
+
+        if(Math.abs(angle) > 1.68) {
+            angle += Math.PI;
+        }
 
-        int startX = getSize().width / 2;
-        int startY = SIZE * 2;
-        DrawNodes(root, startX, startY, g);
+        g.setColor(Color.BLACK);
+        FontMetrics metrics = g.getFontMetrics(getFont());
+        AffineTransform transform = g.getTransform();
+        g.translate(middleX, middleY);
+        g.rotate(angle);
+        g.drawString(child.Label, -metrics.stringWidth(child.Label) / 2 - 15, -5);
+        g.setTransform(transform);
+    }
+
+    // The words of the edge, shortened if too long to be drawn.
+    // The edges leading to leaves continue until the end of the sentence.
+    private String Label(int edge) {
+        String text = tree_.EdgeText(edge);
+
+        if(text.length() > MAX_LABEL_LENGTH) {
+            return text.substring(0, MAX_LABEL_LENGTH - 3) + "...";
+        }
+
+        return text;
+    }
+
+    // Returns the node found at the specified point, null if there is none.
+    private ViewNode FindNode(double x, double y) {
+        ViewNode node = root_;
+
+        while(true) {
+            if((Math.abs(x - node.X()) <= SIZE / 2) && (Math.abs(y - node.Y()) <= SIZE / 2)) {
+                return node;
+            }
+
+            if(!node.HasChildren() || (y < node.Y() + LEVEL_HEIGHT - SIZE / 2)) {
+                return null;
+            }
+
+            // Continue with the child whose subtree contains the point.
+            int i = FirstChildAfter(node, x);
+
+            if((i == node.Children.size()) || (node.Children.get(i).Left > x)) {
+                return null;
+            }
+
+            node = node.Children.get(i);
+        }
     }
 }
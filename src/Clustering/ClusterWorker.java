@@ -0,0 +1,653 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+// A process which clusters a partition of a corpus for 'DistributedClusterer'.
+// The coordinator connects once for each run and streams the documents
+// of the partition; the worker reads them with its own 'DocumentReader'
+// and answers with a summary of its suffix tree:
+//   - the number of documents, sentences, words, nodes and edges
+//   - the words, with their document frequence and term frequence sum
+// Only the coordinator knows the statistics of the whole corpus. It answers
+// with the weights of the words and a threshold, and the worker sends:
+//   - the phrases of the internal nodes whose weight, counting only the
+//     documents of the partition, is above the threshold, as word indices
+//   - then, for each phrase asked by the coordinator, the documents
+//     of its node, if the phrase labels one
+// The phrases are sent in postorder, the children of a node being visited
+// in the order of the text of their first word, so all workers send them
+// in the same order: a phrase comes after the longer ones starting with it.
+// The worker computes the documents of each node, but sends only the ones
+// not found below a node already sent; the coordinator adds the documents
+// of these nodes when the phrase arrives. The documents are sent as
+// positions in the partition.
+//
+// Connections are served one at a time, the reader being reset and reused.
+// The protocol is not authenticated, so by default the worker only accepts
+// connections from the same machine; the address must be given explicitly
+// to serve a coordinator running elsewhere.
+public final class ClusterWorker {
+    // Sent by the coordinator before each document, sentence and word,
+    // then 'END' after the last document.
+    static final int MAGIC = 0x44435357; // "DCSW"
+    static final int VERSION = 1;
+    static final int END = 0;
+    static final int DOCUMENT = 1;
+    static final int SENTENCE = 2;
+    static final int WORD = 3;
+
+    // The status sent by the worker before the summary.
+    static final int OK = 0;
+    static final int FAILED = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /*
+    * Private members.
+    */
+    private ServerSocket socket_;
+    private Thread thread_;
+    private DocumentReader reader_; // Reused between connections.
+    private volatile boolean stopped_;
+
+    /*
+    * Constructors.
+    */
+    // Creates a worker listening on the specified address and port
+    // (0 to pick a free one). A wildcard address accepts any interface.
+    public ClusterWorker(InetAddress address, int port) throws IOException {
+        assert(address != null);
+        // ------------------------------------------------
+        socket_ = new ServerSocket();
+        socket_.bind(new InetSocketAddress(address, port));
+    }
+
+    // Creates a worker listening on the loopback address only.
+    public ClusterWorker(int port) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /*
+    * Public methods.
+    */
+    // Serves the connections on a daemon thread.
+    public void Start() {
+        thread_ = new Thread(new Runnable() {
+            public void run() {
+                Serve();
+            }
+        }, "ClusterWorker");
+
+        thread_.setDaemon(true);
+        thread_.start();
+    }
+
+    // Serves the connections on the calling thread, until 'Stop' is called.
+    public void Serve() {
+        while(!stopped_) {
+            Socket connection;
+
+            try {
+                connection = socket_.accept();
+            }
+            catch(IOException e) {
+                if(stopped_) {
+                    break;
+                }
+
+                continue;
+            }
+
+            try {
+                HandleConnection(connection);
+            }
+            catch(IOException e) {
+                // The coordinator went away, wait for the next one.
+            }
+            finally {
+                try {
+                    connection.close();
+                }
+                catch(IOException e) {}
+            }
+        }
+    }
+
+    public void Stop() {
+        stopped_ = true;
+
+        try {
+            socket_.close();
+        }
+        catch(IOException e) {}
+    }
+
+    // The port on which the worker listens (useful when created with port 0).
+    public int Port() {
+        return socket_.getLocalPort();
+    }
+
+    public InetAddress Address() {
+        return socket_.getInetAddress();
+    }
+
+    // Starts a worker on the port given as the first argument (0 to pick
+    // a free one) and prints the port. The next arguments can be:
+    //   -bind <address>  listen on this address instead of the loopback one
+    //                    ("0.0.0.0" for all the interfaces)
+    //   -parent          exit when the standard input is closed, which happens
+    //                    when the process which launched the worker ends
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        InetAddress address = InetAddress.getLoopbackAddress();
+        boolean parent = false;
+
+        for(int i = 1; i < args.length; i++) {
+            if(args[i].equals("-parent")) {
+                parent = true;
+            }
+            else if(args[i].equals("-bind") && (i + 1 < args.length)) {
+                address = InetAddress.getByName(args[++i]);
+            }
+            else {
+                System.err.println("Unknown argument: " + args[i]);
+                System.exit(1);
+            }
+        }
+
+        final ClusterWorker worker = new ClusterWorker(address, port);
+
+        if(parent) {
+            Thread watcher = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        while(System.in.read() != -1) {}
+                    }
+                    catch(IOException e) {}
+
+                    System.exit(0);
+                }
+            }, "ClusterWorker-parent");
+
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+
+        System.out.println("Listening on port " + worker.Port());
+        System.out.flush();
+        worker.Serve();
+    }
+
+    /*
+    * Private methods.
+    */
+    private void HandleConnection(Socket connection) throws IOException {
+        connection.setTcpNoDelay(true);
+        DataInputStream input = new DataInputStream(
+                new BufferedInputStream(connection.getInputStream(), BUFFER_SIZE));
+        DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(connection.getOutputStream(), BUFFER_SIZE));
+
+        if((input.readInt() != MAGIC) || (input.readInt() != VERSION)) {
+            throw new IOException("Not a clustering coordinator");
+        }
+
+        StreamSource source = new StreamSource(input);
+
+        try {
+            if(reader_ == null) {
+                reader_ = new DocumentReader(source);
+            }
+            else {
+                reader_.Reset(source);
+            }
+
+            reader_.Read();
+
+            if(source.Error() != null) {
+                throw source.Error();
+            }
+        }
+        catch(IOException e) {
+            throw e;
+        }
+        catch(Throwable e) {
+            // Release the tree before answering, the error
+            // can be caused by the lack of memory.
+            reader_ = null;
+            output.writeInt(MAGIC);
+            output.writeByte(FAILED);
+            output.writeUTF(String.valueOf(e));
+            output.flush();
+            return;
+        }
+
+        output.writeInt(MAGIC);
+        output.writeByte(OK);
+        new SummaryWriter(reader_, input, output).Write();
+    }
+
+    // Returns the position of each of the first 'count' words
+    // of the vocabulary when sorted by their text.
+    static int[] TextRanks(Vocabulary vocabulary, int count) {
+        final String[] texts = new String[count];
+        Integer[] ids = new Integer[count];
+
+        for(int id = 0; id < count; id++) {
+            texts[id] = vocabulary.Text(id);
+            ids[id] = id;
+        }
+
+        Arrays.sort(ids, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return texts[a].compareTo(texts[b]);
+            }
+        });
+
+        int[] ranks = new int[count];
+
+        for(int i = 0; i < count; i++) {
+            ranks[ids[i]] = i;
+        }
+
+        return ranks;
+    }
+
+    // Writes the summary of the tree of a reader, answering the coordinator
+    // (see the protocol at the top). The documents of the nodes are computed
+    // on a single stack of document indices, without creating clusters.
+    private static final class SummaryWriter {
+        private DocumentReader reader_;
+        private FrozenSuffixTree tree_;
+        private DataInputStream input_;
+        private DataOutputStream output_;
+        private int wordCount_;
+        private int[] ranks_;        // The position of each word in the text order.
+        private double[] weights_;   // The weights computed by the coordinator.
+        private double threshold_;
+        private BitSet selected_;    // The nodes sent, see 'Select'.
+        private int[] documents_ = new int[64]; // The documents of the visited nodes.
+        private int documentCount_;
+        private long[] children_ = new long[64]; // The sorted edges of the visited nodes.
+        private int childCount_;
+        private int[] path_ = new int[64];     // The words of the visited node.
+        private int[] previous_ = new int[64]; // The words of the last phrase sent.
+        private int previousLength_;
+
+        public SummaryWriter(DocumentReader reader, DataInputStream input,
+                             DataOutputStream output) {
+            reader_ = reader;
+            tree_ = reader.FrozenTree();
+            input_ = input;
+            output_ = output;
+        }
+
+        public void Write() throws IOException {
+            WriteStatistics();
+            output_.flush();
+
+            // The weights of the words, computed from all partitions.
+            threshold_ = input_.readDouble();
+            weights_ = new double[input_.readInt()];
+
+            for(int id = 0; id < weights_.length; id++) {
+                weights_[id] = input_.readDouble();
+            }
+
+            if(tree_.NodeCount() > 0) {
+                ranks_ = TextRanks(reader_.Vocabulary(), wordCount_);
+                selected_ = new BitSet(tree_.NodeCount());
+                Select(tree_.Root(), 0, 0);
+                documentCount_ = 0;
+                Stream(tree_.Root(), 0, false);
+            }
+
+            output_.writeInt(-1);
+            output_.flush();
+            AnswerQueries();
+            output_.flush();
+        }
+
+        private void WriteStatistics() throws IOException {
+            output_.writeInt(reader_.Documents().size());
+            output_.writeInt(reader_.SentenceCount());
+            output_.writeLong(reader_.WordCount());
+            output_.writeInt(reader_.Tree().NodeCount());
+            output_.writeInt(reader_.Tree().EdgeCount());
+            output_.writeLong(reader_.EstimatedBytes());
+            output_.writeLong(reader_.TreeTime());
+
+            Vocabulary vocabulary = reader_.Vocabulary();
+            wordCount_ = reader_.Documents().isEmpty() ? 0 : vocabulary.Count();
+            output_.writeInt(wordCount_);
+
+            for(int id = 0; id < wordCount_; id++) {
+                output_.writeUTF(vocabulary.Text(id));
+                output_.writeInt(vocabulary.Df(id));
+                output_.writeDouble(reader_.TermFrequencySum(id));
+            }
+        }
+
+        // Leaves the documents of the node on the stack, sorted and distinct,
+        // and selects the node if its weight, counting only these documents,
+        // is above the threshold. 'length' and 'weight' describe its phrase;
+        // the weight is computed as by 'Cluster.ComputeWeight'.
+        private void Select(int node, int length, double weight) {
+            int start = documentCount_;
+            int first = tree_.FirstEdge(node);
+            int last = first + tree_.EdgeCount(node);
+
+            for(int edge = first; edge < last; edge++) {
+                if(tree_.IsLeafEdge(edge)) {
+                    PushDocument(tree_.DocumentOf(edge).Index());
+                    continue;
+                }
+
+                int childLength = length;
+                double childWeight = weight;
+
+                for(int i = tree_.FirstIndex(edge); i <= tree_.LastIndex(edge); i++) {
+                    childWeight += weights_[tree_.WordAt(i).Id()];
+                    childLength++;
+                }
+
+                Select(tree_.NextNode(edge), childLength, childWeight);
+            }
+
+            int count = Distinct(start);
+
+            if((node != tree_.Root()) &&
+               (count * Cluster.LengthFactor(length) * weight > threshold_)) {
+                selected_.set(node);
+            }
+        }
+
+        // Sends the selected nodes below the node, then the node if selected.
+        // The documents of the leaves below the nodes not selected are left
+        // on the stack, to be sent with their closest selected ancestor.
+        // 'claimed' is set if an ancestor of the node is selected.
+        private void Stream(int node, int length, boolean claimed) throws IOException {
+            int start = documentCount_;
+            int childStart = childCount_;
+            int first = tree_.FirstEdge(node);
+            int last = first + tree_.EdgeCount(node);
+            boolean selected = selected_.get(node);
+
+            for(int edge = first; edge < last; edge++) {
+                if(tree_.IsLeafEdge(edge)) {
+                    PushDocument(tree_.DocumentOf(edge).Index());
+                }
+                else {
+                    // Sorted by the text of the first word, kept in the high bits.
+                    if(childCount_ == children_.length) {
+                        children_ = Arrays.copyOf(children_, childCount_ * 2);
+                    }
+
+                    long rank = ranks_[tree_.WordAt(tree_.FirstIndex(edge)).Id()];
+                    children_[childCount_++] = (rank << 32) | edge;
+                }
+            }
+
+            Arrays.sort(children_, childStart, childCount_);
+
+            for(int i = childStart; i < childCount_; i++) {
+                int edge = (int)children_[i];
+                int childLength = length;
+
+                for(int j = tree_.FirstIndex(edge); j <= tree_.LastIndex(edge); j++) {
+                    if(childLength == path_.length) {
+                        path_ = Arrays.copyOf(path_, childLength * 2);
+                    }
+
+                    path_[childLength++] = tree_.WordAt(j).Id();
+                }
+
+                Stream(tree_.NextNode(edge), childLength, claimed || selected);
+            }
+
+            childCount_ = childStart;
+
+            if(selected) {
+                WritePhrase(length, start, claimed);
+                documentCount_ = start;
+            }
+            else if(claimed) {
+                Distinct(start);
+            }
+            else {
+                documentCount_ = start; // No ancestor will send them.
+            }
+        }
+
+        // Writes the phrase of the visited node, as the number of words
+        // shared with the previous phrase and the other words, followed
+        // by the documents found on the stack after 'start'.
+        private void WritePhrase(int length, int start, boolean claimed) throws IOException {
+            int shared = 0;
+
+            while((shared < length) && (shared < previousLength_) &&
+                  (path_[shared] == previous_[shared])) {
+                shared++;
+            }
+
+            output_.writeInt(shared);
+            output_.writeInt(length - shared);
+
+            for(int i = shared; i < length; i++) {
+                output_.writeInt(path_[i]);
+            }
+
+            output_.writeBoolean(claimed);
+            int count = Distinct(start);
+            output_.writeInt(count);
+
+            for(int i = start; i < start + count; i++) {
+                output_.writeInt(documents_[i]);
+            }
+
+            if(length > previous_.length) {
+                previous_ = new int[path_.length];
+            }
+
+            System.arraycopy(path_, 0, previous_, 0, length);
+            previousLength_ = length;
+        }
+
+        // Answers with the documents of the nodes labeled by the phrases
+        // asked by the coordinator. All phrases are read before answering,
+        // the coordinator sends them to all workers before reading.
+        private void AnswerQueries() throws IOException {
+            Vocabulary vocabulary = reader_.Vocabulary();
+            int count = input_.readInt();
+            List<List<Word>> phrases = new ArrayList<List<Word>>(count);
+
+            for(int i = 0; i < count; i++) {
+                List<Word> phrase = new ArrayList<Word>();
+
+                for(int j = input_.readInt(); j > 0; j--) {
+                    phrase.add(vocabulary.WordAt(input_.readInt()));
+                }
+
+                phrases.add(phrase);
+            }
+
+            for(int i = 0; i < count; i++) {
+                int node = tree_.NodeCount() > 0 ? tree_.FindNode(phrases.get(i)) : -1;
+                documentCount_ = 0;
+
+                if(node != -1) {
+                    AddDocuments(node);
+                }
+
+                int documents = Distinct(0);
+                output_.writeInt(documents);
+
+                for(int j = 0; j < documents; j++) {
+                    output_.writeInt(documents_[j]);
+                }
+            }
+        }
+
+        // Adds the documents of the leaves below the node to the stack.
+        private void AddDocuments(int node) {
+            int first = tree_.FirstEdge(node);
+            int last = first + tree_.EdgeCount(node);
+
+            for(int edge = first; edge < last; edge++) {
+                if(tree_.IsLeafEdge(edge)) {
+                    PushDocument(tree_.DocumentOf(edge).Index());
+                }
+                else {
+                    AddDocuments(tree_.NextNode(edge));
+                }
+            }
+        }
+
+        private void PushDocument(int document) {
+            if(documentCount_ == documents_.length) {
+                documents_ = Arrays.copyOf(documents_, documentCount_ * 2);
+            }
+
+            documents_[documentCount_++] = document;
+        }
+
+        // Sorts the documents on the stack after 'start' and removes
+        // the duplicates. Returns the number of distinct documents.
+        private int Distinct(int start) {
+            Arrays.sort(documents_, start, documentCount_);
+            int count = start;
+
+            for(int i = start; i < documentCount_; i++) {
+                if((i == start) || (documents_[i] != documents_[count - 1])) {
+                    documents_[count++] = documents_[i];
+                }
+            }
+
+            documentCount_ = count;
+            return count - start;
+        }
+    }
+
+    // Reads the documents sent by the coordinator. The source interface
+    // can't throw, so an I/O error ends the documents and is kept
+    // to be rethrown after the reading.
+    private static final class StreamSource implements IDocumentSource {
+        private DataInputStream input_;
+        private int tag_ = -1; // The next tag, -1 if it must be read.
+        private IOException error_;
+
+        public StreamSource(DataInputStream input) {
+            input_ = input;
+        }
+
+        public boolean HasDocument() {
+            // Skip the parts of the previous document not read.
+            while((Peek() == SENTENCE) || (Peek() == WORD)) {
+                if(tag_ == WORD) {
+                    NextWord();
+                }
+                else {
+                    tag_ = -1;
+                }
+            }
+
+            return Consume(DOCUMENT);
+        }
+
+        public boolean HasSentence() {
+            while(Peek() == WORD) {
+                NextWord();
+            }
+
+            return Consume(SENTENCE);
+        }
+
+        public boolean HasWord() {
+            return Peek() == WORD;
+        }
+
+        public String NextWord() {
+            assert(tag_ == WORD);
+            // ------------------------------------------------
+            tag_ = -1;
+
+            try {
+                return input_.readUTF();
+            }
+            catch(IOException e) {
+                error_ = e;
+                tag_ = END;
+                return "";
+            }
+        }
+
+        public IOException Error() { return error_; }
+
+        private int Peek() {
+            if(tag_ == -1) {
+                try {
+                    tag_ = input_.readUnsignedByte();
+                }
+                catch(IOException e) {
+                    error_ = e;
+                    tag_ = END;
+                }
+            }
+
+            return tag_;
+        }
+
+        private boolean Consume(int tag) {
+            if(Peek() == tag) {
+                tag_ = -1;
+                return true;
+            }
+
+            return false;
+        }
+    }
+}
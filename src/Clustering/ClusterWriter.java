@@ -0,0 +1,456 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+// Writes clusters to a stream, either as JSON Lines or in a compact
+// binary form. The documents and the words of the phrases are encoded
+// directly into a reusable buffer, without building any strings.
+// The documents include the near-duplicates of the cluster's documents
+// (see 'Document.Aliases'), each written after its original.
+//
+// JSON Lines - one object per cluster:
+//   {"cluster":0,"label":null,"weight":1.5,"documents":[3,7],"phrases":["a b"]}
+// Binary - the header "DCCL" and the version, then for each cluster:
+//   cluster index, label length (0 = no label) + UTF-8 label,
+//   weight (8 bytes), document count, the document indices,
+//   phrase count, then for each phrase the word count
+//   and each word as its UTF-8 length + bytes.
+//   All integers are unsigned LEB128 varints.
+// An unpaired surrogate character is written as '?' in both forms.
+public final class ClusterWriter {
+    public enum Format { JSON_LINES, BINARY }
+
+    private static final int BINARY_MAGIC = 0x4443434C; // "DCCL"
+    private static final int BINARY_VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_CHAR_BYTES = 3; // UTF-8 bytes for a char.
+    private static final int MAX_VARINT_BYTES = 5;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    /*
+    * Private members.
+    */
+    private OutputStream stream_;
+    private WritableByteChannel channel_;
+    private Format format_;
+    private ByteBuffer buffer_;
+    private char[] chars_; // Receives the characters of a word.
+    private int clusterCount_;
+
+    /*
+    * Constructors.
+    */
+    public ClusterWriter(OutputStream stream, Format format) {
+        this(format);
+        assert(stream != null);
+        // ------------------------------------------------
+        stream_ = stream;
+    }
+
+    public ClusterWriter(WritableByteChannel channel, Format format) {
+        this(format);
+        assert(channel != null);
+        // ------------------------------------------------
+        channel_ = channel;
+    }
+
+    private ClusterWriter(Format format) {
+        format_ = format;
+        buffer_ = ByteBuffer.allocate(BUFFER_SIZE);
+        chars_ = new char[64];
+
+        if(format_ == Format.BINARY) {
+            buffer_.putInt(BINARY_MAGIC);
+            buffer_.put((byte)BINARY_VERSION);
+        }
+    }
+
+    /*
+    * Public methods.
+    */
+    public void Write(List<Cluster> clusters) throws IOException {
+        assert(clusters != null);
+        // ------------------------------------------------
+        int count = clusters.size();
+
+        for(int i = 0; i < count; i++) {
+            Write(clusters.get(i));
+        }
+    }
+
+    public void Write(Cluster cluster) throws IOException {
+        assert(cluster != null);
+        // ------------------------------------------------
+        if(format_ == Format.JSON_LINES) {
+            WriteJson(cluster);
+        }
+        else {
+            WriteBinary(cluster);
+        }
+
+        clusterCount_++;
+    }
+
+    // Writes the buffered data to the stream or channel.
+    public void Flush() throws IOException {
+        buffer_.flip();
+
+        if(stream_ != null) {
+            stream_.write(buffer_.array(), buffer_.position(), buffer_.remaining());
+            stream_.flush();
+        }
+        else {
+            while(buffer_.hasRemaining()) {
+                channel_.write(buffer_);
+            }
+        }
+
+        buffer_.clear();
+    }
+
+    // Flushes the buffered data. The stream or channel is not closed.
+    public void Close() throws IOException {
+        Flush();
+    }
+
+    public int ClusterCount() { return clusterCount_; }
+
+    /*
+    * Private methods.
+    */
+    private void WriteJson(Cluster cluster) throws IOException {
+        PutAscii("{\"cluster\":");
+        PutDecimal(clusterCount_);
+        PutAscii(",\"label\":");
+
+        if(cluster.Label() == null) {
+            PutAscii("null");
+        }
+        else {
+            Ensure(1);
+            buffer_.put((byte)'"');
+            String label = cluster.Label();
+
+            for(int i = 0; i < label.length();) {
+                i += PutJsonChar(label.charAt(i), i + 1 < label.length() ? label.charAt(i + 1) : 0);
+            }
+
+            Ensure(1);
+            buffer_.put((byte)'"');
+        }
+
+        // The weight is the only value converted with the library.
+        PutAscii(",\"weight\":");
+        double weight = cluster.Weight();
+        PutAscii(Double.isNaN(weight) || Double.isInfinite(weight) ?
+                 "null" : Double.toString(weight));
+
+        PutAscii(",\"documents\":[");
+        List<Document> documents = cluster.Documents();
+        int count = documents.size();
+
+        for(int i = 0; i < count; i++) {
+            Document document = documents.get(i);
+
+            if(i > 0) {
+                Ensure(1);
+                buffer_.put((byte)',');
+            }
+
+            PutDecimal(document.Index());
+
+            for(int j = 0; j < document.Aliases().size(); j++) {
+                Ensure(1);
+                buffer_.put((byte)',');
+                PutDecimal(document.Aliases().get(j).Index());
+            }
+        }
+
+        PutAscii("],\"phrases\":[");
+        List<Phrase> phrases = cluster.Phrases();
+        count = phrases.size();
+
+        for(int i = 0; i < count; i++) {
+            Ensure(2);
+
+            if(i > 0) {
+                buffer_.put((byte)',');
+            }
+
+            buffer_.put((byte)'"');
+            List<Word> words = phrases.get(i).Words();
+            int wordCount = words.size();
+
+            for(int j = 0; j < wordCount; j++) {
+                if(j > 0) {
+                    Ensure(1);
+                    buffer_.put((byte)' ');
+                }
+
+                int length = LoadWord(words.get(j));
+
+                for(int k = 0; k < length;) {
+                    k += PutJsonChar(chars_[k], k + 1 < length ? chars_[k + 1] : 0);
+                }
+            }
+
+            Ensure(1);
+            buffer_.put((byte)'"');
+        }
+
+        PutAscii("]}\n");
+    }
+
+    private void WriteBinary(Cluster cluster) throws IOException {
+        PutVarint(clusterCount_);
+        String label = cluster.Label();
+
+        if(label == null) {
+            PutVarint(0);
+        }
+        else {
+            PutVarint(Utf8Length(label));
+
+            for(int i = 0; i < label.length();) {
+                i += PutUtf8(label.charAt(i), i + 1 < label.length() ? label.charAt(i + 1) : 0);
+            }
+        }
+
+        Ensure(8);
+        buffer_.putDouble(cluster.Weight());
+
+        List<Document> documents = cluster.Documents();
+        int count = documents.size();
+        PutVarint(cluster.DocumentCount());
+
+        for(int i = 0; i < count; i++) {
+            Document document = documents.get(i);
+            PutVarint(document.Index());
+
+            for(int j = 0; j < document.Aliases().size(); j++) {
+                PutVarint(document.Aliases().get(j).Index());
+            }
+        }
+
+        List<Phrase> phrases = cluster.Phrases();
+        count = phrases.size();
+        PutVarint(count);
+
+        for(int i = 0; i < count; i++) {
+            List<Word> words = phrases.get(i).Words();
+            int wordCount = words.size();
+            PutVarint(wordCount);
+
+            for(int j = 0; j < wordCount; j++) {
+                int length = LoadWord(words.get(j));
+                int bytes = 0;
+
+                for(int k = 0; k < length; k++) {
+                    char next = k + 1 < length ? chars_[k + 1] : 0;
+                    bytes += Utf8Length(chars_[k], next);
+
+                    if(Character.isSurrogatePair(chars_[k], next)) {
+                        k++;
+                    }
+                }
+
+                PutVarint(bytes);
+
+                for(int k = 0; k < length;) {
+                    k += PutUtf8(chars_[k], k + 1 < length ? chars_[k + 1] : 0);
+                }
+            }
+        }
+    }
+
+    // Copies the characters of the word to 'chars_' and returns their number.
+    private int LoadWord(Word word) {
+        if(word.IsMarker()) {
+            // Markers are never part of a phrase, handled for completeness.
+            String text = word.Word();
+
+            if(text.length() > chars_.length) {
+                chars_ = new char[text.length() * 2];
+            }
+
+            text.getChars(0, text.length(), chars_, 0);
+            return text.length();
+        }
+
+        Vocabulary vocabulary = word.Vocabulary();
+        int length = vocabulary.Length(word.Id());
+
+        if(length > chars_.length) {
+            chars_ = new char[length * 2];
+        }
+
+        vocabulary.GetChars(word.Id(), chars_);
+        return length;
+    }
+
+    // Makes sure the buffer has room for the specified number of bytes.
+    private void Ensure(int bytes) throws IOException {
+        if(buffer_.remaining() < bytes) {
+            Flush();
+        }
+    }
+
+    private void PutAscii(String text) throws IOException {
+        Ensure(text.length());
+
+        for(int i = 0; i < text.length(); i++) {
+            buffer_.put((byte)text.charAt(i));
+        }
+    }
+
+    private void PutDecimal(int value) throws IOException {
+        assert(value >= 0);
+        // ------------------------------------------------
+        Ensure(10);
+        int divisor = 1;
+
+        while(divisor <= value / 10) {
+            divisor *= 10;
+        }
+
+        for(; divisor > 0; divisor /= 10) {
+            buffer_.put((byte)('0' + (value / divisor) % 10));
+        }
+    }
+
+    private void PutVarint(int value) throws IOException {
+        Ensure(MAX_VARINT_BYTES);
+
+        while((value & ~0x7F) != 0) {
+            buffer_.put((byte)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        buffer_.put((byte)value);
+    }
+
+    // Returns the number of characters consumed, like 'PutUtf8'.
+    private int PutJsonChar(char c, char next) throws IOException {
+        if((c == '"') || (c == '\\')) {
+            Ensure(2);
+            buffer_.put((byte)'\\');
+            buffer_.put((byte)c);
+        }
+        else if(c < 0x20) {
+            Ensure(6);
+            buffer_.put((byte)'\\');
+            buffer_.put((byte)'u');
+            buffer_.put((byte)'0');
+            buffer_.put((byte)'0');
+            buffer_.put(HEX[c >> 4]);
+            buffer_.put(HEX[c & 0xF]);
+        }
+        else {
+            return PutUtf8(c, next);
+        }
+
+        return 1;
+    }
+
+    // Encodes a character and returns the number of characters consumed:
+    // 2 for a surrogate pair, encoded together, 1 otherwise.
+    // An unpaired surrogate is replaced by '?'.
+    private int PutUtf8(char c, char next) throws IOException {
+        Ensure(2 * MAX_CHAR_BYTES);
+
+        if(c < 0x80) {
+            buffer_.put((byte)c);
+        }
+        else if(c < 0x800) {
+            buffer_.put((byte)(0xC0 | (c >> 6)));
+            buffer_.put((byte)(0x80 | (c & 0x3F)));
+        }
+        else if(Character.isSurrogatePair(c, next)) {
+            int code = Character.toCodePoint(c, next);
+            buffer_.put((byte)(0xF0 | (code >> 18)));
+            buffer_.put((byte)(0x80 | ((code >> 12) & 0x3F)));
+            buffer_.put((byte)(0x80 | ((code >> 6) & 0x3F)));
+            buffer_.put((byte)(0x80 | (code & 0x3F)));
+            return 2;
+        }
+        else if(Character.isSurrogate(c)) {
+            buffer_.put((byte)'?');
+        }
+        else {
+            buffer_.put((byte)(0xE0 | (c >> 12)));
+            buffer_.put((byte)(0x80 | ((c >> 6) & 0x3F)));
+            buffer_.put((byte)(0x80 | (c & 0x3F)));
+        }
+
+        return 1;
+    }
+
+    // The bytes written by 'PutUtf8' for the character; a surrogate pair
+    // is counted with its first half, the second one must be skipped.
+    private static int Utf8Length(char c, char next) {
+        if(c < 0x80) {
+            return 1;
+        }
+        else if(c < 0x800) {
+            return 2;
+        }
+        else if(Character.isSurrogatePair(c, next)) {
+            return 4;
+        }
+        else if(Character.isSurrogate(c)) {
+            return 1;
+        }
+
+        return 3;
+    }
+
+    private static int Utf8Length(String text) {
+        int length = 0;
+
+        for(int i = 0; i < text.length(); i++) {
+            char next = i + 1 < text.length() ? text.charAt(i + 1) : 0;
+            length += Utf8Length(text.charAt(i), next);
+
+            if(Character.isSurrogatePair(text.charAt(i), next)) {
+                i++;
+            }
+        }
+
+        return length;
+    }
+}
@@ -0,0 +1,164 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Aggregates the statistics of all clustering runs in the process.
+// The single instance can be registered with the platform MBean server
+// as "Clustering:type=ClusteringMonitor" by calling 'Register';
+// the library never does it by itself.
+// The times of the phases are summed over all runs.
+public final class ClusteringMonitor implements ClusteringMonitorMBean {
+    private static final String NAME = "Clustering:type=ClusteringMonitor";
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static ClusteringMonitor instance_;
+    private static boolean registered_;
+
+    /*
+    * Private members.
+    */
+    private long runs_;
+    private long totalTime_;
+    private long maxTime_;
+    private long readTime_;
+    private long treeTime_;
+    private long weightTime_;
+    private long extractTime_;
+    private long mergeTime_;
+    private long documents_;
+    private long words_;
+    private long nodes_;
+    private long mergeComparisons_;
+    private long maxEstimatedBytes_;
+    private ClusteringStats lastRun_;
+
+    /*
+    * Constructors.
+    */
+    private ClusteringMonitor() {}
+
+    /*
+    * Public methods.
+    */
+    public static synchronized ClusteringMonitor Instance() {
+        if(instance_ == null) {
+            instance_ = new ClusteringMonitor();
+        }
+
+        return instance_;
+    }
+
+    // Registers the instance with the platform MBean server, so that
+    // the statistics can be read by the JMX tools. Returns false if it failed,
+    // the statistics being still available through the object.
+    public static synchronized boolean Register() {
+        if(registered_) {
+            return true;
+        }
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(Instance(), new ObjectName(NAME));
+            registered_ = true;
+        }
+        catch(Exception e) {
+            return false;
+        }
+
+        return true;
+    }
+
+    public static synchronized void Unregister() {
+        if(!registered_) {
+            return;
+        }
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.unregisterMBean(new ObjectName(NAME));
+        }
+        catch(Exception e) {
+            // Unregistered by someone else.
+        }
+
+        registered_ = false;
+    }
+
+    public static synchronized boolean IsRegistered() { return registered_; }
+
+    public synchronized void Record(ClusteringStats stats) {
+        assert(stats != null);
+        // ------------------------------------------------
+        runs_++;
+        totalTime_ += stats.TotalTime();
+        maxTime_ = Math.max(maxTime_, stats.TotalTime());
+        readTime_ += stats.ReadTime();
+        treeTime_ += stats.TreeTime();
+        weightTime_ += stats.WeightTime();
+        extractTime_ += stats.ExtractTime();
+        mergeTime_ += stats.MergeTime();
+        documents_ += stats.Documents();
+        words_ += stats.Words();
+        nodes_ += stats.Nodes();
+        mergeComparisons_ += stats.MergeComparisons();
+        maxEstimatedBytes_ = Math.max(maxEstimatedBytes_, stats.EstimatedBytes());
+        lastRun_ = stats;
+    }
+
+    public synchronized long getRuns() { return runs_; }
+    public synchronized double getTotalTime() { return totalTime_ / NANOS_PER_MILLI; }
+    public synchronized double getMaxTime() { return maxTime_ / NANOS_PER_MILLI; }
+    public synchronized double getReadTime() { return readTime_ / NANOS_PER_MILLI; }
+    public synchronized double getTreeTime() { return treeTime_ / NANOS_PER_MILLI; }
+    public synchronized double getWeightTime() { return weightTime_ / NANOS_PER_MILLI; }
+    public synchronized double getExtractTime() { return extractTime_ / NANOS_PER_MILLI; }
+    public synchronized double getMergeTime() { return mergeTime_ / NANOS_PER_MILLI; }
+    public synchronized long getDocuments() { return documents_; }
+    public synchronized long getWords() { return words_; }
+    public synchronized long getNodes() { return nodes_; }
+    public synchronized long getMergeComparisons() { return mergeComparisons_; }
+    public synchronized long getMaxEstimatedBytes() { return maxEstimatedBytes_; }
+
+    public synchronized String getLastRun() {
+        return lastRun_ != null ? lastRun_.toString() : "";
+    }
+
+    public synchronized void reset() {
+        runs_ = totalTime_ = maxTime_ = 0;
+        readTime_ = treeTime_ = weightTime_ = extractTime_ = mergeTime_ = 0;
+        documents_ = words_ = nodes_ = mergeComparisons_ = maxEstimatedBytes_ = 0;
+        lastRun_ = null;
+    }
+}
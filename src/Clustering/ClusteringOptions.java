@@ -0,0 +1,122 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+
+// The parameters of a clustering run.
+public final class ClusteringOptions {
+    private double clusterOverlapDegree_;
+    private int maxClusters_;
+    private double minClusterWeight_;
+    private MemoryBudget memoryBudget_;
+    private CancellationToken cancellation_;
+    private IProgressListener progressListener_;
+    private long progressInterval_; // In milliseconds.
+    private int maxPhraseLength_;   // Zero if there is no limit.
+    private int nearDuplicateDistance_ = -1; // Negative if not used.
+    private boolean shareSentences_;
+
+    /*
+    * Constructors.
+    */
+    // Creates the options with the required parameters.
+    // See 'ClusterFinder.Find' for their description.
+    public ClusteringOptions(double clusterOverlapDegree, int maxClusters,
+                             double minClusterWeight) {
+        assert(maxClusters > 0);
+        // ------------------------------------------------
+        clusterOverlapDegree_ = clusterOverlapDegree;
+        maxClusters_ = maxClusters;
+        minClusterWeight_ = minClusterWeight;
+    }
+
+    /*
+    * Public methods.
+    */
+    public double ClusterOverlapDegree() { return clusterOverlapDegree_; }
+    public void SetClusterOverlapDegree(double value) { clusterOverlapDegree_ = value; }
+
+    public int MaxClusters() { return maxClusters_; }
+    public void SetMaxClusters(int value) { maxClusters_ = value; }
+
+    public double MinClusterWeight() { return minClusterWeight_; }
+    public void SetMinClusterWeight(double value) { minClusterWeight_ = value; }
+
+    // The maximum number of words of the phrases of the base clusters,
+    // zero if there is no limit. Longer phrases are truncated to this length,
+    // which makes the suffix tree much smaller (see 'SuffixTree.SetMaxDepth').
+    // A cluster weight counts at most 6 words of its phrases.
+    public int MaxPhraseLength() { return maxPhraseLength_; }
+
+    public void SetMaxPhraseLength(int value) {
+        assert(value >= 0);
+        // ------------------------------------------------
+        maxPhraseLength_ = value;
+    }
+
+    // The number of bits in which the fingerprints of two documents can
+    // differ for them to be considered near-duplicates, negative if the
+    // duplicates are not searched (see 'DocumentReader.SetNearDuplicateDistance').
+    public int NearDuplicateDistance() { return nearDuplicateDistance_; }
+
+    public void SetNearDuplicateDistance(int value) {
+        assert(value <= DuplicateDetector.MAX_DISTANCE);
+        // ------------------------------------------------
+        nearDuplicateDistance_ = value;
+    }
+
+    // If set, each distinct sentence is inserted only once in the suffix tree
+    // (see 'DocumentReader.SetShareSentences').
+    public boolean ShareSentences() { return shareSentences_; }
+    public void SetShareSentences(boolean value) { shareSentences_ = value; }
+
+    // The limit for the memory used while reading, null if there is no limit.
+    public MemoryBudget MemoryBudget() { return memoryBudget_; }
+    public void SetMemoryBudget(MemoryBudget value) { memoryBudget_ = value; }
+
+    // The token which can stop the run early, null if it can't be stopped.
+    public CancellationToken Cancellation() { return cancellation_; }
+    public void SetCancellation(CancellationToken value) { cancellation_ = value; }
+
+    // The listener receiving the progress of the run, null if there is none.
+    // The progress is reported when a phase starts and at most
+    // once every 'interval' milliseconds inside the phases.
+    public IProgressListener ProgressListener() { return progressListener_; }
+    public long ProgressInterval() { return progressInterval_; }
+
+    public void SetProgressListener(IProgressListener listener, long interval) {
+        assert(interval >= 0);
+        // ------------------------------------------------
+        progressListener_ = listener;
+        progressInterval_ = interval;
+    }
+}
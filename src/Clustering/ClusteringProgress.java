@@ -0,0 +1,110 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+
+// A snapshot of the state of a clustering run, passed to the progress listener.
+public final class ClusteringProgress {
+    public enum Phase { READING, WEIGHTS, EXTRACTING, MERGING, DONE }
+
+    private Phase phase_;
+    private long elapsed_;
+    private int documents_;
+    private int sentences_;
+    private long words_;
+    private int nodes_;
+    private int edges_;
+    private int candidateClusters_;
+    private long estimatedBytes_;
+    private double completed_;
+
+    /*
+    * Constructors.
+    */
+    ClusteringProgress(Phase phase, long elapsed, DocumentReader reader,
+                       int candidateClusters) {
+        phase_ = phase;
+        elapsed_ = elapsed;
+        documents_ = reader.Documents().size();
+        sentences_ = reader.SentenceCount();
+        words_ = reader.WordCount();
+        nodes_ = reader.Tree().NodeCount();
+        edges_ = reader.Tree().EdgeCount();
+        candidateClusters_ = candidateClusters;
+        estimatedBytes_ = reader.EstimatedBytes();
+
+        // Each phase counts for the same part of the run. The end of the reading
+        // is not known, the extraction examines about one candidate per node.
+        double phaseDone = 0;
+
+        if((phase == Phase.EXTRACTING) && (nodes_ > 0)) {
+            phaseDone = Math.min(1.0, (double)candidateClusters / nodes_);
+        }
+
+        completed_ = (phase.ordinal() + phaseDone) / Phase.DONE.ordinal();
+    }
+
+    /*
+    * Public methods.
+    */
+    public Phase Phase() { return phase_; }
+
+    // Nanoseconds since the run started.
+    public long Elapsed() { return elapsed_; }
+
+    // The data read so far.
+    public int Documents() { return documents_; }
+    public int Sentences() { return sentences_; }
+    public long Words() { return words_; }
+
+    // The size of the tree.
+    public int Nodes() { return nodes_; }
+    public int Edges() { return edges_; }
+
+    // The base clusters examined so far while extracting.
+    public int CandidateClusters() { return candidateClusters_; }
+
+    public long EstimatedBytes() { return estimatedBytes_; }
+
+    // An estimate of the fraction of the run completed, from 0 to 1.
+    // It doesn't advance while reading and is 1 only when the run is done.
+    public double Completed() { return completed_; }
+
+    @Override
+    public String toString() {
+        return phase_ + " " + (elapsed_ / 1000000) + " ms; Documents: " + documents_ +
+               ", Sentences: " + sentences_ + ", Words: " + words_ +
+               ", Nodes: " + nodes_ + ", Candidates: " + candidateClusters_ +
+               ", Bytes: " + estimatedBytes_ +
+               ", Completed: " + (int)(completed_ * 100) + "%";
+    }
+}
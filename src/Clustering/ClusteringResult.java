@@ -0,0 +1,74 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.util.List;
+
+// The clusters found by a clustering run, together with its statistics.
+public final class ClusteringResult {
+    private List<Cluster> clusters_;
+    private ClusteringStats stats_;
+    private DocumentClusterIndex index_;
+
+    /*
+    * Constructors.
+    */
+    public ClusteringResult(List<Cluster> clusters, ClusteringStats stats) {
+        clusters_ = clusters;
+        stats_ = stats;
+    }
+
+    public ClusteringResult(List<Cluster> clusters, ClusteringStats stats,
+                            DocumentClusterIndex index) {
+        this(clusters, stats);
+        index_ = index;
+    }
+
+    /*
+    * Public methods.
+    */
+    public List<Cluster> Clusters() { return clusters_; }
+    public ClusteringStats Stats() { return stats_; }
+
+    // The clusters containing each document. Created the first time
+    // it's needed if it was not created together with the clusters.
+    public synchronized DocumentClusterIndex DocumentClusters() {
+        if(index_ == null) {
+            index_ = new DocumentClusterIndex(clusters_);
+        }
+
+        return index_;
+    }
+
+    // Returns true if the run was cancelled before it could complete.
+    public boolean IsPartial() { return stats_.Partial(); }
+}
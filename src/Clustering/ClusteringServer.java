@@ -0,0 +1,610 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// An HTTP server which clusters the documents sent by the clients,
+// so that a single warm process can serve many requests.
+//
+// POST /cluster?overlap=0.5&maxClusters=20&minWeight=0.01&format=json&timeout=1000
+//   The body is either a JSON array of strings (Content-Type: application/json)
+//   or plain text with one document per line. The clusters are streamed back
+//   as JSON Lines ("format=json", the default) or in the binary form of
+//   'ClusterWriter' ("format=binary"). With "timeout" (in ms), the clustering
+//   stops at the deadline and the partial result is marked by "X-Partial: true".
+//   At most 'maxConcurrent' requests are clustered at the same time,
+//   the others are answered with 503 after waiting 'queueTimeout' ms.
+//   The body is read only after the request gets its turn. When all threads
+//   are busy and 'queueSize' requests are already waiting for one,
+//   the new requests are answered with 503 right away.
+//   A body larger than 'maxBodySize' (64 MB by default) is answered with 413.
+// GET /health - "ok" while the server is running.
+// GET /stats  - the latency histograms and the aggregated run statistics.
+// The last two are answered by the thread accepting the connections,
+// so they don't wait behind the queued clustering requests.
+public final class ClusteringServer {
+    private static final int DEFAULT_PORT = 8080;
+    private static final double DEFAULT_OVERLAP = 0.5;
+    private static final int DEFAULT_MAX_CLUSTERS = 20;
+    private static final double DEFAULT_MIN_WEIGHT = 0.01;
+    private static final long DEFAULT_QUEUE_TIMEOUT = 1000;
+    private static final int DEFAULT_MAX_BODY_SIZE = 64 << 20;
+    private static final Logger LOG = Logger.getLogger(ClusteringServer.class.getName());
+
+    /*
+    * Private members.
+    */
+    private HttpServer server_;
+    private ThreadPoolExecutor executor_;
+    private Semaphore permits_;
+    private int maxConcurrent_;
+    private long queueTimeout_;      // Milliseconds to wait for a permit.
+    private int maxBodySize_;        // In bytes.
+    private MemoryBudget budget_;    // Applied to each request, can be null.
+    private LatencyHistogram requestLatency_;
+    private LatencyHistogram clusterLatency_;
+    private AtomicLong rejected_;
+    private AtomicLong failed_;
+
+    /*
+    * Constructors.
+    */
+    // Creates a server listening on the specified port which clusters
+    // at most 'maxConcurrent' requests at the same time.
+    // 'threads' is the number of threads handling the clustering requests
+    // and 'queueSize' the number of requests which can wait for a thread.
+    public ClusteringServer(int port, int maxConcurrent, int threads,
+                            int queueSize) throws IOException {
+        assert(maxConcurrent > 0);
+        assert(threads > 0);
+        assert(queueSize > 0);
+        // ------------------------------------------------
+        maxConcurrent_ = maxConcurrent;
+        queueTimeout_ = DEFAULT_QUEUE_TIMEOUT;
+        maxBodySize_ = DEFAULT_MAX_BODY_SIZE;
+        permits_ = new Semaphore(maxConcurrent, true);
+        requestLatency_ = new LatencyHistogram();
+        clusterLatency_ = new LatencyHistogram();
+        rejected_ = new AtomicLong();
+        failed_ = new AtomicLong();
+
+        ThreadFactory factory = new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "ClusteringServer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        // The rejected requests are answered by the dispatching thread.
+        RejectedExecutionHandler overloaded = new RejectedExecutionHandler() {
+            public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+                Reject(((ClusterTask)task).exchange_, executor.isShutdown());
+            }
+        };
+
+        executor_ = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                                           new ArrayBlockingQueue<Runnable>(queueSize),
+                                           factory, overloaded);
+
+        // Without an executor the handlers run on the dispatching thread;
+        // only the clustering requests are passed to the worker threads.
+        server_ = HttpServer.create(new InetSocketAddress(port), 0);
+        server_.createContext("/cluster", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                executor_.execute(new ClusterTask(exchange));
+            }
+        });
+        server_.createContext("/health", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                SendText(exchange, 200, "ok\n");
+            }
+        });
+        server_.createContext("/stats", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                SendText(exchange, 200, Stats());
+            }
+        });
+    }
+
+    // Creates a server using twice as many threads as the concurrency limit,
+    // so that the waiting requests can still be answered,
+    // and as many queued requests as threads.
+    public ClusteringServer(int port, int maxConcurrent) throws IOException {
+        this(port, maxConcurrent, 2 * maxConcurrent, 2 * maxConcurrent);
+    }
+
+    /*
+    * Public methods.
+    */
+    public void Start() {
+        server_.start();
+    }
+
+    // Stops accepting requests and waits at most 'delay' seconds
+    // for the ones in progress to end.
+    public void Stop(int delay) {
+        server_.stop(delay);
+        executor_.shutdown();
+    }
+
+    // The port on which the server listens (useful when created with port 0).
+    public int Port() {
+        return server_.getAddress().getPort();
+    }
+
+    public void SetQueueTimeout(long value) { queueTimeout_ = value; }
+    public void SetMaxBodySize(int value) { maxBodySize_ = value; }
+    public void SetMemoryBudget(MemoryBudget value) { budget_ = value; }
+
+    public LatencyHistogram RequestLatency() { return requestLatency_; }
+    public LatencyHistogram ClusterLatency() { return clusterLatency_; }
+    public long RejectedRequests() { return rejected_.get(); }
+    public long FailedRequests() { return failed_.get(); }
+
+    public String Stats() {
+        ClusteringMonitor monitor = ClusteringMonitor.Instance();
+        return "Requests: " + requestLatency_ + "\n" +
+               "Clustering: " + clusterLatency_ + "\n" +
+               "Active: " + (maxConcurrent_ - permits_.availablePermits()) +
+               "/" + maxConcurrent_ + ", Rejected: " + rejected_.get() +
+               ", Failed: " + failed_.get() + "\n" +
+               "Last run: " + monitor.getLastRun() + "\n";
+    }
+
+    // Starts a server on the port given as the first argument (8080 by default)
+    // with the concurrency limit given as the second one (the number of processors).
+    // The aggregated statistics are also published through JMX.
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int maxConcurrent = args.length > 1 ? Integer.parseInt(args[1]) :
+                            Runtime.getRuntime().availableProcessors();
+        ClusteringServer server = new ClusteringServer(port, maxConcurrent);
+        ClusteringMonitor.Register();
+        server.Start();
+        System.out.println("Listening on port " + server.Port());
+    }
+
+    /*
+    * Private methods.
+    */
+    private final class ClusterTask implements Runnable {
+        private HttpExchange exchange_;
+
+        public ClusterTask(HttpExchange exchange) {
+            exchange_ = exchange;
+        }
+
+        public void run() {
+            HandleCluster(exchange_);
+        }
+    }
+
+    // Answers a request for which no thread is available. The response
+    // has no body, so the exchange ends without reading the request body
+    // (the connection is closed instead) and the dispatching thread
+    // is never blocked by a slow client.
+    private void Reject(HttpExchange exchange, boolean stopping) {
+        try {
+            if(!stopping) {
+                rejected_.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                exchange.sendResponseHeaders(503, -1);
+            }
+        }
+        catch(IOException e) {
+            // The client closed the connection.
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    private void HandleCluster(HttpExchange exchange) {
+        long start = System.nanoTime();
+
+        try {
+            if(!exchange.getRequestMethod().equals("POST")) {
+                SendText(exchange, 405, "Use POST\n");
+                return;
+            }
+
+            // Parse the parameters before waiting for a permit,
+            // the invalid requests being rejected quickly. The body is read
+            // only with a permit, so the waiting requests don't hold it in memory.
+            ClusteringOptions options;
+            ClusterWriter.Format format;
+
+            try {
+                Map<String, String> query = ParseQuery(exchange.getRequestURI().getRawQuery());
+                options = ParseOptions(query);
+                format = ParseFormat(query.get("format"));
+            }
+            catch(IllegalArgumentException e) {
+                SendText(exchange, 400, e.getMessage() + "\n");
+                return;
+            }
+
+            if(ContentLength(exchange) > maxBodySize_) {
+                SendText(exchange, 413, "The request is too large\n");
+                return;
+            }
+
+            if(!permits_.tryAcquire(queueTimeout_, TimeUnit.MILLISECONDS)) {
+                rejected_.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                SendText(exchange, 503, "Too many requests\n");
+                return;
+            }
+
+            try {
+                String body = ReadBody(exchange.getRequestBody());
+
+                if(body == null) {
+                    SendText(exchange, 413, "The request is too large\n");
+                    return;
+                }
+
+                List<String> documents;
+
+                try {
+                    documents = ParseDocuments(exchange, body);
+                }
+                catch(IllegalArgumentException e) {
+                    SendText(exchange, 400, e.getMessage() + "\n");
+                    return;
+                }
+
+                RunClustering(exchange, documents, options, format);
+            }
+            finally {
+                permits_.release();
+            }
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch(IOException e) {
+            // The client closed the connection.
+            failed_.incrementAndGet();
+        }
+        finally {
+            requestLatency_.Record(System.nanoTime() - start);
+            exchange.close();
+        }
+    }
+
+    private void RunClustering(HttpExchange exchange, List<String> documents,
+                               ClusteringOptions options,
+                               ClusterWriter.Format format) throws IOException {
+        ClusteringResult result;
+        long start = System.nanoTime();
+
+        try {
+            result = ClusterFinder.Run(new TextSource(documents), options);
+        }
+        catch(MemoryBudgetException e) {
+            failed_.incrementAndGet();
+            SendText(exchange, 413, e.getMessage() + "\n");
+            return;
+        }
+        catch(RuntimeException e) {
+            // The details stay in the server's log.
+            failed_.incrementAndGet();
+            LOG.log(Level.SEVERE, "Clustering failed", e);
+            SendText(exchange, 500, "Internal server error\n");
+            return;
+        }
+        finally {
+            clusterLatency_.Record(System.nanoTime() - start);
+        }
+
+        // The length is not known, the response is sent in chunks
+        // as the writer fills its buffer.
+        exchange.getResponseHeaders().set("Content-Type",
+                format == ClusterWriter.Format.JSON_LINES ?
+                "application/x-ndjson" : "application/octet-stream");
+
+        if(result.IsPartial()) {
+            exchange.getResponseHeaders().set("X-Partial", "true");
+        }
+        exchange.sendResponseHeaders(200, 0);
+
+        ClusterWriter writer = new ClusterWriter(exchange.getResponseBody(), format);
+        writer.Write(result.Clusters());
+        writer.Close();
+    }
+
+    private ClusteringOptions ParseOptions(Map<String, String> query) {
+        // Validated before creating the options, which assert it.
+        int maxClusters = ParseInt(query, "maxClusters", DEFAULT_MAX_CLUSTERS);
+
+        if(maxClusters <= 0) {
+            throw new IllegalArgumentException("maxClusters must be positive");
+        }
+
+        ClusteringOptions options =
+                new ClusteringOptions(ParseDouble(query, "overlap", DEFAULT_OVERLAP),
+                                      maxClusters,
+                                      ParseDouble(query, "minWeight", DEFAULT_MIN_WEIGHT));
+        options.SetMemoryBudget(budget_);
+
+        if(query.containsKey("timeout")) {
+            int timeout = ParseInt(query, "timeout", 0);
+
+            if(timeout <= 0) {
+                throw new IllegalArgumentException("timeout must be positive");
+            }
+
+            options.SetCancellation(CancellationToken.WithTimeout(timeout));
+        }
+
+        return options;
+    }
+
+    private static ClusterWriter.Format ParseFormat(String value) {
+        if(value == null || value.equals("json")) {
+            return ClusterWriter.Format.JSON_LINES;
+        }
+        else if(value.equals("binary")) {
+            return ClusterWriter.Format.BINARY;
+        }
+
+        throw new IllegalArgumentException("Unknown format: " + value);
+    }
+
+    private static double ParseDouble(Map<String, String> query, String name,
+                                      double defaultValue) {
+        String value = query.get(name);
+
+        try {
+            return value != null ? Double.parseDouble(value) : defaultValue;
+        }
+        catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    private static int ParseInt(Map<String, String> query, String name,
+                                int defaultValue) {
+        String value = query.get(name);
+
+        try {
+            return value != null ? Integer.parseInt(value) : defaultValue;
+        }
+        catch(NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    private static Map<String, String> ParseQuery(String query) throws IOException {
+        Map<String, String> values = new HashMap<String, String>();
+
+        if(query == null) {
+            return values;
+        }
+
+        String[] pairs = query.split("&");
+
+        for(int i = 0; i < pairs.length; i++) {
+            int equal = pairs[i].indexOf('=');
+
+            if(equal > 0) {
+                values.put(URLDecoder.decode(pairs[i].substring(0, equal), "UTF-8"),
+                           URLDecoder.decode(pairs[i].substring(equal + 1), "UTF-8"));
+            }
+        }
+
+        return values;
+    }
+
+    private static List<String> ParseDocuments(HttpExchange exchange, String body) {
+        String type = exchange.getRequestHeaders().getFirst("Content-Type");
+
+        if(type != null && type.startsWith("application/json")) {
+            return ParseJsonDocuments(body);
+        }
+
+        // Plain text, one document per line.
+        List<String> documents = new ArrayList<String>();
+        String[] lines = body.split("\r?\n");
+
+        for(int i = 0; i < lines.length; i++) {
+            if(lines[i].trim().length() > 0) {
+                documents.add(lines[i]);
+            }
+        }
+
+        return documents;
+    }
+
+    // The length announced by the client, or -1 if unknown.
+    private static long ContentLength(HttpExchange exchange) {
+        String value = exchange.getRequestHeaders().getFirst("Content-Length");
+
+        try {
+            return value != null ? Long.parseLong(value.trim()) : -1;
+        }
+        catch(NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Returns null if the body is larger than 'maxBodySize_'.
+    private String ReadBody(InputStream stream) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+
+        while((count = stream.read(buffer)) > 0) {
+            bytes.write(buffer, 0, count);
+
+            if(bytes.size() > maxBodySize_) {
+                return null;
+            }
+        }
+
+        return bytes.toString("UTF-8");
+    }
+
+    // Parses a JSON array of strings.
+    private static List<String> ParseJsonDocuments(String json) {
+        List<String> documents = new ArrayList<String>();
+        StringBuilder builder = new StringBuilder();
+        int position = SkipSpaces(json, 0);
+
+        if(position == json.length() || json.charAt(position) != '[') {
+            throw new IllegalArgumentException("Expected a JSON array of strings");
+        }
+
+        position = SkipSpaces(json, position + 1);
+
+        if(position < json.length() && json.charAt(position) == ']') {
+            return documents;
+        }
+
+        while(true) {
+            if(position == json.length() || json.charAt(position) != '"') {
+                throw new IllegalArgumentException("Expected a string at " + position);
+            }
+
+            builder.setLength(0);
+            position = ParseJsonString(json, position + 1, builder);
+            documents.add(builder.toString());
+            position = SkipSpaces(json, position);
+
+            if(position == json.length()) {
+                throw new IllegalArgumentException("Unterminated array");
+            }
+            else if(json.charAt(position) == ']') {
+                return documents;
+            }
+            else if(json.charAt(position) != ',') {
+                throw new IllegalArgumentException("Expected ',' at " + position);
+            }
+
+            position = SkipSpaces(json, position + 1);
+        }
+    }
+
+    // Parses the string starting after the opening quote
+    // and returns the position after the closing one.
+    private static int ParseJsonString(String json, int position, StringBuilder builder) {
+        while(position < json.length()) {
+            char c = json.charAt(position++);
+
+            if(c == '"') {
+                return position;
+            }
+            else if(c != '\\') {
+                builder.append(c);
+                continue;
+            }
+
+            if(position == json.length()) {
+                break;
+            }
+
+            c = json.charAt(position++);
+
+            switch(c) {
+                case 'b': { builder.append('\b'); break; }
+                case 'f': { builder.append('\f'); break; }
+                case 'n': { builder.append('\n'); break; }
+                case 'r': { builder.append('\r'); break; }
+                case 't': { builder.append('\t'); break; }
+                case 'u': {
+                    if(position + 4 > json.length()) {
+                        throw new IllegalArgumentException("Invalid escape at " + position);
+                    }
+
+                    try {
+                        builder.append((char)Integer.parseInt(json.substring(position,
+                                                                             position + 4), 16));
+                    }
+                    catch(NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid escape at " + position);
+                    }
+
+                    position += 4;
+                    break;
+                }
+                default: {
+                    builder.append(c); // '"', '\\' and '/'.
+                    break;
+                }
+            }
+        }
+
+        throw new IllegalArgumentException("Unterminated string");
+    }
+
+    private static int SkipSpaces(String json, int position) {
+        while(position < json.length() && Character.isWhitespace(json.charAt(position))) {
+            position++;
+        }
+
+        return position;
+    }
+
+    private static void SendText(HttpExchange exchange, int status,
+                                 String text) throws IOException {
+        byte[] bytes = text.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream stream = exchange.getResponseBody();
+        stream.write(bytes);
+        stream.close();
+    }
+}
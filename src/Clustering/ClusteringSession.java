@@ -0,0 +1,165 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.util.Arrays;
+import java.util.List;
+
+// Reads a set of documents once and answers any number of clustering
+// queries over them. All base clusters are extracted when the session
+// is created and kept sorted by weight, so a query only has to find how many
+// pass its minimum weight (a binary search) and merge the first ones.
+// Queries don't modify the session and can run concurrently.
+public final class ClusteringSession {
+    private DocumentReader reader_;
+    private Cluster[] clusters_; // All base clusters, by descending weight.
+    private double[] weights_;   // The weight of each base cluster.
+    private ClusteringStats buildStats_;
+
+    /*
+    * Constructors.
+    */
+    public ClusteringSession(IDocumentSource source) {
+        this(source, null);
+    }
+
+    // Creates a session reading the documents within a memory budget.
+    // The budget can be null if there is no limit.
+    public ClusteringSession(IDocumentSource source, MemoryBudget budget) {
+        assert(source != null);
+        // ------------------------------------------------
+        buildStats_ = new ClusteringStats();
+        reader_ = new DocumentReader(source);
+        reader_.SetMemoryBudget(budget);
+        reader_.Read();
+        buildStats_.SetReader(reader_);
+
+        // Extract the clusters of any weight. The sort is stable, so the clusters
+        // with the same weight are in the order in which the tree returns them,
+        // the same order 'ClusterFinder.Find' would merge them.
+        long start = System.nanoTime();
+        List<Cluster> clusters = reader_.GetBaseClusters(Double.NEGATIVE_INFINITY);
+        clusters_ = clusters.toArray(new Cluster[clusters.size()]);
+        Arrays.sort(clusters_);
+        weights_ = new double[clusters_.length];
+
+        for(int i = 0; i < clusters_.length; i++) {
+            weights_[i] = clusters_[i].Weight();
+        }
+
+        buildStats_.SetExtract(System.nanoTime() - start,
+                               reader_.FrozenTree().CandidateCount(), clusters_.length);
+        ClusteringMonitor.Instance().Record(buildStats_);
+    }
+
+    /*
+    * Public methods.
+    */
+    /**
+     * Returns a list with all clusters from the documents of the session
+     * that meet conditions specified in the parameters.
+     * The result is the same as the one of 'ClusterFinder.Find'.
+     *
+     * @param clusterOverlapDegree The minimum overlapping degree
+     * for two clusters to be combined into a single one.
+     * @param maxClusters The maximum number of clusters to add to the
+     * result lists. The rest of the documents are added to a cluster named "Other".
+     * @param minClusterWeight The minimum weight of a cluster to be considered.
+     * @return A list with all clusters meeting the specified conditions.
+     */
+    public List<Cluster> Find(double clusterOverlapDegree, int maxClusters,
+                              double minClusterWeight) {
+        return Run(new ClusteringOptions(clusterOverlapDegree, maxClusters,
+                                         minClusterWeight)).Clusters();
+    }
+
+    // Same as 'Find', but also returns statistics about the query.
+    // The memory budget from the options is ignored, the documents being already read.
+    public ClusteringResult Run(ClusteringOptions options) {
+        assert(options != null);
+        assert(options.MaxClusters() > 0);
+        // ------------------------------------------------
+        ClusteringStats stats = new ClusteringStats();
+        stats.SetSizes(reader_);
+
+        long start = System.nanoTime();
+        int count = SelectedCount(options.MinClusterWeight());
+        stats.SetExtract(System.nanoTime() - start, clusters_.length, count);
+
+        start = System.nanoTime();
+        List<Cluster> selected = Arrays.asList(clusters_).subList(0, count);
+        List<Cluster> clusters =
+                ClusterFinder.MergeSortedClusters(selected, options.ClusterOverlapDegree(),
+                                                  options.MaxClusters(), stats,
+                                                  options.Cancellation(), start);
+        ClusteringMonitor.Instance().Record(stats);
+        return new ClusteringResult(clusters, stats, new DocumentClusterIndex(clusters));
+    }
+
+    // The number of base clusters with a weight larger than the specified one.
+    public int SelectedCount(double minClusterWeight) {
+        // Find the first cluster with a weight at most equal to the minimum
+        // (the weights are in descending order).
+        int left = 0;
+        int right = weights_.length;
+
+        while(left < right) {
+            int middle = (left + right) >>> 1;
+
+            if(weights_[middle] > minClusterWeight) {
+                left = middle + 1;
+            }
+            else {
+                right = middle;
+            }
+        }
+
+        return left;
+    }
+
+    // All base clusters, by descending weight. The list must not be modified.
+    public List<Cluster> BaseClusters() {
+        return Arrays.asList(clusters_);
+    }
+
+    // Returns the sorted indices of the documents containing the phrase
+    // (see 'DocumentReader.FindDocuments').
+    public int[] FindDocuments(String... words) {
+        return reader_.FindDocuments(words);
+    }
+
+    public List<Document> Documents() { return reader_.Documents(); }
+    public DocumentReader Reader() { return reader_; }
+
+    // The statistics of reading the documents and extracting the base clusters.
+    public ClusteringStats BuildStats() { return buildStats_; }
+}
@@ -0,0 +1,194 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+
+// Statistics about a single clustering run: the time spent
+// in each phase and the size of the processed data.
+// All times are in nanoseconds.
+public final class ClusteringStats {
+    private long readTime_;
+    private long treeTime_;
+    private long weightTime_;
+    private long extractTime_;
+    private long mergeTime_;
+    private int documents_;
+    private int sentences_;
+    private long words_;
+    private int nodes_;
+    private int edges_;
+    private int candidateClusters_;
+    private int baseClusters_;
+    private int finalClusters_;
+    private long mergeComparisons_;
+    private long estimatedBytes_;
+    private int skippedDocuments_;
+    private int duplicateDocuments_;
+    private int duplicateSentences_;
+    private boolean truncated_;
+    private boolean partial_;
+
+    /*
+    * Public methods.
+    */
+    // Reading and parsing the documents, without the tree construction.
+    public long ReadTime() { return readTime_; }
+    // Inserting the sentences in the suffix tree.
+    public long TreeTime() { return treeTime_; }
+    // Computing the weight of each word.
+    public long WeightTime() { return weightTime_; }
+    // Extracting the base clusters from the tree.
+    public long ExtractTime() { return extractTime_; }
+    // Sorting and merging the base clusters.
+    public long MergeTime() { return mergeTime_; }
+
+    public long TotalTime() {
+        return readTime_ + treeTime_ + weightTime_ + extractTime_ + mergeTime_;
+    }
+
+    public int Documents() { return documents_; }
+    public int Sentences() { return sentences_; }
+    public long Words() { return words_; }
+    public int Nodes() { return nodes_; }
+    public int Edges() { return edges_; }
+
+    // The number of base clusters before and after
+    // the minimum weight limit is applied.
+    public int CandidateClusters() { return candidateClusters_; }
+    public int BaseClusters() { return baseClusters_; }
+    public int FinalClusters() { return finalClusters_; }
+
+    public long MergeComparisons() { return mergeComparisons_; }
+
+    // An estimate of the memory retained by the documents,
+    // the vocabulary and the tree at the end of the reading.
+    public long EstimatedBytes() { return estimatedBytes_; }
+
+    // The documents skipped while sampling because of the memory budget.
+    // If the reading was truncated, the documents after the last one read
+    // are not counted (the source is not read until its end).
+    public int SkippedDocuments() { return skippedDocuments_; }
+    public boolean Truncated() { return truncated_; }
+
+    // The documents found to be near-duplicates of documents read before,
+    // which were not inserted in the suffix tree.
+    public int DuplicateDocuments() { return duplicateDocuments_; }
+
+    // The sentences not inserted in the suffix tree because
+    // a sentence with the same words was inserted before.
+    public int DuplicateSentences() { return duplicateSentences_; }
+
+    // Returns true if a phase was stopped by the cancellation token,
+    // the clusters being found using only the data processed until then.
+    public boolean Partial() { return partial_; }
+
+    @Override
+    public String toString() {
+        return "Read: " + Millis(readTime_) + " ms, Tree: " + Millis(treeTime_) +
+               " ms, Weights: " + Millis(weightTime_) + " ms, Extract: " +
+               Millis(extractTime_) + " ms, Merge: " + Millis(mergeTime_) +
+               " ms; Documents: " + documents_ + ", Sentences: " + sentences_ +
+               ", Words: " + words_ + ", Nodes: " + nodes_ + ", Edges: " + edges_ +
+               ", Clusters: " + candidateClusters_ + " -> " + baseClusters_ +
+               " -> " + finalClusters_ + ", Comparisons: " + mergeComparisons_ +
+               ", Bytes: " + estimatedBytes_ +
+               (skippedDocuments_ > 0 ? ", Skipped: " + skippedDocuments_ : "") +
+               (duplicateDocuments_ > 0 ? ", Duplicates: " + duplicateDocuments_ : "") +
+               (duplicateSentences_ > 0 ? ", Shared sentences: " + duplicateSentences_ : "") +
+               (truncated_ ? ", Truncated" : "") +
+               (partial_ ? ", Partial" : "");
+    }
+
+    /*
+    * Package methods.
+    */
+    // Copies the statistics collected by the reader.
+    void SetReader(DocumentReader reader) {
+        readTime_ = reader.ReadTime();
+        treeTime_ = reader.TreeTime();
+        weightTime_ = reader.WeightTime();
+        SetSizes(reader);
+    }
+
+    // Copies only the size of the data read by the reader, for runs
+    // which reuse documents read before.
+    void SetSizes(DocumentReader reader) {
+        documents_ = reader.Documents().size();
+        sentences_ = reader.SentenceCount();
+        words_ = reader.WordCount();
+        nodes_ = reader.Tree().NodeCount();
+        edges_ = reader.Tree().EdgeCount();
+        estimatedBytes_ = reader.EstimatedBytes();
+        skippedDocuments_ = reader.SkippedDocuments();
+        duplicateDocuments_ = reader.DuplicateDocuments();
+        duplicateSentences_ = reader.DuplicateSentences();
+        truncated_ = reader.Truncated();
+        partial_ |= reader.Cancelled();
+    }
+
+    // Adds the size of the data read by a worker of a distributed run.
+    void AddPartition(int documents, int sentences, long words,
+                      int nodes, int edges, long estimatedBytes) {
+        documents_ += documents;
+        sentences_ += sentences;
+        words_ += words;
+        nodes_ += nodes;
+        edges_ += edges;
+        estimatedBytes_ = Math.max(estimatedBytes_, estimatedBytes);
+    }
+
+    void SetTimes(long read, long tree, long weights) {
+        readTime_ = read;
+        treeTime_ = tree;
+        weightTime_ = weights;
+    }
+
+    void SetPartial() {
+        partial_ = true;
+    }
+
+    void SetExtract(long time, int candidates, int selected) {
+        extractTime_ = time;
+        candidateClusters_ = candidates;
+        baseClusters_ = selected;
+    }
+
+    void SetMerge(long time, long comparisons, int clusters) {
+        mergeTime_ = time;
+        mergeComparisons_ = comparisons;
+        finalClusters_ = clusters;
+    }
+
+    private static long Millis(long nanos) {
+        return nanos / 1000000;
+    }
+}
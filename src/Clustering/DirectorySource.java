@@ -0,0 +1,312 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
+
+// A source which reads each file found under a directory as a document.
+// Files ending in ".gz" are decompressed. The files are read in parallel
+// on a thread pool, at most 'readAhead' files ahead of the one currently
+// parsed, so that opening and decompressing the files overlaps
+// with the construction of the suffix tree. The documents are always
+// returned in the same order, sorted by path. Symbolic links are followed,
+// but a directory reached again through a link is not walked twice.
+public final class DirectorySource implements IDocumentSource {
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final int BUFFER_SIZE = 8192;
+
+    // Returns the files in depth-first order, the entries
+    // of each directory being sorted by name.
+    private static final class FileWalker implements Iterator<File> {
+        private LinkedList<Iterator<File>> stack_;
+        private HashSet<String> visited_; // The real paths of the walked directories.
+        private File next_;
+
+        public FileWalker(File root) {
+            stack_ = new LinkedList<Iterator<File>>();
+            visited_ = new HashSet<String>();
+            Enter(root);
+            Advance();
+        }
+
+        public boolean hasNext() { return next_ != null; }
+
+        public File next() {
+            if(next_ == null) {
+                throw new NoSuchElementException();
+            }
+
+            File file = next_;
+            Advance();
+            return file;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        // Adds the entries of the directory to the walk, unless it was
+        // walked before (links can form cycles) or its path can't be resolved.
+        private void Enter(File directory) {
+            try {
+                if(!visited_.add(directory.getCanonicalPath())) {
+                    return;
+                }
+            }
+            catch(IOException e) {
+                return;
+            }
+
+            stack_.add(List(directory));
+        }
+
+        private static Iterator<File> List(File directory) {
+            File[] files = directory.listFiles();
+
+            if(files == null) {
+                files = new File[0]; // Not a directory or not readable.
+            }
+
+            Arrays.sort(files);
+            return Arrays.asList(files).iterator();
+        }
+
+        private void Advance() {
+            next_ = null;
+
+            while(!stack_.isEmpty()) {
+                Iterator<File> files = stack_.getLast();
+
+                if(!files.hasNext()) {
+                    stack_.removeLast();
+                    continue;
+                }
+
+                File file = files.next();
+
+                if(file.isDirectory()) {
+                    Enter(file);
+                }
+                else if(file.isFile()) {
+                    next_ = file;
+                    return;
+                }
+            }
+        }
+    }
+
+    // Returns the text of the files, in the order of the walk.
+    private final class DocumentIterator implements Iterator<String> {
+        public boolean hasNext() {
+            synchronized(pending_) {
+                return !pending_.isEmpty();
+            }
+        }
+
+        public String next() {
+            Future<String> text;
+
+            synchronized(pending_) {
+                if(pending_.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+
+                text = pending_.removeFirst();
+                current_ = text;
+                Submit();
+            }
+
+            try {
+                return text.get();
+            }
+            catch(CancellationException e) {
+                // 'Close' was called, the documents end here.
+                return "";
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failedFiles_++;
+                return "";
+            }
+            catch(ExecutionException e) {
+                // The file could not be read, it is treated
+                // as an empty document to keep the indices in order.
+                failedFiles_++;
+                return "";
+            }
+            finally {
+                if(!hasNext()) {
+                    Close();
+                }
+            }
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /*
+    * Private members.
+    */
+    private FileWalker files_;
+    private ExecutorService executor_;
+    private LinkedList<Future<String>> pending_;
+    private Future<String> current_; // The file 'next' waits for.
+    private TextSource text_;
+    private int failedFiles_;
+
+    /*
+    * Constructors.
+    */
+    public DirectorySource(File root, int threads, int readAhead) {
+        assert(root != null);
+        assert(threads > 0);
+        assert(readAhead > 0);
+        // ------------------------------------------------
+        files_ = new FileWalker(root);
+        pending_ = new LinkedList<Future<String>>();
+        executor_ = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "DirectorySource");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        for(int i = 0; i < readAhead; i++) {
+            Submit();
+        }
+
+        text_ = new TextSource(new DocumentIterator());
+
+        if(pending_.isEmpty()) {
+            Close();
+        }
+    }
+
+    public DirectorySource(File root) {
+        this(root, Runtime.getRuntime().availableProcessors() * 2, 64);
+    }
+
+    /*
+    * Public methods.
+    */
+    public boolean HasDocument() { return text_.HasDocument(); }
+    public boolean HasSentence() { return text_.HasSentence(); }
+    public boolean HasWord() { return text_.HasWord(); }
+    public String NextWord() { return text_.NextWord(); }
+
+    // The number of files that could not be read.
+    // They are returned as empty documents.
+    public int FailedFiles() { return failedFiles_; }
+
+    // Stops the reading threads. Called automatically after the last
+    // file has been returned. If called before, the files not returned
+    // yet are not read and the documents end after the current one.
+    // Can be called from another thread than the one reading.
+    public void Close() {
+        synchronized(pending_) {
+            // A queued task is dropped by 'shutdownNow' without being completed,
+            // it must be cancelled so that 'next' doesn't wait for it forever.
+            if(current_ != null) {
+                current_.cancel(true);
+            }
+
+            for(Future<String> text : pending_) {
+                text.cancel(true);
+            }
+
+            pending_.clear();
+            executor_.shutdownNow();
+        }
+    }
+
+    /*
+    * Private methods.
+    */
+    // Starts reading the next file, if any. Called with 'pending_' locked.
+    private void Submit() {
+        if(!files_.hasNext() || executor_.isShutdown()) {
+            return;
+        }
+
+        final File file = files_.next();
+        pending_.add(executor_.submit(new Callable<String>() {
+            public String call() throws IOException {
+                return ReadFile(file);
+            }
+        }));
+    }
+
+    private static String ReadFile(File file) throws IOException {
+        InputStream stream = new FileInputStream(file);
+
+        try {
+            if(file.getName().endsWith(GZIP_EXTENSION)) {
+                stream = new GZIPInputStream(stream, BUFFER_SIZE);
+            }
+
+            ByteArrayOutputStream data = new ByteArrayOutputStream(
+                    (int)Math.min(file.length(), Integer.MAX_VALUE - 8) + 16);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+
+            while((count = stream.read(buffer)) != -1) {
+                data.write(buffer, 0, count);
+            }
+
+            return data.toString("UTF-8");
+        }
+        finally {
+            stream.close();
+        }
+    }
+}
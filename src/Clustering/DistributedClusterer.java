@@ -0,0 +1,704 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Clusters a corpus too large for a single heap using several worker
+// processes ('ClusterWorker'), reached over plain sockets. The documents
+// are read by the coordinator and sent to the workers in turn (document
+// 'i' to worker 'i % n'), each worker building the suffix tree of its
+// partition. The coordinator then combines the summaries of the workers:
+// the document frequences and term frequences are summed to compute
+// the weights over the whole corpus, the documents of the phrases
+// found by several workers are united, and the base clusters obtained
+// this way are merged as usual.
+//
+// The workers don't send all their phrases. The weight of a phrase is the sum
+// of its weights in the partitions, so a phrase above the minimum weight is
+// above 'minWeight / n' (or 'minWeight' if negative) in at least one of the
+// 'n' partitions; each worker sends only these phrases. The streams of the
+// workers are sorted the same way and are merged as they are read, keeping
+// in memory only the documents of the phrases not yet complete. A phrase
+// not sent by all workers is dropped if it can't reach the minimum weight
+// even with the most the others could add, otherwise the other workers are
+// asked for its documents once all streams are read.
+//
+// The result is an approximation: a phrase is found only if it labels
+// an internal node in the tree of at least one worker, so a phrase
+// found once in each partition is missed, and the documents of a phrase
+// include only the partitions where it labels a node. With a single
+// worker the clusters are the same as the ones of 'ClusterFinder'.
+public final class DistributedClusterer {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int CONNECT_TIMEOUT = 10000;
+
+    // The documents containing a phrase, as global indices. The partitions
+    // are disjoint, so the documents sent by the workers are only appended.
+    private static final class PhraseDocuments {
+        public int[] documents = new int[4];
+        public int count;
+
+        public void Add(int document) {
+            if(count == documents.length) {
+                documents = Arrays.copyOf(documents, count * 2);
+            }
+
+            documents[count++] = document;
+        }
+
+        public void AddAll(int[] values) {
+            if(count + values.length > documents.length) {
+                documents = Arrays.copyOf(documents, Math.max(count + values.length, count * 2));
+            }
+
+            System.arraycopy(values, 0, documents, count, values.length);
+            count += values.length;
+        }
+    }
+
+    // A phrase found by the merge of the worker streams.
+    private static final class MergedPhrase {
+        public final int[] words;   // Global word identifiers.
+        public final boolean[] sent; // The workers which sent the phrase.
+        public final PhraseDocuments documents = new PhraseDocuments();
+
+        public MergedPhrase(int[] words, int workerCount) {
+            this.words = words;
+            sent = new boolean[workerCount];
+        }
+    }
+
+    // The phrases sent by a worker, read one at a time. The documents of a phrase
+    // are the ones sent with it and the ones of the longer phrases starting
+    // with it which were sent before; these are kept until then.
+    private static final class SummaryStream {
+        public int[] words = new int[16]; // The current phrase, as global identifiers.
+        public int length;                // -1 after the last phrase.
+        public int[] documents;           // The documents of the phrase, sorted.
+        private DataInputStream input_;
+        private int[] globalIds_;
+        private int worker_;
+        private int workerCount_;
+        private ArrayList<int[]> heldWords_ = new ArrayList<int[]>();
+        private ArrayList<int[]> heldDocuments_ = new ArrayList<int[]>();
+
+        public SummaryStream(DataInputStream input, int[] globalIds,
+                             int worker, int workerCount) {
+            input_ = input;
+            globalIds_ = globalIds;
+            worker_ = worker;
+            workerCount_ = workerCount;
+        }
+
+        // Reads the next phrase, returns false after the last one.
+        public boolean Next() throws IOException {
+            int shared = input_.readInt();
+
+            if(shared == -1) {
+                length = -1;
+                return false;
+            }
+
+            length = shared + input_.readInt();
+
+            if(length > words.length) {
+                words = Arrays.copyOf(words, Math.max(length, words.length * 2));
+            }
+
+            for(int i = shared; i < length; i++) {
+                words[i] = globalIds_[input_.readInt()];
+            }
+
+            boolean claimed = input_.readBoolean();
+            documents = new int[input_.readInt()];
+
+            for(int i = 0; i < documents.length; i++) {
+                // The position in the partition is converted
+                // to the position in the whole corpus.
+                documents[i] = input_.readInt() * workerCount_ + worker_;
+            }
+
+            // The phrases starting with this one are the last ones kept.
+            int last = heldWords_.size() - 1;
+
+            while((last >= 0) && StartsWith(heldWords_.get(last), words, length)) {
+                documents = Union(documents, heldDocuments_.get(last));
+                heldWords_.remove(last);
+                heldDocuments_.remove(last);
+                last--;
+            }
+
+            // Kept for the phrase of the closest ancestor node sent.
+            if(claimed) {
+                heldWords_.add(Arrays.copyOf(words, length));
+                heldDocuments_.add(documents);
+            }
+
+            return true;
+        }
+    }
+
+    /*
+    * Private members.
+    */
+    private List<InetSocketAddress> workers_;
+    private List<Process> processes_; // The workers started by 'StartLocal'.
+    private int readTimeout_;         // Milliseconds, 0 to wait forever.
+
+    /*
+    * Constructors.
+    */
+    // Creates a coordinator using the workers listening at the specified addresses.
+    public DistributedClusterer(List<InetSocketAddress> workers) {
+        assert(workers != null);
+        assert(!workers.isEmpty());
+        // ------------------------------------------------
+        workers_ = new ArrayList<InetSocketAddress>(workers);
+        processes_ = new ArrayList<Process>();
+    }
+
+    /*
+    * Public methods.
+    */
+    // Launches 'count' worker processes on this machine, using the same
+    // Java installation and class path as the current process. 'jvmArgs'
+    // are passed to each worker (for example "-Xmx2g"). The workers are
+    // stopped by 'Close' or when the current process ends.
+    public static DistributedClusterer StartLocal(int count, String... jvmArgs)
+            throws IOException {
+        assert(count > 0);
+        // ------------------------------------------------
+        String java = System.getProperty("java.home") + File.separator +
+                      "bin" + File.separator + "java";
+        List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+        List<Process> processes = new ArrayList<Process>();
+
+        try {
+            for(int i = 0; i < count; i++) {
+                List<String> command = new ArrayList<String>();
+                command.add(java);
+                command.addAll(Arrays.asList(jvmArgs));
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(ClusterWorker.class.getName());
+                command.add("0");
+                command.add("-parent"); // Exit when this process ends.
+
+                ProcessBuilder builder = new ProcessBuilder(command);
+                builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+                Process process = builder.start();
+                processes.add(process);
+
+                // The worker prints the port it listens on.
+                BufferedReader output = new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), "UTF-8"));
+                String line = output.readLine();
+
+                if(line == null) {
+                    throw new IOException("Worker process failed to start");
+                }
+
+                int port = Integer.parseInt(line.substring(line.lastIndexOf(' ') + 1));
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            }
+        }
+        catch(IOException e) {
+            for(int i = 0; i < processes.size(); i++) {
+                processes.get(i).destroy();
+            }
+
+            throw e;
+        }
+
+        DistributedClusterer clusterer = new DistributedClusterer(addresses);
+        clusterer.processes_ = processes;
+        return clusterer;
+    }
+
+    // Same as 'ClusterFinder.Run', but the documents are distributed
+    // to the workers. The memory budget and the progress listener of the
+    // options are ignored; if the cancellation token asks for the reading
+    // to stop, the remaining documents are not sent.
+    public ClusteringResult Run(IDocumentSource source,
+                                ClusteringOptions options) throws IOException {
+        assert(source != null);
+        assert(options != null);
+        // ------------------------------------------------
+        ClusteringStats stats = new ClusteringStats();
+        List<Cluster> baseClusters = GetBaseClusters(source, options.MinClusterWeight(),
+                                                     options.Cancellation(), stats);
+        List<Cluster> clusters = ClusterFinder.MergeBaseClusters(baseClusters,
+                                                                 options.ClusterOverlapDegree(),
+                                                                 options.MaxClusters(), stats,
+                                                                 options.Cancellation());
+        ClusteringMonitor.Instance().Record(stats);
+        return new ClusteringResult(clusters, stats);
+    }
+
+    // Returns the base clusters having a weight greater than the specified one,
+    // sorted by their phrase as the workers send them (see 'ClusterWorker'),
+    // the ones completed by asking the workers for their documents last.
+    public List<Cluster> GetBaseClusters(IDocumentSource source,
+                                         double minWeight) throws IOException {
+        return GetBaseClusters(source, minWeight, null, new ClusteringStats());
+    }
+
+    public int WorkerCount() { return workers_.size(); }
+
+    // The maximum time to wait for the answer of a worker.
+    public void SetReadTimeout(int value) { readTimeout_ = value; }
+
+    // Stops the workers started by 'StartLocal'.
+    public void Close() {
+        for(int i = 0; i < processes_.size(); i++) {
+            processes_.get(i).destroy();
+        }
+
+        processes_.clear();
+    }
+
+    /*
+    * Private methods.
+    */
+    private List<Cluster> GetBaseClusters(IDocumentSource source, double minWeight,
+                                          CancellationToken cancellation,
+                                          ClusteringStats stats) throws IOException {
+        int count = workers_.size();
+        Socket[] sockets = new Socket[count];
+        DataOutputStream[] outputs = new DataOutputStream[count];
+        DataInputStream[] inputs = new DataInputStream[count];
+        long start = System.nanoTime();
+
+        try {
+            for(int i = 0; i < count; i++) {
+                sockets[i] = new Socket();
+                sockets[i].connect(workers_.get(i), CONNECT_TIMEOUT);
+                sockets[i].setTcpNoDelay(true);
+                sockets[i].setSoTimeout(readTimeout_);
+                outputs[i] = new DataOutputStream(new BufferedOutputStream(
+                        sockets[i].getOutputStream(), BUFFER_SIZE));
+                inputs[i] = new DataInputStream(new BufferedInputStream(
+                        sockets[i].getInputStream(), BUFFER_SIZE));
+                outputs[i].writeInt(ClusterWorker.MAGIC);
+                outputs[i].writeInt(ClusterWorker.VERSION);
+            }
+
+            // The workers build their trees while the documents are sent,
+            // and answer only after all of them have been received.
+            int documents = SendDocuments(source, outputs, cancellation, stats);
+
+            for(int i = 0; i < count; i++) {
+                outputs[i].writeByte(ClusterWorker.END);
+                outputs[i].flush();
+            }
+
+            return ReadSummaries(inputs, outputs, documents, minWeight, stats, start);
+        }
+        finally {
+            for(int i = 0; i < count; i++) {
+                if(sockets[i] != null) {
+                    try {
+                        sockets[i].close();
+                    }
+                    catch(IOException e) {}
+                }
+            }
+        }
+    }
+
+    // Sends the documents to the workers, in turn. Returns the number of documents.
+    private static int SendDocuments(IDocumentSource source, DataOutputStream[] outputs,
+                                     CancellationToken cancellation,
+                                     ClusteringStats stats) throws IOException {
+        int documents = 0;
+
+        while(source.HasDocument()) {
+            if((cancellation != null) && cancellation.ShouldStopReading()) {
+                stats.SetPartial();
+                break;
+            }
+
+            DataOutputStream output = outputs[documents % outputs.length];
+            output.writeByte(ClusterWorker.DOCUMENT);
+
+            while(source.HasSentence()) {
+                output.writeByte(ClusterWorker.SENTENCE);
+
+                while(source.HasWord()) {
+                    output.writeByte(ClusterWorker.WORD);
+                    output.writeUTF(source.NextWord());
+                }
+            }
+
+            documents++;
+        }
+
+        return documents;
+    }
+
+    // Combines the summaries sent by the workers into base clusters.
+    private static List<Cluster> ReadSummaries(DataInputStream[] inputs,
+                                               DataOutputStream[] outputs, int documents,
+                                               double minWeight, ClusteringStats stats,
+                                               long start) throws IOException {
+        int count = inputs.length;
+        Vocabulary vocabulary = new Vocabulary();
+        int[] df = new int[1024];
+        double[] tfSum = new double[1024];
+        int[][] globalIds = new int[count][];
+        long treeTime = 0;
+
+        for(int worker = 0; worker < count; worker++) {
+            DataInputStream input = inputs[worker];
+
+            if(input.readInt() != ClusterWorker.MAGIC) {
+                throw new IOException("Not a clustering worker");
+            }
+
+            if(input.readUnsignedByte() != ClusterWorker.OK) {
+                throw new IOException("Clustering worker failed: " + input.readUTF());
+            }
+
+            int workerDocuments = input.readInt();
+            int sentences = input.readInt();
+            long words = input.readLong();
+            int nodes = input.readInt();
+            int edges = input.readInt();
+            long bytes = input.readLong();
+            treeTime = Math.max(treeTime, input.readLong());
+            stats.AddPartition(workerDocuments, sentences, words, nodes, edges, bytes);
+
+            // Map the words of the worker to the global identifiers
+            // and add their statistics.
+            int wordCount = input.readInt();
+            globalIds[worker] = new int[wordCount];
+
+            for(int i = 0; i < wordCount; i++) {
+                int id = vocabulary.Add(input.readUTF());
+                globalIds[worker][i] = id;
+
+                if(id >= df.length) {
+                    df = Arrays.copyOf(df, Math.max(id + 1, df.length * 2));
+                    tfSum = Arrays.copyOf(tfSum, df.length);
+                }
+
+                df[id] += input.readInt();
+                tfSum[id] += input.readDouble();
+            }
+        }
+
+        long weightStart = System.nanoTime();
+
+        for(int id = 0; id < vocabulary.Count(); id++) {
+            if(df[id] > 0) {
+                vocabulary.SetWeight(id, DocumentReader.Weight(tfSum[id], df[id], documents));
+            }
+        }
+
+        long extractStart = System.nanoTime();
+        stats.SetTimes(weightStart - start - treeTime, treeTime, extractStart - weightStart);
+
+        // Send back the weights of the words, with the weight above which
+        // a worker sends a phrase (see the class comment).
+        double threshold = Math.min(minWeight, minWeight / count);
+
+        for(int worker = 0; worker < count; worker++) {
+            outputs[worker].writeDouble(threshold);
+            outputs[worker].writeInt(globalIds[worker].length);
+
+            for(int i = 0; i < globalIds[worker].length; i++) {
+                outputs[worker].writeDouble(vocabulary.Weight(globalIds[worker][i]));
+            }
+
+            outputs[worker].flush();
+        }
+
+        int[] ranks = ClusterWorker.TextRanks(vocabulary, vocabulary.Count());
+        SummaryStream[] streams = new SummaryStream[count];
+
+        for(int worker = 0; worker < count; worker++) {
+            streams[worker] = new SummaryStream(inputs[worker], globalIds[worker],
+                                                worker, count);
+            streams[worker].Next();
+        }
+
+        // Merge the streams, taking the smallest phrase each time.
+        // The documents are created only when part of a cluster and hold no words.
+        List<Cluster> clusters = new ArrayList<Cluster>();
+        List<MergedPhrase> pending = new ArrayList<MergedPhrase>();
+        Document[] documentObjects = new Document[documents];
+        int candidates = 0;
+
+        while(true) {
+            SummaryStream first = null;
+
+            for(int worker = 0; worker < count; worker++) {
+                SummaryStream stream = streams[worker];
+
+                if((stream.length != -1) &&
+                   ((first == null) || (Compare(stream.words, stream.length,
+                                                first.words, first.length, ranks) < 0))) {
+                    first = stream;
+                }
+            }
+
+            if(first == null) {
+                break;
+            }
+
+            // Unite the documents of the workers which sent the phrase, summing
+            // its weight in their partitions as 'Cluster.ComputeWeight' does.
+            MergedPhrase phrase = new MergedPhrase(Arrays.copyOf(first.words, first.length),
+                                                   count);
+            double lengthFactor = Cluster.LengthFactor(phrase.words.length);
+            double phraseWeight = PhraseWeight(vocabulary, phrase.words);
+            double weight = 0;
+            int missing = count;
+
+            for(int worker = 0; worker < count; worker++) {
+                SummaryStream stream = streams[worker];
+
+                if((stream.length != -1) &&
+                   (Compare(stream.words, stream.length, phrase.words,
+                            phrase.words.length, ranks) == 0)) {
+                    phrase.sent[worker] = true;
+                    phrase.documents.AddAll(stream.documents);
+                    weight += stream.documents.length * lengthFactor * phraseWeight;
+                    missing--;
+                    stream.Next();
+                }
+            }
+
+            candidates++;
+
+            // Each worker which didn't send the phrase adds at most the threshold,
+            // nothing if it doesn't have the phrase. Without a threshold, it doesn't.
+            if((missing == 0) || (threshold == Double.NEGATIVE_INFINITY)) {
+                AddCluster(clusters, phrase, vocabulary, documentObjects, minWeight);
+            }
+            else if(weight + missing * Math.max(threshold, 0) > minWeight) {
+                pending.add(phrase);
+            }
+        }
+
+        // Ask the other workers for the documents of the pending phrases.
+        // All questions are sent before reading the answers.
+        int[][] localIds = new int[count][];
+
+        for(int worker = 0; worker < count; worker++) {
+            DataOutputStream output = outputs[worker];
+            localIds[worker] = LocalIds(globalIds[worker], vocabulary.Count());
+            int questions = 0;
+
+            for(int i = 0; i < pending.size(); i++) {
+                if(IsQuestion(pending.get(i), worker, localIds[worker])) {
+                    questions++;
+                }
+            }
+
+            output.writeInt(questions);
+
+            for(int i = 0; i < pending.size(); i++) {
+                MergedPhrase phrase = pending.get(i);
+
+                if(IsQuestion(phrase, worker, localIds[worker])) {
+                    output.writeInt(phrase.words.length);
+
+                    for(int j = 0; j < phrase.words.length; j++) {
+                        output.writeInt(localIds[worker][phrase.words[j]]);
+                    }
+                }
+            }
+
+            output.flush();
+        }
+
+        for(int worker = 0; worker < count; worker++) {
+            for(int i = 0; i < pending.size(); i++) {
+                MergedPhrase phrase = pending.get(i);
+
+                if(IsQuestion(phrase, worker, localIds[worker])) {
+                    for(int j = inputs[worker].readInt(); j > 0; j--) {
+                        phrase.documents.Add(inputs[worker].readInt() * count + worker);
+                    }
+                }
+            }
+        }
+
+        for(int i = 0; i < pending.size(); i++) {
+            AddCluster(clusters, pending.get(i), vocabulary, documentObjects, minWeight);
+        }
+
+        stats.SetExtract(System.nanoTime() - extractStart, candidates, clusters.size());
+        return clusters;
+    }
+
+    // Creates the cluster of the phrase and adds it
+    // if its weight is greater than the minimum one.
+    private static void AddCluster(List<Cluster> clusters, MergedPhrase merged,
+                                   Vocabulary vocabulary, Document[] documentObjects,
+                                   double minWeight) {
+        Phrase phrase = new Phrase();
+
+        for(int i = 0; i < merged.words.length; i++) {
+            phrase.Words().add(vocabulary.WordAt(merged.words[i]));
+        }
+
+        Cluster cluster = new Cluster(phrase);
+        int[] documents = merged.documents.documents;
+        Arrays.sort(documents, 0, merged.documents.count);
+
+        for(int i = 0; i < merged.documents.count; i++) {
+            int index = documents[i];
+
+            if(documentObjects[index] == null) {
+                documentObjects[index] = new Document(index);
+            }
+
+            cluster.Documents().add(documentObjects[index]);
+        }
+
+        cluster.ComputeWeight();
+
+        if(cluster.Weight() > minWeight) {
+            clusters.add(cluster);
+        }
+    }
+
+    // The sum of the weights of the words, as computed by 'Phrase.Weight'.
+    private static double PhraseWeight(Vocabulary vocabulary, int[] words) {
+        double sum = 0;
+
+        for(int i = 0; i < words.length; i++) {
+            sum += vocabulary.Weight(words[i]);
+        }
+
+        return sum;
+    }
+
+    // Compares two phrases in the order of the worker streams: by the text
+    // of their words, a phrase coming after the longer ones starting with it.
+    private static int Compare(int[] a, int aLength, int[] b, int bLength, int[] ranks) {
+        int length = Math.min(aLength, bLength);
+
+        for(int i = 0; i < length; i++) {
+            if(a[i] != b[i]) {
+                return ranks[a[i]] < ranks[b[i]] ? -1 : 1;
+            }
+        }
+
+        return bLength - aLength;
+    }
+
+    // Returns true if 'words' is longer than the first 'length'
+    // words of 'prefix' and starts with them.
+    private static boolean StartsWith(int[] words, int[] prefix, int length) {
+        if(words.length <= length) {
+            return false;
+        }
+
+        for(int i = 0; i < length; i++) {
+            if(words[i] != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Returns the sorted, distinct documents found in two sorted lists.
+    private static int[] Union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+
+        while((i < a.length) || (j < b.length)) {
+            int value;
+
+            if((j == b.length) || ((i < a.length) && (a[i] <= b[j]))) {
+                value = a[i++];
+            }
+            else {
+                value = b[j++];
+            }
+
+            if((count == 0) || (result[count - 1] != value)) {
+                result[count++] = value;
+            }
+        }
+
+        return count < result.length ? Arrays.copyOf(result, count) : result;
+    }
+
+    // The identifier used by a worker for each global word, -1 if it doesn't have it.
+    private static int[] LocalIds(int[] globalIds, int wordCount) {
+        int[] localIds = new int[wordCount];
+        Arrays.fill(localIds, -1);
+
+        for(int i = 0; i < globalIds.length; i++) {
+            localIds[globalIds[i]] = i;
+        }
+
+        return localIds;
+    }
+
+    // Returns true if the worker must be asked for the documents of the phrase:
+    // it didn't send it and it has all its words.
+    private static boolean IsQuestion(MergedPhrase phrase, int worker, int[] localIds) {
+        if(phrase.sent[worker]) {
+            return false;
+        }
+
+        for(int i = 0; i < phrase.words.length; i++) {
+            if(localIds[phrase.words[i]] == -1) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -32,13 +32,17 @@
 
 package Clustering;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 
 public final class Document {
     private ArrayList<Word> words_;
     private LinkedHashMap<Word, Integer> wordCount_;
     private int index_; // The index of the document in the source.
+    private Document original_;           // Set if the document is a near-duplicate.
+    private ArrayList<Document> aliases_; // The near-duplicates, null if none.
 
     /*
      * Constructors.
@@ -98,6 +102,25 @@ public final class Document {
 
     public int Index() { return index_; }
 
+    // The document of which this one is a near-duplicate, null if it's not one.
+    // The aliases are not inserted in the suffix tree, the original being found
+    // in the clusters instead (see 'DocumentReader.SetNearDuplicateDistance').
+    public Document Original() { return original_; }
+
+    public List<Document> Aliases() {
+        if(aliases_ == null) {
+            return Collections.<Document>emptyList();
+        }
+
+        return aliases_;
+    }
+
+    // The number of documents represented by the document:
+    // the document itself and its near-duplicates.
+    public int Multiplicity() {
+        return aliases_ != null ? aliases_.size() + 1 : 1;
+    }
+
     public boolean ContainsWord(Word word) {
         assert(word != null);
         // ------------------------------------------------
@@ -113,8 +136,29 @@ public final class Document {
         return words_.iterator();
     }
 
+    // Iterates over the words of the document, each word only once.
+    public Iterator<Word> DistinctWords() {
+        return wordCount_.keySet().iterator();
+    }
+
     @Override
     public String toString() {
         return "Words: " + Integer.toString(words_.size());
     }
+
+    /*
+     * Package methods.
+     */
+    // Marks the specified document as a near-duplicate of this one.
+    void AddAlias(Document alias) {
+        assert(alias != null);
+        assert(original_ == null);
+        // ------------------------------------------------
+        if(aliases_ == null) {
+            aliases_ = new ArrayList<Document>(2);
+        }
+
+        aliases_.add(alias);
+        alias.original_ = this;
+    }
 }
@@ -0,0 +1,151 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.util.ArrayList;
+import java.util.List;
+
+// Maps each document to the clusters containing it, for the clusters
+// of a clustering run. The positions of the clusters are kept in a single
+// array, grouped by document (the documents being identified by their
+// index), so a lookup doesn't scan the document lists of the clusters.
+// The near-duplicates of a document have the same clusters as the document.
+public final class DocumentClusterIndex {
+    /*
+    * Private members.
+    */
+    private List<Cluster> clusters_;
+    private int[] offsets_;  // The clusters of document 'd' are found
+    private int[] entries_;  // at 'offsets_[d]' ... 'offsets_[d + 1] - 1'.
+
+    /*
+    * Constructors.
+    */
+    public DocumentClusterIndex(List<Cluster> clusters) {
+        assert(clusters != null);
+        // ------------------------------------------------
+        clusters_ = clusters;
+        int documentCount = 0;
+        int entryCount = 0;
+
+        for(int i = 0; i < clusters.size(); i++) {
+            List<Document> documents = clusters.get(i).Documents();
+
+            for(int j = 0; j < documents.size(); j++) {
+                Document document = documents.get(j);
+                List<Document> aliases = document.Aliases();
+                entryCount += 1 + aliases.size();
+                documentCount = Math.max(documentCount, document.Index() + 1);
+
+                for(int k = 0; k < aliases.size(); k++) {
+                    documentCount = Math.max(documentCount, aliases.get(k).Index() + 1);
+                }
+            }
+        }
+
+        // Count the clusters of each document, then place
+        // the clusters after the ones of the previous documents.
+        offsets_ = new int[documentCount + 1];
+        entries_ = new int[entryCount];
+
+        for(int i = 0; i < clusters.size(); i++) {
+            List<Document> documents = clusters.get(i).Documents();
+
+            for(int j = 0; j < documents.size(); j++) {
+                Document document = documents.get(j);
+                List<Document> aliases = document.Aliases();
+                offsets_[document.Index() + 1]++;
+
+                for(int k = 0; k < aliases.size(); k++) {
+                    offsets_[aliases.get(k).Index() + 1]++;
+                }
+            }
+        }
+
+        for(int i = 0; i < documentCount; i++) {
+            offsets_[i + 1] += offsets_[i];
+        }
+
+        int[] next = new int[documentCount];
+        System.arraycopy(offsets_, 0, next, 0, documentCount);
+
+        for(int i = 0; i < clusters.size(); i++) {
+            List<Document> documents = clusters.get(i).Documents();
+
+            for(int j = 0; j < documents.size(); j++) {
+                Document document = documents.get(j);
+                List<Document> aliases = document.Aliases();
+                entries_[next[document.Index()]++] = i;
+
+                for(int k = 0; k < aliases.size(); k++) {
+                    entries_[next[aliases.get(k).Index()]++] = i;
+                }
+            }
+        }
+    }
+
+    /*
+    * Public methods.
+    */
+    // The number of clusters containing the document with the specified index.
+    public int ClusterCount(int document) {
+        if((document < 0) || (document >= offsets_.length - 1)) {
+            return 0;
+        }
+
+        return offsets_[document + 1] - offsets_[document];
+    }
+
+    // The position in the cluster list of the i-th cluster containing the document.
+    public int ClusterAt(int document, int i) {
+        assert(i >= 0 && i < ClusterCount(document));
+        // ------------------------------------------------
+        return entries_[offsets_[document] + i];
+    }
+
+    // Returns the clusters containing the document with the specified index,
+    // in the order in which they appear in the cluster list.
+    public List<Cluster> ClustersOf(int document) {
+        int count = ClusterCount(document);
+        List<Cluster> clusters = new ArrayList<Cluster>(count);
+
+        for(int i = 0; i < count; i++) {
+            clusters.add(clusters_.get(entries_[offsets_[document] + i]));
+        }
+
+        return clusters;
+    }
+
+    public List<Cluster> ClustersOf(Document document) {
+        return ClustersOf(document.Index());
+    }
+}
@@ -32,72 +32,356 @@
 
 package Clustering;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 
 public final class DocumentReader {
-    // Each sentence must end in an unique word
-    // to be inserted properliy in the suffix tree.
-    // For example, $0, $1, ... $100, ...
-    private static final String END_MARKER = "#";
+    // Approximate sizes used for estimates: a document with its lists,
+    // a word of a document (reference + share of the counting map).
+    private static final int DOCUMENT_BYTES = 160;
+    private static final int DOCUMENT_WORD_BYTES = 28;
+    // The tree and its frozen copy grow by about two nodes,
+    // two edges and a hash slot for each inserted word.
+    private static final int TREE_WORD_BYTES = 128;
+    // The budget is checked after this many words of a sentence.
+    private static final int BUDGET_CHECK_MASK = 1023;
 
     /*
     * Private members.
     */
     private IDocumentSource source_;
-    private LinkedHashMap<String, Word> words_; // Contains all the found words.
-    private HashMap<Word, Integer> wordDf_;     // The number of documents in which a word has been found.
+    private Vocabulary vocabulary_; // Contains all the found words and their statistics.
     private ArrayList<Document> documents_;
     private int phraseCount_;
     private SuffixTree tree_;
+    private FrozenSuffixTree frozenTree_; // Created after the reading, when needed.
+    private FrozenSuffixTree spareTree_;  // The previous copy, its arrays are reused.
+    private long wordCount_;  // The number of words read (without the end markers).
+    private long readTime_;   // Nanoseconds spent reading, without the tree.
+    private long treeTime_;   // Nanoseconds spent inserting sentences in the tree.
+    private long weightTime_; // Nanoseconds spent computing the weights.
+    private MemoryBudget budget_;
+    private int sourceIndex_;       // The index of the next document in the source.
+    private int skippedDocuments_;  // Documents not read because of the budget.
+    private int sampleInterval_;    // Only each n-th document is read.
+    private long nextSampleStep_;   // The estimate at which the interval doubles.
+    private boolean stopped_;       // The reading was stopped by the budget.
+    private CancellationToken cancellation_;
+    private boolean cancelled_;     // The reading was stopped by the token.
+    private ProgressReporter progress_;
+    private double[] tfSum_;        // Reused by 'ComputeWeights'.
+    private double[] newTfSum_;     // The statistics of the documents
+    private int[] newDf_;           // not added to the vocabulary yet.
+    private int countedDocuments_;  // The documents added to the vocabulary.
+    private DuplicateDetector duplicates_; // Null if the duplicates are kept.
+    private int duplicateCount_;    // Documents found to be near-duplicates.
+    private int[] sentenceEnds_;    // The sentences of the document not inserted yet.
+    private SentenceTable sentences_; // Null if each sentence is inserted.
+    private int sentenceCount_;
 
     /*
      * Constructors.
      */
     public DocumentReader(IDocumentSource source) {
+        this(source, new Vocabulary());
+    }
+
+    // The vocabulary can be shared by readers running in parallel, in which
+    // case the weights are computed over the documents of all readers
+    // (see 'Vocabulary.AddStatistics'). The weights are final after
+    // all readers finished reading.
+    public DocumentReader(IDocumentSource source, Vocabulary vocabulary) {
+        assert(vocabulary != null);
+        // ------------------------------------------------
         source_ = source;
-        words_ = new LinkedHashMap<String, Word>();
+        vocabulary_ = vocabulary;
         documents_ = new ArrayList<Document>();
-        wordDf_ = new HashMap<Word, Integer>();
         tree_ = new SuffixTree();
+        sampleInterval_ = 1;
     }
 
     /*
      * Public methods.
      */
+    // Prepares the reader for a new set of documents, keeping the storage
+    // allocated for the previous ones. The vocabulary is reset too, so it
+    // must not be shared with other readers, and the documents, clusters
+    // and frozen tree obtained before must no longer be used.
+    public void Reset(IDocumentSource source) {
+        source_ = source;
+        vocabulary_.Reset();
+        documents_.clear();
+        tree_.Reset();
+
+        if(frozenTree_ != null) {
+            frozenTree_.Clear();
+            spareTree_ = frozenTree_;
+            frozenTree_ = null;
+        }
+
+        phraseCount_ = 0;
+        wordCount_ = 0;
+        readTime_ = treeTime_ = weightTime_ = 0;
+        sourceIndex_ = 0;
+        skippedDocuments_ = 0;
+        sampleInterval_ = 1;
+        nextSampleStep_ = 0;
+        stopped_ = false;
+        cancelled_ = false;
+        duplicateCount_ = 0;
+        countedDocuments_ = 0;
+
+        if(duplicates_ != null) {
+            duplicates_.Reset();
+        }
+
+        if(sentences_ != null) {
+            sentences_.Reset();
+        }
+    }
+
     // Reads all documents from the specified source.
     public void Read() {
-        while(source_.HasDocument()) {
-            ReadDocument(source_);
+        long start = System.nanoTime();
+        frozenTree_ = null;
+
+        while(!stopped_ && !CheckCancellation() && source_.HasDocument()) {
+            if((sourceIndex_ % sampleInterval_) == 0) {
+                ReadDocument(source_);
+            }
+            else {
+                SkipDocument(source_);
+            }
+
+            sourceIndex_++;
+        }
+
+        long end = System.nanoTime();
+        readTime_ = end - start - treeTime_;
+
+        if(progress_ != null) {
+            progress_.SetPhase(ClusteringProgress.Phase.WEIGHTS);
         }
 
         ComputeWeights();
+        weightTime_ = System.nanoTime() - end;
     }
 
     public List<Cluster> GetBaseClusters(double minWeight) {
-        return tree_.GetBaseClusters(minWeight);
+        return FrozenTree().GetBaseClusters(minWeight);
+    }
+
+    // A read-only copy of the tree laid out for fast traversals,
+    // used for all queries. Created the first time it's needed, in the arrays
+    // of the copy made before the last 'Reset', so batches don't allocate one each.
+    public FrozenSuffixTree FrozenTree() {
+        if(frozenTree_ == null) {
+            frozenTree_ = spareTree_ != null ? tree_.Freeze(spareTree_) : tree_.Freeze();
+            spareTree_ = null;
+        }
+
+        return frozenTree_;
+    }
+
+    // Returns the sorted indices of the documents containing the phrase made
+    // of the specified words. The words must be given as returned by the source
+    // (after filtering and stemming, for example).
+    public int[] FindDocuments(String... words) {
+        List<Word> phrase = new ArrayList<Word>(words.length);
+
+        for(int i = 0; i < words.length; i++) {
+            int id = vocabulary_.Find(words[i]);
+
+            if(id == -1) {
+                return new int[0];
+            }
+
+            phrase.add(vocabulary_.WordAt(id));
+        }
+
+        int[] documents = FrozenTree().PhraseDocuments(phrase);
+        return duplicateCount_ > 0 ? AddAliases(documents) : documents;
     }
 
     public List<Document> Documents() { return documents_; }
     public SuffixTree Tree() { return tree_; }
+    public Vocabulary Vocabulary() { return vocabulary_; }
+
+    public long WordCount() { return wordCount_; }
+    public int SentenceCount() { return phraseCount_; }
+    public long ReadTime() { return readTime_; }
+    public long TreeTime() { return treeTime_; }
+    public long WeightTime() { return weightTime_; }
+
+    // Limits the phrases found in the tree to the specified number of words,
+    // zero removing the limit (see 'SuffixTree.SetMaxDepth'). The tree is much
+    // smaller for documents with long repeated sentences, but phrase queries
+    // for more words can miss some documents. Must be called before 'Read'.
+    public void SetMaxPhraseLength(int value) { tree_.SetMaxDepth(value); }
+    public int MaxPhraseLength() { return tree_.MaxDepth(); }
+
+    // Enables the search of near-duplicate documents, whose fingerprints
+    // differ in at most the specified number of bits (3 is a good choice),
+    // a negative value disabling it. Only the first two documents of a group
+    // of near-duplicates are inserted in the tree, the next ones becoming
+    // aliases of the first (see 'Document.Aliases'); the clusters count the
+    // aliases of their documents. Must be called before 'Read'.
+    public void SetNearDuplicateDistance(int value) {
+        assert(value <= DuplicateDetector.MAX_DISTANCE);
+        // ------------------------------------------------
+        if(value < 0) {
+            duplicates_ = null;
+        }
+        else if((duplicates_ == null) || (duplicates_.MaxDistance() != value)) {
+            duplicates_ = new DuplicateDetector(value);
+            sentenceEnds_ = new int[16];
+        }
+    }
+
+    public int NearDuplicateDistance() {
+        return duplicates_ != null ? duplicates_.MaxDistance() : -1;
+    }
+
+    // The number of documents found to be near-duplicates.
+    public int DuplicateDocuments() { return duplicateCount_; }
+
+    // If enabled, a sentence having the same words as one read before is not
+    // inserted in the tree again, the document being added to the owners
+    // of the first one instead. The tree grows with the distinct sentences,
+    // the base clusters being the same. Must be called before 'Read'.
+    public void SetShareSentences(boolean value) {
+        if(!value) {
+            sentences_ = null;
+        }
+        else if(sentences_ == null) {
+            sentences_ = new SentenceTable();
+        }
+
+        tree_.SetSentences(sentences_);
+    }
+
+    public boolean ShareSentences() { return sentences_ != null; }
+
+    // The number of sentences not inserted because they were read before.
+    public int DuplicateSentences() {
+        return sentences_ != null ? sentences_.Duplicates() : 0;
+    }
+
+    // Sets the limit for the memory used while reading.
+    // Must be called before 'Read'.
+    public void SetMemoryBudget(MemoryBudget value) { budget_ = value; }
+    public MemoryBudget MemoryBudget() { return budget_; }
+
+    // The number of documents skipped while sampling.
+    public int SkippedDocuments() { return skippedDocuments_; }
+
+    // Returns true if the reading was stopped before
+    // the end of the source because of the memory budget.
+    public boolean Truncated() { return stopped_; }
+
+    // Sets the token checked before each sentence is read. When it's
+    // cancelled the reading stops, keeping the sentences read so far.
+    public void SetCancellation(CancellationToken value) { cancellation_ = value; }
+
+    void SetProgress(ProgressReporter value) { progress_ = value; }
+
+    // Returns true if the reading was stopped by the cancellation token.
+    public boolean Cancelled() { return cancelled_; }
+
+    // An estimate of the memory used by the documents, the vocabulary,
+    // the suffix tree and its frozen copy, in bytes. Until the copy is made
+    // (see 'FrozenTree'), its estimated size is counted instead.
+    public long EstimatedBytes() {
+        return (long)documents_.size() * DOCUMENT_BYTES +
+               (wordCount_ + phraseCount_) * DOCUMENT_WORD_BYTES +
+               vocabulary_.EstimatedBytes() + tree_.EstimatedBytes() +
+               (frozenTree_ != null ? frozenTree_.EstimatedBytes() : tree_.FrozenBytes()) +
+               (sentences_ != null ? sentences_.EstimatedBytes() : 0);
+    }
 
     /*
      * Private methods.
      */
     // Reads all sentences from a document and updates the statistics.
+    // The index of the document is its position in the source.
     private Document ReadDocument(IDocumentSource source) {
-        Document doc = new Document(documents_.size());
+        Document doc = new Document(sourceIndex_);
 
-        while(source.HasSentence()) {
+        while(!stopped_ && !CheckCancellation() && source.HasSentence()) {
             ReadSentence(doc, source);
+            CheckBudget(0);
+
+            if(progress_ != null) {
+                progress_.Tick();
+            }
+        }
+
+        if(duplicates_ != null) {
+            InsertUnlessDuplicate(doc);
         }
 
         documents_.add(doc);
         return doc;
     }
 
+    // Reads a document without storing it.
+    private void SkipDocument(IDocumentSource source) {
+        while(source.HasSentence()) {
+            while(source.HasWord()) {
+                source.NextWord();
+            }
+        }
+
+        skippedDocuments_++;
+    }
+
+    // Returns true if the reading must stop because of the cancellation token.
+    // The tree is modified only at sentence boundaries, so it stays valid.
+    private boolean CheckCancellation() {
+        if(!cancelled_ && (cancellation_ != null) && cancellation_.ShouldStopReading()) {
+            cancelled_ = true;
+        }
+
+        return cancelled_;
+    }
+
+    // Applies the policy of the memory budget if the estimated
+    // memory is near the limit. 'pendingWords' are the words
+    // of the sentence being read, not inserted in the tree yet.
+    private void CheckBudget(int pendingWords) {
+        if(budget_ == null) {
+            return;
+        }
+
+        long bytes = EstimatedBytes() + (long)pendingWords * TREE_WORD_BYTES;
+
+        if(bytes < budget_.ThresholdBytes()) {
+            return;
+        }
+
+        switch(budget_.Policy()) {
+            case REJECT: {
+                throw new MemoryBudgetException(bytes, budget_.Limit());
+            }
+            case TRUNCATE: {
+                stopped_ = true;
+                break;
+            }
+            case SAMPLE: {
+                if(bytes >= budget_.Limit()) {
+                    stopped_ = true;
+                }
+                else if(bytes >= nextSampleStep_) {
+                    // Read half as many documents from now on.
+                    sampleInterval_ *= 2;
+                    nextSampleStep_ = bytes + (budget_.Limit() - bytes) / 2;
+                }
+                break;
+            }
+        }
+    }
+
     // Reads and parses a sentence from the specified document.
     private void ReadSentence(Document doc, IDocumentSource source) {
         int startIndex = doc.Count(); // The number of words before the sentence.
@@ -105,77 +389,175 @@ public final class DocumentReader {
 
         while(source.HasWord()) {
             // Obtain the word, then update the document and the statistics.
-            String wordStr = source.NextWord();
-            Word word = words_.get(wordStr);
-            
-            if(word != null) {
-                // The word has been found before (possible in other documents too).
-                if(!doc.ContainsWord(word)) {
-                    // This is the first time the word has been found
-                    // in the current docuemtn, add an entry for it.
-                    int newCount = wordDf_.get(word) + 1;
-                    wordDf_.put(word, newCount);
-                }
-            }
-            else {
-                // The first time when the word is found
-                // in any docuemtn, add an entry for it.
-                word = new Word(wordStr);
-                words_.put(wordStr, word);
-                wordDf_.put(word, 1);
+            int id = vocabulary_.Add(source.NextWord());
+            Word word = vocabulary_.WordAt(id);
+
+            if(!doc.ContainsWord(word)) {
+                // This is the first time the word has been found
+                // in the current document, count it.
+                vocabulary_.IncrementDf(id);
             }
 
             doc.AddWord(word);
+            wordCount_++;
+
+            // A long sentence can exceed the budget before it ends;
+            // if the reading stops, the words read so far form the sentence.
+            if((budget_ != null) && (((doc.Count() - startIndex) & BUDGET_CHECK_MASK) == 0)) {
+                CheckBudget(doc.Count() - startIndex);
+
+                if(stopped_) {
+                    break;
+                }
+            }
         }
 
         // Add a sentence end marker (required by the suffix tree).
-        String marker = END_MARKER + Integer.toString(phraseCount_++);
-        Word markerWord = new Word(marker);
-        words_.put(marker, markerWord);
-        wordDf_.put(markerWord, 1);
-        doc.AddWord(markerWord);
+        // Each sentence must end in an unique word
+        // to be inserted properly in the suffix tree.
+        doc.AddWord(Word.Marker(phraseCount_++));
 
-        // Add the read sentence to the suffix tree.
+        // Add the read sentence to the suffix tree. If the duplicates
+        // are searched, this is done after the whole document is read.
         endIndex = doc.Count();
-        tree_.AddSentence(doc, startIndex, endIndex);
+
+        if(duplicates_ != null) {
+            if(sentenceCount_ == sentenceEnds_.length) {
+                sentenceEnds_ = Arrays.copyOf(sentenceEnds_, sentenceCount_ * 2);
+            }
+
+            sentenceEnds_[sentenceCount_++] = endIndex;
+            return;
+        }
+
+        long start = System.nanoTime();
+        InsertSentence(doc, startIndex, endIndex);
+        treeTime_ += System.nanoTime() - start;
     }
 
-    // Computes the term frequence average for the specified word
-    // for all documents in which it is found.
-    private double AverageTf(Word word) {
-        double sum = 0;
-        int count = documents_.size();
-        
-        for(int i = 0; i < count; i++) {
-            sum += documents_.get(i).TermFrequency(word);
+    // Inserts the sentence in the tree, unless the sentences are shared
+    // and one with the same words was inserted before.
+    private void InsertSentence(Document doc, int startIndex, int endIndex) {
+        if((sentences_ == null) || !sentences_.FindOrAdd(doc, startIndex, endIndex - 1)) {
+            tree_.AddSentence(doc, startIndex, endIndex);
+        }
+    }
+
+    // Inserts the sentences of the document in the tree, unless it's
+    // a near-duplicate of documents read before, becoming an alias of the
+    // first one. The second document of a group is inserted too, so the
+    // phrases found only in the group are still repeated and form clusters.
+    // The aliases are still used to compute the weights of the words.
+    private void InsertUnlessDuplicate(Document doc) {
+        int group = duplicates_.FindOrAdd(doc);
+
+        if((group != -1) && (duplicates_.GroupSize(group) > 2)) {
+            duplicates_.FirstDocument(group).AddAlias(doc);
+            duplicateCount_++;
+        }
+        else {
+            long start = System.nanoTime();
+            int startIndex = 0;
+
+            for(int i = 0; i < sentenceCount_; i++) {
+                InsertSentence(doc, startIndex, sentenceEnds_[i]);
+                startIndex = sentenceEnds_[i];
+            }
+
+            treeTime_ += System.nanoTime() - start;
         }
 
-        // It is guaranteed that the word appears at least once.
-        return sum / (double)wordDf_.get(word);
+        sentenceCount_ = 0;
+    }
+
+    // Adds the indices of the aliases of the documents
+    // to the sorted list of document indices.
+    private int[] AddAliases(int[] documents) {
+        int[] all = Arrays.copyOf(documents, documents.length + duplicateCount_);
+        int count = documents.length;
+
+        for(int i = 0; i < documents_.size(); i++) {
+            Document original = documents_.get(i).Original();
+
+            if((original != null) && (Arrays.binarySearch(documents, original.Index()) >= 0)) {
+                all[count++] = documents_.get(i).Index();
+            }
+        }
+
+        all = Arrays.copyOf(all, count);
+        Arrays.sort(all);
+        return all;
     }
 
     // Computes the weight of each read word.
-    private void ComputeWeights() {
+    // Called by 'Read' after all documents have been read.
+    public void ComputeWeights() {
         // The importante is equal to the product between the number of times
-        // the word appears in the document (term frequence) with 
-        // the inverted document frequence. It is presumed that the term frequence
-        // has been already computed and is availalbe in the 'Weight' field
-        // of each word, and the term frequence must be found in the 'wordDf' map.
-        Iterator<Word> wordIt = words_.values().iterator();
+        // the word appears in the document (term frequence) with
+        // the inverted document frequence. The term frequences are summed
+        // in a single pass over the documents, each document contributing
+        // only to the words it contains. The statistics of the documents not
+        // counted before are added to the vocabulary, which computes the
+        // weights over the documents of all readers sharing it.
         int docs = documents_.size();
-        
+
         if(docs == 0) {
             return;
         }
-        
-        while(wordIt.hasNext()) {
-            Word word = wordIt.next();
-            double df = (double)wordDf_.get(word);
 
-            // Compute the weight ('df' guarantted greater than zero).
-            double weight = (1.0 + Math.log10(AverageTf(word))) *
-                            Math.log10(1.0 + ((double)docs / df));
-            word.SetWeight(weight);
+        int count = vocabulary_.Count();
+
+        if(tfSum_ == null || tfSum_.length < count) {
+            tfSum_ = new double[count];
+            newTfSum_ = new double[count];
+            newDf_ = new int[count];
+        }
+        else {
+            Arrays.fill(tfSum_, 0, count, 0);
+            Arrays.fill(newTfSum_, 0, count, 0);
+            Arrays.fill(newDf_, 0, count, 0);
+        }
+
+        double[] tfSum = tfSum_;
+
+        for(int i = 0; i < docs; i++) {
+            Document doc = documents_.get(i);
+            Iterator<Word> wordIt = doc.DistinctWords();
+            boolean counted = i < countedDocuments_;
+
+            while(wordIt.hasNext()) {
+                Word word = wordIt.next();
+
+                if(!word.IsMarker()) {
+                    double tf = doc.TermFrequency(word);
+                    tfSum[word.Id()] += tf;
+
+                    if(!counted) {
+                        newTfSum_[word.Id()] += tf;
+                        newDf_[word.Id()]++;
+                    }
+                }
+            }
         }
+
+        vocabulary_.AddStatistics(newTfSum_, newDf_, count, docs - countedDocuments_);
+        countedDocuments_ = docs;
+
+        // The frozen tree keeps sums of the old weights.
+        frozenTree_ = null;
+    }
+
+    // The weight of a word found 'df' times in 'docs' documents, the sum of its
+    // term frequences over these documents being 'tfSum'. Also used to combine
+    // statistics counted separately (see 'DistributedClusterer').
+    static double Weight(double tfSum, int df, int docs) {
+        return (1.0 + Math.log10(tfSum / df)) *
+               Math.log10(1.0 + ((double)docs / df));
+    }
+
+    // The sum of the term frequences of the word, as computed by the last call
+    // to 'ComputeWeights' (only for the words found in the documents of the reader).
+    double TermFrequencySum(int id) {
+        return tfSum_[id];
     }
 }
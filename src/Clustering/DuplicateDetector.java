@@ -0,0 +1,271 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.util.Arrays;
+import java.util.Iterator;
+
+// Finds the documents which are near-duplicates of documents seen before,
+// using the SimHash fingerprint of their shingles (the sequences of 3 words
+// found inside a sentence; a shorter sentence is a single shingle).
+// Two documents are near-duplicates if their 64-bit fingerprints
+// differ in at most 'maxDistance' bits.
+//
+// The fingerprints are split in 'maxDistance + 1' bands. Two fingerprints
+// within the distance have at least one identical band, so only those
+// sharing a band are compared. Each band has a chained hash table,
+// the chains being kept in arrays indexed by the fingerprint number.
+// Only the first document of a group and its size are kept; the reader
+// inserts the first two documents of a group in the tree and makes the
+// next ones aliases of the first (see 'DocumentReader.SetNearDuplicateDistance').
+final class DuplicateDetector {
+    public static final int MAX_DISTANCE = 15;
+    private static final int SHINGLE_WORDS = 3;
+    private static final int INITIAL_BITS = 10;
+
+    /*
+    * Private members.
+    */
+    private int maxDistance_;
+    private int bandCount_;
+    private int bandWidth_;     // The bits in each band, except the last one.
+    private long[] fingerprints_;
+    private Document[] documents_; // The first document of each group.
+    private int[] groupSizes_;
+    private int count_;
+    private int[][] heads_;     // For each band, 'fingerprint + 1', zero if empty.
+    private int[][] next_;      // For each band, the next fingerprint in the chain.
+    private int tableBits_;
+    private int[] bitCounts_;   // Reused by 'Fingerprint'.
+
+    /*
+    * Constructors.
+    */
+    public DuplicateDetector(int maxDistance) {
+        assert(maxDistance >= 0 && maxDistance <= MAX_DISTANCE);
+        // ------------------------------------------------
+        maxDistance_ = maxDistance;
+        bandCount_ = maxDistance + 1;
+        bandWidth_ = 64 / bandCount_;
+        tableBits_ = INITIAL_BITS;
+        fingerprints_ = new long[1 << tableBits_];
+        documents_ = new Document[1 << tableBits_];
+        groupSizes_ = new int[1 << tableBits_];
+        heads_ = new int[bandCount_][1 << tableBits_];
+        next_ = new int[bandCount_][1 << tableBits_];
+        bitCounts_ = new int[64];
+    }
+
+    /*
+    * Public methods.
+    */
+    public int MaxDistance() { return maxDistance_; }
+
+    // Returns the group of the documents seen before of which the specified
+    // one is a near-duplicate, the document being added to it. If there is
+    // none, -1 is returned and a new group is started by the document.
+    // A document without words is never a duplicate.
+    public int FindOrAdd(Document document) {
+        assert(document != null);
+        // ------------------------------------------------
+        long fingerprint = Fingerprint(document);
+
+        if(fingerprint == 0) {
+            return -1;
+        }
+
+        for(int band = 0; band < bandCount_; band++) {
+            long value = Band(fingerprint, band);
+
+            for(int i = heads_[band][Slot(value)] - 1; i >= 0; i = next_[band][i]) {
+                if((Band(fingerprints_[i], band) == value) &&
+                   (Long.bitCount(fingerprints_[i] ^ fingerprint) <= maxDistance_)) {
+                    groupSizes_[i]++;
+                    return i;
+                }
+            }
+        }
+
+        Add(fingerprint, document);
+        return -1;
+    }
+
+    // The first document of the group.
+    public Document FirstDocument(int group) { return documents_[group]; }
+
+    // The number of documents of the group found so far.
+    public int GroupSize(int group) { return groupSizes_[group]; }
+
+    // The number of groups.
+    public int Count() { return count_; }
+
+    // Removes all documents, keeping the allocated arrays.
+    public void Reset() {
+        Arrays.fill(documents_, 0, count_, null);
+
+        for(int band = 0; band < bandCount_; band++) {
+            Arrays.fill(heads_[band], 0);
+        }
+
+        count_ = 0;
+    }
+
+    // The SimHash of the shingles of the document: each bit is set if most
+    // of the shingle hashes have it set. Zero if the document has no words.
+    public long Fingerprint(Document document) {
+        int[] counts = bitCounts_;
+        Arrays.fill(counts, 0);
+        long[] window = new long[SHINGLE_WORDS];
+        int length = 0; // The words of the sentence in the window.
+        boolean empty = true;
+        Iterator<Word> wordIt = document.Iterator();
+
+        while(wordIt.hasNext()) {
+            Word word = wordIt.next();
+
+            if(word.IsMarker()) {
+                if((length > 0) && (length < SHINGLE_WORDS)) {
+                    // A short sentence, use it whole.
+                    AddShingle(counts, window, length);
+                }
+
+                length = 0;
+                continue;
+            }
+
+            if(length < SHINGLE_WORDS) {
+                window[length++] = word.Id();
+            }
+            else {
+                System.arraycopy(window, 1, window, 0, SHINGLE_WORDS - 1);
+                window[SHINGLE_WORDS - 1] = word.Id();
+            }
+
+            if(length == SHINGLE_WORDS) {
+                AddShingle(counts, window, length);
+            }
+
+            empty = false;
+        }
+
+        if((length > 0) && (length < SHINGLE_WORDS)) {
+            AddShingle(counts, window, length);
+        }
+
+        if(empty) {
+            return 0;
+        }
+
+        long fingerprint = 0;
+
+        for(int bit = 0; bit < 64; bit++) {
+            if(counts[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+
+        // Zero marks the documents without words.
+        return fingerprint != 0 ? fingerprint : 1;
+    }
+
+    /*
+    * Private methods.
+    */
+    private static void AddShingle(int[] counts, long[] window, int length) {
+        long hash = length;
+
+        for(int i = 0; i < length; i++) {
+            hash = Mix(hash * 0x9E3779B97F4A7C15L + window[i]);
+        }
+
+        for(int bit = 0; bit < 64; bit++) {
+            counts[bit] += (int)((hash >>> bit) & 1) * 2 - 1;
+        }
+    }
+
+    // The finalizer of MurmurHash3, each input bit affects all output bits.
+    private static long Mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    // The bits of the band, the last band having also the remaining bits.
+    private long Band(long fingerprint, int band) {
+        int shift = band * bandWidth_;
+        int width = (band == bandCount_ - 1) ? 64 - shift : bandWidth_;
+        return width == 64 ? fingerprint : (fingerprint >>> shift) & ((1L << width) - 1);
+    }
+
+    private int Slot(long value) {
+        return (int)(Mix(value) >>> (64 - tableBits_));
+    }
+
+    private void Add(long fingerprint, Document document) {
+        if(count_ == fingerprints_.length) {
+            Grow();
+        }
+
+        int index = count_++;
+        fingerprints_[index] = fingerprint;
+        documents_[index] = document;
+        groupSizes_[index] = 1;
+        Link(index);
+    }
+
+    private void Link(int index) {
+        for(int band = 0; band < bandCount_; band++) {
+            int slot = Slot(Band(fingerprints_[index], band));
+            next_[band][index] = heads_[band][slot] - 1;
+            heads_[band][slot] = index + 1;
+        }
+    }
+
+    // Doubles the arrays and the tables, which have as many slots as
+    // there are fingerprints, then links the fingerprints again.
+    private void Grow() {
+        tableBits_++;
+        int capacity = 1 << tableBits_;
+        fingerprints_ = Arrays.copyOf(fingerprints_, capacity);
+        documents_ = Arrays.copyOf(documents_, capacity);
+        groupSizes_ = Arrays.copyOf(groupSizes_, capacity);
+        heads_ = new int[bandCount_][capacity];
+        next_ = new int[bandCount_][capacity];
+
+        for(int i = 0; i < count_; i++) {
+            Link(i);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+
+// A source which passes the words read from another source
+// through a filter; the rejected words are skipped.
+public final class FilteredSource implements IDocumentSource {
+    private IDocumentSource source_;
+    private TokenFilter filter_;
+    private String next_; // The next accepted word, if already read.
+
+    /*
+    * Constructors.
+    */
+    public FilteredSource(IDocumentSource source, TokenFilter filter) {
+        assert(source != null);
+        assert(filter != null);
+        // ------------------------------------------------
+        source_ = source;
+        filter_ = filter;
+    }
+
+    /*
+    * Public methods.
+    */
+    public boolean HasDocument() { return source_.HasDocument(); }
+    public boolean HasSentence() { return source_.HasSentence(); }
+
+    public boolean HasWord() {
+        // Read ahead until a word is accepted by the filter.
+        while(next_ == null) {
+            if(!source_.HasWord()) {
+                return false;
+            }
+
+            next_ = filter_.Apply(source_.NextWord());
+        }
+
+        return true;
+    }
+
+    public String NextWord() {
+        String word = next_;
+        next_ = null;
+        return word;
+    }
+}
@@ -0,0 +1,732 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A read-only copy of a suffix tree laid out for fast traversals.
+// The internal nodes are numbered in depth-first (pre)order, the root
+// being node 0, and the edges leaving a node are stored contiguously,
+// sorted by the identifier of their first word. A depth-first walk
+// reads the arrays almost sequentially, and the edge starting with a word
+// is found with a binary search. The leaves are not stored, an edge
+// leading to a leaf has 'LEAF' as its next node.
+//
+// The weights of the words are summed when the tree is frozen: entry 'i'
+// of the prefix sums is the weight of all words of the tree before word 'i',
+// the sums running over the sentences one after another. The weight of any
+// range of words, and so of any phrase, is the difference of two entries.
+// The difference loses the low bits of the running sum: with 10^8 words
+// weighing about 10 the sum is near 10^9 and its last bit about 10^-7,
+// so a phrase weight is exact only to about 10^-7 (instead of 10^-15
+// when its words are summed directly). This is far below the differences
+// between the weights compared by the clustering, but the same phrase
+// at different positions may not get the exact same weight.
+//
+// The documents containing the phrase of each node are kept as sorted
+// lists of document indices, each index stored as the variable-length
+// difference from the previous one. The lists are created by the first
+// phrase query, so the trees used only to extract the clusters don't pay for them.
+//
+// If the reader inserted each distinct sentence once (see 'SentenceTable'),
+// the documents of a leaf edge are the owners of its sentence. A leaf edge
+// of a sentence read more than once stands for the node which would have
+// been created before the end markers of the copies, and has its own cluster.
+//
+// Created by 'SuffixTree.Freeze'; the original tree can be reset afterwards.
+// A tree passed back to 'Freeze' keeps its arrays, the reader reuses
+// its copy this way (see 'DocumentReader.Reset'). 'TreeSnapshot' loads
+// a saved tree into one too; its edges have no first word identifiers then,
+// so it can't look up phrases.
+public final class FrozenSuffixTree {
+    public static final int LEAF = -1;
+    private static final int NODE_BYTES = 4 + 4;
+    private static final int EDGE_BYTES = 4 + 4 + 4 + 4 + 4;
+    private static final int WORD_BYTES = 4 + 8;
+    private static final int CANCEL_CHECK_MASK = 63;
+
+    /*
+    * Private members.
+    */
+    private int[] nodeFirstEdge_;
+    private int[] nodeEdgeCount_;
+    private int nodeCount_;   // The arrays keep their capacity, see 'Allocate'.
+    private int edgeCount_;
+    private int wordCount_;
+    private int[] edgeWord_;  // The identifier of the first word.
+    private int[] edgeFirst_;
+    private int[] edgeLast_;
+    private int[] edgeNext_;
+    private Document[] edgeDocument_;
+    private Word[] words_;
+    private SentenceTable sentences_; // Null if the sentences are not shared.
+    private int maxDepth_;            // See 'SuffixTree.MaxDepth'.
+    private double[] weightPrefix_; // See 'RangeWeight'.
+    private int[] path_;      // The edges from the root to the visited node.
+    private int candidateCount_;
+    private int visitCount_;
+    private CancellationToken cancellation_;
+    private boolean cancelled_;
+    private ProgressReporter progress_;
+    private byte[] postings_;       // The documents of each node, see 'BuildPostings'.
+    private int[] postingStart_;
+    private int[] postingCount_;
+    private int postingSize_;
+
+    /*
+    * Constructors.
+    */
+    // Creates an empty tree, filled by 'SuffixTree.Freeze'
+    // or 'TreeSnapshot.Open' (see 'Allocate').
+    FrozenSuffixTree() {
+        nodeFirstEdge_ = new int[0];
+        nodeEdgeCount_ = new int[0];
+        edgeWord_ = new int[0];
+        edgeFirst_ = new int[0];
+        edgeLast_ = new int[0];
+        edgeNext_ = new int[0];
+        edgeDocument_ = new Document[0];
+        words_ = new Word[0];
+        weightPrefix_ = new double[1];
+        path_ = new int[16];
+    }
+
+    /*
+    * Public methods.
+    */
+    public int Root() { return 0; }
+
+    // The number of internal nodes (the leaves are not stored).
+    public int NodeCount() { return nodeCount_; }
+    public int EdgeCount() { return edgeCount_; }
+
+    // The edges leaving a node are 'FirstEdge' ... 'FirstEdge + EdgeCount - 1'.
+    public int FirstEdge(int node) { return nodeFirstEdge_[node]; }
+    public int EdgeCount(int node) { return nodeEdgeCount_[node]; }
+
+    // The node reached by the edge, 'LEAF' if it's a leaf.
+    public int NextNode(int edge) { return edgeNext_[edge]; }
+    public boolean IsLeafEdge(int edge) { return edgeNext_[edge] == LEAF; }
+
+    // The indices of the first and last word found on the edge.
+    public int FirstIndex(int edge) { return edgeFirst_[edge]; }
+    public int LastIndex(int edge) { return edgeLast_[edge]; }
+    public Document DocumentOf(int edge) { return edgeDocument_[edge]; }
+
+    // Returns the edge leaving the node which starts with the word, -1 if none.
+    public int FindEdge(int node, Word word) {
+        int id = word.Id();
+        int left = nodeFirstEdge_[node];
+        int right = left + nodeEdgeCount_[node] - 1;
+
+        while(left <= right) {
+            int middle = (left + right) >>> 1;
+            int value = edgeWord_[middle];
+
+            if(value < id) {
+                left = middle + 1;
+            }
+            else if(value > id) {
+                right = middle - 1;
+            }
+            else {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    public Word WordAt(int index) { return words_[index]; }
+
+    // The sum of the weights of the words 'first' ... 'last', which must
+    // be part of the same sentence (the end marker can be the last one).
+    public double RangeWeight(int first, int last) {
+        return weightPrefix_[last + 1] - weightPrefix_[first];
+    }
+
+    // The sum of the weights of the words found on the edge.
+    public double EdgeWeight(int edge) {
+        return weightPrefix_[edgeLast_[edge] + 1] - weightPrefix_[edgeFirst_[edge]];
+    }
+
+    public int WordCount() { return wordCount_; }
+
+    public String EdgeText(int edge) {
+        StringBuilder builder = new StringBuilder();
+
+        for(int i = edgeFirst_[edge]; i <= edgeLast_[edge]; i++) {
+            builder.append(words_[i].Word()).append(' ');
+        }
+
+        return builder.toString();
+    }
+
+    // Returns a list with all base clusters
+    // having a weight at lest equal to the specified one.
+    public List<Cluster> GetBaseClusters(double minWeight) {
+        return GetBaseClusters(minWeight, null);
+    }
+
+    // Same as 'GetBaseClusters', but stops when the token is cancelled,
+    // returning only the clusters whose subtree was completely visited.
+    public List<Cluster> GetBaseClusters(double minWeight,
+                                         CancellationToken cancellation) {
+        ArrayList<Cluster> clusters =  new ArrayList<Cluster>();
+        candidateCount_ = 0;
+        cancellation_ = cancellation;
+        cancelled_ = false;
+
+        if(nodeCount_ == 0) {
+            return clusters;
+        }
+
+        // Search the clusters on all edges originating from the root.
+        int first = nodeFirstEdge_[0];
+        int last = first + nodeEdgeCount_[0];
+
+        for(int edge = first; (edge < last) && !cancelled_; edge++) {
+            path_[0] = edge;
+
+            if(edgeNext_[edge] != LEAF) {
+                GetBaseClustersImpl(edgeNext_[edge], clusters, 1, EdgeWeight(edge), minWeight);
+            }
+            else if(sentences_ != null) {
+                AddSentenceCluster(clusters, 0, 0, edge, minWeight);
+            }
+        }
+
+        return clusters;
+    }
+
+    // The number of base clusters considered by the last call
+    // to 'GetBaseClusters', before the weight limit is applied.
+    public int CandidateCount() { return candidateCount_; }
+
+    // Returns true if the last call to 'GetBaseClusters' was cancelled.
+    public boolean ExtractionCancelled() { return cancelled_; }
+
+    // Returns the edge on which the phrase ends, starting from the root,
+    // or -1 if the phrase is not found in any sentence.
+    public int FindPhrase(List<Word> phrase) {
+        return FindPhrase(phrase, false);
+    }
+
+    // Returns the sorted indices of the documents containing the phrase.
+    public int[] PhraseDocuments(List<Word> phrase) {
+        int edge = FindPhrase(phrase);
+
+        if(edge == -1) {
+            return new int[0];
+        }
+        else if(edgeNext_[edge] == LEAF) {
+            // Found in a single sentence.
+            int[] documents = new int[LeafDocumentCount(edge)];
+            int count = AddLeafDocuments(documents, 0, edge);
+            Arrays.sort(documents, 0, count);
+            return documents;
+        }
+
+        BuildPostings();
+        int node = edgeNext_[edge];
+        int[] documents = new int[postingCount_[node]];
+        int position = postingStart_[node];
+        int previous = 0;
+
+        for(int i = 0; i < documents.length; i++) {
+            int delta = 0;
+            int shift = 0;
+            int value;
+
+            do {
+                value = postings_[position++];
+                delta |= (value & 0x7F) << shift;
+                shift += 7;
+            } while(value < 0);
+
+            previous += delta;
+            documents[i] = previous;
+        }
+
+        return documents;
+    }
+
+    // Returns the number of documents containing the phrase.
+    public int PhraseDocumentCount(List<Word> phrase) {
+        int edge = FindPhrase(phrase);
+
+        if(edge == -1) {
+            return 0;
+        }
+        else if(edgeNext_[edge] == LEAF) {
+            return LeafDocumentCount(edge);
+        }
+
+        BuildPostings();
+        return postingCount_[edgeNext_[edge]];
+    }
+
+    public long EstimatedBytes() {
+        return EstimatedBytes(nodeFirstEdge_.length, edgeFirst_.length, words_.length) +
+               (postings_ != null ? postings_.length + 8L * nodeFirstEdge_.length : 0);
+    }
+
+    // The memory used by a frozen tree having the specified number
+    // of internal nodes, edges and words, without the postings.
+    static long EstimatedBytes(int nodeCount, int edgeCount, int wordCount) {
+        return (long)nodeCount * NODE_BYTES +
+               (long)edgeCount * EDGE_BYTES +
+               (long)wordCount * WORD_BYTES;
+    }
+
+    /*
+    * Package methods.
+    */
+    void SetProgress(ProgressReporter value) { progress_ = value; }
+
+    // The owners of the sentences, null if each sentence was inserted.
+    SentenceTable Sentences() { return sentences_; }
+
+    // Entry 'index' of the prefix sums of the word weights (see 'RangeWeight').
+    double WeightPrefix(int index) { return weightPrefix_[index]; }
+
+    // Returns the internal node whose phrase is exactly the specified one,
+    // -1 if there is none (the phrase ends inside an edge or on a leaf).
+    int FindNode(List<Word> phrase) {
+        int edge = FindPhrase(phrase, true);
+        return ((edge != -1) && (edgeNext_[edge] != LEAF)) ? edgeNext_[edge] : -1;
+    }
+
+    // Prepares the tree for the specified number of internal nodes, edges
+    // and words, keeping the arrays which are large enough, so a tree reused
+    // for sets of documents of similar size allocates almost nothing.
+    // The contents are then set with 'SetNode', 'SetEdge' and 'SetWords'.
+    void Allocate(int nodeCount, int edgeCount, int wordCount,
+                  SentenceTable sentences, int maxDepth) {
+        Clear();
+
+        if(nodeCount > nodeFirstEdge_.length) {
+            int capacity = Capacity(nodeCount, nodeFirstEdge_.length);
+            nodeFirstEdge_ = new int[capacity];
+            nodeEdgeCount_ = new int[capacity];
+        }
+
+        if(edgeCount > edgeFirst_.length) {
+            int capacity = Capacity(edgeCount, edgeFirst_.length);
+            edgeWord_ = new int[capacity];
+            edgeFirst_ = new int[capacity];
+            edgeLast_ = new int[capacity];
+            edgeNext_ = new int[capacity];
+            edgeDocument_ = new Document[capacity];
+        }
+
+        if(wordCount > words_.length) {
+            int capacity = Capacity(wordCount, words_.length);
+            words_ = new Word[capacity];
+            weightPrefix_ = new double[capacity + 1];
+        }
+
+        nodeCount_ = nodeCount;
+        edgeCount_ = edgeCount;
+        wordCount_ = wordCount;
+        sentences_ = sentences;
+        maxDepth_ = maxDepth;
+    }
+
+    // Removes all nodes, releasing the documents and keeping the arrays.
+    void Clear() {
+        Arrays.fill(edgeDocument_, 0, edgeCount_, null);
+        Arrays.fill(words_, 0, wordCount_, null);
+        nodeCount_ = 0;
+        edgeCount_ = 0;
+        wordCount_ = 0;
+        sentences_ = null;
+        candidateCount_ = 0;
+        cancelled_ = false;
+        postings_ = null;
+        postingStart_ = null;
+        postingCount_ = null;
+    }
+
+    void SetNode(int node, int firstEdge, int edgeCount) {
+        nodeFirstEdge_[node] = firstEdge;
+        nodeEdgeCount_[node] = edgeCount;
+    }
+
+    // 'word' is the identifier of the first word, used by 'FindEdge'.
+    void SetEdge(int edge, int word, int first, int last, int next, Document document) {
+        edgeWord_[edge] = word;
+        edgeFirst_[edge] = first;
+        edgeLast_[edge] = last;
+        edgeNext_[edge] = next;
+        edgeDocument_[edge] = document;
+    }
+
+    void SetNextNode(int edge, int node) { edgeNext_[edge] = node; }
+
+    // Copies the words of the sentences and sums their weights.
+    void SetWords(Word[] words) {
+        System.arraycopy(words, 0, words_, 0, wordCount_);
+
+        // The sentence end markers have no weight, a range
+        // ending with the marker has the weight of its words.
+        for(int i = 0; i < wordCount_; i++) {
+            double weight = words_[i].IsMarker() ? 0 : words_[i].Weight();
+            weightPrefix_[i + 1] = weightPrefix_[i] + weight;
+        }
+    }
+
+    // Sets a word and its entry of the prefix sums separately,
+    // used when the sums were saved with the tree.
+    void SetWord(int index, Word word) { words_[index] = word; }
+    void SetWeightPrefix(int index, double value) { weightPrefix_[index] = value; }
+
+    /*
+    * Private methods.
+    */
+    // Creates the document lists of all nodes, if not already created.
+    // The list of a node is the union of the documents of its leaf edges
+    // and of the lists of its child nodes, so the nodes are visited
+    // in postorder, each child list being decoded only by its parent.
+    private synchronized void BuildPostings() {
+        if(postings_ != null) {
+            return;
+        }
+
+        int count = nodeCount_;
+        postingStart_ = new int[count];
+        postingCount_ = new int[count];
+        postings_ = new byte[Math.max(16, count * 4)];
+        postingSize_ = 0;
+        BuildPostingsImpl(0);
+        postings_ = Arrays.copyOf(postings_, postingSize_);
+    }
+
+    // Returns the sorted, distinct documents of the node.
+    private int[] BuildPostingsImpl(int node) {
+        int first = nodeFirstEdge_[node];
+        int last = first + nodeEdgeCount_[node];
+        int[][] children = null;
+        int total = 0;
+
+        for(int edge = first; edge < last; edge++) {
+            if(edgeNext_[edge] == LEAF) {
+                total += LeafDocumentCount(edge);
+            }
+            else {
+                if(children == null) {
+                    children = new int[last - first][];
+                }
+
+                children[edge - first] = BuildPostingsImpl(edgeNext_[edge]);
+                total += children[edge - first].length;
+            }
+        }
+
+        int[] documents = new int[total];
+        int count = 0;
+
+        for(int edge = first; edge < last; edge++) {
+            if(edgeNext_[edge] == LEAF) {
+                count = AddLeafDocuments(documents, count, edge);
+            }
+            else {
+                int[] child = children[edge - first];
+                System.arraycopy(child, 0, documents, count, child.length);
+                count += child.length;
+            }
+        }
+
+        // Remove the duplicates.
+        Arrays.sort(documents);
+        int distinct = 0;
+
+        for(int i = 0; i < count; i++) {
+            if((i == 0) || (documents[i] != documents[i - 1])) {
+                documents[distinct++] = documents[i];
+            }
+        }
+
+        if(distinct < count) {
+            documents = Arrays.copyOf(documents, distinct);
+        }
+
+        // Store the differences between consecutive indices,
+        // 7 bits per byte, the last byte having the high bit clear.
+        postingStart_[node] = postingSize_;
+        postingCount_[node] = distinct;
+        int previous = 0;
+
+        for(int i = 0; i < distinct; i++) {
+            int delta = documents[i] - previous;
+            previous = documents[i];
+
+            if(postingSize_ + 5 > postings_.length) {
+                postings_ = Arrays.copyOf(postings_, postings_.length * 2);
+            }
+
+            while(delta >= 0x80) {
+                postings_[postingSize_++] = (byte)((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+
+            postings_[postingSize_++] = (byte)delta;
+        }
+
+        return documents;
+    }
+
+    // The length of an array which must hold 'count' elements, growing
+    // by half at least, so a slightly larger next tree doesn't copy them again.
+    private static int Capacity(int count, int length) {
+        return Math.max(count, length + (length >> 1));
+    }
+
+    // Same as the public 'FindPhrase'; if 'whole' is set, the phrase
+    // must end with the last word of the edge.
+    private int FindPhrase(List<Word> phrase, boolean whole) {
+        int count = phrase.size();
+
+        if((count == 0) || (nodeCount_ == 0)) {
+            return -1;
+        }
+
+        int node = 0;
+        int i = 0;
+
+        while(true) {
+            int edge = FindEdge(node, phrase.get(i));
+
+            if(edge == -1) {
+                return -1;
+            }
+
+            // The first word is known to match.
+            int j = edgeFirst_[edge] + 1;
+            i++;
+
+            for(; (j <= edgeLast_[edge]) && (i < count); j++, i++) {
+                if(!words_[j].equals(phrase.get(i))) {
+                    return -1;
+                }
+            }
+
+            if(i == count) {
+                return (!whole || (j > edgeLast_[edge])) ? edge : -1;
+            }
+            else if(edgeNext_[edge] == LEAF) {
+                return -1;
+            }
+
+            node = edgeNext_[edge];
+        }
+    }
+
+    private Phrase MakePhrase(int depth, double weight) {
+        Phrase phrase = new Phrase();
+        phrase.SetWeight(weight);
+
+        for(int i = 0; i < depth; i++) {
+            int edge = path_[i];
+
+            for(int j = edgeFirst_[edge]; j <= edgeLast_[edge]; j++) {
+                phrase.Words().add(words_[j]);
+            }
+        }
+
+        return phrase;
+    }
+
+    // The number of documents owning the sentence of the leaf edge.
+    private int LeafDocumentCount(int edge) {
+        int owner = sentences_ != null ? sentences_.FirstOwner(words_[edgeLast_[edge]]) : -1;
+        int count = 0;
+
+        if(owner == -1) {
+            return 1;
+        }
+
+        for(; owner != -1; owner = sentences_.NextOwner(owner)) {
+            count++;
+        }
+
+        return count;
+    }
+
+    // Adds the indices of the documents owning the sentence of the leaf edge
+    // at the specified position, returning the position after them.
+    private int AddLeafDocuments(int[] documents, int position, int edge) {
+        int owner = sentences_ != null ? sentences_.FirstOwner(words_[edgeLast_[edge]]) : -1;
+
+        if(owner == -1) {
+            documents[position++] = edgeDocument_[edge].Index();
+            return position;
+        }
+
+        for(; owner != -1; owner = sentences_.NextOwner(owner)) {
+            documents[position++] = sentences_.OwnerDocument(owner).Index();
+        }
+
+        return position;
+    }
+
+    private void AddLeafDocuments(List<Document> documents, int edge) {
+        int owner = sentences_ != null ? sentences_.FirstOwner(words_[edgeLast_[edge]]) : -1;
+
+        if(owner == -1) {
+            if(!documents.contains(edgeDocument_[edge])) {
+                documents.add(edgeDocument_[edge]);
+            }
+
+            return;
+        }
+
+        for(; owner != -1; owner = sentences_.NextOwner(owner)) {
+            Document doc = sentences_.OwnerDocument(owner);
+
+            if(!documents.contains(doc)) {
+                documents.add(doc);
+            }
+        }
+    }
+
+    // Adds the cluster of the words of the leaf edge before the end marker
+    // if its sentence was read more than once. 'depth' and 'weight' describe
+    // the node the edge leaves, see 'GetBaseClustersImpl'.
+    private void AddSentenceCluster(List<Cluster> clusters, int depth, double weight,
+                                    int edge, double minWeight) {
+        int first = edgeFirst_[edge];
+        int marker = edgeLast_[edge];
+
+        if(!sentences_.IsShared(words_[marker])) {
+            return;
+        }
+
+        Phrase phrase = MakePhrase(depth, weight);
+        int prefix = phrase.WordCount();
+        Cluster cluster = sentences_.SentenceCluster(phrase, words_, first, marker, maxDepth_);
+
+        if(cluster == null) {
+            return;
+        }
+
+        phrase.SetWeight(weight + RangeWeight(first, first + phrase.WordCount() - prefix - 1));
+        cluster.ComputeWeight();
+        candidateCount_++;
+
+        if(cluster.Weight() > minWeight) {
+            clusters.add(cluster);
+        }
+    }
+
+    // 'depth' is the number of edges from the root to the node,
+    // 'weight' the weight of the words on these edges.
+    private Cluster GetBaseClustersImpl(int node, List<Cluster> clusters,
+                                        int depth, double weight, double minWeight) {
+        assert(depth > 0);
+        // ------------------------------------------------
+        // The token is checked only from time to time, it's not free.
+        if(cancelled_) {
+            return null;
+        }
+        else if((++visitCount_ & CANCEL_CHECK_MASK) == 0) {
+            if((cancellation_ != null) && cancellation_.IsCancelled()) {
+                cancelled_ = true;
+                return null; // The parent clusters are incomplete too.
+            }
+
+            if(progress_ != null) {
+                progress_.Tick(candidateCount_);
+            }
+        }
+
+        // Create a new cluster and set the associated sentence.
+        Cluster cluster = new Cluster(MakePhrase(depth, weight));
+
+        if(depth == path_.length) {
+            int[] temp = new int[depth * 2];
+            System.arraycopy(path_, 0, temp, 0, depth);
+            path_ = temp;
+        }
+
+        int first = nodeFirstEdge_[node];
+        int last = first + nodeEdgeCount_[node];
+
+        for(int edge = first; edge < last; edge++) {
+            int nextNode = edgeNext_[edge];
+
+            if(nextNode == LEAF) {
+                // Add the document to the cluster.
+                AddLeafDocuments(cluster.Documents(), edge);
+
+                if(sentences_ != null) {
+                    AddSentenceCluster(clusters, depth, weight, edge, minWeight);
+                }
+            }
+            else {
+                // The edge leads to an internal node.
+                // All documents that belong to the cluster associated
+                // with this internal node must be added to the current cluster.
+                path_[depth] = edge;
+                Cluster child = GetBaseClustersImpl(nextNode, clusters, depth + 1,
+                                                    weight + EdgeWeight(edge), minWeight);
+
+                if(child == null) {
+                    return null;
+                }
+
+                int count = child.Documents().size();
+
+                for(int i = 0; i < count; i++) {
+                    Document doc = child.Documents().get(i);
+
+                    if(!cluster.Documents().contains(doc)) {
+                        cluster.Documents().add(doc);
+                    }
+                }
+            }
+        }
+
+        // The cluster is selected only if its weight
+        // is at least equal to the minimum requested weight.
+        cluster.ComputeWeight();
+        candidateCount_++;
+
+        if(cluster.Weight() > minWeight) {
+            clusters.add(cluster);
+        }
+
+        return cluster;
+    }
+}
@@ -0,0 +1,163 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// A histogram of latencies which can be updated concurrently without locking.
+// The values (in microseconds) are grouped in buckets whose size grows with
+// the value: each power of two is split in 'SUB_BUCKETS' equal buckets,
+// so a percentile is within 1 / SUB_BUCKETS of the real value.
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_POWER = 40; // About 12 days.
+    private static final int BUCKET_COUNT = (MAX_POWER + 1) * SUB_BUCKETS;
+
+    private AtomicLongArray buckets_;
+    private AtomicLong count_;
+    private AtomicLong sum_; // In microseconds.
+    private AtomicLong max_;
+
+    /*
+    * Constructors.
+    */
+    public LatencyHistogram() {
+        buckets_ = new AtomicLongArray(BUCKET_COUNT);
+        count_ = new AtomicLong();
+        sum_ = new AtomicLong();
+        max_ = new AtomicLong();
+    }
+
+    /*
+    * Public methods.
+    */
+    // Adds a latency given in nanoseconds.
+    public void Record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        buckets_.incrementAndGet(BucketIndex(micros));
+        count_.incrementAndGet();
+        sum_.addAndGet(micros);
+
+        long max = max_.get();
+
+        while(micros > max && !max_.compareAndSet(max, micros)) {
+            max = max_.get();
+        }
+    }
+
+    public long Count() { return count_.get(); }
+
+    // The mean latency in milliseconds.
+    public double Mean() {
+        long count = count_.get();
+        return count > 0 ? (double)sum_.get() / count / 1000 : 0;
+    }
+
+    // The maximum latency in milliseconds.
+    public double Max() {
+        return max_.get() / 1000.0;
+    }
+
+    // The latency (in milliseconds) under which the specified
+    // percentage of the values are found, at most the upper bound of its bucket.
+    public double Percentile(double percent) {
+        assert(percent >= 0 && percent <= 100);
+        // ------------------------------------------------
+        long count = count_.get();
+
+        if(count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long)Math.ceil(count * percent / 100));
+        long seen = 0;
+
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets_.get(i);
+
+            if(seen >= rank) {
+                // The last bucket also holds all the larger values.
+                return i == BUCKET_COUNT - 1 ? Max() :
+                       Math.min(BucketLimit(i), max_.get()) / 1000.0;
+            }
+        }
+
+        return Max();
+    }
+
+    public void Reset() {
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            buckets_.set(i, 0);
+        }
+
+        count_.set(0);
+        sum_.set(0);
+        max_.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Count: %d, Mean: %.2f ms, P50: %.2f ms, P90: %.2f ms, " +
+                             "P99: %.2f ms, Max: %.2f ms",
+                             Count(), Mean(), Percentile(50), Percentile(90),
+                             Percentile(99), Max());
+    }
+
+    /*
+    * Private methods.
+    */
+    // Values below 'SUB_BUCKETS' have their own bucket; for the larger ones
+    // the power of two selects a group and the next bits the bucket inside it.
+    private static int BucketIndex(long micros) {
+        if(micros < SUB_BUCKETS) {
+            return (int)micros;
+        }
+
+        int power = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = power - SUB_BUCKET_BITS;
+        int sub = (int)(micros >>> shift) - SUB_BUCKETS;
+        return Math.min(BUCKET_COUNT - 1, (shift + 1) * SUB_BUCKETS + sub);
+    }
+
+    // The largest value (in microseconds) found in the specified bucket.
+    private static long BucketLimit(int index) {
+        if(index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
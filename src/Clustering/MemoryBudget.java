@@ -0,0 +1,88 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+
+// Limits the memory used while reading the documents and building the tree.
+// The reader keeps an estimate of the bytes used by the documents,
+// the vocabulary and the tree; when the estimate gets near the limit
+// (above 'Threshold' of it) the policy decides what happens:
+//   REJECT   - the reading fails with a 'MemoryBudgetException'.
+//   TRUNCATE - the reading stops, the documents read so far are clustered.
+//   SAMPLE   - only some of the following documents are read, the fraction
+//              being halved each time half of the remaining room is used.
+//              The reading stops if the limit is reached anyway.
+public final class MemoryBudget {
+    public enum Policy { REJECT, TRUNCATE, SAMPLE }
+
+    private static final double DEFAULT_THRESHOLD = 0.9;
+
+    private long limit_;
+    private Policy policy_;
+    private double threshold_;
+
+    /*
+    * Constructors.
+    */
+    public MemoryBudget(long limit, Policy policy, double threshold) {
+        assert(limit > 0);
+        assert(policy != null);
+        assert(threshold > 0 && threshold <= 1);
+        // ------------------------------------------------
+        limit_ = limit;
+        policy_ = policy;
+        threshold_ = threshold;
+    }
+
+    public MemoryBudget(long limit, Policy policy) {
+        this(limit, policy, DEFAULT_THRESHOLD);
+    }
+
+    // Creates a budget which is a fraction of the maximum heap size.
+    public static MemoryBudget OfHeap(double fraction, Policy policy) {
+        assert(fraction > 0 && fraction <= 1);
+        // ------------------------------------------------
+        return new MemoryBudget((long)(Runtime.getRuntime().maxMemory() * fraction), policy);
+    }
+
+    /*
+    * Public methods.
+    */
+    public long Limit() { return limit_; }
+    public Policy Policy() { return policy_; }
+    public double Threshold() { return threshold_; }
+
+    // The number of bytes from which the policy is applied.
+    public long ThresholdBytes() {
+        return (long)(limit_ * threshold_);
+    }
+}
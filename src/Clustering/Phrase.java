@@ -36,6 +36,8 @@ import java.util.List;
 
 public final class Phrase {
     private List<Word> words_;
+    private double weight_; // Valid only if 'hasWeight_' is set.
+    private boolean hasWeight_;
 
     /*
     * Constructors.
@@ -48,7 +50,13 @@ public final class Phrase {
     public List<Word> Words() { return words_; }
     public int WordCount() { return words_.size(); }
 
+    // The sum of the weights of the words, unless it was
+    // already known when the phrase was created (see 'SetWeight').
     public double Weight() {
+        if(hasWeight_) {
+            return weight_;
+        }
+
         double sum = 0;
         int count = words_.size();
         
@@ -59,14 +67,22 @@ public final class Phrase {
         return sum;
     }
 
+    // Sets the weight computed by the creator of the phrase, for example
+    // from the prefix sums of the word weights kept by 'FrozenSuffixTree'.
+    // The words must not be changed afterwards.
+    public void SetWeight(double value) {
+        weight_ = value;
+        hasWeight_ = true;
+    }
+
     @Override
     public String toString() {
-        String text = "";
+        StringBuilder text = new StringBuilder();
 
         for(int i = 0; i < words_.size(); i++) {
-            text += words_.get(i) + " ";
+            text.append(words_.get(i)).append(' ');
         }
 
-        return text;
+        return text.toString();
     }
 }
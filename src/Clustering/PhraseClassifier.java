@@ -0,0 +1,368 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+// Assigns new documents to the clusters of a previous run, without
+// rebuilding the suffix tree. The phrases of all clusters are compiled
+// into an Aho-Corasick automaton over word identifiers, so a document
+// is scanned once, word by word, and all phrases found in it are reported
+// whatever their number. A cluster scores the weights of its distinct
+// phrases found in the document, and the document is assigned
+// to the cluster with the largest score.
+//
+// The cluster grouping the remaining base clusters ("Other") is not used,
+// its phrases having nothing in common. The automaton is not modified
+// after its creation, so several threads can classify at the same time.
+public final class PhraseClassifier {
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    private static final String OTHER_LABEL = "Other";
+
+    /*
+    * Private members.
+    */
+    private HashMap<String, Integer> wordIds_; // The words found in the phrases.
+    private int[] stateFail_;     // The longest proper suffix found in the automaton.
+    private int[] stateOutput_;   // The nearest state in the fail chain ending a phrase.
+    private int[] statePattern_;  // The first phrase ending in the state, 'NONE' if none.
+    private int[] stateFirstChild_;
+    private int[] stateSibling_;
+    private int[] stateWord_;     // The word leading to the state.
+    private int stateCount_;
+    private int[] patternCluster_;
+    private double[] patternWeight_;
+    private int[] patternNext_;   // The next phrase ending in the same state.
+    private int clusterCount_;
+    private double minScore_;
+
+    // Maps (state, word identifier) to 'state + 1', zero marking the empty slots.
+    private long[] slotKeys_;
+    private int[] slotStates_;
+    private int slotBits_;
+
+    /*
+    * Constructors.
+    */
+    // Creates the automaton from the phrases of the specified clusters.
+    // The positions of the clusters in the list are used as their identifiers.
+    public PhraseClassifier(List<Cluster> clusters) {
+        assert(clusters != null);
+        // ------------------------------------------------
+        clusterCount_ = clusters.size();
+        wordIds_ = new HashMap<String, Integer>();
+        int patternCount = 0;
+        int wordCount = 0;
+
+        for(int i = 0; i < clusters.size(); i++) {
+            if(IsUsed(clusters.get(i))) {
+                List<Phrase> phrases = clusters.get(i).Phrases();
+                patternCount += phrases.size();
+
+                for(int j = 0; j < phrases.size(); j++) {
+                    wordCount += phrases.get(j).WordCount();
+                }
+            }
+        }
+
+        // Each word of a phrase adds at most one state.
+        int capacity = wordCount + 1;
+        stateFail_ = new int[capacity];
+        stateOutput_ = new int[capacity];
+        statePattern_ = new int[capacity];
+        stateFirstChild_ = new int[capacity];
+        stateSibling_ = new int[capacity];
+        stateWord_ = new int[capacity];
+        patternCluster_ = new int[patternCount];
+        patternWeight_ = new double[patternCount];
+        patternNext_ = new int[patternCount];
+        slotBits_ = 1;
+
+        while((1 << slotBits_) < 2 * capacity) {
+            slotBits_++;
+        }
+
+        slotKeys_ = new long[1 << slotBits_];
+        slotStates_ = new int[1 << slotBits_];
+        NewState(NONE);
+
+        // Add the phrases to the trie, then link the states.
+        int pattern = 0;
+
+        for(int i = 0; i < clusters.size(); i++) {
+            if(!IsUsed(clusters.get(i))) {
+                continue;
+            }
+
+            List<Phrase> phrases = clusters.get(i).Phrases();
+
+            for(int j = 0; j < phrases.size(); j++) {
+                AddPattern(phrases.get(j), i, pattern++);
+            }
+        }
+
+        LinkStates();
+    }
+
+    /*
+    * Public methods.
+    */
+    // Classifies the next document of the source. The source must be
+    // positioned on a document ('HasDocument' returned true); the sentences
+    // of the document are read. Returns the position of the cluster with
+    // the largest score, or -1 if no cluster has a score above the minimum.
+    public int Classify(IDocumentSource source) {
+        return Best(Scores(source));
+    }
+
+    // Classifies all documents of the source, returning the position
+    // of the cluster of each one (-1 if unassigned).
+    public int[] ClassifyAll(IDocumentSource source) {
+        int[] assignments = new int[16];
+        int count = 0;
+
+        while(source.HasDocument()) {
+            if(count == assignments.length) {
+                assignments = Arrays.copyOf(assignments, count * 2);
+            }
+
+            assignments[count++] = Classify(source);
+        }
+
+        return Arrays.copyOf(assignments, count);
+    }
+
+    // Returns the score of each cluster for the next document of the source
+    // (see 'Classify'). The score is the sum of the weights of the distinct
+    // phrases of the cluster found in the document.
+    public double[] Scores(IDocumentSource source) {
+        double[] scores = new double[clusterCount_];
+        int[] found = new int[8];
+        int foundCount = 0;
+
+        while(source.HasSentence()) {
+            // A phrase can't continue into the next sentence.
+            int state = ROOT;
+
+            while(source.HasWord()) {
+                Integer word = wordIds_.get(source.NextWord());
+
+                if(word == null) {
+                    // The word is not part of any phrase.
+                    state = ROOT;
+                    continue;
+                }
+
+                state = Next(state, word);
+                int output = statePattern_[state] != NONE ? state : stateOutput_[state];
+
+                for(; output != NONE; output = stateOutput_[output]) {
+                    for(int p = statePattern_[output]; p != NONE; p = patternNext_[p]) {
+                        if(foundCount == found.length) {
+                            found = Arrays.copyOf(found, foundCount * 2);
+                        }
+
+                        found[foundCount++] = p;
+                    }
+                }
+            }
+        }
+
+        // Each phrase is counted once, even if found several times.
+        Arrays.sort(found, 0, foundCount);
+
+        for(int i = 0; i < foundCount; i++) {
+            if((i == 0) || (found[i] != found[i - 1])) {
+                scores[patternCluster_[found[i]]] += patternWeight_[found[i]];
+            }
+        }
+
+        return scores;
+    }
+
+    // The documents with a smaller score are not assigned to any cluster.
+    public double MinScore() { return minScore_; }
+    public void SetMinScore(double value) { minScore_ = value; }
+
+    public int StateCount() { return stateCount_; }
+    public int PhraseCount() { return patternCluster_.length; }
+
+    /*
+    * Private methods.
+    */
+    private static boolean IsUsed(Cluster cluster) {
+        return !OTHER_LABEL.equals(cluster.Label());
+    }
+
+    private int Best(double[] scores) {
+        int best = -1;
+        double bestScore = minScore_;
+
+        for(int i = 0; i < scores.length; i++) {
+            if(scores[i] > bestScore) {
+                best = i;
+                bestScore = scores[i];
+            }
+        }
+
+        return best;
+    }
+
+    private int NewState(int word) {
+        int state = stateCount_++;
+        stateWord_[state] = word;
+        stateFirstChild_[state] = NONE;
+        stateSibling_[state] = NONE;
+        statePattern_[state] = NONE;
+        stateOutput_[state] = NONE;
+        return state;
+    }
+
+    private void AddPattern(Phrase phrase, int cluster, int pattern) {
+        List<Word> words = phrase.Words();
+        int state = ROOT;
+
+        for(int i = 0; i < words.size(); i++) {
+            String text = words.get(i).Word();
+            Integer word = wordIds_.get(text);
+
+            if(word == null) {
+                word = wordIds_.size();
+                wordIds_.put(text, word);
+            }
+
+            int child = FindChild(state, word);
+
+            if(child == NONE) {
+                child = NewState(word);
+                stateSibling_[child] = stateFirstChild_[state];
+                stateFirstChild_[state] = child;
+                AddChild(state, word, child);
+            }
+
+            state = child;
+        }
+
+        // Only the words with a positive weight count, the frequent
+        // words are found in most documents.
+        double weight = 0;
+
+        for(int i = 0; i < words.size(); i++) {
+            weight += Math.max(0, words.get(i).Weight());
+        }
+
+        patternCluster_[pattern] = cluster;
+        patternWeight_[pattern] = weight;
+        patternNext_[pattern] = statePattern_[state];
+        statePattern_[state] = pattern;
+    }
+
+    // Computes the fail and output links, visiting the states
+    // in breadth-first order (the links point to shallower states).
+    private void LinkStates() {
+        int[] queue = new int[stateCount_];
+        int head = 0;
+        int tail = 0;
+
+        for(int child = stateFirstChild_[ROOT]; child != NONE; child = stateSibling_[child]) {
+            stateFail_[child] = ROOT;
+            queue[tail++] = child;
+        }
+
+        while(head < tail) {
+            int state = queue[head++];
+
+            for(int child = stateFirstChild_[state]; child != NONE;
+                child = stateSibling_[child]) {
+                int fail = Next(stateFail_[state], stateWord_[child]);
+                stateFail_[child] = fail;
+                stateOutput_[child] = statePattern_[fail] != NONE ? fail : stateOutput_[fail];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    // The state reached from the specified one by the word,
+    // following the fail links when there is no transition.
+    private int Next(int state, int word) {
+        while(true) {
+            int child = FindChild(state, word);
+
+            if(child != NONE) {
+                return child;
+            }
+            else if(state == ROOT) {
+                return ROOT;
+            }
+
+            state = stateFail_[state];
+        }
+    }
+
+    private void AddChild(int state, int word, int child) {
+        long key = Key(state, word);
+        int mask = slotStates_.length - 1;
+        int slot = Slot(key);
+
+        while(slotStates_[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        slotKeys_[slot] = key;
+        slotStates_[slot] = child + 1;
+    }
+
+    private int FindChild(int state, int word) {
+        long key = Key(state, word);
+        int mask = slotStates_.length - 1;
+
+        for(int slot = Slot(key); slotStates_[slot] != 0; slot = (slot + 1) & mask) {
+            if(slotKeys_[slot] == key) {
+                return slotStates_[slot] - 1;
+            }
+        }
+
+        return NONE;
+    }
+
+    private static long Key(int state, int word) {
+        return ((long)state << 32) | (word & 0xFFFFFFFFL);
+    }
+
+    private int Slot(long key) {
+        // Fibonacci hashing, the high bits are the best mixed.
+        return (int)((key * 0x9E3779B97F4A7C15L) >>> (64 - slotBits_));
+    }
+}
@@ -0,0 +1,93 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+
+// Passes the progress of a run to a listener, at most once per interval.
+// The phase changes are always reported. 'Due' only reads the clock,
+// so it can be called often from the loops of the phases.
+final class ProgressReporter {
+    private IProgressListener listener_;
+    private DocumentReader reader_;
+    private long interval_; // In nanoseconds.
+    private long start_;
+    private long last_;     // The time of the last report.
+    private ClusteringProgress.Phase phase_;
+    private int candidates_; // Base clusters examined by the extraction.
+
+    /*
+    * Constructors.
+    */
+    public ProgressReporter(IProgressListener listener, long interval,
+                            DocumentReader reader) {
+        assert(listener != null);
+        assert(reader != null);
+        // ------------------------------------------------
+        listener_ = listener;
+        interval_ = interval;
+        reader_ = reader;
+        start_ = System.nanoTime();
+        last_ = start_;
+        phase_ = ClusteringProgress.Phase.READING;
+    }
+
+    /*
+    * Public methods.
+    */
+    public void SetPhase(ClusteringProgress.Phase phase) {
+        phase_ = phase;
+        Report();
+    }
+
+    public boolean Due() {
+        return System.nanoTime() - last_ >= interval_;
+    }
+
+    public void Report() {
+        last_ = System.nanoTime();
+        listener_.Progress(new ClusteringProgress(phase_, last_ - start_, reader_,
+                                                  candidates_));
+    }
+
+    // Reports the progress if the interval has passed since the last report.
+    public void Tick() {
+        if(Due()) {
+            Report();
+        }
+    }
+
+    // Same as 'Tick', used while extracting the base clusters.
+    public void Tick(int candidates) {
+        candidates_ = candidates;
+        Tick();
+    }
+}
@@ -0,0 +1,345 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.util.Arrays;
+
+// Finds the sentences read before having the same words, so each distinct
+// sentence is inserted only once in the suffix tree. The documents
+// containing a sentence (its owners) are kept on the inserted sentence,
+// which is identified by the index of its end marker (see 'Word.Marker').
+//
+// The inserted sentences are found with an open-addressing table of
+// hashes, the words being compared only when the hashes are equal.
+// The owners of each sentence form a linked list kept in arrays, with the
+// number of times the sentence was found in each document. The documents
+// are read one after another, so only the last owner is checked when
+// a sentence is found again.
+final class SentenceTable {
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    /*
+    * Private members.
+    */
+    // The inserted sentences.
+    private Document[] documents_; // The words of the sentence are found
+    private int[] starts_;         // at 'starts_' ... 'ends_ - 1'
+    private int[] ends_;           // in the document, without the marker.
+    private long[] hashes_;
+    private int[] firstOwners_;
+    private int count_;
+
+    // Maps the hash of a sentence to 'sentence + 1', zero marking the empty slots.
+    private int[] slots_;
+
+    // The owners of the sentences.
+    private Document[] ownerDocuments_;
+    private int[] ownerCounts_;
+    private int[] ownerNext_;
+    private int ownerCount_;
+
+    // The inserted sentence of each marker index, NONE if not inserted.
+    private int[] sentenceOf_;
+    private int duplicates_;
+
+    /*
+    * Constructors.
+    */
+    public SentenceTable() {
+        documents_ = new Document[INITIAL_CAPACITY];
+        starts_ = new int[INITIAL_CAPACITY];
+        ends_ = new int[INITIAL_CAPACITY];
+        hashes_ = new long[INITIAL_CAPACITY];
+        firstOwners_ = new int[INITIAL_CAPACITY];
+        slots_ = new int[INITIAL_CAPACITY * 2];
+        ownerDocuments_ = new Document[INITIAL_CAPACITY];
+        ownerCounts_ = new int[INITIAL_CAPACITY];
+        ownerNext_ = new int[INITIAL_CAPACITY];
+        sentenceOf_ = new int[INITIAL_CAPACITY];
+    }
+
+    /*
+    * Public methods.
+    */
+    // Searches a sentence having the same words as the one found
+    // in the document at 'start' ... 'end - 1' ('end' being the index
+    // of its end marker). If found, the document becomes an owner of
+    // that sentence and true is returned; otherwise the sentence
+    // is added and must be inserted in the tree.
+    public boolean FindOrAdd(Document document, int start, int end) {
+        assert(document != null);
+        assert(start >= 0 && start <= end);
+        assert(document.WordAt(end).IsMarker());
+        // ------------------------------------------------
+        long hash = Hash(document, start, end);
+        int mask = slots_.length - 1;
+        int slot = Slot(hash);
+        int marker = -1 - document.WordAt(end).Id();
+
+        while(slots_[slot] != 0) {
+            int sentence = slots_[slot] - 1;
+
+            if((hashes_[sentence] == hash) && SameWords(sentence, document, start, end)) {
+                AddOwner(sentence, document);
+                SetSentence(marker, NONE);
+                duplicates_++;
+                return true;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        int sentence = Add(document, start, end, hash);
+        slots_[slot] = sentence + 1;
+        SetSentence(marker, sentence);
+
+        // The table is kept at most half full.
+        if(2 * count_ > slots_.length) {
+            GrowTable();
+        }
+
+        return false;
+    }
+
+    // The number of sentences not inserted because they were found before.
+    public int Duplicates() { return duplicates_; }
+
+    // The number of times the sentence ending with the marker was read,
+    // 1 if it was never found again.
+    public int Occurrences(Word marker) {
+        int first = FirstOwner(marker);
+        int total = 0;
+
+        if(first == NONE) {
+            return 1;
+        }
+
+        for(int owner = first; owner != NONE; owner = ownerNext_[owner]) {
+            total += ownerCounts_[owner];
+        }
+
+        return total;
+    }
+
+    // Returns true if the sentence ending with the marker was read more than once.
+    public boolean IsShared(Word marker) { return Occurrences(marker) > 1; }
+
+    // Makes the cluster of a sentence read more than once, from the leaf edge
+    // whose words are 'first' ... 'marker' in 'words' ('marker' being the index
+    // of the end marker). 'phrase' has the words leading to the edge and
+    // receives the words of the edge, without the marker and truncated
+    // to 'maxDepth' words if the limit is set (see 'SuffixTree.MaxDepth').
+    // Returns null if no word of the edge remains: the phrase is then the one
+    // of the node the edge leaves, whose cluster already has the documents.
+    // The weight of the cluster is not computed.
+    public Cluster SentenceCluster(Phrase phrase, Word[] words, int first, int marker,
+                                   int maxDepth) {
+        assert(IsShared(words[marker]));
+        // ------------------------------------------------
+        int last = marker - 1;
+
+        if(maxDepth > 0) {
+            // The edges of a node at the depth limit can have words
+            // after it (the tree is not compacted there), they are dropped.
+            last = Math.min(last, first + maxDepth - phrase.WordCount() - 1);
+        }
+
+        if(last < first) {
+            return null;
+        }
+
+        for(int i = first; i <= last; i++) {
+            phrase.Words().add(words[i]);
+        }
+
+        // A document is an owner only once, the documents being read one after another.
+        Cluster cluster = new Cluster(phrase);
+
+        for(int owner = FirstOwner(words[marker]); owner != NONE; owner = ownerNext_[owner]) {
+            cluster.Documents().add(ownerDocuments_[owner]);
+        }
+
+        return cluster;
+    }
+
+    // The owners of the sentence ending with the marker form a list:
+    // 'FirstOwner', then 'NextOwner' until NONE (-1) is returned.
+    // The sentences never found again have no list (NONE is returned),
+    // their only owner being the document of the edge.
+    public int FirstOwner(Word marker) {
+        int sentence = SentenceOf(marker);
+        return sentence != NONE ? firstOwners_[sentence] : NONE;
+    }
+
+    public int NextOwner(int owner) { return ownerNext_[owner]; }
+    public Document OwnerDocument(int owner) { return ownerDocuments_[owner]; }
+
+    // The number of times the sentence was found in the document.
+    public int OwnerCount(int owner) { return ownerCounts_[owner]; }
+
+    // Removes all sentences, keeping the allocated arrays.
+    public void Reset() {
+        Arrays.fill(documents_, 0, count_, null);
+        Arrays.fill(ownerDocuments_, 0, ownerCount_, null);
+        Arrays.fill(slots_, 0);
+        Arrays.fill(sentenceOf_, 0);
+        count_ = 0;
+        ownerCount_ = 0;
+        duplicates_ = 0;
+    }
+
+    public long EstimatedBytes() {
+        return (long)documents_.length * (4 + 4 + 4 + 8 + 4) +
+               (long)slots_.length * 4 +
+               (long)ownerDocuments_.length * (4 + 4 + 4) +
+               (long)sentenceOf_.length * 4;
+    }
+
+    /*
+    * Private methods.
+    */
+    // The sentences found only once have no owner list, the document of
+    // the leaf edge being the only owner. The list is created when
+    // the sentence is found the second time.
+    private int Add(Document document, int start, int end, long hash) {
+        if(count_ == documents_.length) {
+            int capacity = count_ * 2;
+            documents_ = Arrays.copyOf(documents_, capacity);
+            starts_ = Arrays.copyOf(starts_, capacity);
+            ends_ = Arrays.copyOf(ends_, capacity);
+            hashes_ = Arrays.copyOf(hashes_, capacity);
+            firstOwners_ = Arrays.copyOf(firstOwners_, capacity);
+        }
+
+        int sentence = count_++;
+        documents_[sentence] = document;
+        starts_[sentence] = start;
+        ends_[sentence] = end;
+        hashes_[sentence] = hash;
+        firstOwners_[sentence] = NONE;
+        return sentence;
+    }
+
+    private void AddOwner(int sentence, Document document) {
+        if(firstOwners_[sentence] == NONE) {
+            // The first owner is the document of the inserted sentence.
+            firstOwners_[sentence] = NewOwner(documents_[sentence], NONE);
+        }
+
+        int first = firstOwners_[sentence];
+
+        if(ownerDocuments_[first] == document) {
+            ownerCounts_[first]++;
+        }
+        else {
+            firstOwners_[sentence] = NewOwner(document, first);
+        }
+    }
+
+    private int NewOwner(Document document, int next) {
+        if(ownerCount_ == ownerDocuments_.length) {
+            int capacity = ownerCount_ * 2;
+            ownerDocuments_ = Arrays.copyOf(ownerDocuments_, capacity);
+            ownerCounts_ = Arrays.copyOf(ownerCounts_, capacity);
+            ownerNext_ = Arrays.copyOf(ownerNext_, capacity);
+        }
+
+        int owner = ownerCount_++;
+        ownerDocuments_[owner] = document;
+        ownerCounts_[owner] = 1;
+        ownerNext_[owner] = next;
+        return owner;
+    }
+
+    // 'sentenceOf_' keeps 'sentence + 1', so the unused entries are zero.
+    private void SetSentence(int marker, int sentence) {
+        if(marker >= sentenceOf_.length) {
+            sentenceOf_ = Arrays.copyOf(sentenceOf_, Math.max(marker + 1, sentenceOf_.length * 2));
+        }
+
+        sentenceOf_[marker] = sentence + 1;
+    }
+
+    private int SentenceOf(Word marker) {
+        assert(marker.IsMarker());
+        // ------------------------------------------------
+        int index = -1 - marker.Id();
+        return index < sentenceOf_.length ? sentenceOf_[index] - 1 : NONE;
+    }
+
+    private boolean SameWords(int sentence, Document document, int start, int end) {
+        Document other = documents_[sentence];
+        int otherStart = starts_[sentence];
+
+        if(ends_[sentence] - otherStart != end - start) {
+            return false;
+        }
+
+        for(int i = 0; i < end - start; i++) {
+            if(other.WordAt(otherStart + i) != document.WordAt(start + i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static long Hash(Document document, int start, int end) {
+        long hash = end - start;
+
+        for(int i = start; i < end; i++) {
+            hash = (hash + document.WordAt(i).Id()) * 0x9E3779B97F4A7C15L;
+        }
+
+        return hash ^ (hash >>> 29);
+    }
+
+    private int Slot(long hash) {
+        return (int)((hash * 0x9E3779B97F4A7C15L) >>> (64 - Integer.numberOfTrailingZeros(slots_.length)));
+    }
+
+    private void GrowTable() {
+        slots_ = new int[slots_.length * 2];
+        int mask = slots_.length - 1;
+
+        for(int sentence = 0; sentence < count_; sentence++) {
+            int slot = Slot(hashes_[sentence]);
+
+            while(slots_[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            slots_[slot] = sentence + 1;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+
+// A light stemmer for English words, which only removes the plural
+// and the most common verb endings. It is much less aggressive than
+// the Porter stemmer, so the words found in the cluster labels
+// remain readable. The words are presumed to be in lower case.
+public final class Stemmer {
+    /*
+    * Constructors.
+    */
+    private Stemmer() {}
+
+    /*
+    * Public methods.
+    */
+    public static String Stem(String word) {
+        assert(word != null);
+        // ------------------------------------------------
+        if(word.length() <= 3) {
+            return word;
+        }
+
+        word = StemPlural(word);
+
+        if(word.endsWith("ing") && (word.length() > 5)) {
+            return StemVerb(word, 3);
+        }
+        else if(word.endsWith("ed") && (word.length() > 4)) {
+            return StemVerb(word, 2);
+        }
+
+        return word;
+    }
+
+    /*
+    * Private methods.
+    */
+    // The rules of the "S" stemmer (Harman, 1991).
+    private static String StemPlural(String word) {
+        if(word.endsWith("ies") && !word.endsWith("eies") && !word.endsWith("aies")) {
+            return word.substring(0, word.length() - 3) + "y";
+        }
+        else if(word.endsWith("es") && !word.endsWith("aes") &&
+                !word.endsWith("ees") && !word.endsWith("oes")) {
+            return word.substring(0, word.length() - 1);
+        }
+        else if(word.endsWith("s") && !word.endsWith("us") && !word.endsWith("ss")) {
+            return word.substring(0, word.length() - 1);
+        }
+
+        return word;
+    }
+
+    // Removes a verb ending, but only if the remaining stem
+    // contains a vowel (prevents "sing" -> "s", "bed" -> "b").
+    // A doubled final consonant is reduced ("stopped" -> "stop").
+    private static String StemVerb(String word, int suffixLength) {
+        String stem = word.substring(0, word.length() - suffixLength);
+
+        if(!HasVowel(stem)) {
+            return word;
+        }
+
+        int length = stem.length();
+
+        if((length >= 2) && (stem.charAt(length - 1) == stem.charAt(length - 2))) {
+            char last = stem.charAt(length - 1);
+
+            if(!IsVowel(last) && (last != 'l') && (last != 's') && (last != 'z')) {
+                return stem.substring(0, length - 1);
+            }
+        }
+
+        return stem;
+    }
+
+    private static boolean IsVowel(char c) {
+        return (c == 'a') || (c == 'e') || (c == 'i') || (c == 'o') || (c == 'u');
+    }
+
+    private static boolean HasVowel(String word) {
+        for(int i = 0; i < word.length(); i++) {
+            if(IsVowel(word.charAt(i)) || ((i > 0) && (word.charAt(i) == 'y'))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -31,165 +31,270 @@
 // OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package Clustering;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
+// A generalized suffix tree over the sentences of the documents,
+// built using Ukkonen's algorithm.
+//
+// The nodes and edges are not objects, but indices in growable arrays.
+// The edges leaving a node form a linked list, and a single hash table
+// maps a (node, first word) pair to the edge starting with that word.
+// All arrays keep their capacity when the tree is reset, so a tree reused
+// for sets of documents of similar size allocates almost nothing.
+// 'Node' and 'Edge' are lightweight views used to walk the tree.
+//
+// The depth of the tree can be limited to 'k' words. Then only the first
+// 'k' words of each suffix are inserted, walking down from the root
+// (Ukkonen's algorithm doesn't apply), so the nodes are bounded by the number
+// of distinct k-grams and not by the number of words. The phrases of at most
+// 'k' words have the same nodes and documents as in the complete tree.
+// When a k-gram is found a second time, the leaf edge containing it is cut
+// after its 'k'-th word and its leaf becomes the node of the k-gram. Such a node
+// has no edges: the documents containing the k-gram are kept in a list of
+// (document, sentence end marker) entries, much smaller than a node and an edge.
+// A suffix reaching the end of its sentence before the maximum depth adds
+// an entry to its node too, instead of an edge labeled with the unique marker.
+// In this mode the suffix links are not used and the field keeps the first entry
+// of the node. Leaf edges still run until the end of the sentence,
+// only their first word is used as a key.
+//
+// The reader can insert each distinct sentence only once, keeping the other
+// documents containing it in a 'SentenceTable'. The documents of a leaf edge
+// are then the owners of its sentence, and a leaf edge of a sentence read
+// more than once has its own base cluster, for the words before the marker.
 public final class SuffixTree {
-    // Represents a node in the tree.
-    // It is a leaf if it has no child nodes.
+    // The bytes used by each element of the arrays, used for estimates.
+    private static final int NODE_BYTES = 4 + 4;           // Suffix link, first edge.
+    private static final int EDGE_BYTES = 4 + 4 + 4 + 4 + 4; // Document, first, last,
+                                                           // next node, sibling.
+    private static final int SLOT_BYTES = 8 + 4;           // Key, edge.
+    private static final int ENTRY_BYTES = 4 + 4 + 4;      // Document, marker, next.
+    private static final int WORD_BYTES = 4;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NONE = -1;
+
+    // A view of a node. It is a leaf if it has no child nodes and no documents.
+    // The document entries of a truncated tree are not returned as edges.
     public final class Node {
-        // The suffix node is the last node of the suffix obtained
-        // by considering all nodes from the root to it.
-        // It is the point where the next insertion must be made.
-        private Node suffixNode_;
-        private HashMap<Word, Edge> edges_; // The edges to the child nodes.
+        private final int index_;
 
         /*
         * Constructors.
         */
-        public Node() {
-            edges_ = new HashMap<Word, Edge>(4);
+        Node(int index) {
+            index_ = index;
         }
 
         /*
         * Public methods.
         */
-        public Node SuffixNode() { return suffixNode_; }
-        public void SetSuffixNode(Node value) { suffixNode_ = value; }
-        public Iterator<Edge> Edges() { return edges_.values().iterator(); }
+        public int Index() { return index_; }
 
-        public boolean HasEdge(Word word) {
-            return edges_.containsKey(word);
+        // The suffix node is the last node of the suffix obtained
+        // by considering all nodes from the root to it.
+        // Always null when the depth of the tree is limited.
+        public Node SuffixNode() {
+            if(maxDepth_ > 0) {
+                return null;
+            }
+
+            int suffix = nodeSuffix_[index_];
+            return suffix != NONE ? new Node(suffix) : null;
         }
 
-        public void AddEdge(Word word, Edge edge) {
-            edges_.put(word, edge);
+        public Iterator<Edge> Edges() {
+            return new EdgeIterator(nodeFirstEdge_[index_]);
+        }
+
+        public boolean HasEdge(Word word) {
+            return FindEdge(index_, word.Id()) != NONE;
         }
 
         public Edge GetEdge(Word word) {
-            return edges_.get(word);
+            int edge = FindEdge(index_, word.Id());
+            return edge != NONE ? new Edge(edge) : null;
+        }
+
+        public boolean IsLeaf() {
+            return SuffixTree.this.IsLeaf(index_);
         }
 
-        public boolean IsLeaf() { 
-            return edges_.isEmpty(); 
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof Node) && (((Node)obj).index_ == index_);
+        }
+
+        @Override
+        public int hashCode() {
+            return index_;
         }
 
         @Override
         public String toString() {
-            return IsLeaf() ? "Leaf" : "Edges: " + Integer.toString(edges_.size());
+            if(IsLeaf()) {
+                return "Leaf";
+            }
+
+            int count = 0;
+
+            for(int edge = nodeFirstEdge_[index_]; edge != NONE; edge = edgeSibling_[edge]) {
+                count++;
+            }
+
+            return "Edges: " + Integer.toString(count);
         }
     }
 
-    // Represents an edge connecting two tree nodes.
-    // The associated words are stored as indices in the associated document.
+    // A view of an edge connecting two tree nodes.
+    // The associated words are stored as indices in the sequence of all words.
     public final class Edge {
-        private Document document_; // The document containing the words.
-        private int firstIndex_;    // The index of the first word found on the edge.
-        private int lastIndex_;     // The index of the last word found on the edge.
-        private Node prevNode_;     // The first node connected by the edge.
-        private Node nextNode_;     // The second node connected by the edge.
+        private final int index_;
 
         /*
         * Constructors.
         */
-        public Edge(Document doc, int first, int last,
-                    Node previous, Node next) {
-            document_ = doc;
-            firstIndex_ = first;
-            lastIndex_ = last;
-            prevNode_ = previous;
-            nextNode_ = next;
+        Edge(int index) {
+            index_ = index;
         }
 
         /*
         * Public methods.
         */
-        public Document Document() { return document_; }
+        public int Index() { return index_; }
 
-        public int FirstIndex() { return firstIndex_; }
-        public int LastIndex() { return lastIndex_; }
+        // The document containing the words.
+        public Document Document() { return edgeDocument_[index_]; }
 
-        public void SetFirstIndex(int value) { firstIndex_ = value; }
-        public void SetLastIndex(int value) { lastIndex_ = value; }
-        
-        public Node PreviousNode() { return prevNode_; }
-        public void SetPreviousNode(Node value) { prevNode_ = value; }
+        // The index of the first and last word found on the edge.
+        public int FirstIndex() { return edgeFirst_[index_]; }
+        public int LastIndex() { return edgeLast_[index_]; }
 
-        public Node NextNode() { return nextNode_; }
-        public void SetNextNode(Node value) { nextNode_ = value; }
+        // The second node connected by the edge.
+        public Node NextNode() { return new Node(edgeNext_[index_]); }
 
         public int Span() {
-            return lastIndex_ - firstIndex_;
+            return edgeLast_[index_] - edgeFirst_[index_];
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof Edge) && (((Edge)obj).index_ == index_);
+        }
+
+        @Override
+        public int hashCode() {
+            return index_;
         }
 
         @Override
         public String toString() {
-            String temp = "";
-            for(int i = firstIndex_; i <= lastIndex_; i++) {
-                temp += tempDoc.WordAt(i).Word() + " ";
+            StringBuilder builder = new StringBuilder();
+
+            for(int i = edgeFirst_[index_]; i <= edgeLast_[index_]; i++) {
+                builder.append(words_[i].Word()).append(' ');
             }
 
-            return temp;
+            return builder.toString();
         }
     }
 
-    // Represents a suffix. Used while building the suffix tree.
-    public final class Suffix {
-        private Node origin_;
-        private int firstIndex_;
-        private int lastIndex_;
+    // Iterates over the edges leaving a node.
+    private final class EdgeIterator implements Iterator<Edge> {
+        private int next_;
 
-        /*
-        * Constructors.
-        */
-        public Suffix() {}
-        public Suffix(Node origin, int first, int last) {
-            origin_ = origin;
-            firstIndex_ = first;
-            lastIndex_ = last;
+        public EdgeIterator(int first) {
+            next_ = first;
         }
 
-        /*
-        * Public methods.
-        */
-        public Node Origin() { return origin_; }
-        public void SetOrigin(Node value) { origin_ = value; }
-
-        public int FirstIndex() { return firstIndex_; }
-        public void SetFirstIndex(int value) { firstIndex_ = value; }
-
-        public int LastIndex() { return lastIndex_; }
-        public void SetLastIndex(int value) { lastIndex_ = value; }
-
-        public boolean IsExplicit() {
-            return firstIndex_ > lastIndex_;
+        public boolean hasNext() {
+            return next_ != NONE;
         }
 
-        public boolean IsImplicit() {
-            return firstIndex_ <= lastIndex_;
+        public Edge next() {
+            if(next_ == NONE) {
+                throw new NoSuchElementException();
+            }
+
+            Edge edge = new Edge(next_);
+            next_ = edgeSibling_[next_];
+            return edge;
         }
 
-        public int Span() {
-            return lastIndex_ - firstIndex_;
+        public void remove() {
+            throw new UnsupportedOperationException();
         }
     }
 
     /*
     * Private members.
     */
-    private Suffix activePoint_;
-    private Node root_;
+    // The nodes. The root is always node 0.
+    private int[] nodeSuffix_;
+    private int[] nodeFirstEdge_;
+    private int nodeCount_;
+
+    // The edges.
+    private Document[] edgeDocument_;
+    private int[] edgeFirst_;
+    private int[] edgeLast_;
+    private int[] edgeNext_;
+    private int[] edgeSibling_; // The next edge leaving the same node.
+    private int edgeCount_;
+
+    // Maps (node, word identifier) to 'edge + 1', zero marking the empty slots.
+    private long[] slotKeys_;
+    private int[] slotEdges_;
+    private int slotBits_;
+    private int slotCount_; // The used slots.
+
+    // The documents of the nodes where suffixes end, linked from the node.
+    private Document[] entryDocument_;
+    private int[] entryMarker_; // The index of the end marker of the sentence.
+    private int[] entryNext_;
+    private int entryCount_;
+
+    // The words of all inserted sentences.
+    private Word[] words_;
+    private int wordCount_;
+
+    // The active point: the node from which the suffix continues
+    // and the indices of its first and last words.
+    private int activeOrigin_;
+    private int activeFirst_;
+    private int activeLast_;
+
+    private int maxDepth_; // Zero if the depth is not limited.
+    private SentenceTable sentences_; // Null if each sentence is inserted.
     private int phreases_;
-    private Document tempDoc;
 
     /*
     * Constructors.
     */
     public SuffixTree() {
-        root_ = new Node();
-        tempDoc = new Document(0);
+        nodeSuffix_ = new int[INITIAL_CAPACITY];
+        nodeFirstEdge_ = new int[INITIAL_CAPACITY];
+        edgeDocument_ = new Document[INITIAL_CAPACITY];
+        edgeFirst_ = new int[INITIAL_CAPACITY];
+        edgeLast_ = new int[INITIAL_CAPACITY];
+        edgeNext_ = new int[INITIAL_CAPACITY];
+        edgeSibling_ = new int[INITIAL_CAPACITY];
+        slotBits_ = 7;
+        slotKeys_ = new long[1 << slotBits_];
+        slotEdges_ = new int[1 << slotBits_];
+        words_ = new Word[INITIAL_CAPACITY];
+        entryDocument_ = new Document[INITIAL_CAPACITY];
+        entryMarker_ = new int[INITIAL_CAPACITY];
+        entryNext_ = new int[INITIAL_CAPACITY];
+        Reset();
+    }
+
+    // Creates a tree whose depth is limited to the specified number of words.
+    public SuffixTree(int maxDepth) {
+        this();
+        SetMaxDepth(maxDepth);
     }
 
     /*
@@ -200,53 +305,229 @@ public final class SuffixTree {
         assert(start >= 0 && start <= end);
         // ------------------------------------------------
         if(phreases_ == 0) {
-            activePoint_ = new Suffix(root_, 0, -1);
+            activeOrigin_ = 0;
+            activeFirst_ = 0;
+            activeLast_ = -1;
         }
 
         // Add the sentence (it is presumed that it includes the terminator).
-        int oldCount = tempDoc.Count();
+        int oldCount = wordCount_;
 
-        for(int i = start; i < end; i++) {
-            tempDoc.AddWord(document.WordAt(i));
-            AddWord(tempDoc.Count() - 1, document, oldCount + (end - start));
+        if(maxDepth_ > 0) {
+            for(int i = start; i < end; i++) {
+                AddToken(document.WordAt(i));
+            }
+
+            for(int i = oldCount; i < wordCount_; i++) {
+                AddTruncatedSuffix(i, wordCount_ - 1, document);
+            }
+        }
+        else {
+            for(int i = start; i < end; i++) {
+                AddToken(document.WordAt(i));
+                AddWord(wordCount_ - 1, document, oldCount + (end - start));
+            }
         }
 
         phreases_++;
     }
 
-    // Returns a list with all base clusters
-    // having a weight at lest equal to the specified one.
-    public List<Cluster> GetBaseClusters(double minWeight) {
-        ArrayList<Cluster> clusters =  new ArrayList<Cluster>();
-        ArrayList<Edge> edges = new ArrayList<Edge>();
-
-        // Search the clusters on all edges originating from the root.
-        Iterator<Edge> edgeIt = root_.Edges();
-        
-        while(edgeIt.hasNext()) {
-            Edge edge = edgeIt.next();
-            edges.add(edge);
-            
-            if(!edge.NextNode().IsLeaf()) {
-                GetBaseClustersImpl(edge.NextNode(), clusters, edges, minWeight);
+    // Removes all sentences, keeping the allocated arrays.
+    public void Reset() {
+        // Release the documents, they could be large.
+        Arrays.fill(edgeDocument_, 0, edgeCount_, null);
+        Arrays.fill(words_, 0, wordCount_, null);
+        Arrays.fill(entryDocument_, 0, entryCount_, null);
+        Arrays.fill(slotEdges_, 0);
+        slotCount_ = 0;
+        entryCount_ = 0;
+        edgeCount_ = 0;
+        wordCount_ = 0;
+        nodeCount_ = 0;
+        NewNode(); // The root.
+        activeOrigin_ = 0;
+        activeFirst_ = 0;
+        activeLast_ = -1;
+        phreases_ = 0;
+    }
+
+    // The maximum depth of the tree in words, zero if it's not limited.
+    public int MaxDepth() { return maxDepth_; }
+
+    // Limits the depth of the tree, zero removing the limit.
+    // Can be changed only while the tree is empty.
+    public void SetMaxDepth(int value) {
+        assert(value >= 0);
+        assert(wordCount_ == 0);
+        // ------------------------------------------------
+        maxDepth_ = value;
+    }
+
+    // Creates a read-only copy of the tree laid out for fast traversals.
+    public FrozenSuffixTree Freeze() {
+        return Freeze(new FrozenSuffixTree());
+    }
+
+    // Same as 'Freeze', but stores the copy in the specified frozen tree,
+    // reusing its arrays, and returns it. The previous contents are lost.
+    public FrozenSuffixTree Freeze(FrozenSuffixTree tree) {
+        // Count the internal nodes, the leaves are not copied.
+        int internalCount = 0;
+
+        for(int node = 0; node < nodeCount_; node++) {
+            if(!IsLeaf(node)) {
+                internalCount++;
+            }
+        }
+
+        // The document entries become leaf edges labeled with the end marker,
+        // numbered after the edges.
+        tree.Allocate(internalCount, edgeCount_ + entryCount_, wordCount_,
+                      sentences_, maxDepth_);
+        tree.SetWords(words_);
+
+        // Number the nodes in depth-first preorder using a stack of
+        // (node, new edge leading to it) pairs. The children are pushed
+        // in reverse order, so the first one is visited next.
+        int[] stack = new int[32];
+        long[] children = new long[16];
+        int stackCount = 0;
+        int nextNode = 0;
+        int nextEdge = 0;
+
+        if(internalCount > 0) {
+            stack[stackCount++] = 0;
+            stack[stackCount++] = NONE;
+        }
+
+        while(stackCount > 0) {
+            int newEdge = stack[--stackCount];
+            int node = stack[--stackCount];
+            int newNode = nextNode++;
+
+            if(newEdge != NONE) {
+                tree.SetNextNode(newEdge, newNode);
+            }
+
+            // Sort the edges by the identifier of their first word;
+            // the edge index is kept in the low bits.
+            int count = 0;
+
+            for(int edge = nodeFirstEdge_[node]; edge != NONE; edge = edgeSibling_[edge]) {
+                children = AddChild(children, count++, words_[edgeFirst_[edge]].Id(), edge);
+            }
+
+            for(int entry = FirstEntry(node); entry != NONE; entry = entryNext_[entry]) {
+                children = AddChild(children, count++, words_[entryMarker_[entry]].Id(),
+                                    edgeCount_ + entry);
+            }
+
+            Arrays.sort(children, 0, count);
+            tree.SetNode(newNode, nextEdge, count);
+
+            for(int i = 0; i < count; i++) {
+                int edge = (int)children[i];
+                int word = (int)(children[i] >> 32);
+
+                if(edge < edgeCount_) {
+                    tree.SetEdge(nextEdge + i, word, edgeFirst_[edge], edgeLast_[edge],
+                                 FrozenSuffixTree.LEAF, edgeDocument_[edge]);
+                }
+                else {
+                    int entry = edge - edgeCount_;
+                    tree.SetEdge(nextEdge + i, word, entryMarker_[entry], entryMarker_[entry],
+                                 FrozenSuffixTree.LEAF, entryDocument_[entry]);
+                }
+            }
+
+            for(int i = count - 1; i >= 0; i--) {
+                int edge = (int)children[i];
+
+                if((edge < edgeCount_) && !IsLeaf(edgeNext_[edge])) {
+                    if(stackCount + 2 > stack.length) {
+                        stack = Grow(stack, stack.length * 2);
+                    }
+
+                    stack[stackCount++] = edgeNext_[edge];
+                    stack[stackCount++] = nextEdge + i;
+                }
             }
 
-            edges.remove(edges.size() - 1);
+            nextEdge += count;
         }
 
-        return clusters;
+        return tree;
+    }
+
+    // Adds an edge, sorted by the identifier of its first word, to the children
+    // collected by 'Freeze' and returns the array, which may have been grown.
+    private static long[] AddChild(long[] children, int count, long word, int edge) {
+        if(count == children.length) {
+            long[] temp = new long[count * 2];
+            System.arraycopy(children, 0, temp, 0, count);
+            children = temp;
+        }
+
+        children[count] = (word << 32) | edge;
+        return children;
+    }
+
+    // Returns a list with all base clusters having a weight at lest equal
+    // to the specified one. The clusters are extracted from a frozen copy,
+    // see 'FrozenSuffixTree.GetBaseClusters'.
+    public List<Cluster> GetBaseClusters(double minWeight) {
+        return Freeze().GetBaseClusters(minWeight);
+    }
+
+    public Node Root() { return new Node(0); }
+
+    // The words of all inserted sentences. The edges store
+    // the indices of their words in this sequence.
+    public Word WordAt(int index) {
+        assert(index >= 0 && index < wordCount_);
+        // ------------------------------------------------
+        return words_[index];
+    }
+
+    public int WordCount() { return wordCount_; }
+
+    public int NodeCount() { return nodeCount_; }
+    public int EdgeCount() { return edgeCount_; }
+
+    // The number of documents kept by the nodes where suffixes end
+    // (always zero when the depth is not limited).
+    public int DocumentEntryCount() { return entryCount_; }
+    public int SentenceCount() { return phreases_; }
+
+    // Sets the table keeping the owners of the sentences inserted only once,
+    // null if each sentence is inserted.
+    void SetSentences(SentenceTable value) { sentences_ = value; }
+
+    // The memory used by the arrays of the tree, in bytes,
+    // including the capacity kept for reuse.
+    public long EstimatedBytes() {
+        return (long)nodeSuffix_.length * NODE_BYTES +
+               (long)edgeFirst_.length * EDGE_BYTES +
+               (long)slotKeys_.length * SLOT_BYTES +
+               (long)entryMarker_.length * ENTRY_BYTES +
+               (long)words_.length * WORD_BYTES;
     }
 
-    public Node Root() { return root_; }
+    // An estimate of the memory used by the copy made by 'Freeze'
+    // (the leaves are counted too, their number is not kept).
+    public long FrozenBytes() {
+        return FrozenSuffixTree.EstimatedBytes(nodeCount_, edgeCount_ + entryCount_,
+                                               wordCount_);
+    }
 
     /*
     * Private methods.
     */
     private void AddWord(int wordIndex, Document document, int maxIndex) {
-        Node parent = null;
-        Node lastParent = null; // Used to create links between the nodes.
-        Word word = tempDoc.WordAt(wordIndex);
-        
+        int parent = NONE;
+        int lastParent = NONE; // Used to create links between the nodes.
+        int word = words_[wordIndex].Id();
+
         // An edge is added (if necessary) for all nodes found
         // between the active one and the last one. The active node
         // is the first node which is not a leaf (a leaf node will never
@@ -255,165 +536,338 @@ public final class SuffixTree {
         // (and the same for its successors, because they are suffixes for
         //  the end node and already have the required edges).
         while(true) {
-            parent = activePoint_.Origin();
+            parent = activeOrigin_;
 
             // If the node is explicit (already has edges) check if
             // an edge labeled with the current word must be added.
-            if(activePoint_.IsExplicit()) {
-                if(parent.HasEdge(word)) {
+            if(activeFirst_ > activeLast_) {
+                if(FindEdge(parent, word) != NONE) {
                     break; // The word is already added to an edge.
                 }
             }
-            else if(activePoint_.IsImplicit()) {
+            else {
                 // The edge must be split before the word can be added.
-                Edge edge = parent.GetEdge(tempDoc.WordAt(activePoint_.firstIndex_));
-                
-                if(tempDoc.WordAt(edge.FirstIndex() + activePoint_.Span() + 1).equals(word)) {
+                int edge = FindEdge(parent, words_[activeFirst_].Id());
+                int span = activeLast_ - activeFirst_;
+
+                if(words_[edgeFirst_[edge] + span + 1].Id() == word) {
                     // The word is already in the right place.
                     break;
                 }
-                
-                parent = SplitEdge(edge, activePoint_, document);
+
+                parent = SplitEdge(edge, span, document);
             }
 
             // The edge could not be found, it must be created now.
             // At the same time, the new node must be connected to the last visited one.
-            Node newNode = new Node();
-            Edge newEdge = new Edge(document, wordIndex, maxIndex - 1,
-                                    parent, newNode);
-            parent.AddEdge(word, newEdge);
+            int newEdge = NewEdge(document, wordIndex, maxIndex - 1, NewNode());
+            AddEdge(parent, word, newEdge);
 
-            if((lastParent != null) && (lastParent != root_)) {
-                lastParent.SetSuffixNode(parent);
+            if((lastParent != NONE) && (lastParent != 0)) {
+                nodeSuffix_[lastParent] = parent;
             }
             lastParent = parent;
 
             // Figure out the next suffix.
-            if(activePoint_.Origin() == root_) {
+            if(activeOrigin_ == 0) {
                 // If the active node is the root of the tree
                 // the next suffix follows the natural order.
-                activePoint_.SetFirstIndex(activePoint_.FirstIndex() + 1);
+                activeFirst_++;
             }
             else {
                 // For internal nodes a link is used.
-                activePoint_.SetOrigin(activePoint_.Origin().SuffixNode());
+                activeOrigin_ = nodeSuffix_[activeOrigin_];
             }
 
             // The suffix must be adjusted at each update.
-            MakeCanonic(activePoint_);
+            MakeCanonic();
         }
 
         // Connect the last node to its parent.
-        if((lastParent != null) && (lastParent != root_)) {
-            lastParent.SetSuffixNode(parent);
+        if((lastParent != NONE) && (lastParent != 0)) {
+            nodeSuffix_[lastParent] = parent;
         }
 
         // The end point becomes the active point for the next step.
-        activePoint_.SetLastIndex(activePoint_.LastIndex() + 1);
-        MakeCanonic(activePoint_);
+        activeLast_++;
+        MakeCanonic();
+    }
+
+    // Inserts the first 'maxDepth_' words of the suffix starting at 'first',
+    // 'marker' being the index of the end marker of the sentence.
+    private void AddTruncatedSuffix(int first, int marker, Document document) {
+        int last = Math.min(first + maxDepth_ - 1, marker); // The last inserted word.
+        int node = 0;
+        int index = first;
+
+        while(true) {
+            int word = words_[index].Id();
+            int edge = FindEdge(node, word);
+
+            if(edge == NONE) {
+                // The remaining words are new.
+                AddSuffixEnd(node, index, marker, document);
+                return;
+            }
+
+            // Find how many words of the edge match the suffix.
+            int span = 1;
+            int edgeSpan = edgeLast_[edge] - edgeFirst_[edge] + 1;
+
+            while((span < edgeSpan) && (index + span <= last) &&
+                  (words_[edgeFirst_[edge] + span].Id() == words_[index + span].Id())) {
+                span++;
+            }
+
+            index += span;
+
+            if(span < edgeSpan) {
+                if(index > last) {
+                    // The suffix ends at the maximum depth inside the edge, which must
+                    // lead to a leaf (only leaf edges go deeper). The edge is cut there,
+                    // its leaf becoming the node of the k-gram with both documents.
+                    int leaf = edgeNext_[edge];
+                    assert(IsLeaf(leaf));
+                    AddEntry(leaf, edgeDocument_[edge], edgeLast_[edge]);
+                    edgeLast_[edge] = edgeFirst_[edge] + span - 1;
+                    AddDocument(leaf, marker, document);
+                    return;
+                }
+
+                // The suffix leaves the edge, which is split at this point.
+                // The end marker is unique, so it's never found on an edge.
+                node = SplitEdge(edge, span - 1, document);
+                nodeSuffix_[node] = NONE; // The links are not used.
+                AddSuffixEnd(node, index, marker, document);
+                return;
+            }
+
+            node = edgeNext_[edge];
+            assert(!IsLeaf(node)); // A leaf edge ends with the unique marker.
+
+            if(index > last) {
+                // The suffix ends at a node at the maximum depth.
+                AddDocument(node, marker, document);
+                return;
+            }
+        }
+    }
+
+    // Adds the words of the suffix found after the node, starting at 'index',
+    // as a leaf edge, or as a document entry if only the end marker is left.
+    private void AddSuffixEnd(int node, int index, int marker, Document document) {
+        if(index == marker) {
+            AddDocument(node, marker, document);
+        }
+        else {
+            AddEdge(node, words_[index].Id(), NewEdge(document, index, marker, NewNode()));
+        }
+    }
+
+    // Adds the document to the node where the suffix ends, unless it was
+    // the last one added. With a sentence table each marker is kept,
+    // the owners of the sentences being different.
+    private void AddDocument(int node, int marker, Document document) {
+        int entry = FirstEntry(node);
+
+        if((entry != NONE) && (entryDocument_[entry] == document) && (sentences_ == null)) {
+            return;
+        }
+
+        AddEntry(node, document, marker);
+    }
+
+    private void AddEntry(int node, Document document, int marker) {
+        if(entryCount_ == entryMarker_.length) {
+            int capacity = entryCount_ * 2;
+            Document[] documents = new Document[capacity];
+            System.arraycopy(entryDocument_, 0, documents, 0, entryCount_);
+            entryDocument_ = documents;
+            entryMarker_ = Grow(entryMarker_, capacity);
+            entryNext_ = Grow(entryNext_, capacity);
+        }
+
+        int entry = entryCount_++;
+        entryDocument_[entry] = document;
+        entryMarker_[entry] = marker;
+        entryNext_[entry] = nodeSuffix_[node];
+        nodeSuffix_[node] = entry;
+    }
+
+    // The first document entry of the node, 'NONE' if it has none
+    // (always when the depth is not limited).
+    private int FirstEntry(int node) {
+        return maxDepth_ > 0 ? nodeSuffix_[node] : NONE;
     }
 
     // Splits the edge in two and creates a node that connects them.
-    // A new edge which remains with the prefix is created.
-    private Node SplitEdge(Edge edge, Suffix suffix, Document document) {
-        Node newNode = new Node();
-        Edge newEdge = new Edge(document, edge.FirstIndex(),
-                                edge.FirstIndex() + suffix.Span(),
-                                suffix.Origin(), newNode);
-
-        // Replace the old edge with the new one.
-        suffix.Origin().AddEdge(tempDoc.WordAt(edge.FirstIndex()), newEdge);
-        newNode.SetSuffixNode(suffix.Origin());
-
-        // Adjust the new edge (the associated node remains a leaf).
-        edge.SetFirstIndex(edge.FirstIndex() + suffix.Span() + 1);
-        edge.SetPreviousNode(newNode);
-        newNode.AddEdge(tempDoc.WordAt(edge.FirstIndex()), edge);
+    // The edge keeps the first 'span + 1' words and leads to the new node,
+    // a new edge with the remaining words leads to the old child.
+    private int SplitEdge(int edge, int span, Document document) {
+        int newNode = NewNode();
+        nodeSuffix_[newNode] = activeOrigin_;
+
+        int first = edgeFirst_[edge] + span + 1;
+        int lower = NewEdge(edgeDocument_[edge], first, edgeLast_[edge], edgeNext_[edge]);
+        AddEdge(newNode, words_[first].Id(), lower);
+
+        edgeDocument_[edge] = document;
+        edgeLast_[edge] = first - 1;
+        edgeNext_[edge] = newNode;
         return newNode;
     }
 
     // Advance in the suffix tree until the closest node
     // to the end of the suffix is found.
-    private void MakeCanonic(Suffix suffix) {
-        if(suffix.IsExplicit()) {
-            return; 
-        }
-        
-        Word word = tempDoc.WordAt(suffix.FirstIndex());
-        Edge edge = suffix.Origin().GetEdge(word);
-        
-        while(edge.Span() <= suffix.Span()) {
-            suffix.SetFirstIndex(suffix.FirstIndex() + edge.Span() + 1);
-            suffix.SetOrigin(edge.NextNode());
-
-            if(suffix.FirstIndex() <= suffix.LastIndex()) {
+    private void MakeCanonic() {
+        if(activeFirst_ > activeLast_) {
+            return;
+        }
+
+        int edge = FindEdge(activeOrigin_, words_[activeFirst_].Id());
+        int span = edgeLast_[edge] - edgeFirst_[edge];
+
+        while(span <= activeLast_ - activeFirst_) {
+            activeFirst_ += span + 1;
+            activeOrigin_ = edgeNext_[edge];
+
+            if(activeFirst_ <= activeLast_) {
                 // Search can continue at the next level.
-                word = tempDoc.WordAt(suffix.firstIndex_);
-                edge = suffix.Origin().GetEdge(word);
+                edge = FindEdge(activeOrigin_, words_[activeFirst_].Id());
+                span = edgeLast_[edge] - edgeFirst_[edge];
             }
         }
     }
 
-    private Phrase MakePhrase(List<Edge> edges) {
-        Phrase phrase = new Phrase();
+    private boolean IsLeaf(int node) {
+        return (nodeFirstEdge_[node] == NONE) && (FirstEntry(node) == NONE);
+    }
+
+    private int NewNode() {
+        if(nodeCount_ == nodeSuffix_.length) {
+            int capacity = nodeCount_ * 2;
+            nodeSuffix_ = Grow(nodeSuffix_, capacity);
+            nodeFirstEdge_ = Grow(nodeFirstEdge_, capacity);
+        }
+
+        int node = nodeCount_++;
+        nodeSuffix_[node] = NONE;
+        nodeFirstEdge_[node] = NONE;
+        return node;
+    }
+
+    private int NewEdge(Document document, int first, int last, int next) {
+        if(edgeCount_ == edgeFirst_.length) {
+            int capacity = edgeCount_ * 2;
+            Document[] documents = new Document[capacity];
+            System.arraycopy(edgeDocument_, 0, documents, 0, edgeCount_);
+            edgeDocument_ = documents;
+            edgeFirst_ = Grow(edgeFirst_, capacity);
+            edgeLast_ = Grow(edgeLast_, capacity);
+            edgeNext_ = Grow(edgeNext_, capacity);
+            edgeSibling_ = Grow(edgeSibling_, capacity);
+        }
+
+        int edge = edgeCount_++;
+        edgeDocument_[edge] = document;
+        edgeFirst_[edge] = first;
+        edgeLast_[edge] = last;
+        edgeNext_[edge] = next;
+        edgeSibling_[edge] = NONE;
+        return edge;
+    }
+
+    private void AddToken(Word word) {
+        if(wordCount_ == words_.length) {
+            Word[] words = new Word[wordCount_ * 2];
+            System.arraycopy(words_, 0, words, 0, wordCount_);
+            words_ = words;
+        }
+
+        words_[wordCount_++] = word;
+    }
+
+    private static int[] Grow(int[] array, int capacity) {
+        int[] temp = new int[capacity];
+        System.arraycopy(array, 0, temp, 0, array.length);
+        return temp;
+    }
+
+    // Links the edge to the node and adds it to the table.
+    // The word must not have an edge yet.
+    private void AddEdge(int node, int word, int edge) {
+        LinkEdge(node, edge);
+
+        // The table is kept at most half full.
+        if(2 * (slotCount_ + 1) > slotEdges_.length) {
+            GrowTable();
+        }
+
+        long key = Key(node, word);
+        int mask = slotEdges_.length - 1;
+        int slot = Slot(key);
+
+        while(slotEdges_[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        slotKeys_[slot] = key;
+        slotEdges_[slot] = edge + 1;
+        slotCount_++;
+    }
+
+    // Adds the edge to the list of edges leaving the node.
+    private void LinkEdge(int node, int edge) {
+        edgeSibling_[edge] = nodeFirstEdge_[node];
+        nodeFirstEdge_[node] = edge;
+    }
 
-        for(int i = 0; i < edges.size(); i++) {
-            SuffixTree.Edge edge = edges.get(i);
+    // Returns the edge leaving the node which starts with the word,
+    // or 'NONE' if there is no such edge.
+    private int FindEdge(int node, int word) {
+        long key = Key(node, word);
+        int mask = slotEdges_.length - 1;
 
-            for(int j = edge.FirstIndex(); j <= edge.LastIndex(); j++) {
-                phrase.Words().add(tempDoc.WordAt(j));
+        for(int slot = Slot(key); slotEdges_[slot] != 0; slot = (slot + 1) & mask) {
+            if(slotKeys_[slot] == key) {
+                return slotEdges_[slot] - 1;
             }
         }
 
-        return phrase;
+        return NONE;
     }
 
-    private Cluster GetBaseClustersImpl(Node node, List<Cluster> clusters,
-                                        List<Edge> edges, double minWeight) {
-        assert(!node.IsLeaf());
-        assert(edges.size() > 0);
-        // ------------------------------------------------
-        // Create a new cluster and set the associated sentence.
-        Cluster cluster = new Cluster(MakePhrase(edges));
-        Iterator<Edge> edgeIt = node.Edges();
-        
-        while(edgeIt.hasNext()) {
-            Edge edge = edgeIt.next();
-            Node nextNode = edge.NextNode();
-            
-            if(nextNode.IsLeaf()) {
-                // Add the document to the cluster.
-                if(!cluster.Documents().contains(edge.Document())) {
-                    cluster.Documents().add(edge.Document());
-                }
+    private void GrowTable() {
+        long[] keys = slotKeys_;
+        int[] edges = slotEdges_;
+        slotBits_++;
+        slotKeys_ = new long[1 << slotBits_];
+        slotEdges_ = new int[1 << slotBits_];
+        int mask = slotEdges_.length - 1;
+
+        for(int i = 0; i < edges.length; i++) {
+            if(edges[i] == 0) {
+                continue;
             }
-            else {
-                // The edge leads to an internal node.
-                // All documents that belong to the cluster associated
-                // with this internal node must be added to the current cluster.
-                edges.add(edge);
-                Cluster child = GetBaseClustersImpl(nextNode, clusters, edges, minWeight);
-                edges.remove(edges.size() - 1);
-                int count = child.Documents().size();
-                
-                for(int i = 0; i < count; i++) {
-                    Document doc = child.Documents().get(i);
-
-                    if(!cluster.Documents().contains(doc)) {
-                        cluster.Documents().add(doc);
-                    }
-                }
+
+            int slot = Slot(keys[i]);
+
+            while(slotEdges_[slot] != 0) {
+                slot = (slot + 1) & mask;
             }
-        }
 
-        // The cluster is selected only if its weight
-        // is at least equal to the minimum requested weight.
-        cluster.ComputeWeight();
-        
-        if(cluster.Weight() > minWeight) {
-            clusters.add(cluster);
+            slotKeys_[slot] = keys[i];
+            slotEdges_[slot] = edges[i];
         }
-        
-        return cluster;
+    }
+
+    // The word identifiers are negative for the sentence markers.
+    private static long Key(int node, int word) {
+        return ((long)node << 32) | (word & 0xFFFFFFFFL);
+    }
+
+    private int Slot(long key) {
+        // Fibonacci hashing, the high bits are the best mixed.
+        return (int)((key * 0x9E3779B97F4A7C15L) >>> (64 - slotBits_));
     }
 }
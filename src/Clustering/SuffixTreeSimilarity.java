@@ -0,0 +1,546 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The document similarity of Chim and Deng ("A New Suffix Tree Similarity
+// Measure for Document Clustering"): each internal node of the suffix tree
+// is a feature, found in the documents having a suffix which passes
+// through the node. The weight of a feature in a document is
+//   (1 + log(tf)) * log(1 + N / df)
+// where 'tf' is the number of suffixes of the document passing through
+// the node and 'df' the number of documents having such suffixes, and
+// the similarity of two documents is the cosine of their vectors.
+//
+// The vectors are built in one postorder traversal of the frozen tree.
+// The nearest neighbours of all documents are found with a sparse
+// product of the matrix with its transpose: the rows are split in blocks
+// processed in parallel, and each row is multiplied only by the documents
+// sharing one of its features, so the pairs with no common feature
+// cost nothing. Only the 'k' best neighbours of each document are kept.
+//
+// A feature found in most documents costs a lot (each pair of its
+// documents is visited) but says little about them; the features found
+// in more than a fraction of the documents can be left out.
+public final class SuffixTreeSimilarity {
+    private static final int BLOCK_SIZE = 64;
+    private static final double DEFAULT_MAX_DOCUMENT_FRACTION = 0.05;
+
+    // The 'k' nearest neighbours of each document, by descending similarity.
+    public static final class Neighbours {
+        private int k_;
+        private int[] counts_;
+        private int[] documents_;
+        private float[] similarities_;
+
+        private Neighbours(int documentCount, int k) {
+            k_ = k;
+            counts_ = new int[documentCount];
+            documents_ = new int[documentCount * k];
+            similarities_ = new float[documentCount * k];
+        }
+
+        // The number of neighbours of the document, at most 'k'.
+        // Documents with no common feature are never neighbours.
+        public int Count(int document) { return counts_[document]; }
+
+        public int Neighbour(int document, int i) {
+            assert(i >= 0 && i < counts_[document]);
+            // ------------------------------------------------
+            return documents_[document * k_ + i];
+        }
+
+        public double Similarity(int document, int i) {
+            assert(i >= 0 && i < counts_[document]);
+            // ------------------------------------------------
+            return similarities_[document * k_ + i];
+        }
+
+        public int DocumentCount() { return counts_.length; }
+    }
+
+    /*
+    * Private members.
+    */
+    private int documentCount_;
+    private int featureCount_;   // All nodes used, including the ones
+                                 // found in a single document.
+    // The documents of each feature shared by several documents,
+    // with the weights divided by the norm of the document vector.
+    private int[] featureStart_;
+    private int[] featureDocuments_;
+    private float[] featureWeights_;
+    // The same values, grouped by document.
+    private int[] rowStart_;
+    private int[] rowFeatures_;
+    private float[] rowWeights_;
+
+    // Used while building the vectors.
+    private FrozenSuffixTree tree_;
+    private int maxDf_;
+    private double[] norms_;
+    private IntList docs_;     // The documents of the visited features...
+    private IntList counts_;   // ...and the number of their suffixes.
+    private IntList entries_;  // (document, weight bits) for each feature, then -1.
+
+    /*
+    * Constructors.
+    */
+    // Builds the vectors of the documents read by the reader.
+    // The features found in more than 'maxDocumentFraction' of the documents
+    // are not used (1 to use all of them).
+    public SuffixTreeSimilarity(DocumentReader reader, double maxDocumentFraction) {
+        assert(reader != null);
+        assert(maxDocumentFraction > 0 && maxDocumentFraction <= 1);
+        // ------------------------------------------------
+        // The documents are identified by their index, which
+        // can be larger than their number if some were skipped.
+        List<Document> documents = reader.Documents();
+        documentCount_ = documents.isEmpty() ? 0 :
+                         documents.get(documents.size() - 1).Index() + 1;
+        maxDf_ = Math.max(2, (int)(maxDocumentFraction * documents.size()));
+        tree_ = reader.FrozenTree();
+        norms_ = new double[documentCount_];
+        docs_ = new IntList();
+        counts_ = new IntList();
+        entries_ = new IntList();
+
+        if(tree_.NodeCount() > 0) {
+            CollectFeatures(tree_.Root(), documents.size());
+        }
+
+        BuildMatrix();
+        tree_ = null;
+        docs_ = counts_ = entries_ = null;
+        norms_ = null;
+    }
+
+    // Leaves out the features found in more than 5% of the documents.
+    public SuffixTreeSimilarity(DocumentReader reader) {
+        this(reader, DEFAULT_MAX_DOCUMENT_FRACTION);
+    }
+
+    /*
+    * Public methods.
+    */
+    public int DocumentCount() { return documentCount_; }
+    public int FeatureCount() { return featureCount_; }
+
+    // The number of (document, feature) pairs kept for the product.
+    public long NonZeroCount() { return rowFeatures_.length; }
+
+    // The cosine similarity of two documents.
+    public double Similarity(int a, int b) {
+        int i = rowStart_[a];
+        int j = rowStart_[b];
+        double sum = 0;
+
+        // The features of each row are sorted.
+        while((i < rowStart_[a + 1]) && (j < rowStart_[b + 1])) {
+            if(rowFeatures_[i] < rowFeatures_[j]) {
+                i++;
+            }
+            else if(rowFeatures_[i] > rowFeatures_[j]) {
+                j++;
+            }
+            else {
+                sum += (double)rowWeights_[i++] * rowWeights_[j++];
+            }
+        }
+
+        return sum;
+    }
+
+    // Finds the 'k' most similar documents of each document
+    // using the specified number of threads.
+    public Neighbours FindNeighbours(final int k, int threads) {
+        assert(k > 0);
+        assert(threads > 0);
+        // ------------------------------------------------
+        final Neighbours neighbours = new Neighbours(documentCount_, k);
+        final AtomicInteger nextBlock = new AtomicInteger();
+        final int blockCount = (documentCount_ + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        final Throwable[] error = new Throwable[1];
+        Thread[] workers = new Thread[Math.min(threads, Math.max(1, blockCount))];
+
+        for(int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        // Each worker has its own accumulator.
+                        double[] sums = new double[documentCount_];
+                        int[] touched = new int[documentCount_];
+                        int block;
+
+                        while((block = nextBlock.getAndIncrement()) < blockCount) {
+                            int end = Math.min(documentCount_, (block + 1) * BLOCK_SIZE);
+
+                            for(int doc = block * BLOCK_SIZE; doc < end; doc++) {
+                                MultiplyRow(doc, k, sums, touched, neighbours);
+                            }
+                        }
+                    }
+                    catch(Throwable e) {
+                        synchronized(error) {
+                            error[0] = e;
+                        }
+                    }
+                }
+            }, "SuffixTreeSimilarity");
+
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        for(int i = 0; i < workers.length; i++) {
+            try {
+                workers[i].join();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        synchronized(error) {
+            if(error[0] instanceof RuntimeException) {
+                throw (RuntimeException)error[0];
+            }
+            else if(error[0] instanceof Error) {
+                throw (Error)error[0];
+            }
+        }
+
+        return neighbours;
+    }
+
+    // Uses one thread for each processor.
+    public Neighbours FindNeighbours(int k) {
+        return FindNeighbours(k, Runtime.getRuntime().availableProcessors());
+    }
+
+    /*
+    * Private methods.
+    */
+    // Appends the documents owning the sentence of the leaf edge,
+    // with the number of times the sentence is found in each one.
+    private void AddLeafDocuments(int edge) {
+        SentenceTable sentences = tree_.Sentences();
+        int owner = -1;
+
+        if(sentences != null) {
+            owner = sentences.FirstOwner(tree_.WordAt(tree_.LastIndex(edge)));
+        }
+
+        if(owner == -1) {
+            docs_.Add(tree_.DocumentOf(edge).Index());
+            counts_.Add(1);
+            return;
+        }
+
+        for(; owner != -1; owner = sentences.NextOwner(owner)) {
+            docs_.Add(sentences.OwnerDocument(owner).Index());
+            counts_.Add(sentences.OwnerCount(owner));
+        }
+    }
+
+    // Visits the subtree of the node in postorder and appends the features
+    // of its internal nodes. Returns the (document, suffix count) pairs
+    // of the node, sorted by document, at the end of 'docs_' and 'counts_'
+    // starting at the returned position; the caller removes them.
+    private int CollectFeatures(int node, int n) {
+        int start = docs_.Count();
+        int first = tree_.FirstEdge(node);
+        int last = first + tree_.EdgeCount(node);
+
+        for(int edge = first; edge < last; edge++) {
+            if(tree_.IsLeafEdge(edge)) {
+                AddLeafDocuments(edge);
+            }
+            else {
+                int childStart = CollectFeatures(tree_.NextNode(edge), n);
+
+                // The pairs of the child, left at the end
+                // of the lists, become pairs of this node.
+                assert(childStart >= start);
+            }
+        }
+
+        // Sort the pairs by document and add the counts of each document.
+        int end = docs_.Count();
+        long[] pairs = new long[end - start];
+
+        for(int i = start; i < end; i++) {
+            pairs[i - start] = ((long)docs_.Get(i) << 32) | counts_.Get(i);
+        }
+
+        Arrays.sort(pairs);
+        docs_.SetCount(start);
+        counts_.SetCount(start);
+
+        for(int i = 0; i < pairs.length; i++) {
+            int doc = (int)(pairs[i] >>> 32);
+            int count = (int)pairs[i];
+
+            if((docs_.Count() > start) && (docs_.Get(docs_.Count() - 1) == doc)) {
+                counts_.Set(counts_.Count() - 1, counts_.Get(counts_.Count() - 1) + count);
+            }
+            else {
+                docs_.Add(doc);
+                counts_.Add(count);
+            }
+        }
+
+        if(node != tree_.Root()) {
+            AddFeature(start, n);
+        }
+
+        return start;
+    }
+
+    // Adds the feature of a node whose pairs start at 'start'.
+    private void AddFeature(int start, int n) {
+        int df = docs_.Count() - start;
+        featureCount_++;
+
+        if(df > maxDf_) {
+            return; // Found in too many documents.
+        }
+
+        double idf = Math.log(1.0 + (double)n / df);
+
+        for(int i = start; i < docs_.Count(); i++) {
+            double weight = (1.0 + Math.log(counts_.Get(i))) * idf;
+            norms_[docs_.Get(i)] += weight * weight;
+        }
+
+        // A feature of a single document changes only its norm.
+        if(df > 1) {
+            for(int i = start; i < docs_.Count(); i++) {
+                double weight = (1.0 + Math.log(counts_.Get(i))) * idf;
+                entries_.Add(docs_.Get(i));
+                entries_.Add(Float.floatToRawIntBits((float)weight));
+            }
+
+            entries_.Add(-1); // Marks the end of the feature.
+        }
+    }
+
+    // Creates the column and row arrays from the collected features,
+    // dividing the weights by the norms of the documents.
+    private void BuildMatrix() {
+        int entries = 0;
+        int features = 0;
+
+        for(int i = 0; i < entries_.Count(); i++) {
+            if(entries_.Get(i) == -1) {
+                features++;
+            }
+            else {
+                entries++;
+                i++;
+            }
+        }
+
+        featureStart_ = new int[features + 1];
+        featureDocuments_ = new int[entries];
+        featureWeights_ = new float[entries];
+        rowStart_ = new int[documentCount_ + 1];
+        int feature = 0;
+        int entry = 0;
+
+        for(int i = 0; i < entries_.Count(); i++) {
+            if(entries_.Get(i) == -1) {
+                featureStart_[++feature] = entry;
+                continue;
+            }
+
+            int doc = entries_.Get(i);
+            double weight = Float.intBitsToFloat(entries_.Get(++i));
+            featureDocuments_[entry] = doc;
+            featureWeights_[entry] = (float)(weight / Math.sqrt(norms_[doc]));
+            rowStart_[doc + 1]++;
+            entry++;
+        }
+
+        // Transpose, the features of each row being added in ascending order.
+        for(int doc = 0; doc < documentCount_; doc++) {
+            rowStart_[doc + 1] += rowStart_[doc];
+        }
+
+        rowFeatures_ = new int[entries];
+        rowWeights_ = new float[entries];
+        int[] next = Arrays.copyOf(rowStart_, documentCount_);
+
+        for(int f = 0; f < features; f++) {
+            for(int i = featureStart_[f]; i < featureStart_[f + 1]; i++) {
+                int position = next[featureDocuments_[i]]++;
+                rowFeatures_[position] = f;
+                rowWeights_[position] = featureWeights_[i];
+            }
+        }
+    }
+
+    // Computes the similarities of the document with all documents sharing
+    // a feature with it and keeps the best 'k'.
+    private void MultiplyRow(int doc, int k, double[] sums, int[] touched,
+                             Neighbours neighbours) {
+        int touchedCount = 0;
+
+        for(int i = rowStart_[doc]; i < rowStart_[doc + 1]; i++) {
+            int feature = rowFeatures_[i];
+            double weight = rowWeights_[i];
+
+            for(int j = featureStart_[feature]; j < featureStart_[feature + 1]; j++) {
+                int other = featureDocuments_[j];
+
+                if(other == doc) {
+                    continue;
+                }
+
+                if(sums[other] == 0) {
+                    touched[touchedCount++] = other;
+                }
+
+                sums[other] += weight * featureWeights_[j];
+            }
+        }
+
+        // Keep the best 'k' in a min-heap, the worst being at the top.
+        int[] heapDocs = new int[Math.min(k, touchedCount)];
+        double[] heapSums = new double[heapDocs.length];
+        int size = 0;
+
+        for(int i = 0; i < touchedCount; i++) {
+            int other = touched[i];
+            double sum = sums[other];
+            sums[other] = 0;
+
+            if(size < heapDocs.length) {
+                heapDocs[size] = other;
+                heapSums[size] = sum;
+                SiftUp(heapDocs, heapSums, size++);
+            }
+            else if(Better(sum, other, heapSums[0], heapDocs[0])) {
+                heapDocs[0] = other;
+                heapSums[0] = sum;
+                SiftDown(heapDocs, heapSums, size);
+            }
+        }
+
+        // Remove the worst first, filling the row from its end.
+        int base = doc * k;
+        neighbours.counts_[doc] = size;
+
+        for(int i = size - 1; i >= 0; i--) {
+            neighbours.documents_[base + i] = heapDocs[0];
+            neighbours.similarities_[base + i] = (float)heapSums[0];
+            heapDocs[0] = heapDocs[i];
+            heapSums[0] = heapSums[i];
+            SiftDown(heapDocs, heapSums, i);
+        }
+    }
+
+    // Orders by similarity, then by document index for the ties.
+    private static boolean Better(double sum, int doc, double otherSum, int otherDoc) {
+        return (sum > otherSum) || ((sum == otherSum) && (doc < otherDoc));
+    }
+
+    private static void SiftUp(int[] docs, double[] sums, int i) {
+        while(i > 0) {
+            int parent = (i - 1) / 2;
+
+            if(!Better(sums[parent], docs[parent], sums[i], docs[i])) {
+                break;
+            }
+
+            Swap(docs, sums, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void SiftDown(int[] docs, double[] sums, int size) {
+        int i = 0;
+
+        while(true) {
+            int left = 2 * i + 1;
+            int worst = i;
+
+            if((left < size) && Better(sums[worst], docs[worst], sums[left], docs[left])) {
+                worst = left;
+            }
+
+            if((left + 1 < size) &&
+               Better(sums[worst], docs[worst], sums[left + 1], docs[left + 1])) {
+                worst = left + 1;
+            }
+
+            if(worst == i) {
+                return;
+            }
+
+            Swap(docs, sums, i, worst);
+            i = worst;
+        }
+    }
+
+    private static void Swap(int[] docs, double[] sums, int a, int b) {
+        int doc = docs[a];
+        docs[a] = docs[b];
+        docs[b] = doc;
+        double sum = sums[a];
+        sums[a] = sums[b];
+        sums[b] = sum;
+    }
+
+    // A growable list of integers, avoids boxing each value.
+    private static final class IntList {
+        private int[] values_ = new int[16];
+        private int count_;
+
+        public void Add(int value) {
+            if(count_ == values_.length) {
+                values_ = Arrays.copyOf(values_, values_.length * 2);
+            }
+
+            values_[count_++] = value;
+        }
+
+        public int Get(int index) { return values_[index]; }
+        public void Set(int index, int value) { values_[index] = value; }
+        public int Count() { return count_; }
+        public void SetCount(int value) { count_ = value; }
+    }
+}
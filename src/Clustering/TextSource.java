@@ -0,0 +1,133 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// A source which reads the documents from strings.
+// The sentences are delimited by '.', '!' or '?'
+// and the words by whitespace; empty words and sentences are skipped.
+public final class TextSource implements IDocumentSource {
+    private static final String SENTENCE_DELIMITERS = "[.!?]";
+    private static final String WORD_DELIMITERS = "\\s+";
+
+    private Iterator<String> documents_;
+    private String[] sentences_;
+    private String[] words_;
+    private int sentencePosition_;
+    private int wordPosition_;
+
+    /*
+    * Constructors.
+    */
+    public TextSource(Iterator<String> documents) {
+        assert(documents != null);
+        // ------------------------------------------------
+        documents_ = documents;
+    }
+
+    public TextSource(List<String> documents) {
+        this(documents.iterator());
+    }
+
+    /*
+    * Public methods.
+    */
+    public boolean HasDocument() {
+        return (sentences_ != null) || documents_.hasNext();
+    }
+
+    public boolean HasSentence() {
+        if(sentences_ == null) {
+            if(!documents_.hasNext()) {
+                return false;
+            }
+
+            String text = documents_.next();
+            sentences_ = text != null ? text.split(SENTENCE_DELIMITERS) : new String[0];
+            sentencePosition_ = 0;
+        }
+
+        // Skip over the sentences without any words.
+        while((sentencePosition_ < sentences_.length) &&
+              (sentences_[sentencePosition_].trim().length() == 0)) {
+            sentencePosition_++;
+        }
+
+        if(sentencePosition_ >= sentences_.length) {
+            sentences_ = null;
+            return false;
+        }
+
+        return true;
+    }
+
+    public boolean HasWord() {
+        if(words_ == null) {
+            if(!HasSentence()) {
+                return false;
+            }
+
+            words_ = SplitWords(sentences_[sentencePosition_++]);
+            wordPosition_ = 0;
+        }
+
+        if(wordPosition_ >= words_.length) {
+            words_ = null;
+            return false;
+        }
+
+        return true;
+    }
+
+    public String NextWord() {
+        return words_[wordPosition_++];
+    }
+
+    /*
+    * Private methods.
+    */
+    private static String[] SplitWords(String sentence) {
+        String[] parts = sentence.split(WORD_DELIMITERS);
+        ArrayList<String> words = new ArrayList<String>(parts.length);
+
+        for(int i = 0; i < parts.length; i++) {
+            if(parts[i].length() > 0) {
+                words.add(parts[i]);
+            }
+        }
+
+        return words.toArray(new String[words.size()]);
+    }
+}
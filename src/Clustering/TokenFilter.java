@@ -0,0 +1,210 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+// Normalizes the words read from a source and decides which of them
+// are inserted in the suffix tree. A word can be rejected because it is
+// a stop word, or because the number of documents containing it is outside
+// the configured range. The document frequencies are obtained by
+// a first, cheap pass over the documents ('CountFrequencies'),
+// which doesn't build any tree.
+public final class TokenFilter {
+    public static final Set<String> ENGLISH_STOP_WORDS =
+        Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "a", "about", "above", "after", "again", "against", "all", "am",
+            "an", "and", "any", "are", "as", "at", "be", "because", "been",
+            "before", "being", "below", "between", "both", "but", "by", "can",
+            "could", "did", "do", "does", "doing", "down", "during", "each",
+            "few", "for", "from", "further", "had", "has", "have", "having",
+            "he", "her", "here", "hers", "herself", "him", "himself", "his",
+            "how", "i", "if", "in", "into", "is", "it", "its", "itself", "just",
+            "me", "more", "most", "my", "myself", "no", "nor", "not", "now",
+            "of", "off", "on", "once", "only", "or", "other", "our", "ours",
+            "ourselves", "out", "over", "own", "same", "she", "should", "so",
+            "some", "such", "than", "that", "the", "their", "theirs", "them",
+            "themselves", "then", "there", "these", "they", "this", "those",
+            "through", "to", "too", "under", "until", "up", "very", "was", "we",
+            "were", "what", "when", "where", "which", "while", "who", "whom",
+            "why", "will", "with", "would", "you", "your", "yours", "yourself",
+            "yourselves")));
+
+    /*
+    * Private members.
+    */
+    private boolean lowerCase_;
+    private boolean stemming_;
+    private Set<String> stopWords_;
+    private int minDf_;
+    private double maxDfRatio_;
+    private Vocabulary frequencies_; // The document frequencies from the first pass.
+    private int documentCount_;
+
+    /*
+    * Constructors.
+    */
+    // Creates a filter which only converts the words to lower case
+    // and removes the punctuation surrounding them.
+    public TokenFilter() {
+        lowerCase_ = true;
+        stopWords_ = Collections.emptySet();
+        maxDfRatio_ = 1.0;
+    }
+
+    /*
+    * Public methods.
+    */
+    // Returns the normalized form of the word,
+    // or null if the word should be ignored.
+    public String Apply(String word) {
+        assert(word != null);
+        // ------------------------------------------------
+        word = Normalize(word);
+
+        if(word == null) {
+            return null;
+        }
+
+        if(frequencies_ != null) {
+            int id = frequencies_.Find(word);
+            int df = id != -1 ? frequencies_.Df(id) : 0;
+
+            if((df < minDf_) || (df > maxDfRatio_ * documentCount_)) {
+                return null;
+            }
+        }
+
+        return word;
+    }
+
+    // Counts the number of documents in which each (normalized) word
+    // is found. Must be called before the filtering starts if a document
+    // frequence limit is used. The source should provide the same
+    // documents as the one that is later filtered.
+    public void CountFrequencies(IDocumentSource source) {
+        assert(source != null);
+        // ------------------------------------------------
+        Vocabulary frequencies = new Vocabulary();
+        int[] lastDocument = new int[1024]; // The last document in which a word was found.
+        int documents = 0;
+
+        while(source.HasDocument()) {
+            documents++;
+
+            while(source.HasSentence()) {
+                while(source.HasWord()) {
+                    String word = Normalize(source.NextWord());
+
+                    if(word == null) {
+                        continue;
+                    }
+
+                    int id = frequencies.Add(word);
+
+                    if(id >= lastDocument.length) {
+                        int[] temp = new int[lastDocument.length * 2];
+                        System.arraycopy(lastDocument, 0, temp, 0, lastDocument.length);
+                        lastDocument = temp;
+                    }
+
+                    if(lastDocument[id] != documents) {
+                        lastDocument[id] = documents;
+                        frequencies.IncrementDf(id);
+                    }
+                }
+            }
+        }
+
+        frequencies_ = frequencies;
+        documentCount_ = documents;
+    }
+
+    public boolean LowerCase() { return lowerCase_; }
+    public void SetLowerCase(boolean value) { lowerCase_ = value; }
+
+    public boolean Stemming() { return stemming_; }
+    public void SetStemming(boolean value) { stemming_ = value; }
+
+    public Set<String> StopWords() { return stopWords_; }
+    public void SetStopWords(Set<String> value) {
+        assert(value != null);
+        // ------------------------------------------------
+        stopWords_ = value;
+    }
+
+    // Words found in less than 'minDf' documents are ignored.
+    public int MinDf() { return minDf_; }
+    public void SetMinDf(int value) { minDf_ = value; }
+
+    // Words found in more than 'maxDfRatio' of the documents are ignored.
+    public double MaxDfRatio() { return maxDfRatio_; }
+    public void SetMaxDfRatio(double value) { maxDfRatio_ = value; }
+
+    /*
+    * Private methods.
+    */
+    // Removes the punctuation around the word, converts it to lower case,
+    // rejects the stop words and applies the stemmer.
+    private String Normalize(String word) {
+        int start = 0;
+        int end = word.length();
+
+        while((start < end) && !Character.isLetterOrDigit(word.charAt(start))) {
+            start++;
+        }
+
+        while((end > start) && !Character.isLetterOrDigit(word.charAt(end - 1))) {
+            end--;
+        }
+
+        if(start == end) {
+            return null;
+        }
+
+        word = word.substring(start, end);
+
+        if(lowerCase_) {
+            word = word.toLowerCase(Locale.ENGLISH);
+        }
+
+        if(stopWords_.contains(word)) {
+            return null;
+        }
+
+        return stemming_ ? Stemmer.Stem(word) : word;
+    }
+}
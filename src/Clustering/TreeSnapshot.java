@@ -0,0 +1,403 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// A read-only image of a built suffix tree, together with the words
+// and weights needed to extract the base clusters. The image is written
+// to a file once and is later memory-mapped and copied, section by section,
+// into the arrays of a 'FrozenSuffixTree', which extracts the clusters.
+// Reopening it does not rebuild the tree and does not create an object
+// for each node or edge.
+//
+// File layout (all values are big-endian):
+//   header   - magic, version and the counts of the sections below
+//   weights  - double for each word
+//   offsets  - int for each word (+1), the start of the word in 'chars'
+//   chars    - the characters of all words
+//   tokens   - int for each word in the tree, the index of the word
+//              or -1 if it is never part of a phrase
+//   prefix   - double for each word in the tree (+1), the prefix sums
+//              of the word weights (see 'FrozenSuffixTree.RangeWeight')
+//   edges    - first index, last index, document index and next node
+//              for each edge (-1 if the edge leads to a leaf)
+//   nodes    - first edge, edge count for each internal node
+//   aliases  - original and alias index for each near-duplicate document
+//              (see 'Document.Aliases'), sorted by the original
+// The layout is the one of 'FrozenSuffixTree': the internal nodes are
+// stored in depth-first order, with the root first, and the edges
+// of a node are contiguous, sorted by their first word.
+public final class TreeSnapshot {
+    private static final int MAGIC = 0x44435354; // "DCST"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 36;
+    private static final int EDGE_SIZE = 4;
+    private static final int NODE_SIZE = 2;
+
+    /*
+    * Private members.
+    */
+    private FrozenSuffixTree tree_;
+    private int documentCount_;
+
+    /*
+    * Constructors.
+    */
+    private TreeSnapshot() {}
+
+    /*
+    * Public methods.
+    */
+    // Writes the tree built by the specified reader to a file.
+    // The reader must have already read all its documents. The trees
+    // with sentences shared by several documents can't be saved
+    // (see 'DocumentReader.SetShareSentences').
+    public static void Save(DocumentReader reader, File file) throws IOException {
+        assert(reader != null);
+        assert(file != null);
+        // ------------------------------------------------
+        if(reader.DuplicateSentences() > 0) {
+            throw new IllegalArgumentException("Trees with shared sentences can't be saved");
+        }
+
+        FrozenSuffixTree tree = reader.FrozenTree();
+        IntList edges = new IntList();
+        IntList nodes = new IntList();
+        int[] tokens = new int[tree.WordCount()];
+        HashMap<Word, Integer> wordIds = new HashMap<Word, Integer>();
+        ArrayList<Word> words = new ArrayList<Word>();
+
+        for(int i = 0; i < tokens.length; i++) {
+            tokens[i] = -1;
+        }
+
+        // The frozen tree already has the layout of the file, its nodes
+        // and edges are copied in the same order. Only the words found
+        // on the edges leading to internal nodes can be part of a phrase,
+        // the rest (including the sentence end markers) are not saved.
+        for(int node = 0; node < tree.NodeCount(); node++) {
+            nodes.Add(tree.FirstEdge(node));
+            nodes.Add(tree.EdgeCount(node));
+        }
+
+        for(int edge = 0; edge < tree.EdgeCount(); edge++) {
+            edges.Add(tree.FirstIndex(edge));
+            edges.Add(tree.LastIndex(edge));
+            edges.Add(tree.DocumentOf(edge).Index());
+            edges.Add(tree.NextNode(edge));
+
+            if(tree.IsLeafEdge(edge)) {
+                continue;
+            }
+
+            for(int i = tree.FirstIndex(edge); i <= tree.LastIndex(edge); i++) {
+                if(tokens[i] != -1) {
+                    continue;
+                }
+
+                Word word = tree.WordAt(i);
+                Integer id = wordIds.get(word);
+
+                if(id == null) {
+                    id = words.size();
+                    wordIds.put(word, id);
+                    words.add(word);
+                }
+
+                tokens[i] = id;
+            }
+        }
+
+        // The near-duplicates are not in the tree, they are
+        // added to their original when it's loaded.
+        IntList aliases = new IntList();
+        List<Document> documents = reader.Documents();
+
+        for(int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+
+            for(int j = 0; j < document.Aliases().size(); j++) {
+                aliases.Add(document.Index());
+                aliases.Add(document.Aliases().get(j).Index());
+            }
+        }
+
+        // Write the sections in the order expected by 'Open'.
+        DataOutputStream stream = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+
+        try {
+            int charCount = 0;
+
+            for(int i = 0; i < words.size(); i++) {
+                charCount += words.get(i).Word().length();
+            }
+
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            // The documents are indexed by their position in the source,
+            // which can be larger than their number if some were skipped.
+            stream.writeInt(documents.isEmpty() ? 0 :
+                            documents.get(documents.size() - 1).Index() + 1);
+            stream.writeInt(words.size());
+            stream.writeInt(charCount);
+            stream.writeInt(tokens.length);
+            stream.writeInt(edges.Count() / EDGE_SIZE);
+            stream.writeInt(nodes.Count() / NODE_SIZE);
+            stream.writeInt(aliases.Count() / 2);
+
+            for(int i = 0; i < words.size(); i++) {
+                stream.writeDouble(words.get(i).Weight());
+            }
+
+            int offset = 0;
+
+            for(int i = 0; i < words.size(); i++) {
+                stream.writeInt(offset);
+                offset += words.get(i).Word().length();
+            }
+
+            stream.writeInt(offset);
+
+            for(int i = 0; i < words.size(); i++) {
+                stream.writeChars(words.get(i).Word());
+            }
+
+            for(int i = 0; i < tokens.length; i++) {
+                stream.writeInt(tokens[i]);
+            }
+
+            for(int i = 0; i <= tokens.length; i++) {
+                stream.writeDouble(tree.WeightPrefix(i));
+            }
+
+            edges.Write(stream);
+            nodes.Write(stream);
+            aliases.Write(stream);
+        }
+        finally {
+            stream.close();
+        }
+    }
+
+    // Maps a file written by 'Save' and loads the tree,
+    // reading each section of the file once, in order.
+    public static TreeSnapshot Open(File file) throws IOException {
+        assert(file != null);
+        // ------------------------------------------------
+        RandomAccessFile stream = new RandomAccessFile(file, "r");
+
+        try {
+            FileChannel channel = stream.getChannel();
+            ByteBuffer header = Map(channel, 0, HEADER_SIZE);
+
+            if((header.getInt() != MAGIC) || (header.getInt() != VERSION)) {
+                throw new IOException("Not a suffix tree snapshot: " + file);
+            }
+
+            TreeSnapshot snapshot = new TreeSnapshot();
+            snapshot.documentCount_ = header.getInt();
+            int wordCount = header.getInt();
+            int charCount = header.getInt();
+            int tokenCount = header.getInt();
+            int edgeCount = header.getInt();
+            int nodeCount = header.getInt();
+            int aliasCount = header.getInt();
+
+            long position = HEADER_SIZE;
+            DoubleBuffer weights = Map(channel, position, 8L * wordCount).asDoubleBuffer();
+            position += 8L * wordCount;
+            IntBuffer offsets = Map(channel, position, 4L * (wordCount + 1)).asIntBuffer();
+            position += 4L * (wordCount + 1);
+            CharBuffer chars = Map(channel, position, 2L * charCount).asCharBuffer();
+            position += 2L * charCount;
+            IntBuffer tokens = Map(channel, position, 4L * tokenCount).asIntBuffer();
+            position += 4L * tokenCount;
+            DoubleBuffer prefix = Map(channel, position, 8L * (tokenCount + 1)).asDoubleBuffer();
+            position += 8L * (tokenCount + 1);
+            IntBuffer edges = Map(channel, position, 4L * EDGE_SIZE * edgeCount).asIntBuffer();
+            position += 4L * EDGE_SIZE * edgeCount;
+            IntBuffer nodes = Map(channel, position, 4L * NODE_SIZE * nodeCount).asIntBuffer();
+            position += 4L * NODE_SIZE * nodeCount;
+            IntBuffer aliases = Map(channel, position, 8L * aliasCount).asIntBuffer();
+            position += 8L * aliasCount;
+
+            if(position != channel.size()) {
+                throw new IOException("Truncated suffix tree snapshot: " + file);
+            }
+
+            Vocabulary vocabulary = new Vocabulary();
+            Word[] words = new Word[wordCount];
+            char[] buffer = new char[16];
+
+            for(int id = 0; id < wordCount; id++) {
+                int start = offsets.get(id);
+                int length = offsets.get(id + 1) - start;
+
+                if(length > buffer.length) {
+                    buffer = new char[length * 2];
+                }
+
+                chars.position(start);
+                chars.get(buffer, 0, length);
+                words[id] = vocabulary.WordAt(vocabulary.Add(new String(buffer, 0, length)));
+                words[id].SetWeight(weights.get(id));
+            }
+
+            // The edges of the file have no first word identifiers,
+            // the tree is used only to extract the clusters.
+            FrozenSuffixTree tree = new FrozenSuffixTree();
+            tree.Allocate(nodeCount, edgeCount, tokenCount, null, 0);
+            Document[] documents = new Document[snapshot.documentCount_];
+
+            // The tokens never part of a phrase are left null.
+            for(int i = 0; i < tokenCount; i++) {
+                int id = tokens.get(i);
+                tree.SetWord(i, id != -1 ? words[id] : null);
+            }
+
+            for(int i = 0; i <= tokenCount; i++) {
+                tree.SetWeightPrefix(i, prefix.get(i));
+            }
+
+            for(int edge = 0; edge < edgeCount; edge++) {
+                int first = edges.get();
+                int last = edges.get();
+                int document = edges.get();
+                int next = edges.get();
+                tree.SetEdge(edge, 0, first, last, next,
+                             DocumentAt(documents, aliases, document));
+            }
+
+            for(int node = 0; node < nodeCount; node++) {
+                int first = nodes.get();
+                tree.SetNode(node, first, nodes.get());
+            }
+
+            snapshot.tree_ = tree;
+            return snapshot;
+        }
+        finally {
+            // The mappings remain valid after the file is closed.
+            stream.close();
+        }
+    }
+
+    // Returns a list with all base clusters having a weight
+    // at least equal to the specified one. The clusters are the same
+    // (and in the same order) as the ones returned by the frozen tree.
+    public List<Cluster> GetBaseClusters(double minWeight) {
+        return tree_.GetBaseClusters(minWeight);
+    }
+
+    public int DocumentCount() { return documentCount_; }
+    public int NodeCount() { return tree_.NodeCount(); }
+
+    /*
+    * Private methods.
+    */
+    private static ByteBuffer Map(FileChannel channel, long position,
+                                  long size) throws IOException {
+        if(size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot section too large to be mapped");
+        }
+
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    // Returns the document, created with its aliases the first time it's found.
+    private static Document DocumentAt(Document[] documents, IntBuffer aliases, int index) {
+        if(documents[index] == null) {
+            Document document = new Document(index);
+            documents[index] = document;
+
+            // Find the first alias of the document, if any.
+            int left = 0;
+            int right = aliases.limit() / 2;
+
+            while(left < right) {
+                int middle = (left + right) >>> 1;
+
+                if(aliases.get(middle * 2) < index) {
+                    left = middle + 1;
+                }
+                else {
+                    right = middle;
+                }
+            }
+
+            for(int i = left; (i < aliases.limit() / 2) && (aliases.get(i * 2) == index); i++) {
+                document.AddAlias(DocumentAt(documents, aliases, aliases.get(i * 2 + 1)));
+            }
+        }
+
+        return documents[index];
+    }
+
+    // A growable list of integers, avoids boxing each value.
+    private static final class IntList {
+        private int[] values_ = new int[16];
+        private int count_;
+
+        public void Add(int value) {
+            if(count_ == values_.length) {
+                int[] temp = new int[values_.length * 2];
+                System.arraycopy(values_, 0, temp, 0, count_);
+                values_ = temp;
+            }
+
+            values_[count_++] = value;
+        }
+
+        public int Count() { return count_; }
+
+        public void Write(DataOutputStream stream) throws IOException {
+            for(int i = 0; i < count_; i++) {
+                stream.writeInt(values_[i]);
+            }
+        }
+    }
+}
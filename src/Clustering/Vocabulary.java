@@ -0,0 +1,445 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Assigns dense integer identifiers to words and stores their statistics.
+// The characters of all words are kept in a shared arena, while the
+// document frequencies and weights are kept in primitive arrays
+// indexed by identifier, so a word costs tens of bytes instead of
+// the hundreds needed by maps of objects.
+//
+// The weights are computed from statistics summed over the documents
+// of all readers sharing the vocabulary (see 'AddStatistics').
+//
+// Adding and looking up words is thread-safe: the lookup table is split
+// into stripes, each protected by its own lock, so readers working on
+// different words rarely contend. The storage grows in fixed-size pages
+// that are never moved, which allows reading the data of a known word
+// without taking any lock.
+public final class Vocabulary {
+    private static final int STRIPE_BITS = 4;
+    private static final int STRIPE_COUNT = 1 << STRIPE_BITS;
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int PAGE_BYTES = PAGE_SIZE * (4 + 4 + 4 + 8 + 4 + 8 + 4 + 4 + 24);
+
+    // The data of 'PAGE_SIZE' consecutive words.
+    private static final class Page {
+        public final int[] positions = new int[PAGE_SIZE]; // Chunk and offset in the arena.
+        public final int[] lengths = new int[PAGE_SIZE];
+        public final int[] hashes = new int[PAGE_SIZE];
+        public final double[] weights = new double[PAGE_SIZE];
+        public final AtomicIntegerArray df = new AtomicIntegerArray(PAGE_SIZE);
+        public final double[] tfSums = new double[PAGE_SIZE]; // See 'AddStatistics'.
+        public final int[] weightDf = new int[PAGE_SIZE];
+        public final Word[] words = new Word[PAGE_SIZE];
+    }
+
+    // An open-addressing hash table mapping words to identifiers.
+    // The table stores 'id + 1', zero marking the empty slots.
+    private final class Stripe {
+        private int[] slots_ = new int[16];
+        private int count_;
+
+        public synchronized int Find(String word, int hash) {
+            int mask = slots_.length - 1;
+
+            for(int i = hash & mask; slots_[i] != 0; i = (i + 1) & mask) {
+                int id = slots_[i] - 1;
+
+                if(Matches(id, word, hash)) {
+                    return id;
+                }
+            }
+
+            return -1;
+        }
+
+        public synchronized int Add(String word, int hash) {
+            int mask = slots_.length - 1;
+            int i = hash & mask;
+
+            for(; slots_[i] != 0; i = (i + 1) & mask) {
+                int id = slots_[i] - 1;
+
+                if(Matches(id, word, hash)) {
+                    return id;
+                }
+            }
+
+            // The first time the word is found.
+            int id = Allocate(word, hash);
+            slots_[i] = id + 1;
+
+            if(++count_ * 2 > slots_.length) {
+                Grow();
+            }
+
+            return id;
+        }
+
+        public synchronized void Clear() {
+            slots_ = new int[16];
+            count_ = 0;
+        }
+
+        public synchronized void Reset() {
+            Arrays.fill(slots_, 0);
+            count_ = 0;
+        }
+
+        private void Grow() {
+            int[] old = slots_;
+            slots_ = new int[old.length * 2];
+            int mask = slots_.length - 1;
+
+            for(int j = 0; j < old.length; j++) {
+                if(old[j] == 0) {
+                    continue;
+                }
+
+                int i = Hash(old[j] - 1) & mask;
+
+                while(slots_[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+
+                slots_[i] = old[j];
+            }
+        }
+    }
+
+    /*
+    * Private members.
+    */
+    private final Stripe[] stripes_;
+    private volatile Page[] pages_;
+    private volatile char[][] chunks_;
+    private volatile int count_;
+    private int pageCount_;  // The pages in use, the others are kept for reuse.
+    private int chunkCount_;
+    private int chunkPosition_; // The first free character in the last chunk.
+    private final Object statisticsLock_; // Guards the statistics of the weights.
+    private int weightDocuments_;
+
+    /*
+    * Constructors.
+    */
+    public Vocabulary() {
+        statisticsLock_ = new Object();
+        stripes_ = new Stripe[STRIPE_COUNT];
+
+        for(int i = 0; i < STRIPE_COUNT; i++) {
+            stripes_[i] = new Stripe();
+        }
+
+        Clear();
+    }
+
+    /*
+    * Public methods.
+    */
+    // Returns the identifier of the word, adding it if it's not found.
+    public int Add(String word) {
+        assert(word != null);
+        // ------------------------------------------------
+        int hash = Spread(word.hashCode());
+        return StripeOf(hash).Add(word, hash);
+    }
+
+    // Returns the identifier of the word, or -1 if it's not found.
+    public int Find(String word) {
+        assert(word != null);
+        // ------------------------------------------------
+        int hash = Spread(word.hashCode());
+        return StripeOf(hash).Find(word, hash);
+    }
+
+    // Returns the single 'Word' object associated with the identifier.
+    public Word WordAt(int id) {
+        return PageOf(id).words[id & PAGE_MASK];
+    }
+
+    public String Text(int id) {
+        Page page = PageOf(id);
+        int position = page.positions[id & PAGE_MASK];
+        char[] chunk = chunks_[position >>> CHUNK_BITS];
+        return new String(chunk, position & CHUNK_MASK, page.lengths[id & PAGE_MASK]);
+    }
+
+    // Copies the characters of the word to the specified array,
+    // which must have room for at least 'Length(id)' characters.
+    // Allows reading the word without creating a string.
+    public void GetChars(int id, char[] destination) {
+        Page page = PageOf(id);
+        int position = page.positions[id & PAGE_MASK];
+        char[] chunk = chunks_[position >>> CHUNK_BITS];
+        System.arraycopy(chunk, position & CHUNK_MASK, destination, 0,
+                         page.lengths[id & PAGE_MASK]);
+    }
+
+    public int Length(int id) {
+        return PageOf(id).lengths[id & PAGE_MASK];
+    }
+
+    // Returns the number of documents in which the word has been found.
+    public int Df(int id) {
+        return PageOf(id).df.get(id & PAGE_MASK);
+    }
+
+    public int IncrementDf(int id) {
+        return PageOf(id).df.incrementAndGet(id & PAGE_MASK);
+    }
+
+    public double Weight(int id) {
+        return PageOf(id).weights[id & PAGE_MASK];
+    }
+
+    public void SetWeight(int id, double value) {
+        PageOf(id).weights[id & PAGE_MASK] = value;
+    }
+
+    // Adds the statistics of documents not counted before, then computes
+    // again the weight of each word found in the documents counted so far.
+    // 'tfSums' and 'dfs' are indexed by identifier, for the first 'count' words:
+    // the sums of the term frequences of the words over the documents and
+    // the number of documents containing them. Called by each reader sharing
+    // the vocabulary when it finishes reading, the weights being final after
+    // the last one; the words found only by readers still reading keep
+    // their previous weight.
+    public void AddStatistics(double[] tfSums, int[] dfs, int count, int documents) {
+        assert(count <= count_);
+        assert(documents >= 0);
+        // ------------------------------------------------
+        synchronized(statisticsLock_) {
+            weightDocuments_ += documents;
+
+            for(int id = 0; id < count; id++) {
+                if(dfs[id] != 0) {
+                    Page page = PageOf(id);
+                    page.tfSums[id & PAGE_MASK] += tfSums[id];
+                    page.weightDf[id & PAGE_MASK] += dfs[id];
+                }
+            }
+
+            if(weightDocuments_ == 0) {
+                return;
+            }
+
+            int total = count_;
+
+            for(int id = 0; id < total; id++) {
+                Page page = PageOf(id);
+                int index = id & PAGE_MASK;
+                int df = page.weightDf[index];
+
+                if(df != 0) {
+                    page.weights[index] = DocumentReader.Weight(page.tfSums[index], df,
+                                                                weightDocuments_);
+                }
+            }
+        }
+    }
+
+    // The number of documents counted by 'AddStatistics'.
+    public int WeightDocuments() {
+        synchronized(statisticsLock_) {
+            return weightDocuments_;
+        }
+    }
+
+    // An estimate of the memory used by the vocabulary, in bytes.
+    public long EstimatedBytes() {
+        long bytes = (long)pages_.length * PAGE_BYTES;
+
+        for(int i = 0; i < STRIPE_COUNT; i++) {
+            bytes += 4L * stripes_[i].slots_.length;
+        }
+
+        return bytes + 2L * CHUNK_SIZE * chunkCount_;
+    }
+
+    // The number of words, the identifiers are in the range [0, Count).
+    public int Count() { return count_; }
+
+    // Removes all words. Must not be called while
+    // the vocabulary is used by other threads.
+    public void Clear() {
+        for(int i = 0; i < STRIPE_COUNT; i++) {
+            stripes_[i].Clear();
+        }
+
+        pages_ = new Page[0];
+        chunks_ = new char[4][];
+        chunks_[0] = new char[CHUNK_SIZE];
+        pageCount_ = 0;
+        chunkCount_ = 1;
+        chunkPosition_ = 0;
+        count_ = 0;
+        weightDocuments_ = 0;
+    }
+
+    // Removes all words, but keeps the allocated pages, chunks and tables,
+    // so that reading a similar set of words again allocates almost nothing.
+    // The identifiers are reused, so the 'Word' objects obtained before
+    // refer to the new words. Must not be called while the vocabulary
+    // is used by other threads.
+    public void Reset() {
+        for(int i = 0; i < STRIPE_COUNT; i++) {
+            stripes_[i].Reset();
+        }
+
+        pageCount_ = 0;
+        chunkCount_ = 1;
+        chunkPosition_ = 0;
+        count_ = 0;
+        weightDocuments_ = 0;
+    }
+
+    /*
+    * Private methods.
+    */
+    private static int Spread(int hash) {
+        // Mix the bits, the high ones select the stripe
+        // and the low ones the slot in the stripe.
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private Stripe StripeOf(int hash) {
+        return stripes_[hash >>> (32 - STRIPE_BITS)];
+    }
+
+    private Page PageOf(int id) {
+        assert(id >= 0 && id < count_);
+        // ------------------------------------------------
+        return pages_[id >>> PAGE_BITS];
+    }
+
+    private int Hash(int id) {
+        return PageOf(id).hashes[id & PAGE_MASK];
+    }
+
+    private boolean Matches(int id, String word, int hash) {
+        Page page = PageOf(id);
+        int index = id & PAGE_MASK;
+
+        if((page.hashes[index] != hash) || (page.lengths[index] != word.length())) {
+            return false;
+        }
+
+        int position = page.positions[index];
+        char[] chunk = chunks_[position >>> CHUNK_BITS];
+        int offset = position & CHUNK_MASK;
+
+        for(int i = 0; i < word.length(); i++) {
+            if(chunk[offset + i] != word.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // Creates the storage for a new word. Called by a stripe while locked,
+    // the other stripes can allocate at the same time.
+    private synchronized int Allocate(String word, int hash) {
+        int id = count_;
+        int index = id & PAGE_MASK;
+
+        if((index == 0) && (pageCount_++ == pages_.length)) {
+            // A new page is needed. The directory is copied,
+            // so the threads reading the old one are not affected.
+            Page[] pages = new Page[pages_.length + 1];
+            System.arraycopy(pages_, 0, pages, 0, pages_.length);
+            pages[pages.length - 1] = new Page();
+            pages_ = pages;
+        }
+
+        Page page = pages_[id >>> PAGE_BITS];
+        page.positions[index] = Store(word);
+        page.lengths[index] = word.length();
+        page.hashes[index] = hash;
+        page.weights[index] = 0;
+        page.df.set(index, 0);
+        page.tfSums[index] = 0;
+        page.weightDf[index] = 0;
+
+        if(page.words[index] == null) {
+            // A page reused after 'Reset' keeps the objects,
+            // which are still valid for the same identifier.
+            page.words[index] = new Word(this, id);
+        }
+
+        count_ = id + 1; // Publishes the word.
+        return id;
+    }
+
+    // Copies the characters of the word to the arena and returns its position.
+    // A word never crosses chunks; words longer than a chunk get their own one.
+    private int Store(String word) {
+        int length = word.length();
+
+        if(chunkPosition_ + length > CHUNK_SIZE) {
+            char[][] chunks = chunks_;
+
+            if(chunkCount_ == chunks.length) {
+                char[][] temp = new char[chunks.length * 2][];
+                System.arraycopy(chunks, 0, temp, 0, chunkCount_);
+                chunks = temp;
+            }
+
+            // Reuse the chunk kept by 'Reset' if it's large enough.
+            if((chunks[chunkCount_] == null) ||
+               (chunks[chunkCount_].length < length)) {
+                chunks[chunkCount_] = new char[Math.max(CHUNK_SIZE, length)];
+            }
+
+            chunkCount_++;
+            chunks_ = chunks;
+            chunkPosition_ = 0;
+        }
+
+        char[] chunk = chunks_[chunkCount_ - 1];
+        word.getChars(0, length, chunk, chunkPosition_);
+        int position = ((chunkCount_ - 1) << CHUNK_BITS) | chunkPosition_;
+        chunkPosition_ += length;
+        return position;
+    }
+}
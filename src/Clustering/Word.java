@@ -32,25 +32,56 @@
 
 package Clustering;
 
+// A word is identified by its index in a vocabulary, where its text
+// and weight are stored. Each vocabulary creates a single object for each
+// of its words. The sentence end markers are not part of any vocabulary,
+// they are identified by negative indices instead.
 public final class Word {
-    private String word_;
-    private double weight_;
-    
+    private static final String END_MARKER = "#";
+
+    private Vocabulary vocabulary_;
+    private int id_;
+
     /*
      * Constructors.
      */
-    public Word(String word) {
-        word_ = word;
+    Word(Vocabulary vocabulary, int id) {
+        vocabulary_ = vocabulary;
+        id_ = id;
+    }
+
+    // Creates the unique word which marks the end of a sentence.
+    // For example, #0, #1, ... #100, ...
+    public static Word Marker(int index) {
+        assert(index >= 0);
+        // ------------------------------------------------
+        return new Word(null, -1 - index);
     }
 
     /*
      * Public methods.
      */
-    public String Word() { return word_; }
-    public void SetWord(String value) { word_ = value; }
+    public String Word() {
+        if(vocabulary_ == null) {
+            return END_MARKER + Integer.toString(-1 - id_);
+        }
+
+        return vocabulary_.Text(id_);
+    }
+
+    public double Weight() {
+        return vocabulary_ != null ? vocabulary_.Weight(id_) : 0;
+    }
+
+    public void SetWeight(double value) {
+        assert(vocabulary_ != null);
+        // ------------------------------------------------
+        vocabulary_.SetWeight(id_, value);
+    }
 
-    public double Weight() { return weight_; }
-    public void SetWeight(double value) { weight_ = value; }
+    public int Id() { return id_; }
+    public Vocabulary Vocabulary() { return vocabulary_; }
+    public boolean IsMarker() { return vocabulary_ == null; }
 
     @Override
     public boolean equals(Object obj) {
@@ -58,16 +89,16 @@ public final class Word {
         if (getClass() != obj.getClass()) { return false; }
 
         Word other = (Word)obj;
-        return other.word_.equals(word_);
+        return (other.id_ == id_) && (other.vocabulary_ == vocabulary_);
     }
 
     @Override
     public int hashCode() {
-        return word_.hashCode();
+        return id_;
     }
 
     @Override
     public String toString() {
-        return word_ + ", W=" + Double.toString(weight_);
+        return Word() + ", W=" + Double.toString(Weight());
     }
 }
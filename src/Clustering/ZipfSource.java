@@ -0,0 +1,351 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package Clustering;
+import java.util.Random;
+
+// A source which generates a synthetic corpus on the fly. The words
+// follow a Zipf distribution over a vocabulary of "w<rank>" words.
+// In addition, a few phrases made of words found nowhere else
+// ("p<phrase>_<index>") are planted as separate sentences in some
+// documents, so the base clusters expected for them are known:
+// the cluster of phrase 'p' contains exactly the documents
+// for which 'ContainsPhrase(doc, p)' is true.
+//
+// Each document is generated from its own seed, derived from the seed
+// of the corpus and the document index, so the same seed always produces
+// the same corpus and no document needs to be kept in memory.
+public final class ZipfSource implements IDocumentSource {
+    // A distribution of lengths (words in a sentence, sentences in a document).
+    public static final class Length {
+        private int min_;
+        private int max_;
+        private double mean_; // Zero for the uniform distribution.
+
+        private Length(int min, int max, double mean) {
+            assert(min >= 0 && min <= max);
+            // ------------------------------------------------
+            min_ = min;
+            max_ = max;
+            mean_ = mean;
+        }
+
+        // All lengths in [min, max] are equally likely.
+        public static Length Uniform(int min, int max) {
+            return new Length(min, max, 0);
+        }
+
+        // Geometric distribution with the specified mean, limited to [min, max].
+        // Most lengths are short, with a long tail.
+        public static Length Geometric(double mean, int min, int max) {
+            assert(mean > min);
+            // ------------------------------------------------
+            return new Length(min, max, mean);
+        }
+
+        public int Sample(Random random) {
+            if(mean_ == 0) {
+                return min_ + random.nextInt(max_ - min_ + 1);
+            }
+
+            double p = 1.0 / (mean_ - min_ + 1);
+            double u = 1.0 - random.nextDouble(); // In (0, 1].
+            int length = min_ + (int)(Math.log(u) / Math.log(1.0 - p));
+            return Math.min(length, max_);
+        }
+    }
+
+    private static final int CACHED_WORDS = 1 << 16;
+
+    /*
+    * Private members.
+    */
+    private long seed_;
+    private int documentCount_;
+    private int vocabularySize_;
+    private double exponent_;
+    private Length sentenceLength_;
+    private Length documentLength_;
+    private int phraseCount_;
+    private int phraseLength_;
+    private double phraseProbability_;
+
+    // Sampling state (rejection-inversion, Hormann and Derflinger).
+    private double hIntegralX1_;
+    private double hIntegralMax_;
+    private double s_;
+    private String[] cachedWords_; // The most frequent words.
+
+    // Generation state.
+    private Random random_;
+    private int documentIndex_;
+    private boolean documentStarted_;
+    private int sentenceIndex_;
+    private int regularSentences_;
+    private int[] planted_;    // The phrases planted in the current document.
+    private int plantedCount_;
+    private boolean sentenceStarted_;
+    private int wordIndex_;
+    private int wordCount_;
+    private long tokens_;
+
+    /*
+    * Constructors.
+    */
+    public ZipfSource(long seed, int documents) {
+        assert(documents >= 0);
+        // ------------------------------------------------
+        seed_ = seed;
+        documentCount_ = documents;
+        vocabularySize_ = 100000;
+        exponent_ = 1.0;
+        sentenceLength_ = Length.Geometric(10, 3, 60);
+        documentLength_ = Length.Geometric(5, 1, 50);
+        phraseCount_ = 20;
+        phraseLength_ = 3;
+        phraseProbability_ = 0.05;
+        random_ = new Random();
+    }
+
+    /*
+    * Public methods.
+    */
+    public boolean HasDocument() {
+        return documentIndex_ < documentCount_;
+    }
+
+    public boolean HasSentence() {
+        if(!documentStarted_) {
+            if(!HasDocument()) {
+                return false;
+            }
+
+            StartDocument();
+        }
+
+        if(sentenceIndex_ < regularSentences_ + plantedCount_) {
+            return true;
+        }
+
+        // The document has ended.
+        documentStarted_ = false;
+        documentIndex_++;
+        return false;
+    }
+
+    public boolean HasWord() {
+        if(!sentenceStarted_) {
+            if(!HasSentence()) {
+                return false;
+            }
+
+            sentenceStarted_ = true;
+            wordIndex_ = 0;
+            wordCount_ = sentenceIndex_ < regularSentences_ ?
+                         sentenceLength_.Sample(random_) : phraseLength_;
+        }
+
+        if(wordIndex_ < wordCount_) {
+            return true;
+        }
+
+        sentenceStarted_ = false;
+        sentenceIndex_++;
+        return false;
+    }
+
+    public String NextWord() {
+        tokens_++;
+
+        if(sentenceIndex_ >= regularSentences_) {
+            // A planted phrase.
+            int phrase = planted_[sentenceIndex_ - regularSentences_];
+            return PhraseWord(phrase, wordIndex_++);
+        }
+
+        wordIndex_++;
+        int rank = SampleRank();
+        return rank <= CACHED_WORDS ? cachedWords_[rank - 1] : "w" + Integer.toString(rank);
+    }
+
+    // Returns true if the phrase is planted in the specified document.
+    public boolean ContainsPhrase(int document, int phrase) {
+        assert(phrase >= 0 && phrase < phraseCount_);
+        // ------------------------------------------------
+        long hash = Mix(Mix(seed_ ^ 0x5DEECE66DL) + document * 31L + phrase);
+        return (hash >>> 11) * 0x1.0p-53 < phraseProbability_;
+    }
+
+    // Returns the words of the planted phrase.
+    public String[] PlantedPhrase(int phrase) {
+        String[] words = new String[phraseLength_];
+
+        for(int i = 0; i < phraseLength_; i++) {
+            words[i] = PhraseWord(phrase, i);
+        }
+
+        return words;
+    }
+
+    // The number of words returned so far.
+    public long Tokens() { return tokens_; }
+    public int DocumentCount() { return documentCount_; }
+
+    // Configuration, must be done before the first document is read.
+    public void SetVocabulary(int size, double exponent) {
+        assert(size > 0 && exponent > 0);
+        // ------------------------------------------------
+        vocabularySize_ = size;
+        exponent_ = exponent;
+    }
+
+    public void SetSentenceLength(Length value) { sentenceLength_ = value; }
+    public void SetDocumentLength(Length value) { documentLength_ = value; }
+
+    public void SetPlantedPhrases(int count, int length, double probability) {
+        assert(count >= 0 && length > 0);
+        // ------------------------------------------------
+        phraseCount_ = count;
+        phraseLength_ = length;
+        phraseProbability_ = probability;
+    }
+
+    public int PlantedPhraseCount() { return phraseCount_; }
+
+    /*
+    * Private methods.
+    */
+    private void StartDocument() {
+        if(cachedWords_ == null) {
+            Initialize();
+        }
+
+        random_.setSeed(Mix(seed_ + documentIndex_));
+        regularSentences_ = documentLength_.Sample(random_);
+        plantedCount_ = 0;
+
+        if(planted_ == null) {
+            planted_ = new int[phraseCount_];
+        }
+
+        for(int i = 0; i < phraseCount_; i++) {
+            if(ContainsPhrase(documentIndex_, i)) {
+                planted_[plantedCount_++] = i;
+            }
+        }
+
+        sentenceIndex_ = 0;
+        sentenceStarted_ = false;
+        documentStarted_ = true;
+    }
+
+    private void Initialize() {
+        hIntegralX1_ = HIntegral(1.5) - 1.0;
+        hIntegralMax_ = HIntegral(vocabularySize_ + 0.5);
+        s_ = 2.0 - HIntegralInverse(HIntegral(2.5) - H(2));
+
+        cachedWords_ = new String[Math.min(CACHED_WORDS, vocabularySize_)];
+
+        for(int i = 0; i < cachedWords_.length; i++) {
+            cachedWords_[i] = "w" + Integer.toString(i + 1);
+        }
+    }
+
+    private static String PhraseWord(int phrase, int index) {
+        return "p" + Integer.toString(phrase) + "_" + Integer.toString(index);
+    }
+
+    // Returns a rank in [1, vocabularySize] with probability
+    // proportional to 1 / rank^exponent, in constant memory.
+    private int SampleRank() {
+        while(true) {
+            double u = hIntegralMax_ + random_.nextDouble() * (hIntegralX1_ - hIntegralMax_);
+            double x = HIntegralInverse(u);
+            int k = (int)(x + 0.5);
+
+            if(k < 1) {
+                k = 1;
+            }
+            else if(k > vocabularySize_) {
+                k = vocabularySize_;
+            }
+
+            if((k - x <= s_) || (u >= HIntegral(k + 0.5) - H(k))) {
+                return k;
+            }
+        }
+    }
+
+    private double H(double x) {
+        return Math.exp(-exponent_ * Math.log(x));
+    }
+
+    private double HIntegral(double x) {
+        double logX = Math.log(x);
+        return Helper2((1.0 - exponent_) * logX) * logX;
+    }
+
+    private double HIntegralInverse(double x) {
+        double t = x * (1.0 - exponent_);
+
+        if(t < -1.0) {
+            t = -1.0; // Limit the value, rounding errors could make it smaller.
+        }
+
+        return Math.exp(Helper1(t) * x);
+    }
+
+    // log(1 + x) / x, accurate also for small values.
+    private static double Helper1(double x) {
+        if(Math.abs(x) > 1e-8) {
+            return Math.log1p(x) / x;
+        }
+
+        return 1.0 - x * (0.5 - x * (1.0 / 3.0 - 0.25 * x));
+    }
+
+    // (exp(x) - 1) / x, accurate also for small values.
+    private static double Helper2(double x) {
+        if(Math.abs(x) > 1e-8) {
+            return Math.expm1(x) / x;
+        }
+
+        return 1.0 + x * 0.5 * (1.0 + x * (1.0 / 3.0) * (1.0 + 0.25 * x));
+    }
+
+    // The SplitMix64 finalizer, used to derive independent seeds.
+    private static long Mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
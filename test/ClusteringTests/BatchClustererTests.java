@@ -0,0 +1,134 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package ClusteringTests;
+import Clustering.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BatchClustererTests {
+    @Test
+    public void SameAsFind() {
+        // Jobs of different sizes, more than the workers, so that
+        // each reader is reset and reused several times.
+        int jobs = 24;
+        List<ZipfSource> sources = new ArrayList<ZipfSource>();
+
+        for(int i = 0; i < jobs; i++) {
+            sources.add(new ZipfSource(i, 100 + (i % 5) * 50));
+        }
+
+        final String[] actual = new String[jobs];
+        ClusteringOptions options = new ClusteringOptions(0.5, 15, -1e9);
+        BatchClusterer clusterer = new BatchClusterer(3, options);
+
+        try {
+            clusterer.Run(sources, new BatchClusterer.ResultHandler() {
+                public void Handle(int index, ClusteringResult result) {
+                    // The clusters are valid only during the call.
+                    actual[index] = Describe(result.Clusters());
+                }
+            });
+        }
+        finally {
+            clusterer.Close();
+        }
+
+        for(int i = 0; i < jobs; i++) {
+            List<Cluster> expected = ClusterFinder.Find(new ZipfSource(i, 100 + (i % 5) * 50),
+                                                        0.5, 15, -1e9);
+            assertEquals(16, expected.size()); // With "Other".
+            assertEquals(Describe(expected), actual[i]);
+        }
+    }
+
+    @Test
+    public void Failure() {
+        List<IDocumentSource> sources = new ArrayList<IDocumentSource>();
+        sources.add(new ZipfSource(1, 50));
+        sources.add(new TextSource(Arrays.asList("alpha beta.", "alpha beta.")));
+        BatchClusterer clusterer = new BatchClusterer(2, new ClusteringOptions(0.5, 10, 0.01));
+
+        try {
+            clusterer.Run(sources, new BatchClusterer.ResultHandler() {
+                public void Handle(int index, ClusteringResult result) {
+                    if(index == 1) {
+                        throw new IllegalStateException("job " + index);
+                    }
+                }
+            });
+            fail();
+        }
+        catch(IllegalStateException e) {
+            assertEquals("job 1", e.getMessage());
+        }
+        finally {
+            clusterer.Close();
+        }
+    }
+
+    // The label, weight, documents and phrases of each cluster. The documents
+    // are sorted, a merged cluster doesn't keep them in a fixed order.
+    private static String Describe(List<Cluster> clusters) {
+        StringBuilder builder = new StringBuilder();
+
+        for(Cluster cluster : clusters) {
+            Set<Integer> documents = new TreeSet<Integer>();
+
+            for(Document document : cluster.Documents()) {
+                documents.add(document.Index());
+            }
+
+            builder.append(cluster.Label()).append(' ').append(cluster.Weight())
+                   .append(' ').append(documents);
+
+            for(Phrase phrase : cluster.Phrases()) {
+                builder.append(" \"");
+
+                for(Word word : phrase.Words()) {
+                    builder.append(word.Word()).append(' ');
+                }
+
+                builder.append('"');
+            }
+
+            builder.append('\n');
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,138 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+
+package ClusteringTests;
+import Clustering.*;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CancellationTokenTests {
+    private static final int DOCUMENTS = 1000;
+
+    @Test
+    public void NotCancelled() {
+        ClusteringOptions options = new ClusteringOptions(0.5, 20, 0.01);
+        options.SetCancellation(new CancellationToken());
+        ClusteringResult result = ClusterFinder.Run(new ZipfSource(3, DOCUMENTS), options);
+        assertFalse(result.IsPartial());
+        assertEquals(DOCUMENTS, result.Stats().Documents());
+    }
+
+    @Test
+    public void Expired() {
+        CancellationToken token = CancellationToken.WithTimeout(0);
+        assertTrue(token.IsCancelled());
+        assertTrue(token.ShouldStopReading());
+
+        ClusteringOptions options = new ClusteringOptions(0.5, 20, 0.01);
+        options.SetCancellation(token);
+        ClusteringResult result = ClusterFinder.Run(new ZipfSource(3, DOCUMENTS), options);
+        assertTrue(result.IsPartial());
+        assertEquals(0, result.Stats().Documents());
+        assertTrue(result.Clusters().isEmpty());
+    }
+
+    @Test
+    public void DeadlineWhileReading() {
+        // The reading stops after a tenth of the time, the documents
+        // read until then are clustered before the deadline.
+        CancellationToken token = CancellationToken.WithTimeout(3000);
+        token.SetReserve(0.9);
+        ClusteringOptions options = new ClusteringOptions(0.5, 20, 0.01);
+        options.SetCancellation(token);
+        ClusteringResult result = ClusterFinder.Run(new SlowSource(new ZipfSource(3, DOCUMENTS)),
+                                                    options);
+        int documents = result.Stats().Documents();
+        assertTrue(result.IsPartial());
+        assertTrue(documents > 0 && documents < DOCUMENTS);
+        assertFalse(result.Clusters().isEmpty());
+
+        for(Cluster cluster : result.Clusters()) {
+            for(Document document : cluster.Documents()) {
+                assertTrue(document.Index() < documents);
+            }
+        }
+    }
+
+    @Test
+    public void CancelledWhileExtracting() {
+        assertTrue(CancelledIn(ClusteringProgress.Phase.EXTRACTING).IsPartial());
+    }
+
+    @Test
+    public void CancelledWhileMerging() {
+        ClusteringResult result = CancelledIn(ClusteringProgress.Phase.MERGING);
+        assertTrue(result.IsPartial());
+        assertEquals(DOCUMENTS, result.Stats().Documents());
+        assertNotNull(result.Clusters());
+    }
+
+    // Runs a clustering whose token is cancelled when the phase starts.
+    private static ClusteringResult CancelledIn(final ClusteringProgress.Phase phase) {
+        final CancellationToken token = new CancellationToken();
+        ClusteringOptions options = new ClusteringOptions(0.5, 200, -1e9);
+        options.SetCancellation(token);
+        options.SetProgressListener(new IProgressListener() {
+            public void Progress(ClusteringProgress progress) {
+                if(progress.Phase() == phase) {
+                    token.Cancel();
+                }
+            }
+        }, 1000);
+
+        return ClusterFinder.Run(new ZipfSource(3, DOCUMENTS), options);
+    }
+
+    // Waits a millisecond before each document.
+    private static class SlowSource implements IDocumentSource {
+        private IDocumentSource source_;
+
+        public SlowSource(IDocumentSource source) {
+            source_ = source;
+        }
+
+        public boolean HasDocument() {
+            try {
+                Thread.sleep(1);
+            }
+            catch(InterruptedException e) {}
+
+            return source_.HasDocument();
+        }
+
+        public boolean HasSentence() { return source_.HasSentence(); }
+        public boolean HasWord() { return source_.HasWord(); }
+        public String NextWord() { return source_.NextWord(); }
+    }
+}
@@ -0,0 +1,214 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package ClusteringTests;
+import Clustering.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ClusterWriterTests {
+    @Test
+    public void Aliases() throws IOException {
+        // Each document is repeated 1 to 3 times, the copies become aliases.
+        Random random = new Random(3);
+        List<String> texts = new ArrayList<String>();
+
+        for(int i = 0; i < 50; i++) {
+            String text = "w" + random.nextInt(60) + " w" + random.nextInt(60) + " w" +
+                          random.nextInt(60) + " w" + random.nextInt(60) + ".";
+
+            for(int j = random.nextInt(3); j >= 0; j--) {
+                texts.add(text);
+            }
+        }
+
+        Collections.shuffle(texts, random);
+        DocumentReader reader = new DocumentReader(new TextSource(texts));
+        reader.SetNearDuplicateDistance(0);
+        reader.Read();
+        assertTrue(reader.DuplicateDocuments() > 0);
+        List<Cluster> clusters = reader.GetBaseClusters(-1e9);
+
+        // The documents written are the ones of the clusters and their aliases.
+        List<Set<Integer>> expected = new ArrayList<Set<Integer>>();
+
+        for(Cluster cluster : clusters) {
+            Set<Integer> documents = new TreeSet<Integer>();
+
+            for(Document document : cluster.Documents()) {
+                documents.add(document.Index());
+
+                for(Document alias : document.Aliases()) {
+                    documents.add(alias.Index());
+                }
+            }
+
+            expected.add(documents);
+        }
+
+        String json = new String(Write(clusters, ClusterWriter.Format.JSON_LINES), "UTF-8");
+        Matcher matcher = Pattern.compile("\"documents\":\\[([0-9,]*)\\]").matcher(json);
+        List<Set<Integer>> actual = new ArrayList<Set<Integer>>();
+
+        while(matcher.find()) {
+            Set<Integer> documents = new TreeSet<Integer>();
+
+            for(String index : matcher.group(1).split(",")) {
+                documents.add(Integer.parseInt(index));
+            }
+
+            actual.add(documents);
+        }
+
+        assertEquals(expected, actual);
+
+        ByteBuffer binary = ByteBuffer.wrap(Write(clusters, ClusterWriter.Format.BINARY));
+        assertEquals(0x4443434C, binary.getInt());
+        assertEquals(1, binary.get());
+
+        for(int i = 0; i < clusters.size(); i++) {
+            assertEquals(i, Varint(binary));
+            Skip(binary); // The label.
+            assertEquals(clusters.get(i).Weight(), binary.getDouble(), 0);
+            Set<Integer> documents = new TreeSet<Integer>();
+
+            for(int j = Varint(binary); j > 0; j--) {
+                documents.add(Varint(binary));
+            }
+
+            assertEquals(expected.get(i), documents);
+
+            for(int j = Varint(binary); j > 0; j--) {
+                for(int k = Varint(binary); k > 0; k--) {
+                    Skip(binary); // The word.
+                }
+            }
+        }
+
+        assertFalse(binary.hasRemaining());
+    }
+
+    @Test
+    public void Escaping() throws IOException {
+        // Quotes, a backslash, a control character, 2 and 3 byte characters,
+        // a surrogate pair, a lone low and a lone high surrogate.
+        String text = "say \"hi\" back\\slash \u0001x \u00e9t\u00e9 \u4e2d " +
+                      "\ud83d\ude00 a\udc00b c\ud800d";
+        DocumentReader reader = new DocumentReader(new TextSource(Arrays.asList(text, text)));
+        reader.Read();
+        Cluster cluster = null;
+
+        for(Cluster candidate : reader.GetBaseClusters(-1e9)) {
+            if((cluster == null) ||
+               (candidate.Phrases().get(0).WordCount() > cluster.Phrases().get(0).WordCount())) {
+                cluster = candidate;
+            }
+        }
+
+        assertEquals(9, cluster.Phrases().get(0).WordCount());
+        String label = "\"label\"\udc00\ud83d";
+        cluster.SetLabel(label);
+        List<Cluster> clusters = Arrays.asList(cluster);
+
+        String json = new String(Write(clusters, ClusterWriter.Format.JSON_LINES), "UTF-8");
+        assertTrue(json.startsWith("{\"cluster\":0,\"label\":\"\\\"label\\\"??\","));
+        assertTrue(json.endsWith(",\"phrases\":[\"say \\\"hi\\\" back\\\\slash \\u0001x " +
+                                 "\u00e9t\u00e9 \u4e2d \ud83d\ude00 a?b c?d\"]}\n"));
+
+        // Java's encoder also replaces the unpaired surrogates by '?'.
+        ByteBuffer binary = ByteBuffer.wrap(Write(clusters, ClusterWriter.Format.BINARY));
+        binary.position(5);
+        assertEquals(0, Varint(binary));
+        assertArrayEquals(label.getBytes("UTF-8"), Bytes(binary));
+        binary.getDouble();
+
+        for(int i = Varint(binary); i > 0; i--) {
+            Varint(binary);
+        }
+
+        assertEquals(1, Varint(binary));
+        String[] words = text.split(" ");
+        assertEquals(words.length, Varint(binary));
+
+        for(int i = 0; i < words.length; i++) {
+            assertArrayEquals(words[i].getBytes("UTF-8"), Bytes(binary));
+        }
+
+        assertFalse(binary.hasRemaining());
+    }
+
+    static byte[] Write(List<Cluster> clusters, ClusterWriter.Format format) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ClusterWriter writer = new ClusterWriter(stream, format);
+        writer.Write(clusters);
+        writer.Close();
+        return stream.toByteArray();
+    }
+
+    // Reads a length followed by that many bytes.
+    static byte[] Bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[Varint(buffer)];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    // Skips a length followed by that many bytes.
+    static void Skip(ByteBuffer buffer) {
+        int length = Varint(buffer);
+        buffer.position(buffer.position() + length);
+    }
+
+    static int Varint(ByteBuffer buffer) {
+        int value = 0;
+
+        for(int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package ClusteringTests;
+import Clustering.*;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ClusteringMonitorTests {
+    @Test
+    public void ExplicitRegistration() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("Clustering:type=ClusteringMonitor");
+
+        // Clustering doesn't register the monitor.
+        ClusterFinder.Run(new ZipfSource(1, 100), 0.5, 10, 0.01);
+        assertFalse(server.isRegistered(name));
+        assertTrue(ClusteringMonitor.Instance().getRuns() > 0);
+
+        try {
+            assertTrue(ClusteringMonitor.Register());
+            assertTrue(ClusteringMonitor.Register());
+            assertTrue(server.isRegistered(name));
+            assertEquals(ClusteringMonitor.Instance().getRuns(), server.getAttribute(name, "Runs"));
+        }
+        finally {
+            ClusteringMonitor.Unregister();
+        }
+
+        assertFalse(server.isRegistered(name));
+        assertFalse(ClusteringMonitor.IsRegistered());
+    }
+
+    @Test
+    public void EmptyMerge() {
+        // No phrase is repeated, so there is nothing to merge.
+        ClusteringResult result = ClusterFinder.Run(
+                new TextSource(Arrays.asList("alpha beta.", "gamma delta.")), 0.5, 10, 0.01);
+        assertTrue(result.Clusters().isEmpty());
+        assertEquals(0, result.Stats().BaseClusters());
+        assertTrue(result.Stats().MergeTime() > 0);
+        assertEquals(result.Stats().toString(), ClusteringMonitor.Instance().getLastRun());
+    }
+}
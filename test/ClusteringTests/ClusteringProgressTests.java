@@ -0,0 +1,93 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+
+package ClusteringTests;
+import Clustering.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ClusteringProgressTests {
+    private static final int DOCUMENTS = 1000;
+
+    @Test
+    public void PhasesInOrder() {
+        final List<ClusteringProgress> reports = new ArrayList<ClusteringProgress>();
+        ClusteringOptions options = new ClusteringOptions(0.5, 20, 0.01);
+        options.SetProgressListener(new IProgressListener() {
+            public void Progress(ClusteringProgress progress) {
+                reports.add(progress);
+            }
+        }, 0);
+
+        ClusterFinder.Run(new ZipfSource(3, DOCUMENTS), options);
+        List<ClusteringProgress.Phase> phases = new ArrayList<ClusteringProgress.Phase>();
+        double completed = 0;
+
+        for(ClusteringProgress progress : reports) {
+            if(phases.isEmpty() || (phases.get(phases.size() - 1) != progress.Phase())) {
+                phases.add(progress.Phase());
+            }
+
+            assertTrue(progress.Completed() >= completed);
+            completed = progress.Completed();
+        }
+
+        assertEquals(Arrays.asList(ClusteringProgress.Phase.values()), phases);
+
+        // The reading is reported as it goes, not only when the phase changes.
+        assertTrue(reports.size() > phases.size());
+
+        ClusteringProgress last = reports.get(reports.size() - 1);
+        assertEquals(ClusteringProgress.Phase.DONE, last.Phase());
+        assertEquals(1.0, last.Completed(), 0);
+        assertEquals(DOCUMENTS, last.Documents());
+    }
+
+    @Test
+    public void Throttled() {
+        // With a long interval only the phase changes are reported.
+        final List<ClusteringProgress> reports = new ArrayList<ClusteringProgress>();
+        ClusteringOptions options = new ClusteringOptions(0.5, 20, 0.01);
+        options.SetProgressListener(new IProgressListener() {
+            public void Progress(ClusteringProgress progress) {
+                reports.add(progress);
+            }
+        }, 60000);
+
+        ClusterFinder.Run(new ZipfSource(3, DOCUMENTS), options);
+        assertEquals(ClusteringProgress.Phase.values().length, reports.size());
+    }
+}
@@ -0,0 +1,202 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package ClusteringTests;
+import Clustering.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ClusteringServerTests {
+    private static final String DOCUMENTS =
+            "the red apple is sweet. the green tree is tall.\n" +
+            "the red apple fell. the green tree grows.\n" +
+            "a red apple a day. the green tree in the park.\n";
+
+    private ClusteringServer server_;
+
+    @Before
+    public void Start() throws IOException {
+        // A single worker thread and a single queued request,
+        // so that a stalled request blocks the clustering.
+        server_ = new ClusteringServer(0, 1, 1, 1);
+        server_.SetQueueTimeout(100);
+        server_.Start();
+    }
+
+    @After
+    public void Stop() {
+        server_.Stop(0);
+    }
+
+    @Test
+    public void Cluster() throws IOException {
+        Response response = Request("POST", "/cluster?maxClusters=5", "text/plain", DOCUMENTS);
+        assertEquals(200, response.status);
+        assertTrue(response.body.contains("red apple"));
+        assertEquals(1, server_.RequestLatency().Count());
+        assertEquals(1, server_.ClusterLatency().Count());
+
+        response = Request("POST", "/cluster", "application/json",
+                           "[\"red apple tree\", \"red apple\", \"green \\u0074ree\"]");
+        assertEquals(200, response.status);
+        assertTrue(response.body.contains("red apple"));
+    }
+
+    @Test
+    public void InvalidRequests() throws IOException {
+        assertEquals(400, Request("POST", "/cluster?maxClusters=0", "text/plain", DOCUMENTS).status);
+        assertEquals(400, Request("POST", "/cluster?maxClusters=x", "text/plain", DOCUMENTS).status);
+        assertEquals(400, Request("POST", "/cluster?format=xml", "text/plain", DOCUMENTS).status);
+        assertEquals(400, Request("POST", "/cluster", "application/json", "[\"a\"").status);
+        assertEquals(405, Request("GET", "/cluster", null, null).status);
+        assertEquals(0, server_.ClusterLatency().Count());
+    }
+
+    @Test
+    public void TooLarge() throws IOException {
+        server_.SetMaxBodySize(1000);
+        StringBuilder body = new StringBuilder();
+
+        while(body.length() < 20000) {
+            body.append(DOCUMENTS);
+        }
+
+        assertEquals(413, Request("POST", "/cluster", "text/plain", body.toString()).status);
+    }
+
+    @Test(timeout = 20000)
+    public void HealthWhileBusy() throws IOException {
+        // The only worker waits for a body which never comes, the next
+        // clustering request is queued behind it and the others are rejected.
+        Socket stalled = Stall();
+        Socket[] queued = new Socket[4];
+
+        for(int i = 0; i < queued.length; i++) {
+            queued[i] = Stall();
+        }
+
+        try {
+            Response response = Request("GET", "/health", null, null);
+            assertEquals(200, response.status);
+            assertEquals("ok\n", response.body);
+            assertEquals(200, Request("GET", "/stats", null, null).status);
+        }
+        finally {
+            stalled.close();
+
+            for(int i = 0; i < queued.length; i++) {
+                queued[i].close();
+            }
+        }
+    }
+
+    @Test(timeout = 20000)
+    public void Overloaded() throws IOException {
+        // The worker and the queue are taken, the request is rejected
+        // without waiting for the queue timeout.
+        server_.SetQueueTimeout(60000);
+        Socket stalled = Stall();
+        Socket queued = Stall();
+
+        try {
+            Response response = Request("POST", "/cluster", "text/plain", DOCUMENTS);
+            assertEquals(503, response.status);
+            assertEquals(1, server_.RejectedRequests());
+            assertEquals(0, server_.ClusterLatency().Count());
+        }
+        finally {
+            stalled.close();
+            queued.close();
+        }
+    }
+
+    private static final class Response {
+        public int status;
+        public String body;
+    }
+
+    // Sends the headers of a clustering request, but only part of its body.
+    private Socket Stall() throws IOException {
+        Socket socket = new Socket("127.0.0.1", server_.Port());
+        OutputStream stream = socket.getOutputStream();
+        stream.write(("POST /cluster HTTP/1.1\r\nHost: localhost\r\n" +
+                      "Content-Length: 1000\r\n\r\nthe red").getBytes("UTF-8"));
+        stream.flush();
+        return socket;
+    }
+
+    private Response Request(String method, String path, String type,
+                             String body) throws IOException {
+        URL url = new URL("http://127.0.0.1:" + server_.Port() + path);
+        HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setReadTimeout(5000);
+
+        if(body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", type);
+            OutputStream stream = connection.getOutputStream();
+            stream.write(body.getBytes("UTF-8"));
+            stream.close();
+        }
+
+        Response response = new Response();
+        response.status = connection.getResponseCode();
+        InputStream stream = response.status < 400 ? connection.getInputStream() :
+                                                     connection.getErrorStream();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        if(stream != null) {
+            byte[] buffer = new byte[8192];
+            int count;
+
+            while((count = stream.read(buffer)) > 0) {
+                bytes.write(buffer, 0, count);
+            }
+
+            stream.close();
+        }
+
+        response.body = bytes.toString("UTF-8");
+        connection.disconnect();
+        return response;
+    }
+}
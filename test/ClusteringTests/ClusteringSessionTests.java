@@ -0,0 +1,91 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package ClusteringTests;
+import Clustering.*;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ClusteringSessionTests {
+    private static final int DOCUMENTS = 1000;
+
+    @Test
+    public void SameAsFind() {
+        ClusteringSession session = new ClusteringSession(new ZipfSource(3, DOCUMENTS));
+        double[] weights = { Double.NEGATIVE_INFINITY, 0, 0.01, 1 };
+        int[] maxClusters = { 5, 50 };
+
+        for(double weight : weights) {
+            for(int max : maxClusters) {
+                List<Cluster> expected = ClusterFinder.Find(new ZipfSource(3, DOCUMENTS),
+                                                            0.5, max, weight);
+                List<Cluster> actual = session.Find(0.5, max, weight);
+                assertEquals(expected.size(), actual.size());
+
+                for(int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i).Weight(), actual.get(i).Weight(), 0);
+                    assertEquals(Indices(expected.get(i)), Indices(actual.get(i)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void SelectedCount() {
+        ClusteringSession session = new ClusteringSession(new ZipfSource(5, DOCUMENTS));
+        List<Cluster> clusters = session.BaseClusters();
+        double weight = clusters.get(clusters.size() / 2).Weight();
+        int count = 0;
+
+        for(Cluster cluster : clusters) {
+            if(cluster.Weight() > weight) {
+                count++;
+            }
+        }
+
+        assertEquals(count, session.SelectedCount(weight));
+        assertEquals(clusters.size(), session.SelectedCount(Double.NEGATIVE_INFINITY));
+    }
+
+    private static Set<Integer> Indices(Cluster cluster) {
+        Set<Integer> indices = new TreeSet<Integer>();
+
+        for(Document doc : cluster.Documents()) {
+            indices.add(doc.Index());
+        }
+
+        return indices;
+    }
+}
@@ -0,0 +1,126 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package ClusteringTests;
+import Clustering.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DirectorySourceTests {
+    @Test(timeout = 10000)
+    public void Walk() throws IOException {
+        File root = Files.createTempDirectory("documents").toFile();
+        File sub = new File(root, "sub");
+        assertTrue(sub.mkdir());
+        Write(new File(root, "a.txt"), "alpha beta.");
+        Write(new File(root, "c.txt"), "delta.");
+        Write(new File(sub, "b.txt.gz"), "gamma epsilon.");
+
+        try {
+            // A link back to the root must not be walked again.
+            Files.createSymbolicLink(new File(sub, "loop").toPath(), root.toPath());
+        }
+        catch(UnsupportedOperationException e) {}
+
+        DirectorySource source = new DirectorySource(root, 2, 2);
+        assertEquals(Arrays.asList("alpha beta", "delta", "gamma epsilon"), Documents(source));
+        assertEquals(0, source.FailedFiles());
+    }
+
+    @Test(timeout = 10000)
+    public void CloseBeforeEnd() throws IOException {
+        File root = Files.createTempDirectory("documents").toFile();
+
+        for(int i = 0; i < 200; i++) {
+            Write(new File(root, String.format("%03d.txt", i)), "word" + i + ".");
+        }
+
+        DirectorySource source = new DirectorySource(root, 2, 8);
+        assertTrue(source.HasDocument());
+        assertTrue(source.HasSentence());
+        assertTrue(source.HasWord());
+        assertEquals("word0", source.NextWord());
+
+        // The documents end after the current one.
+        source.Close();
+        List<String> documents = Documents(source);
+        assertTrue(documents.size() <= 1);
+    }
+
+    private static void Write(File file, String text) throws IOException {
+        file.deleteOnExit();
+        OutputStream stream = new FileOutputStream(file);
+
+        if(file.getName().endsWith(".gz")) {
+            stream = new GZIPOutputStream(stream);
+        }
+
+        try {
+            stream.write(text.getBytes("UTF-8"));
+        }
+        finally {
+            stream.close();
+        }
+    }
+
+    // Returns the words of each remaining document, separated by spaces.
+    private static List<String> Documents(IDocumentSource source) {
+        List<String> documents = new ArrayList<String>();
+
+        while(source.HasDocument()) {
+            StringBuilder document = new StringBuilder();
+
+            while(source.HasSentence()) {
+                while(source.HasWord()) {
+                    if(document.length() > 0) {
+                        document.append(' ');
+                    }
+
+                    document.append(source.NextWord());
+                }
+            }
+
+            documents.add(document.toString());
+        }
+
+        return documents;
+    }
+}
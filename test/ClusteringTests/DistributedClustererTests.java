@@ -0,0 +1,208 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package ClusteringTests;
+import Clustering.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DistributedClustererTests {
+    private static final int DOCUMENTS = 1000;
+
+    @Test
+    public void SingleWorkerSameAsFind() throws Exception {
+        ClusterWorker worker = new ClusterWorker(0);
+        worker.Start();
+
+        try {
+            InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                                              worker.Port());
+            DistributedClusterer clusterer = new DistributedClusterer(Arrays.asList(address));
+            ClusteringOptions options = new ClusteringOptions(0.5, 20, 0.01);
+            List<Cluster> expected = ClusterFinder.Find(new ZipfSource(3, DOCUMENTS),
+                                                        0.5, 20, 0.01);
+            List<Cluster> actual = clusterer.Run(new ZipfSource(3, DOCUMENTS), options).Clusters();
+            assertEquals(expected.size(), actual.size());
+
+            for(int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).Weight(), actual.get(i).Weight(), 1e-9);
+                assertEquals(Indices(expected.get(i)), Indices(actual.get(i)));
+            }
+        }
+        finally {
+            worker.Stop();
+        }
+    }
+
+    @Test
+    public void PlantedPhrasesWithWorkerProcesses() throws Exception {
+        ZipfSource source = new ZipfSource(7, DOCUMENTS);
+        DistributedClusterer clusterer = DistributedClusterer.StartLocal(2, "-Xss64m");
+
+        try {
+            List<Cluster> clusters = clusterer.GetBaseClusters(source, Double.NEGATIVE_INFINITY);
+
+            for(int phrase = 0; phrase < source.PlantedPhraseCount(); phrase++) {
+                String[] words = source.PlantedPhrase(phrase);
+                Set<Integer> expected = new TreeSet<Integer>();
+
+                for(int doc = 0; doc < DOCUMENTS; doc++) {
+                    if(source.ContainsPhrase(doc, phrase)) {
+                        expected.add(doc);
+                    }
+                }
+
+                Cluster cluster = FindCluster(clusters, words);
+                assertNotNull(cluster);
+                assertEquals(expected, Indices(cluster));
+            }
+        }
+        finally {
+            clusterer.Close();
+        }
+    }
+
+    @Test
+    public void MinWeightSameAsFiltered() throws Exception {
+        List<ClusterWorker> workers = new ArrayList<ClusterWorker>();
+        List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+
+        try {
+            for(int i = 0; i < 3; i++) {
+                ClusterWorker worker = new ClusterWorker(0);
+                worker.Start();
+                workers.add(worker);
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                                    worker.Port()));
+            }
+
+            DistributedClusterer clusterer = new DistributedClusterer(addresses);
+            List<Cluster> all = clusterer.GetBaseClusters(new ZipfSource(5, DOCUMENTS),
+                                                          Double.NEGATIVE_INFINITY);
+            double[] weights = new double[all.size()];
+
+            for(int i = 0; i < weights.length; i++) {
+                weights[i] = all.get(i).Weight();
+            }
+
+            // The workers send only some of the phrases, the second pass
+            // must find the same clusters as filtering all of them.
+            Arrays.sort(weights);
+            double minWeight = weights[weights.length / 2];
+            Map<String, Cluster> expected = new TreeMap<String, Cluster>();
+
+            for(Cluster cluster : all) {
+                if(cluster.Weight() > minWeight) {
+                    expected.put(Text(cluster), cluster);
+                }
+            }
+
+            List<Cluster> actual = clusterer.GetBaseClusters(new ZipfSource(5, DOCUMENTS),
+                                                             minWeight);
+            assertEquals(expected.size(), actual.size());
+
+            for(Cluster cluster : actual) {
+                Cluster other = expected.get(Text(cluster));
+                assertNotNull(other);
+                assertEquals(other.Weight(), cluster.Weight(), 1e-9);
+                assertEquals(Indices(other), Indices(cluster));
+            }
+        }
+        finally {
+            for(int i = 0; i < workers.size(); i++) {
+                workers.get(i).Stop();
+            }
+        }
+    }
+
+    @Test
+    public void BindAddress() throws Exception {
+        ClusterWorker worker = new ClusterWorker(0);
+        assertTrue(worker.Address().isLoopbackAddress());
+        worker.Stop();
+
+        worker = new ClusterWorker(InetAddress.getByName("0.0.0.0"), 0);
+        assertTrue(worker.Address().isAnyLocalAddress());
+        worker.Stop();
+    }
+
+    private static Cluster FindCluster(List<Cluster> clusters, String[] words) {
+        for(Cluster cluster : clusters) {
+            List<Word> phrase = cluster.Phrases().get(0).Words();
+
+            if(phrase.size() != words.length) {
+                continue;
+            }
+
+            boolean same = true;
+
+            for(int i = 0; i < words.length; i++) {
+                same &= phrase.get(i).Word().equals(words[i]);
+            }
+
+            if(same) {
+                return cluster;
+            }
+        }
+
+        return null;
+    }
+
+    private static String Text(Cluster cluster) {
+        StringBuilder text = new StringBuilder();
+
+        for(Word word : cluster.Phrases().get(0).Words()) {
+            text.append(word.Word()).append(' ');
+        }
+
+        return text.toString();
+    }
+
+    private static Set<Integer> Indices(Cluster cluster) {
+        Set<Integer> indices = new TreeSet<Integer>();
+
+        for(Document doc : cluster.Documents()) {
+            indices.add(doc.Index());
+        }
+
+        return indices;
+    }
+}
@@ -33,6 +33,17 @@
 package ClusteringTests;
 import Clustering.*;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -46,4 +57,578 @@ public class DocumentReaderTests {
         DocumentReader reader = new DocumentReader(new TestSource("test.txt"));
         reader.Read();
     }
+
+    @Test
+    public void SharedVocabulary() throws InterruptedException {
+        // Two readers reading in parallel, each with words not found by the other.
+        List<String> first = new ArrayList<String>();
+        List<String> second = new ArrayList<String>();
+        Random random = new Random(17);
+
+        for(int i = 0; i < 300; i++) {
+            String prefix = i < 150 ? "alpha" : "beta";
+            String text = prefix + " w" + random.nextInt(40) + " w" + random.nextInt(40) +
+                          ". w" + random.nextInt(40) + " " + prefix + random.nextInt(5) + ".";
+            (i % 2 == 0 ? first : second).add(text);
+        }
+
+        Vocabulary vocabulary = new Vocabulary();
+        final DocumentReader firstReader = new DocumentReader(new TextSource(first), vocabulary);
+        final DocumentReader secondReader = new DocumentReader(new TextSource(second), vocabulary);
+        Thread thread = new Thread(new Runnable() {
+            public void run() { secondReader.Read(); }
+        });
+
+        thread.start();
+        firstReader.Read();
+        thread.join();
+
+        // The weights are the ones of a single reader reading all documents.
+        List<String> all = new ArrayList<String>(first);
+        all.addAll(second);
+        DocumentReader single = new DocumentReader(new TextSource(all));
+        single.Read();
+        Vocabulary expected = single.Vocabulary();
+        assertEquals(expected.Count(), vocabulary.Count());
+        assertEquals(all.size(), vocabulary.WeightDocuments());
+
+        for(int id = 0; id < expected.Count(); id++) {
+            double weight = vocabulary.Weight(vocabulary.Find(expected.Text(id)));
+            assertEquals(expected.Weight(id), weight, 1e-9);
+        }
+
+        assertTrue(firstReader.GetBaseClusters(0).size() > 0);
+        assertTrue(secondReader.GetBaseClusters(0).size() > 0);
+    }
+
+    @Test
+    public void FindDocuments() {
+        ZipfSource source = new ZipfSource(7, 1000);
+        DocumentReader reader = new DocumentReader(source);
+        reader.Read();
+
+        for(int phrase = 0; phrase < source.PlantedPhraseCount(); phrase++) {
+            String[] words = source.PlantedPhrase(phrase);
+            int[] expected = new int[1000];
+            int count = 0;
+
+            for(int doc = 0; doc < 1000; doc++) {
+                if(source.ContainsPhrase(doc, phrase)) {
+                    expected[count++] = doc;
+                }
+            }
+
+            // The planted words are found only in the phrase,
+            // so a prefix (ending inside an edge) has the same documents.
+            expected = Arrays.copyOf(expected, count);
+            assertArrayEquals(expected, reader.FindDocuments(words));
+            assertArrayEquals(expected, reader.FindDocuments(words[0], words[1]));
+        }
+
+        assertEquals(0, reader.FindDocuments("not-a-word").length);
+    }
+
+    @Test
+    public void BudgetInsideSentence() {
+        // A single sentence much larger than the budget.
+        StringBuilder text = new StringBuilder();
+
+        for(int i = 0; i < 200000; i++) {
+            text.append('w').append(i % 5000).append(' ');
+        }
+
+        DocumentReader reader = new DocumentReader(new TextSource(Arrays.asList(text.toString())));
+        MemoryBudget budget = new MemoryBudget(4 << 20, MemoryBudget.Policy.TRUNCATE);
+        reader.SetMemoryBudget(budget);
+        reader.Read();
+        assertTrue(reader.Truncated());
+        assertTrue(reader.WordCount() < 50000);
+
+        // The arrays of the tree double their capacity when the words
+        // read so far are inserted, so the limit can be exceeded a bit.
+        assertTrue(reader.EstimatedBytes() < 2 * budget.Limit());
+
+        reader = new DocumentReader(new TextSource(Arrays.asList(text.toString())));
+        reader.SetMemoryBudget(new MemoryBudget(4 << 20, MemoryBudget.Policy.REJECT));
+
+        try {
+            reader.Read();
+            fail();
+        }
+        catch(MemoryBudgetException e) {
+            assertTrue(reader.WordCount() < 200000);
+        }
+    }
+
+    @Test
+    public void TruncatedTree() {
+        DocumentReader full = new DocumentReader(new ZipfSource(5, 500));
+        full.Read();
+        DocumentReader truncated = new DocumentReader(new ZipfSource(5, 500));
+        truncated.SetMaxPhraseLength(3);
+        truncated.Read();
+        assertTrue(truncated.Tree().NodeCount() < full.Tree().NodeCount());
+
+        // The phrases shorter than the limit have the same clusters.
+        Map<String, Set<Document>> expected = ShortPhrases(full.GetBaseClusters(-1e9), 3);
+        Map<String, Set<Document>> actual = ShortPhrases(truncated.GetBaseClusters(-1e9), 3);
+        assertEquals(expected.size(), actual.size());
+
+        for(Map.Entry<String, Set<Document>> entry : expected.entrySet()) {
+            Set<Integer> documents = new HashSet<Integer>();
+
+            for(Document document : actual.get(entry.getKey())) {
+                documents.add(document.Index());
+            }
+
+            for(Document document : entry.getValue()) {
+                assertTrue(documents.remove(document.Index()));
+            }
+
+            assertTrue(documents.isEmpty());
+        }
+
+        // The phrases having as many words as the limit are found too.
+        ZipfSource source = new ZipfSource(5, 500);
+
+        for(int phrase = 0; phrase < source.PlantedPhraseCount(); phrase++) {
+            String[] words = Arrays.copyOf(source.PlantedPhrase(phrase), 3);
+            assertArrayEquals(full.FindDocuments(words), truncated.FindDocuments(words));
+        }
+
+        // The clusters of such phrases have all the documents containing them.
+        // The complete tree has a cluster only where the phrases branch,
+        // and it must be found in the truncated tree too.
+        Map<String, Set<Integer>> limitPhrases = LimitPhrases(truncated.GetBaseClusters(-1e9), 3);
+        assertFalse(limitPhrases.isEmpty());
+
+        for(Map.Entry<String, Set<Integer>> entry : limitPhrases.entrySet()) {
+            Set<Integer> documents = new HashSet<Integer>();
+
+            for(int document : full.FindDocuments(entry.getKey().split(" "))) {
+                documents.add(document);
+            }
+
+            assertEquals(documents, entry.getValue());
+        }
+
+        for(Map.Entry<String, Set<Integer>> entry :
+            LimitPhrases(full.GetBaseClusters(-1e9), 3).entrySet()) {
+            assertEquals(entry.getValue(), limitPhrases.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void TruncatedTreeSize() {
+        // The tree is bounded by the distinct k-grams, not by the number
+        // of documents containing them.
+        int[] nodes = new int[2];
+        int[] edges = new int[2];
+
+        for(int i = 0; i < 2; i++) {
+            List<String> texts = new ArrayList<String>();
+
+            for(int j = 0; j < (i + 1) * 100; j++) {
+                texts.add("alpha beta gamma delta epsilon. beta gamma delta zeta.");
+            }
+
+            DocumentReader reader = new DocumentReader(new TextSource(texts));
+            reader.SetMaxPhraseLength(3);
+            reader.Read();
+            nodes[i] = reader.Tree().NodeCount();
+            edges[i] = reader.Tree().EdgeCount();
+            assertEquals((i + 1) * 100, reader.FindDocuments("beta", "gamma", "delta").length);
+        }
+
+        assertEquals(nodes[0], nodes[1]);
+        assertEquals(edges[0], edges[1]);
+    }
+
+    @Test
+    public void PhraseWeights() {
+        DocumentReader reader = new DocumentReader(new ZipfSource(5, 200));
+        reader.Read();
+        FrozenSuffixTree tree = reader.FrozenTree();
+
+        // The weight of each edge, including the ones ending with a marker.
+        for(int edge = 0; edge < tree.EdgeCount(); edge++) {
+            double expected = 0;
+
+            for(int i = tree.FirstIndex(edge); i <= tree.LastIndex(edge); i++) {
+                expected += tree.WordAt(i).Weight();
+            }
+
+            assertEquals(expected, tree.EdgeWeight(edge), 1e-9);
+        }
+
+        // The weight of a cluster follows the changes of its phrases,
+        // even if their number stays the same.
+        List<Cluster> clusters = reader.GetBaseClusters(-1e9);
+        Cluster cluster = Cluster.Merge(clusters.subList(0, 2));
+        cluster.ComputeWeight();
+        double weight = cluster.Weight();
+        Phrase other = new Phrase();
+        other.Words().addAll(cluster.Phrases().get(0).Words());
+        other.Words().add(cluster.Phrases().get(1).Words().get(0));
+        cluster.Phrases().set(0, other);
+        cluster.ComputeWeight();
+        assertTrue(cluster.Weight() != weight);
+
+        Cluster expected = new Cluster(2, 2);
+        expected.Documents().addAll(cluster.Documents());
+        expected.Phrases().addAll(cluster.Phrases());
+        expected.ComputeWeight();
+        assertEquals(expected.Weight(), cluster.Weight(), 1e-9);
+    }
+
+    @Test
+    public void NearDuplicates() {
+        // Each document is repeated 1 to 4 times.
+        Random random = new Random(9);
+        List<String> texts = new ArrayList<String>();
+
+        for(int i = 0; i < 200; i++) {
+            StringBuilder text = new StringBuilder();
+
+            for(int j = 0; j < 30; j++) {
+                text.append("w").append(random.nextInt(300)).append(j % 10 == 9 ? ". " : " ");
+            }
+
+            for(int j = random.nextInt(4); j >= 0; j--) {
+                texts.add(text.toString());
+            }
+        }
+
+        Collections.shuffle(texts, random);
+        DocumentReader full = new DocumentReader(new TextSource(texts));
+        full.Read();
+        DocumentReader reader = new DocumentReader(new TextSource(texts));
+        reader.SetNearDuplicateDistance(0);
+        reader.Read();
+        assertTrue(reader.DuplicateDocuments() > 0);
+        assertTrue(reader.Tree().NodeCount() < full.Tree().NodeCount());
+
+        // The clusters have the same documents, counting the aliases, and weights.
+        Map<String, String> expected = ExpandedClusters(full.GetBaseClusters(-1e9));
+        assertEquals(expected, ExpandedClusters(reader.GetBaseClusters(-1e9)));
+
+        for(Document document : reader.Documents()) {
+            if(document.Original() != null) {
+                assertTrue(document.Original().Aliases().contains(document));
+            }
+        }
+    }
+
+    @Test
+    public void SharedSentences() {
+        // The documents share some of their sentences, a few of them twice.
+        Random random = new Random(11);
+        String[] common = new String[20];
+
+        for(int i = 0; i < common.length; i++) {
+            common[i] = "c" + i + " w" + random.nextInt(50) + " w" + random.nextInt(50) + ". ";
+        }
+
+        List<String> texts = new ArrayList<String>();
+
+        for(int i = 0; i < 300; i++) {
+            StringBuilder text = new StringBuilder();
+
+            for(int j = 0; j < 6; j++) {
+                if(random.nextBoolean()) {
+                    text.append(common[random.nextInt(common.length)]);
+                }
+                else {
+                    text.append("w").append(random.nextInt(500)).append(" w")
+                        .append(random.nextInt(500)).append(". ");
+                }
+            }
+
+            texts.add(text.toString());
+        }
+
+        DocumentReader full = new DocumentReader(new TextSource(texts));
+        full.Read();
+        DocumentReader reader = new DocumentReader(new TextSource(texts));
+        reader.SetShareSentences(true);
+        reader.Read();
+        assertTrue(reader.DuplicateSentences() > 0);
+        assertTrue(reader.Tree().NodeCount() < full.Tree().NodeCount());
+
+        assertEquals(ExpandedClusters(full.GetBaseClusters(-1e9)),
+                     ExpandedClusters(reader.GetBaseClusters(-1e9)));
+        assertEquals(ExpandedClusters(full.Tree().GetBaseClusters(-1e9)),
+                     ExpandedClusters(reader.Tree().GetBaseClusters(-1e9)));
+
+        for(int i = 0; i < common.length; i++) {
+            assertArrayEquals(full.FindDocuments("c" + i), reader.FindDocuments("c" + i));
+        }
+    }
+
+    @Test
+    public void TruncatedSharedSentences() {
+        // The sentences are longer than the limit; the shared ones
+        // have the same clusters as when they are inserted each time.
+        List<String> texts = new ArrayList<String>(Arrays.asList("a b c.", "a b c.", "a b d."));
+        Random random = new Random(13);
+
+        for(int i = 0; i < 200; i++) {
+            StringBuilder text = new StringBuilder();
+
+            for(int j = 0; j < 4; j++) {
+                text.append(random.nextInt(3) == 0 ? "c" + random.nextInt(10) + " c" : "w")
+                    .append(random.nextInt(30)).append(" w").append(random.nextInt(30))
+                    .append(" w").append(random.nextInt(30)).append(". ");
+            }
+
+            texts.add(text.toString());
+        }
+
+        for(int limit = 2; limit <= 4; limit++) {
+            DocumentReader full = new DocumentReader(new TextSource(texts));
+            full.SetMaxPhraseLength(limit);
+            full.Read();
+            DocumentReader reader = new DocumentReader(new TextSource(texts));
+            reader.SetMaxPhraseLength(limit);
+            reader.SetShareSentences(true);
+            reader.Read();
+            assertTrue(reader.DuplicateSentences() > 0);
+
+            Map<String, String> expected = ExpandedClusters(full.GetBaseClusters(-1e9));
+            assertEquals(expected, ExpandedClusters(reader.GetBaseClusters(-1e9)));
+            assertEquals(expected, ExpandedClusters(reader.Tree().GetBaseClusters(-1e9)));
+
+            // A single cluster for the phrase found at the start of the first documents.
+            int found = 0;
+
+            for(Cluster cluster : reader.GetBaseClusters(-1e9)) {
+                List<Word> words = cluster.Phrases().get(0).Words();
+
+                if((words.size() == 2) && words.get(0).Word().equals("a") &&
+                   words.get(1).Word().equals("b")) {
+                    assertEquals(3, cluster.DocumentCount());
+                    found++;
+                }
+            }
+
+            assertEquals(1, found);
+        }
+    }
+
+    @Test
+    public void FrozenTree() {
+        DocumentReader reader = new DocumentReader(new ZipfSource(6, 300));
+        reader.Read();
+        Map<String, Set<Integer>> expected = new HashMap<String, Set<Integer>>();
+        CollectPhrases(reader.Tree(), reader.Tree().Root(), "", expected);
+
+        // The clusters of the frozen tree are the phrases of the mutable one.
+        FrozenSuffixTree tree = reader.FrozenTree();
+        Map<String, Set<Integer>> actual = new HashMap<String, Set<Integer>>();
+
+        for(Cluster cluster : tree.GetBaseClusters(Double.NEGATIVE_INFINITY)) {
+            List<Word> phrase = cluster.Phrases().get(0).Words();
+            Set<Integer> documents = new TreeSet<Integer>();
+
+            for(Document document : cluster.Documents()) {
+                documents.add(document.Index());
+            }
+
+            actual.put(Text(phrase), documents);
+
+            // The lookup finds the same documents.
+            int[] found = tree.PhraseDocuments(phrase);
+            assertEquals(documents.size(), found.length);
+            assertEquals(documents.size(), tree.PhraseDocumentCount(phrase));
+
+            for(int i = 0; i < found.length; i++) {
+                assertTrue(documents.contains(found[i]));
+            }
+        }
+
+        assertEquals(expected, actual);
+
+        // Each edge is found by its first word.
+        for(int node = 0; node < tree.NodeCount(); node++) {
+            int first = tree.FirstEdge(node);
+
+            for(int edge = first; edge < first + tree.EdgeCount(node); edge++) {
+                assertEquals(edge, tree.FindEdge(node, tree.WordAt(tree.FirstIndex(edge))));
+            }
+        }
+    }
+
+    @Test
+    public void ResetSameInput() {
+        // The duplicate and sentence tables are reset with the tree.
+        DocumentReader reader = new DocumentReader(new ZipfSource(5, 300));
+        reader.SetNearDuplicateDistance(3);
+        reader.SetShareSentences(true);
+        reader.Read();
+        int nodes = reader.Tree().NodeCount();
+        int edges = reader.Tree().EdgeCount();
+        long words = reader.WordCount();
+        int duplicates = reader.DuplicateDocuments();
+        int sharedSentences = reader.DuplicateSentences();
+        Map<String, String> expected = ExpandedClusters(reader.GetBaseClusters(-1e9));
+
+        // A larger corpus in between, then the same one again.
+        reader.Reset(new ZipfSource(6, 500));
+        reader.Read();
+        reader.Reset(new ZipfSource(5, 300));
+        reader.Read();
+        assertEquals(300, reader.Documents().size());
+        assertEquals(nodes, reader.Tree().NodeCount());
+        assertEquals(edges, reader.Tree().EdgeCount());
+        assertEquals(words, reader.WordCount());
+        assertEquals(duplicates, reader.DuplicateDocuments());
+        assertEquals(sharedSentences, reader.DuplicateSentences());
+        assertEquals(expected, ExpandedClusters(reader.GetBaseClusters(-1e9)));
+    }
+
+    @Test
+    public void ReuseFrozenTree() {
+        DocumentReader reader = new DocumentReader(new ZipfSource(3, 400));
+        reader.Read();
+        FrozenSuffixTree tree = reader.FrozenTree();
+
+        // A smaller corpus, frozen in the arrays of the first one.
+        reader.Reset(new ZipfSource(4, 150));
+        reader.Read();
+        assertSame(tree, reader.FrozenTree());
+
+        DocumentReader fresh = new DocumentReader(new ZipfSource(4, 150));
+        fresh.Read();
+        assertEquals(fresh.FrozenTree().NodeCount(), tree.NodeCount());
+        assertEquals(fresh.FrozenTree().EdgeCount(), tree.EdgeCount());
+        assertEquals(fresh.FrozenTree().WordCount(), tree.WordCount());
+        assertEquals(ExpandedClusters(fresh.GetBaseClusters(-1e9)),
+                     ExpandedClusters(reader.GetBaseClusters(-1e9)));
+    }
+
+    // Adds the phrase of each internal node below the specified one, with the
+    // indices of its documents, walking the mutable tree. Returns the documents.
+    private static Set<Integer> CollectPhrases(SuffixTree tree, SuffixTree.Node node,
+                                               String phrase, Map<String, Set<Integer>> phrases) {
+        Set<Integer> documents = new TreeSet<Integer>();
+        Iterator<SuffixTree.Edge> edgeIt = node.Edges();
+
+        while(edgeIt.hasNext()) {
+            SuffixTree.Edge edge = edgeIt.next();
+
+            if(edge.NextNode().IsLeaf()) {
+                documents.add(edge.Document().Index());
+                continue;
+            }
+
+            List<Word> words = new ArrayList<Word>();
+
+            for(int i = edge.FirstIndex(); i <= edge.LastIndex(); i++) {
+                words.add(tree.WordAt(i));
+            }
+
+            String text = phrase.length() > 0 ? phrase + " " + Text(words) : Text(words);
+            documents.addAll(CollectPhrases(tree, edge.NextNode(), text, phrases));
+        }
+
+        if(phrase.length() > 0) {
+            phrases.put(phrase, documents);
+        }
+
+        return documents;
+    }
+
+    private static String Text(List<Word> words) {
+        StringBuilder text = new StringBuilder();
+
+        for(Word word : words) {
+            text.append(text.length() > 0 ? " " : "").append(word.Word());
+        }
+
+        return text.toString();
+    }
+
+    private static Map<String, String> ExpandedClusters(List<Cluster> clusters) {
+        Map<String, String> result = new HashMap<String, String>();
+
+        for(Cluster cluster : clusters) {
+            Set<Integer> documents = new TreeSet<Integer>();
+
+            for(Document document : cluster.Documents()) {
+                documents.add(document.Index());
+
+                for(Document alias : document.Aliases()) {
+                    documents.add(alias.Index());
+                }
+            }
+
+            assertEquals(documents.size(), cluster.DocumentCount());
+            result.put(cluster.Phrases().get(0).toString(),
+                       documents + " " + (float)cluster.Weight());
+        }
+
+        return result;
+    }
+
+    // The phrases having exactly 'limit' words, with the indices of their documents.
+    private static Map<String, Set<Integer>> LimitPhrases(List<Cluster> clusters, int limit) {
+        Map<String, Set<Integer>> phrases = new HashMap<String, Set<Integer>>();
+
+        for(Cluster cluster : clusters) {
+            Phrase phrase = cluster.Phrases().get(0);
+
+            if(phrase.WordCount() != limit) {
+                continue;
+            }
+
+            StringBuilder words = new StringBuilder();
+            Set<Integer> documents = new HashSet<Integer>();
+
+            for(Word word : phrase.Words()) {
+                words.append(words.length() > 0 ? " " : "").append(word.Word());
+            }
+
+            for(Document document : cluster.Documents()) {
+                documents.add(document.Index());
+            }
+
+            phrases.put(words.toString(), documents);
+        }
+
+        return phrases;
+    }
+
+    private static Map<String, Set<Document>> ShortPhrases(List<Cluster> clusters, int limit) {
+        Map<String, Set<Document>> phrases = new HashMap<String, Set<Document>>();
+
+        for(Cluster cluster : clusters) {
+            Phrase phrase = cluster.Phrases().get(0);
+
+            if(phrase.WordCount() < limit) {
+                phrases.put(phrase.toString(), new HashSet<Document>(cluster.Documents()));
+            }
+        }
+
+        return phrases;
+    }
+
+    @Test
+    public void DocumentClusters() {
+        ClusteringResult result = ClusterFinder.Run(new ZipfSource(3, 1000), 0.5, 20, 0.01);
+        DocumentClusterIndex index = result.DocumentClusters();
+
+        for(int doc = 0; doc < 1000; doc++) {
+            List<Cluster> clusters = index.ClustersOf(doc);
+
+            for(Cluster cluster : result.Clusters()) {
+                boolean contains = false;
+
+                for(Document document : cluster.Documents()) {
+                    contains |= document.Index() == doc;
+                }
+
+                assertEquals(contains, clusters.contains(cluster));
+            }
+        }
+    }
 }
@@ -0,0 +1,110 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package ClusteringTests;
+import Clustering.*;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTests {
+    @Test
+    public void Percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.Percentile(50), 0);
+
+        // 1 to 1000 ms.
+        for(int i = 1; i <= 1000; i++) {
+            histogram.Record(i * 1000000L);
+        }
+
+        assertEquals(1000, histogram.Count());
+        assertEquals(500.5, histogram.Mean(), 1e-9);
+        assertEquals(1000, histogram.Max(), 0);
+
+        // Within the bucket precision, and never below the real value.
+        double[] percents = new double[] { 1, 10, 50, 90, 99, 100 };
+
+        for(int i = 0; i < percents.length; i++) {
+            double expected = percents[i] * 10;
+            double value = histogram.Percentile(percents[i]);
+            assertTrue(value >= expected);
+            assertTrue(value <= expected * 1.125);
+        }
+
+        assertEquals(1000, histogram.Percentile(100), 0);
+
+        histogram.Reset();
+        assertEquals(0, histogram.Count());
+        assertEquals(0, histogram.Max(), 0);
+        assertEquals(0, histogram.Percentile(99), 0);
+    }
+
+    @Test
+    public void SmallAndLargeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.Record(-5);
+        histogram.Record(3000);
+        histogram.Record(Long.MAX_VALUE);
+
+        assertEquals(3, histogram.Count());
+        assertEquals(0, histogram.Percentile(1), 0);
+        assertEquals(0.003, histogram.Percentile(50), 0);
+        assertEquals(Long.MAX_VALUE / 1000 / 1000.0, histogram.Max(), 0);
+        assertEquals(histogram.Max(), histogram.Percentile(100), 0);
+    }
+
+    @Test
+    public void Concurrent() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+
+        for(int i = 0; i < threads.length; i++) {
+            final int thread = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    for(int j = 0; j < 10000; j++) {
+                        histogram.Record((thread * 10000 + j) * 1000L);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        for(int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+
+        assertEquals(40000, histogram.Count());
+        assertEquals(39.999, histogram.Max(), 1e-9);
+        assertEquals(19.9995, histogram.Mean(), 1e-9);
+    }
+}
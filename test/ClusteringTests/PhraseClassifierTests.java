@@ -0,0 +1,170 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package ClusteringTests;
+import Clustering.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PhraseClassifierTests {
+    @Test
+    public void ScoresMatchNaiveSearch() {
+        List<Cluster> clusters = ClusterFinder.Find(new ZipfSource(3, 300), 0.5, 20, 0.01);
+        PhraseClassifier classifier = new PhraseClassifier(clusters);
+        List<String> texts = Texts(new ZipfSource(4, 200));
+        TextSource source = new TextSource(texts);
+
+        for(int doc = 0; doc < texts.size(); doc++) {
+            assertTrue(source.HasDocument());
+            double[] scores = classifier.Scores(source);
+            double[] expected = NaiveScores(clusters, texts.get(doc));
+
+            for(int i = 0; i < clusters.size(); i++) {
+                assertEquals(expected[i], scores[i], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void AssignsDocumentsByTopic() {
+        // Two topics, each document having a few words of its own.
+        List<String> texts = new ArrayList<String>();
+
+        for(int i = 0; i < 40; i++) {
+            String topic = (i % 2) == 0 ? "alpha beta gamma" : "delta epsilon zeta";
+            texts.add(topic + ". f" + i + "a f" + i + "b");
+        }
+
+        List<Cluster> clusters = ClusterFinder.Find(new TextSource(texts), 0.5, 20, 0.01);
+        PhraseClassifier classifier = new PhraseClassifier(clusters);
+        int first = Find(clusters, "alpha");
+        int second = Find(clusters, "delta");
+        assertTrue(first != -1 && second != -1 && first != second);
+
+        assertEquals(first, classifier.Classify(Source("new words. alpha beta gamma today")));
+        assertEquals(second, classifier.Classify(Source("delta epsilon zeta")));
+        assertEquals(second, classifier.Classify(Source("gamma. epsilon zeta")));
+        assertEquals(-1, classifier.Classify(Source("nothing known here")));
+        assertArrayEquals(new int[] { first, -1, second },
+                          classifier.ClassifyAll(new TextSource(Arrays.asList(
+                                  "beta gamma", "unrelated words", "epsilon zeta"))));
+    }
+
+    private static TextSource Source(String text) {
+        TextSource source = new TextSource(Arrays.asList(text));
+        assertTrue(source.HasDocument());
+        return source;
+    }
+
+    // The sentences of each document, joined as text.
+    private static List<String> Texts(IDocumentSource source) {
+        List<String> texts = new ArrayList<String>();
+
+        while(source.HasDocument()) {
+            StringBuilder text = new StringBuilder();
+
+            while(source.HasSentence()) {
+                while(source.HasWord()) {
+                    text.append(source.NextWord()).append(' ');
+                }
+
+                text.append(". ");
+            }
+
+            texts.add(text.toString());
+        }
+
+        return texts;
+    }
+
+    private static double[] NaiveScores(List<Cluster> clusters, String text) {
+        double[] scores = new double[clusters.size()];
+
+        for(int i = 0; i < clusters.size(); i++) {
+            if("Other".equals(clusters.get(i).Label())) {
+                continue;
+            }
+
+            for(Phrase phrase : clusters.get(i).Phrases()) {
+                String[] words = new String[phrase.WordCount()];
+                double weight = 0;
+
+                for(int j = 0; j < words.length; j++) {
+                    words[j] = phrase.Words().get(j).Word();
+                    weight += Math.max(0, phrase.Words().get(j).Weight());
+                }
+
+                if(ContainsPhrase(text, words)) {
+                    scores[i] += weight;
+                }
+            }
+        }
+
+        return scores;
+    }
+
+    private static boolean ContainsPhrase(String text, String[] words) {
+        for(String sentence : text.split("[.!?]")) {
+            String[] sentenceWords = sentence.trim().split("\\s+");
+
+            for(int start = 0; start + words.length <= sentenceWords.length; start++) {
+                boolean same = true;
+
+                for(int j = 0; same && (j < words.length); j++) {
+                    same = sentenceWords[start + j].equals(words[j]);
+                }
+
+                if(same) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    // The position of the cluster having a phrase which starts with the word.
+    private static int Find(List<Cluster> clusters, String word) {
+        for(int i = 0; i < clusters.size(); i++) {
+            for(Phrase phrase : clusters.get(i).Phrases()) {
+                if(phrase.Words().get(0).Word().equals(word)) {
+                    return i;
+                }
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,85 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package ClusteringTests;
+import Clustering.*;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SuffixTreeSimilarityTests {
+    @Test
+    public void SameAndDisjointDocuments() {
+        DocumentReader reader = new DocumentReader(new TextSource(Arrays.asList(
+                "a b c. d e", "a b c. d e", "x y z")));
+        reader.Read();
+        SuffixTreeSimilarity similarity = new SuffixTreeSimilarity(reader, 1);
+        assertEquals(1, similarity.Similarity(0, 1), 1e-6);
+        assertEquals(0, similarity.Similarity(0, 2), 0);
+
+        SuffixTreeSimilarity.Neighbours neighbours = similarity.FindNeighbours(2, 1);
+        assertEquals(1, neighbours.Count(0));
+        assertEquals(1, neighbours.Neighbour(0, 0));
+        assertEquals(0, neighbours.Count(2));
+    }
+
+    @Test
+    public void NeighboursMatchAllPairs() {
+        final int k = 5;
+        DocumentReader reader = new DocumentReader(new ZipfSource(3, 300));
+        reader.Read();
+        SuffixTreeSimilarity similarity = new SuffixTreeSimilarity(reader, 1);
+        SuffixTreeSimilarity.Neighbours neighbours = similarity.FindNeighbours(k, 3);
+
+        for(int doc = 0; doc < similarity.DocumentCount(); doc++) {
+            double[] all = new double[similarity.DocumentCount()];
+            int positive = 0;
+
+            for(int other = 0; other < all.length; other++) {
+                if(other != doc) {
+                    all[other] = -similarity.Similarity(doc, other);
+                    positive += all[other] < 0 ? 1 : 0;
+                }
+            }
+
+            Arrays.sort(all);
+            assertEquals(Math.min(k, positive), neighbours.Count(doc));
+
+            for(int i = 0; i < neighbours.Count(doc); i++) {
+                int other = neighbours.Neighbour(doc, i);
+                assertEquals(-all[i], neighbours.Similarity(doc, i), 1e-5);
+                assertEquals(similarity.Similarity(doc, other),
+                             neighbours.Similarity(doc, i), 1e-5);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package ClusteringTests;
+import Clustering.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TokenFilterTests {
+    @Test
+    public void Stem() {
+        String[][] cases = new String[][] {
+            { "cats", "cat" }, { "ponies", "pony" }, { "cries", "cry" },
+            { "horses", "horse" }, { "glass", "glass" }, { "status", "status" },
+            { "bus", "bus" }, { "running", "run" }, { "stopped", "stop" },
+            { "falling", "fall" }, { "played", "play" }, { "jumped", "jump" },
+            { "eating", "eat" }, { "needed", "need" }, { "sing", "sing" },
+            { "string", "string" }, { "dying", "dying" }, { "bed", "bed" }
+        };
+
+        for(int i = 0; i < cases.length; i++) {
+            assertEquals(cases[i][0], cases[i][1], Stemmer.Stem(cases[i][0]));
+        }
+    }
+
+    @Test
+    public void Normalize() {
+        TokenFilter filter = new TokenFilter();
+        assertEquals("hello", filter.Apply("(Hello,"));
+        assertEquals("u.s.a", filter.Apply("U.S.A."));
+        assertEquals("don't", filter.Apply("\"Don't\""));
+        assertEquals("the", filter.Apply("The"));
+        assertNull(filter.Apply("..."));
+        assertNull(filter.Apply(""));
+
+        filter.SetLowerCase(false);
+        assertEquals("Hello", filter.Apply("Hello!"));
+
+        filter.SetLowerCase(true);
+        filter.SetStopWords(TokenFilter.ENGLISH_STOP_WORDS);
+        filter.SetStemming(true);
+        assertNull(filter.Apply("The"));
+        assertNull(filter.Apply("(about)"));
+        assertEquals("dog", filter.Apply("Dogs,"));
+    }
+
+    @Test
+    public void DocumentFrequencies() {
+        List<String> texts = Arrays.asList("alpha beta gamma.", "alpha beta.", "Alpha delta!");
+        TokenFilter filter = new TokenFilter();
+        filter.CountFrequencies(new TextSource(texts));
+        filter.SetMinDf(2);
+        filter.SetMaxDfRatio(0.9);
+
+        assertNull(filter.Apply("alpha"));  // In all 3 documents.
+        assertEquals("beta", filter.Apply("beta"));
+        assertNull(filter.Apply("gamma"));  // In a single document.
+        assertNull(filter.Apply("epsilon")); // Never seen.
+    }
+
+    @Test
+    public void FilteredSourceOutput() {
+        List<String> texts = Arrays.asList("The Cats were RUNNING!  Dogs barked at them.",
+                                           "Of the, and... A house. Horses.");
+        TokenFilter filter = new TokenFilter();
+        filter.SetStopWords(TokenFilter.ENGLISH_STOP_WORDS);
+        filter.SetStemming(true);
+
+        assertEquals(Arrays.asList("cat run | dog bark", " | house | horse"),
+                     Documents(new FilteredSource(new TextSource(texts), filter)));
+    }
+
+    // Returns the words of each document, the sentences being separated by '|'.
+    private static List<String> Documents(IDocumentSource source) {
+        List<String> documents = new ArrayList<String>();
+
+        while(source.HasDocument()) {
+            StringBuilder document = new StringBuilder();
+
+            for(int sentence = 0; source.HasSentence(); sentence++) {
+                if(sentence > 0) {
+                    document.append(" |");
+                }
+
+                for(int word = 0; source.HasWord(); word++) {
+                    document.append(sentence + word > 0 ? " " : "").append(source.NextWord());
+                }
+            }
+
+            documents.add(document.toString());
+        }
+
+        return documents;
+    }
+}
@@ -0,0 +1,199 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package ClusteringTests;
+import Clustering.*;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class TreeSnapshotTests {
+    @Test
+    public void Aliases() throws IOException {
+        // Each document is repeated 1 to 4 times, the copies become aliases.
+        Random random = new Random(5);
+        List<String> texts = new ArrayList<String>();
+
+        for(int i = 0; i < 100; i++) {
+            StringBuilder text = new StringBuilder();
+
+            for(int j = 0; j < 20; j++) {
+                text.append("w").append(random.nextInt(200)).append(j % 5 == 4 ? ". " : " ");
+            }
+
+            for(int j = random.nextInt(4); j >= 0; j--) {
+                texts.add(text.toString());
+            }
+        }
+
+        Collections.shuffle(texts, random);
+        DocumentReader reader = new DocumentReader(new TextSource(texts));
+        reader.SetNearDuplicateDistance(0);
+        reader.Read();
+        assertTrue(reader.DuplicateDocuments() > 0);
+
+        TreeSnapshot snapshot = SaveAndOpen(reader);
+        assertEquals(Clusters(reader.GetBaseClusters(-1e9)),
+                     Clusters(snapshot.GetBaseClusters(-1e9)));
+    }
+
+    @Test
+    public void RoundTrip() throws IOException {
+        String corpus = Corpus(new Random(3), 300);
+        DocumentReader reader = new DocumentReader(new TestSource(corpus));
+        reader.Read();
+        TreeSnapshot snapshot = SaveAndOpen(reader);
+        assertEquals(reader.Documents().size(), snapshot.DocumentCount());
+        assertTrue(snapshot.NodeCount() > 0);
+
+        // The base clusters are the same and come in the same order.
+        List<Cluster> expected = reader.GetBaseClusters(-1e9);
+        List<Cluster> actual = snapshot.GetBaseClusters(-1e9);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.size(), actual.size());
+        assertEquals(Clusters(expected), Clusters(actual));
+
+        for(int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).Weight(), actual.get(i).Weight(), 1e-9);
+        }
+
+        assertEquals(Clusters(reader.GetBaseClusters(0.5)),
+                     Clusters(snapshot.GetBaseClusters(0.5)));
+        assertEquals(ClusterFinder.Find(new TestSource(corpus), 0.5, 10, 0.01).size(),
+                     ClusterFinder.Find(snapshot, 0.5, 10, 0.01).size());
+    }
+
+    @Test
+    public void TruncatedRoundTrip() throws IOException {
+        DocumentReader reader = new DocumentReader(new ZipfSource(4, 200));
+        reader.SetMaxPhraseLength(3);
+        reader.Read();
+        TreeSnapshot snapshot = SaveAndOpen(reader);
+        assertEquals(reader.Documents().size(), snapshot.DocumentCount());
+        assertEquals(Clusters(reader.GetBaseClusters(-1e9)),
+                     Clusters(snapshot.GetBaseClusters(-1e9)));
+    }
+
+    @Test
+    public void InvalidFile() throws IOException {
+        File file = File.createTempFile("snapshot", ".dcst");
+        file.deleteOnExit();
+        FileOutputStream stream = new FileOutputStream(file);
+        stream.write(new byte[100]);
+        stream.close();
+
+        try {
+            TreeSnapshot.Open(file);
+            fail("Expected an IOException");
+        }
+        catch(IOException e) {}
+
+        // A valid snapshot with its last bytes missing.
+        DocumentReader reader = new DocumentReader(new TestSource(Corpus(new Random(5), 50)));
+        reader.Read();
+        TreeSnapshot.Save(reader, file);
+        RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        truncated.setLength(truncated.length() - 8);
+        truncated.close();
+
+        try {
+            TreeSnapshot.Open(file);
+            fail("Expected an IOException");
+        }
+        catch(IOException e) {}
+    }
+
+    static TreeSnapshot SaveAndOpen(DocumentReader reader) throws IOException {
+        File file = File.createTempFile("snapshot", ".dcst");
+        file.deleteOnExit();
+        TreeSnapshot.Save(reader, file);
+        return TreeSnapshot.Open(file);
+    }
+
+    // Writes a file with one document per line, made of 4 sentences
+    // with words drawn from a small vocabulary, and returns its path.
+    static String Corpus(Random random, int documents) throws IOException {
+        File file = File.createTempFile("corpus", ".txt");
+        file.deleteOnExit();
+        FileWriter writer = new FileWriter(file);
+
+        for(int i = 0; i < documents; i++) {
+            for(int j = 0; j < 20; j++) {
+                writer.write("w" + random.nextInt(200) + (j % 5 == 4 ? "." : " "));
+            }
+
+            writer.write("\n");
+        }
+
+        writer.close();
+        return file.getPath();
+    }
+
+    // Maps the phrase of each cluster to its documents (with the aliases)
+    // and its weight.
+    static Map<String, String> Clusters(List<Cluster> clusters) {
+        Map<String, String> result = new HashMap<String, String>();
+
+        for(Cluster cluster : clusters) {
+            StringBuilder phrase = new StringBuilder();
+            Set<Integer> documents = new TreeSet<Integer>();
+
+            for(Word word : cluster.Phrases().get(0).Words()) {
+                phrase.append(word.Word()).append(' ');
+            }
+
+            for(Document document : cluster.Documents()) {
+                documents.add(document.Index());
+
+                for(Document alias : document.Aliases()) {
+                    documents.add(alias.Index());
+                }
+            }
+
+            result.put(phrase.toString(), documents + " " + (float)cluster.Weight());
+        }
+
+        return result;
+    }
+}
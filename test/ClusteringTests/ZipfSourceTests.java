@@ -0,0 +1,123 @@
+// Copyright (c) 2010 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "DocumentClustering" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "DocumentClustering" nor
+// may "DocumentClustering" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package ClusteringTests;
+import Clustering.*;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ZipfSourceTests {
+    private static final int DOCUMENTS = 2000;
+
+    @Test
+    public void Deterministic() {
+        ZipfSource a = new ZipfSource(11, 50);
+        ZipfSource b = new ZipfSource(11, 50);
+
+        while(a.HasDocument()) {
+            assertTrue(b.HasDocument());
+
+            while(a.HasSentence()) {
+                assertTrue(b.HasSentence());
+
+                while(a.HasWord()) {
+                    assertTrue(b.HasWord());
+                    assertEquals(a.NextWord(), b.NextWord());
+                }
+
+                assertFalse(b.HasWord());
+            }
+
+            assertFalse(b.HasSentence());
+        }
+
+        assertFalse(b.HasDocument());
+    }
+
+    @Test
+    public void PlantedPhrasesAreBaseClusters() {
+        ZipfSource source = new ZipfSource(7, DOCUMENTS);
+        DocumentReader reader = new DocumentReader(source);
+        reader.Read();
+        List<Cluster> clusters = reader.GetBaseClusters(Double.NEGATIVE_INFINITY);
+
+        for(int phrase = 0; phrase < source.PlantedPhraseCount(); phrase++) {
+            String[] words = source.PlantedPhrase(phrase);
+            Set<Integer> expected = new TreeSet<Integer>();
+
+            for(int doc = 0; doc < DOCUMENTS; doc++) {
+                if(source.ContainsPhrase(doc, phrase)) {
+                    expected.add(doc);
+                }
+            }
+
+            Cluster cluster = FindCluster(clusters, words);
+            assertNotNull(cluster);
+            assertEquals(expected, Indices(cluster));
+        }
+    }
+
+    private static Cluster FindCluster(List<Cluster> clusters, String[] words) {
+        for(Cluster cluster : clusters) {
+            List<Word> phrase = cluster.Phrases().get(0).Words();
+
+            if(phrase.size() != words.length) {
+                continue;
+            }
+
+            boolean same = true;
+
+            for(int i = 0; i < words.length; i++) {
+                same &= phrase.get(i).Word().equals(words[i]);
+            }
+
+            if(same) {
+                return cluster;
+            }
+        }
+
+        return null;
+    }
+
+    private static Set<Integer> Indices(Cluster cluster) {
+        Set<Integer> indices = new TreeSet<Integer>();
+
+        for(Document doc : cluster.Documents()) {
+            indices.add(doc.Index());
+        }
+
+        return indices;
+    }
+}